@@ -0,0 +1,143 @@
+package org.barracudamvc.benchmark;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.barracudamvc.plankton.io.parser.json.JSONParser;
+import org.barracudamvc.plankton.io.parser.json.parser.DefaultBuilder;
+
+/**
+ * <p>Compares a JMH JSON result file against the checked in baseline and
+ * exits with status 1 if any benchmark has regressed. Throughput scores
+ * regress when they fall; all other modes (average time, sample, single
+ * shot) regress when they rise.
+ *
+ * <p>A benchmark only counts as regressed if its score has moved by more
+ * than the allowed fraction <em>and</em> the confidence intervals JMH
+ * reported for the two runs (score +/- scoreError) don't overlap. A change
+ * past the threshold whose intervals still overlap is reported as NOISY but
+ * doesn't fail the comparison; a run recorded with fewer than MIN_FORKS
+ * forks is flagged, since its interval says little about fork to fork
+ * variance. Benchmarks that are only in one of the files are listed but
+ * never fail the comparison.
+ *
+ * <p>Usage: BaselineComparison baseline.json results.json [threshold]
+ * where threshold defaults to 0.10 (10%).
+ */
+public class BaselineComparison {
+
+    /**
+     * the fewest forks a run should have for its confidence interval to be
+     * trusted
+     */
+    public static int MIN_FORKS = 3;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: BaselineComparison <baseline.json> <results.json> [threshold]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 0.10;
+        Map<String, Score> baseline = load(args[0]);
+        Map<String, Score> results = load(args[1]);
+
+        int regressions = 0;
+        for (Map.Entry<String, Score> entry : results.entrySet()) {
+            Score current = entry.getValue();
+            Score base = baseline.get(entry.getKey());
+            if (base == null) {
+                System.out.println(String.format("NEW        %-70s %12.3f %s", entry.getKey(), current.score, current.unit));
+                continue;
+            }
+            double change = (current.score - base.score) / base.score;
+            boolean pastThreshold = current.higherIsBetter ? change < -threshold : change > threshold;
+            boolean separated = current.higherIsBetter ? current.high < base.low : current.low > base.high;
+            String status = "ok";
+            if (pastThreshold && separated) {
+                status = "REGRESSED";
+                regressions++;
+            } else if (pastThreshold) {
+                status = "NOISY";
+            }
+            System.out.println(String.format("%-10s %-70s %12.3f +/- %.3f -> %12.3f +/- %.3f %s (%+.1f%%)%s", status,
+                    entry.getKey(), base.score, base.error, current.score, current.error, current.unit, change * 100,
+                    (base.forks < MIN_FORKS || current.forks < MIN_FORKS) ? " [fewer than " + MIN_FORKS + " forks]" : ""));
+        }
+        for (String key : baseline.keySet()) {
+            if (!results.containsKey(key)) {
+                System.out.println(String.format("MISSING    %s", key));
+            }
+        }
+        if (regressions > 0) {
+            System.out.println(regressions + " benchmark(s) regressed by more than " + (threshold * 100) + "% beyond their confidence intervals");
+            System.exit(1);
+        }
+    }
+
+    static Map<String, Score> load(String file) throws IOException {
+        Object parsed;
+        try (InputStream in = new FileInputStream(file)) {
+            parsed = new JSONParser().parse(in, new DefaultBuilder());
+        }
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (Object o : (List) parsed) {
+            Map run = (Map) o;
+            StringBuilder key = new StringBuilder((String) run.get("benchmark"));
+            Map params = (Map) run.get("params");
+            if (params != null) {
+                for (Object p : params.entrySet()) {
+                    Map.Entry param = (Map.Entry) p;
+                    key.append(' ').append(param.getKey()).append('=').append(param.getValue());
+                }
+            }
+            Object threads = run.get("threads");
+            if (threads != null && !"1".equals(String.valueOf(threads))) {
+                key.append(" threads=").append(threads);
+            }
+            Map metric = (Map) run.get("primaryMetric");
+            Object forks = run.get("forks");
+            scores.put(key.toString(), new Score(toDouble(metric.get("score")), toError(metric.get("scoreError")),
+                    String.valueOf(metric.get("scoreUnit")), "thrpt".equals(run.get("mode")),
+                    forks != null ? Integer.parseInt(String.valueOf(forks)) : 1));
+        }
+        return scores;
+    }
+
+    private static double toDouble(Object o) {
+        return Double.parseDouble(String.valueOf(o));
+    }
+
+    /**
+     * @return the score error; JMH writes "NaN" when it has too few
+     *     iterations to work one out, and as nothing is known about such a
+     *     score its interval is taken to be unbounded
+     */
+    private static double toError(Object o) {
+        double d = (o != null ? toDouble(o) : Double.NaN);
+        return Double.isNaN(d) ? Double.POSITIVE_INFINITY : d;
+    }
+
+    static class Score {
+
+        final double score;
+        final double error;
+        final double low;
+        final double high;
+        final String unit;
+        final boolean higherIsBetter;
+        final int forks;
+
+        Score(double iscore, double ierror, String iunit, boolean ihigherIsBetter, int iforks) {
+            score = iscore;
+            error = ierror;
+            low = iscore - ierror;
+            high = iscore + ierror;
+            unit = iunit;
+            higherIsBetter = ihigherIsBetter;
+            forks = iforks;
+        }
+    }
+}
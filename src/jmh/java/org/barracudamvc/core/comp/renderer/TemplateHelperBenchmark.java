@@ -0,0 +1,149 @@
+package org.barracudamvc.core.comp.renderer;
+
+import java.util.concurrent.TimeUnit;
+import org.barracudamvc.core.comp.AbstractIterativeTemplateModel;
+import org.barracudamvc.core.comp.AbstractTemplateModel;
+import org.barracudamvc.core.comp.BTemplate;
+import org.barracudamvc.core.comp.DefaultTemplateView;
+import org.barracudamvc.core.comp.DefaultViewContext;
+import org.barracudamvc.core.comp.ViewContext;
+import org.barracudamvc.core.view.FormatType;
+import org.barracudamvc.core.view.ViewCapabilities;
+import org.barracudamvc.plankton.data.ObjectRepository;
+import org.enhydra.xml.xmlc.dom.XMLCDomFactoryCache;
+import org.enhydra.xml.xmlc.dom.xerces.XercesHTMLDomFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Renders a representative BTemplate: a page header filled from one model
+ * and a table whose rows iterate over a second model.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+public class TemplateHelperBenchmark {
+
+    @Param({"10", "100"})
+    int rows;
+
+    Document document;
+    Element template;
+    DefaultTemplateView view;
+    ViewContext vc;
+
+    @Setup
+    public void setup() {
+        document = XMLCDomFactoryCache.getFactory(XercesHTMLDomFactory.class).createDocument(null, "HTML", null);
+        template = document.createElement("DIV");
+        Element title = element("H1", "Dir::Get_Data.Page.Title", "Title");
+        Element intro = element("P", "intro", "Some static text that is copied as is.");
+        Element table = document.createElement("TABLE");
+        Element row = element("TR", "row Dir::Iterate_Next.Rows", null);
+        row.appendChild(element("TD", "Dir::Get_Data.Rows.Id", "1"));
+        row.appendChild(element("TD", "Dir::Get_Data.Rows.Name", "Name"));
+        row.appendChild(element("TD", "Dir::Get_Data.Rows.Amount", "0.00"));
+        table.appendChild(row);
+        table.appendChild(element("TR", "Dir::Iterate_End.Rows Dir::Discard", null));
+        template.appendChild(title);
+        template.appendChild(intro);
+        template.appendChild(table);
+        document.getDocumentElement().appendChild(template);
+        //the view keeps a copy of the template, so it must be created before the first render
+        view = new DefaultTemplateView(template);
+        vc = new DefaultViewContext(new ViewCapabilities(FormatType.HTML_4_0, null, null, null), null, null);
+    }
+
+    private Element element(String tag, String cls, String text) {
+        Element el = document.createElement(tag);
+        el.setAttribute("class", cls);
+        if (text != null) {
+            el.appendChild(document.createTextNode(text));
+        }
+        return el;
+    }
+
+    @Benchmark
+    public Element render() throws Exception {
+        BTemplate btemplate = new BTemplate();
+        btemplate.addModel(new PageModel());
+        btemplate.addModel(new RowModel(rows));
+        btemplate.setView(view);
+        try {
+            btemplate.render(vc);
+        } finally {
+            //the iteration state lives in the local repository, which the gateway clears after each request
+            ObjectRepository.removeLocalRepository();
+        }
+        return template;
+    }
+
+    static class PageModel extends AbstractTemplateModel {
+
+        @Override
+        public String getName() {
+            return "Page";
+        }
+
+        @Override
+        public Object getItem(String key) {
+            return "Benchmark page";
+        }
+    }
+
+    static class RowModel extends AbstractIterativeTemplateModel {
+
+        final int count;
+        int current = -1;
+
+        RowModel(int icount) {
+            count = icount;
+        }
+
+        @Override
+        public String getName() {
+            return "Rows";
+        }
+
+        @Override
+        public void preIterate() {
+            current = -1;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return current + 1 < count;
+        }
+
+        @Override
+        public void loadNext() {
+            current++;
+        }
+
+        @Override
+        public Object getItem(String key) {
+            switch (key) {
+                case "Id":
+                    return current;
+                case "Name":
+                    return "Row " + current;
+                default:
+                    return current * 1.5;
+            }
+        }
+    }
+}
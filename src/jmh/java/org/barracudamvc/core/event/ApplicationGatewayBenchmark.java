@@ -0,0 +1,84 @@
+package org.barracudamvc.core.event;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.ServletException;
+import org.barracudamvc.testbed.servlet.MockHttpServletRequest;
+import org.barracudamvc.testbed.servlet.MockHttpServletResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A full request through ApplicationGateway: the control event is mapped from
+ * the URL, its listener queues a view event and the view listener writes the
+ * response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+public class ApplicationGatewayBenchmark {
+
+    private static final String MESSAGE = "<html><body>Hello</body></html>";
+
+    ApplicationGateway gateway;
+    URL url;
+
+    @Setup
+    public void setup() throws Exception {
+        ApplicationGateway.RESPOND_WITH_404 = true;
+        gateway = new ApplicationGateway();
+        url = new URL("http://www.example.com/Path/" + BenchmarkControlEvent.class.getName() + ".event");
+        EventBroker broker = gateway.getEventBroker();
+        broker.addEventListener(new DefaultListenerFactory() {
+            @Override
+            public BaseEventListener getInstance() {
+                return new DefaultBaseEventListener() {
+                    @Override
+                    public void handleControlEvent(ControlEventContext context) throws EventException, ServletException, IOException {
+                        context.getQueue().addEvent(new BenchmarkViewEvent());
+                    }
+                };
+            }
+
+            @Override
+            public String getListenerID() {
+                return BenchmarkControlEvent.class.getName();
+            }
+        }, BenchmarkControlEvent.class);
+        broker.addEventListener(new DefaultListenerFactory() {
+            @Override
+            public BaseEventListener getInstance() {
+                return new DefaultBaseEventListener() {
+                    @Override
+                    public void handleViewEvent(ViewEventContext context) throws EventException, ServletException, IOException {
+                        context.getResponse().getWriter().print(MESSAGE);
+                    }
+                };
+            }
+
+            @Override
+            public String getListenerID() {
+                return BenchmarkViewEvent.class.getName();
+            }
+        }, BenchmarkViewEvent.class);
+    }
+
+    @Benchmark
+    public MockHttpServletResponse dispatch() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        gateway.doGet(new MockHttpServletRequest(url), response);
+        return response;
+    }
+}
@@ -0,0 +1,12 @@
+package org.barracudamvc.core.event;
+
+/**
+ * The control event dispatched by ApplicationGatewayBenchmark
+ */
+public class BenchmarkControlEvent extends HttpRequestEvent {
+
+    @Override
+    public boolean isHandled() {
+        return true;
+    }
+}
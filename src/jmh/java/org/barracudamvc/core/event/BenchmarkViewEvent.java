@@ -0,0 +1,12 @@
+package org.barracudamvc.core.event;
+
+/**
+ * The view event rendered by ApplicationGatewayBenchmark
+ */
+public class BenchmarkViewEvent extends HttpResponseEvent {
+
+    @Override
+    public boolean isHandled() {
+        return false;
+    }
+}
@@ -0,0 +1,56 @@
+package org.barracudamvc.core.event;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Checkout and release of pooled events, single threaded and with several
+ * threads contending for the same event class.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+public class DefaultEventPoolBenchmark {
+
+    DefaultEventPool pool;
+
+    @Setup
+    public void setup() {
+        pool = new DefaultEventPool();
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public BaseEvent checkoutRelease() throws Exception {
+        BaseEvent event = pool.checkoutEvent(BenchmarkControlEvent.class);
+        pool.releaseEvent(event);
+        return event;
+    }
+
+    @Benchmark
+    @Threads(8)
+    public BaseEvent checkoutReleaseContended() throws Exception {
+        BaseEvent event = pool.checkoutEvent(BenchmarkControlEvent.class);
+        pool.releaseEvent(event);
+        return event;
+    }
+}
@@ -0,0 +1,69 @@
+package org.barracudamvc.core.forms;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.barracudamvc.core.forms.validators.EmailValidator;
+import org.barracudamvc.core.forms.validators.MaxLengthValidator;
+import org.barracudamvc.core.forms.validators.MinLengthValidator;
+import org.barracudamvc.core.forms.validators.NotNullValidator;
+import org.barracudamvc.core.forms.validators.RangeValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Defines, maps and validates a form, once defining every element and once
+ * from a compiled FormSchema.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+public class DefaultFormMapBenchmark {
+
+    private static final int FIELDS = 20;
+
+    Map<String, Object> params;
+    FormSchema schema;
+
+    @Setup
+    public void setup() {
+        params = new HashMap<>();
+        for (int i = 0; i < FIELDS; i++) {
+            params.put("name" + i, "Name " + i);
+            params.put("email" + i, "user" + i + "@example.com");
+            params.put("age" + i, String.valueOf(20 + i));
+        }
+        schema = FormSchema.compile(define(new DefaultFormMap()));
+    }
+
+    private static DefaultFormMap define(DefaultFormMap form) {
+        for (int i = 0; i < FIELDS; i++) {
+            form.defineElement(new DefaultFormElement("name" + i, FormType.STRING, null,
+                    new And(new NotNullValidator(), new MinLengthValidator(2), new MaxLengthValidator(50))));
+            form.defineElement(new DefaultFormElement("email" + i, FormType.STRING, null, new EmailValidator()));
+            form.defineElement(new DefaultFormElement("age" + i, FormType.INTEGER, null, new RangeValidator(0, 150)));
+        }
+        return form;
+    }
+
+    @Benchmark
+    public FormMap mapAndValidate() throws ValidationException {
+        return define(new DefaultFormMap()).map(params).validate(true);
+    }
+
+    @Benchmark
+    public FormMap mapAndValidateWithSchema() throws ValidationException {
+        return new DefaultFormMap(schema).map(params).validate(true);
+    }
+}
@@ -0,0 +1,98 @@
+package org.barracudamvc.core.util.dom;
+
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import org.enhydra.xml.io.OutputOptions;
+import org.enhydra.xml.xmlc.dom.XMLCDomFactoryCache;
+import org.enhydra.xml.xmlc.dom.xerces.XercesHTMLDomFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Serializes an HTML document holding a table to a discarding writer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+public class DefaultDOMWriterBenchmark {
+
+    @Param({"100", "1000"})
+    int rows;
+
+    @Param({"false", "true"})
+    boolean pretty;
+
+    Document document;
+    DefaultDOMWriter writer;
+    CountingWriter out;
+
+    @Setup
+    public void setup() {
+        document = XMLCDomFactoryCache.getFactory(XercesHTMLDomFactory.class).createDocument(null, "HTML", null);
+        Element table = document.createElement("TABLE");
+        for (int i = 0; i < rows; i++) {
+            Element tr = document.createElement("TR");
+            tr.setAttribute("class", i % 2 == 0 ? "even" : "odd");
+            for (int j = 0; j < 4; j++) {
+                Element td = document.createElement("TD");
+                td.appendChild(document.createTextNode("cell " + i + "/" + j + " & <text>"));
+                tr.appendChild(td);
+            }
+            table.appendChild(tr);
+        }
+        document.getDocumentElement().appendChild(table);
+        OutputOptions oo = DefaultDOMWriter.getDefaultOutputOptions(document);
+        oo.setEncoding("UTF-8");
+        writer = new DefaultDOMWriter(oo, pretty, false, 0);
+        writer.setLeaveWriterOpen(true);
+        out = new CountingWriter();
+    }
+
+    @Benchmark
+    public long write() throws Exception {
+        writer.write(document, out);
+        return out.count;
+    }
+
+    static class CountingWriter extends Writer {
+
+        long count;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void write(int c) {
+            count++;
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
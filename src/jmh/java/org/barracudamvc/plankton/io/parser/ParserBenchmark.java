@@ -0,0 +1,76 @@
+package org.barracudamvc.plankton.io.parser;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.barracudamvc.plankton.io.parser.URLEncoded.URLEncodedParser;
+import org.barracudamvc.plankton.io.parser.json.JSONParser;
+import org.barracudamvc.plankton.io.parser.json.parser.DefaultBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parses a JSON request body and a URL encoded form post.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+public class ParserBenchmark {
+
+    byte[] json;
+    byte[] form;
+    JSONParser jsonParser;
+    URLEncodedParser urlEncodedParser;
+
+    @Setup
+    public void setup() {
+        StringBuilder sb = new StringBuilder("{\"orders\": [");
+        for (int i = 0; i < 50; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append("{\"id\": ").append(i)
+                    .append(", \"customer\": \"Customer \\\"").append(i).append("\\\"\"")
+                    .append(", \"total\": ").append(i * 10.25)
+                    .append(", \"paid\": ").append(i % 2 == 0)
+                    .append(", \"lines\": [1, 2, 3], \"note\": null}");
+        }
+        sb.append("]}");
+        json = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        sb.setLength(0);
+        for (int i = 0; i < 50; i++) {
+            if (i > 0) {
+                sb.append('&');
+            }
+            sb.append("field").append(i).append("=value+").append(i).append("%20%C3%A9%26more");
+        }
+        form = sb.toString().getBytes(StandardCharsets.US_ASCII);
+
+        jsonParser = new JSONParser();
+        urlEncodedParser = new URLEncodedParser();
+    }
+
+    @Benchmark
+    public Object parseJSON() {
+        return jsonParser.parse(new ByteArrayInputStream(json), new DefaultBuilder());
+    }
+
+    @Benchmark
+    public Map<String, List<String>> parseURLEncoded() {
+        return urlEncodedParser.parse(form, 0, form.length);
+    }
+}
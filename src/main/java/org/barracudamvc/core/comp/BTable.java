@@ -43,6 +43,12 @@ public class BTable extends BComponent implements BCompoundComponent {
 
     //public vars
     protected static final Logger logger = Logger.getLogger(BTable.class.getName());
+
+    /**
+     * Whether new tables render their rows directly into the DOM (see
+     * {@link #setDirectRendering(boolean)})
+     */
+    public static boolean DEFAULT_DIRECT_RENDERING = false;
     
     //private vars
     protected TableModel model = null;
@@ -53,6 +59,9 @@ public class BTable extends BComponent implements BCompoundComponent {
     private LocalModelListener footerCallback = null;
     protected Node templateNode = null;
     protected BText caption = null;        //ndc_101202.1
+    protected boolean directRendering = DEFAULT_DIRECT_RENDERING;
+    protected int firstRow = 0;
+    protected int maxRows = -1;
 
     //--------------- Constructors -------------------------------
     /**
@@ -257,6 +266,61 @@ public class BTable extends BComponent implements BCompoundComponent {
         return this.caption;
     }
 
+    /**
+     * Specify whether the table rows should be rendered directly. By default
+     * the renderer builds a BList for every row and lets the list renderer
+     * produce the cells. In direct mode the TR and TD elements are created
+     * straight from the TableModel: text items become text cells, Nodes are
+     * appended as they are, and only BComponent items are bound as step
+     * children so they can render themselves.
+     *
+     * @param val true if the rows should be rendered directly
+     */
+    public BTable setDirectRendering(boolean val) {
+        directRendering = val;
+        invalidate();
+        return this;
+    }
+
+    /**
+     * @return true if the rows are rendered directly from the model
+     */
+    public boolean isDirectRendering() {
+        return directRendering;
+    }
+
+    /**
+     * Limit the body to a window of rows. Only the rows in the window are
+     * read from the body model and rendered, which allows a large model to
+     * be paged through; the header and footer models are always rendered
+     * in full.
+     *
+     * @param ifirstRow the index of the first body row to render
+     * @param imaxRows the maximum number of body rows to render, or -1 for 
+     *        all the remaining rows
+     */
+    public BTable setRowWindow(int ifirstRow, int imaxRows) {
+        if (ifirstRow < 0) throw new IllegalArgumentException("Invalid first row:" + ifirstRow);
+        firstRow = ifirstRow;
+        maxRows = imaxRows < 0 ? -1 : imaxRows;
+        invalidate();
+        return this;
+    }
+
+    /**
+     * @return the index of the first body row to render
+     */
+    public int getFirstRow() {
+        return firstRow;
+    }
+
+    /**
+     * @return the maximum number of body rows to render (-1 for no limit)
+     */
+    public int getMaxRows() {
+        return maxRows;
+    }
+
     /**
      * Render a specific view for the component. 
      *
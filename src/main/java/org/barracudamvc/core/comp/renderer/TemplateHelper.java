@@ -26,7 +26,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
-import java.util.StringTokenizer;
 
 import org.apache.log4j.Logger;
 import org.barracudamvc.core.comp.BComponent;
@@ -58,11 +57,17 @@ public class TemplateHelper {
     protected static final Logger logger = Logger.getLogger(TemplateHelper.class.getName());
     protected static final String ITERATIVE_MODEL_MAP = TemplateHelper.class.getName() + ".IterativeModelMap";        //(Map) - local object repository
     protected static final String IT_STACK = TemplateHelper.class.getName() + ".ItStack";                             //(Stack) - local object repository
+    /**
+     * set this to false to analyze the template node by node on every render
+     * rather than using compiled TemplatePlans
+     */
+    public static boolean USE_TEMPLATE_PLANS = true;
     final String s = "";
     protected Renderer masterRenderer = null;
     protected BTemplate btemplate = null;
     protected Stack<IteratorContext> itStack = null;
     protected boolean skipUntilBlockIterateEnd = false;
+    TemplatePlan.Binding plan = null;
     static boolean showDebug = false;
     ObjectRepository localRepository;
 
@@ -87,6 +92,7 @@ public class TemplateHelper {
 
         //get a reference to the template and the root node
         btemplate = (BTemplate) comp;
+        plan = (USE_TEMPLATE_PLANS ? TemplatePlan.forView(view) : null);
         Node node = view.getNode();
         Node origNode = node;
 //        Node origParent = origNode.getParentNode();
@@ -201,47 +207,51 @@ public class TemplateHelper {
         //associated witha  given node...
         List<TemplateDirective> dirList = null;
 
+        //if the template has been compiled and there is nothing in this part of it that
+        //needs processing, just copy it across (this is the common case for most of the
+        //markup in a template)
+        TemplatePlan.NodePlan nodePlan = (plan != null ? plan.get(templateNode) : null);
+        if (nodePlan != null && nodePlan.isStatic() && !skipUntilBlockIterateEnd
+                && view.getDirIDMap() == null && isIterationSteady()) {
+            return copyStaticNode(templateNode);
+        }
+
         //...now look in the attributes
         String origClassAttr = null;
         String newClassAttr = null;
-        Map<String, String> attrMap = new HashMap<String, String>();
+        Map<String, String> attrMap = null;
         boolean idMatchesDirectives = false;
         if (templateNode instanceof Element) {
             Element el = (Element) templateNode;
 
             //...look for directives based on id attribute
-            String idName = el.getAttribute(view.getIDAttrName());
-            if (idName != null && idName.trim().length() > 0 && view.getDirIDMap() != null) {
-                if (dirList == null) {
-                    dirList = new ArrayList<TemplateDirective>();
-                }
-                List<TemplateDirective> tlist = view.lookupDirsByID(idName);
-                if (tlist != null) {
-                    dirList.addAll(tlist);
-                }
-                if (dirList.size() > 0) {
-                    idMatchesDirectives = true;
+            if (view.getDirIDMap() != null) {
+                String idName = el.getAttribute(view.getIDAttrName());
+                if (idName != null && idName.trim().length() > 0) {
+                    List<TemplateDirective> tlist = view.lookupDirsByID(idName);
+                    if (tlist != null && tlist.size() > 0) {
+                        dirList = new ArrayList<TemplateDirective>(tlist);
+                        idMatchesDirectives = true;
+                    }
                 }
             }
 
-            //...look for directives in the class attribute
+            //...look for directives in the class attribute (the compiled plan will usually
+            //have done this for us already)
             origClassAttr = el.getAttribute(view.getDirAttrName());
             if (origClassAttr != null) {
-                StringBuilder sbNewClassAttr = new StringBuilder(origClassAttr.length());
-                StringTokenizer st = new StringTokenizer(origClassAttr, " ");
-                while (st.hasMoreTokens()) {
-                    String directiveName = st.nextToken();
-                    TemplateDirective td = view.lookupDir(directiveName);
-                    if (td != null) {
-                        if (dirList == null) {
-                            dirList = new ArrayList<TemplateDirective>(1);
-                        }
-                        dirList.add(td);
+                TemplatePlan.ClassAttr classAttr = (nodePlan != null
+                        ? nodePlan.getClassAttr(view, origClassAttr)
+                        : TemplatePlan.resolveClassAttr(view, origClassAttr));
+                List<TemplateDirective> tlist = classAttr.getDirectives();
+                if (tlist.size() > 0) {
+                    if (dirList == null) {
+                        dirList = tlist;
                     } else {
-                        sbNewClassAttr.append(directiveName).append(" ");
+                        dirList.addAll(tlist);
                     }
                 }
-                newClassAttr = sbNewClassAttr.toString().trim();
+                newClassAttr = (classAttr.isChanged() ? classAttr.getCleaned() : origClassAttr);
             }
         }
 
@@ -285,6 +295,7 @@ public class TemplateHelper {
             if (itStack != null) {
                 IteratorContext itcontext = itStack.peek();
                 if (itcontext.SKIP_TO_NEXT) {
+                    dirList = new ArrayList<TemplateDirective>(dirList);
                     Iterator itDir = dirList.iterator();
                     while (itDir.hasNext()) {
                         TemplateDirective td = (TemplateDirective) itDir.next();
@@ -601,6 +612,9 @@ public class TemplateHelper {
 
                         item = tm.getItem(td);
 
+                        if (attrMap == null) {
+                            attrMap = new HashMap<String, String>();
+                        }
                         String curAttr = attrMap.get(data);
                         String newAttr = (item == null ? null : item.toString());
                         if (curAttr == null) {
@@ -618,6 +632,9 @@ public class TemplateHelper {
                         }
                         item = tm.getItem(td);
                         String newAttr = (item == null ? null : item.toString());
+                        if (attrMap == null) {
+                            attrMap = new HashMap<String, String>();
+                        }
                         attrMap.put(data, newAttr);
 
                         templateNode.getAttributes().getNamedItem(data).setNodeValue(newAttr);
@@ -764,7 +781,7 @@ public class TemplateHelper {
             }
 
             //set any attributes that were set through directives
-            if (attrMap.size() > 0) {
+            if (attrMap != null && attrMap.size() > 0) {
                 Element elNew = (Element) newNode;
                 for (Map.Entry<String, String> attribute : attrMap.entrySet()) {
                     if (attribute.getValue() == null) {
@@ -779,6 +796,35 @@ public class TemplateHelper {
         return newNode;
     }
 
+    /**
+     * Copy a static part of the template (one with no directives anywhere in it). This
+     * produces the same result as running each node through getNode(), but without
+     * looking for directives along the way.
+     */
+    protected Node copyStaticNode(Node templateNode) throws RenderException {
+        Node newNode = templateNode.cloneNode(false);
+        for (Node child = templateNode.getFirstChild(); child != null; child = child.getNextSibling()) {
+            masterRenderer.addChildToParent(newNode, copyStaticNode(child));
+        }
+        return newNode;
+    }
+
+    /**
+     * Returns true if we are not in the middle of ending or looping an iteration
+     * (in which case copyChildNodes() may skip or revisit nodes, so static nodes
+     * need to go through the normal route)
+     */
+    private boolean isIterationSteady() {
+        if (itStack == null) {
+            return true;
+        }
+        if (itStack.empty()) {
+            return false;
+        }
+        IteratorContext itcontext = itStack.peek();
+        return !itcontext.EOF && !itcontext.NEXTLOOP;
+    }
+
     //csc_032604_1 - added
     /**
      * Handles the ITERATE_START tag; returns false if we can just continue
@@ -0,0 +1,420 @@
+package org.barracudamvc.core.comp.renderer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.barracudamvc.core.comp.TemplateDirective;
+import org.barracudamvc.core.comp.TemplateView;
+import org.barracudamvc.plankton.data.ConcurrentReferenceCache;
+import org.barracudamvc.plankton.data.ConcurrentReferenceCache.ReferenceType;
+import org.enhydra.xml.xmlc.XMLObject;
+import org.enhydra.xml.xmlc.XMLObjectLink;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * <p>A TemplatePlan is the compiled form of a master template. It is built by walking
+ * the template once, and records for every node the directives found in its class
+ * attribute, what the class attribute looks like once those directives have been
+ * stripped out, and whether the node and everything beneath it is static (ie. has no
+ * directives at all, and so can simply be copied across when rendering).
+ *
+ * <p>Every view takes its own copy of the master template, so plans don't hold on to
+ * nodes. A plan describes the template by position (the children of each node, in
+ * order), and is cached by where the template comes from: the XMLC class of the
+ * document (or its URI if it was loaded from a file), the position of the view's node
+ * within the document, and the view class and attribute names. The document loader
+ * has already picked the class or file for the locale, so each locale variant of a
+ * template gets its own plan. To render, the plan is bound to the view's copy of the
+ * master template with one walk over it, which checks that the copy has the shape the
+ * plan was compiled from (if it doesn't, the plan is compiled again). Templates that
+ * can't be identified (documents built in code, say) are compiled for each view.
+ *
+ * <p>The work of splitting a class attribute into directives is shared more widely
+ * still: the results are cached per TemplateView class, keyed by the attribute value,
+ * so the same markup in another template doesn't have to be tokenized again. This
+ * assumes that lookupDir() depends only on the string it is given, which is true of
+ * DefaultTemplateView.
+ *
+ * <p>Directives associated with an id (through the view's directive id map) are not
+ * compiled into the plan, since that map can change from one render to the next.
+ * TemplateHelper still resolves those as it goes, and ignores the static flags while
+ * such a map is in use.
+ */
+final class TemplatePlan {
+
+    /**
+     * The maximum number of distinct class attribute values we'll remember for a
+     * given class of view (beyond this point new values are resolved but not kept)
+     */
+    static final int MAX_SHARED_CLASS_ATTRS = 4096;
+    /**
+     * The maximum number of compiled templates we'll remember (the least
+     * recently used ones are dropped first)
+     */
+    static final int MAX_CACHED_PLANS = 512;
+
+    private static final String BINDING_KEY = TemplatePlan.class.getName();
+    private static final NodePlan[] NO_CHILDREN = new NodePlan[0];
+    private static final ClassValue<ConcurrentMap<String, ClassAttr>> SHARED_CLASS_ATTRS = new ClassValue<ConcurrentMap<String, ClassAttr>>() {
+        @Override
+        protected ConcurrentMap<String, ClassAttr> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+    private static final ConcurrentReferenceCache<String, TemplatePlan> PLANS =
+            new ConcurrentReferenceCache<>(ReferenceType.STRONG, MAX_CACHED_PLANS);
+
+    private final Class<?> viewClass;
+    private final String idAttrName;
+    private final String dirAttrName;
+    private final NodePlan root;
+
+    private TemplatePlan(Node masterTemplate, TemplateView view) {
+        viewClass = view.getClass();
+        idAttrName = view.getIDAttrName();
+        dirAttrName = view.getDirAttrName();
+        root = compile(masterTemplate, view);
+    }
+
+    /**
+     * Get the plan for a view's master template, bound to the view's copy of
+     * it. The plan is compiled if it isn't cached yet.
+     *
+     * @param view the template view
+     * @return the plan for the view's master template, or null if the view
+     * doesn't have one
+     */
+    static Binding forView(TemplateView view) {
+        Node master = view.getMasterTemplate();
+        if (master == null) {
+            return null;
+        }
+        //a view that is rendered more than once keeps its binding
+        Binding binding = getAttached(master);
+        if (binding != null && binding.plan.matches(view)) {
+            return binding;
+        }
+
+        String key = keyFor(view);
+        TemplatePlan plan = (key != null ? PLANS.get(key) : null);
+        binding = (plan != null && plan.matches(view) ? plan.bind(master) : null);
+        if (binding == null) {
+            plan = new TemplatePlan(master, view);
+            if (key != null) {
+                PLANS.put(key, plan);
+            }
+            binding = plan.bind(master);
+        }
+        attach(master, binding);
+        return binding;
+    }
+
+    /**
+     * Work out which of the entries in a class attribute are directives
+     *
+     * @param view the template view (used to look up directives)
+     * @param classAttr the value of the class attribute
+     * @return the resolved class attribute
+     */
+    static ClassAttr resolveClassAttr(TemplateView view, String classAttr) {
+        ConcurrentMap<String, ClassAttr> shared = SHARED_CLASS_ATTRS.get(view.getClass());
+        ClassAttr resolved = shared.get(classAttr);
+        if (resolved == null) {
+            resolved = new ClassAttr(view, classAttr);
+            if (shared.size() < MAX_SHARED_CLASS_ATTRS) {
+                ClassAttr existing = shared.putIfAbsent(classAttr, resolved);
+                if (existing != null) {
+                    resolved = existing;
+                }
+            }
+        }
+        return resolved;
+    }
+
+    private boolean matches(TemplateView view) {
+        return viewClass == view.getClass() && eq(idAttrName, view.getIDAttrName()) && eq(dirAttrName, view.getDirAttrName());
+    }
+
+    /**
+     * Compile the plan for a node and everything beneath it
+     */
+    private NodePlan compile(Node node, TemplateView view) {
+        boolean isStatic = true;
+        List<NodePlan> children = null;
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            NodePlan childPlan = compile(child, view);
+            isStatic &= childPlan.isStatic;
+            if (children == null) {
+                children = new ArrayList<>();
+            }
+            children.add(childPlan);
+        }
+
+        String classAttr = null;
+        ClassAttr resolved = null;
+        if (node instanceof Element) {
+            classAttr = ((Element) node).getAttribute(dirAttrName);
+            if (classAttr != null) {
+                resolved = resolveClassAttr(view, classAttr);
+                isStatic &= !resolved.isDynamic();
+            }
+        }
+        return new NodePlan(node, classAttr, resolved, isStatic,
+                (children == null ? NO_CHILDREN : children.toArray(new NodePlan[children.size()])));
+    }
+
+    /**
+     * Match the plan up with a copy of the master template
+     *
+     * @return the binding, or null if the copy doesn't have the shape of
+     * the template the plan was compiled from
+     */
+    private Binding bind(Node master) {
+        Map<Node, NodePlan> nodes = new IdentityHashMap<>();
+        return (bind(master, root, nodes) ? new Binding(this, nodes) : null);
+    }
+
+    private static boolean bind(Node node, NodePlan nodePlan, Map<Node, NodePlan> nodes) {
+        if (node.getNodeType() != nodePlan.nodeType || !eq(node.getNodeName(), nodePlan.nodeName)) {
+            return false;
+        }
+        nodes.put(node, nodePlan);
+        int i = 0;
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (i >= nodePlan.children.length || !bind(child, nodePlan.children[i++], nodes)) {
+                return false;
+            }
+        }
+        return i == nodePlan.children.length;
+    }
+
+    /**
+     * Work out where a view's template comes from
+     *
+     * @return the cache key for the view's template, or null if the template
+     * can't be identified
+     */
+    private static String keyFor(TemplateView view) {
+        Node node = view.getNode();
+        Document doc = (node != null ? node.getOwnerDocument() : null);
+        if (doc == null) {
+            return null;
+        }
+        String source = null;
+        if (doc instanceof XMLObjectLink) {
+            XMLObject xmlObject = ((XMLObjectLink) doc).getXMLObject();
+            if (xmlObject != null) {
+                source = xmlObject.getClass().getName();
+            }
+        }
+        if (source == null) {
+            try {
+                source = doc.getDocumentURI();
+            } catch (RuntimeException | AbstractMethodError e) {
+                //DOM implementations that predate Level 3 have no document URI
+            }
+        }
+        if (source == null) {
+            return null;
+        }
+
+        //the position of the view's node within the document
+        StringBuilder sb = new StringBuilder();
+        for (Node n = node; n.getParentNode() != null; n = n.getParentNode()) {
+            int index = 0;
+            for (Node sib = n.getPreviousSibling(); sib != null; sib = sib.getPreviousSibling()) {
+                index++;
+            }
+            sb.insert(0, index).insert(0, '/');
+        }
+        return view.getClass().getName() + '|' + view.getIDAttrName() + '|' + view.getDirAttrName()
+                + '|' + source + '|' + sb;
+    }
+
+    private static Binding getAttached(Node master) {
+        try {
+            Object binding = master.getUserData(BINDING_KEY);
+            return (binding instanceof Binding && ((Binding) binding).get(master) != null ? (Binding) binding : null);
+        } catch (RuntimeException | AbstractMethodError e) {
+            //DOM implementations that predate Level 3 have no user data
+            return null;
+        }
+    }
+
+    private static void attach(Node master, Binding binding) {
+        try {
+            master.setUserData(BINDING_KEY, binding, null);
+        } catch (RuntimeException | AbstractMethodError e) {
+            //no user data; the template will just be bound again next time
+        }
+    }
+
+    private static boolean eq(String s1, String s2) {
+        return (s1 == null ? s2 == null : s1.equals(s2));
+    }
+
+    /**
+     * A plan bound to a particular copy of the master template
+     */
+    static final class Binding {
+
+        private final TemplatePlan plan;
+        private final Map<Node, NodePlan> nodes;
+
+        Binding(TemplatePlan iplan, Map<Node, NodePlan> inodes) {
+            plan = iplan;
+            nodes = inodes;
+        }
+
+        /**
+         * Get the plan for a particular node of the master template
+         *
+         * @param node a node
+         * @return the plan for that node, or null if the node isn't part of
+         * the master template
+         */
+        NodePlan get(Node node) {
+            return nodes.get(node);
+        }
+
+        /**
+         * @return the (shared) plan this binding is for
+         */
+        TemplatePlan getPlan() {
+            return plan;
+        }
+    }
+
+    /**
+     * The compiled information for a single template node
+     */
+    static final class NodePlan {
+
+        private final short nodeType;
+        private final String nodeName;
+        private final String classAttr;
+        private final ClassAttr resolved;
+        private final boolean isStatic;
+        private final NodePlan[] children;
+
+        NodePlan(Node node, String iclassAttr, ClassAttr iresolved, boolean iisStatic, NodePlan[] ichildren) {
+            nodeType = node.getNodeType();
+            nodeName = node.getNodeName();
+            classAttr = iclassAttr;
+            resolved = iresolved;
+            isStatic = iisStatic;
+            children = ichildren;
+        }
+
+        /**
+         * Get the resolved class attribute for the node, re-resolving it if
+         * the attribute has changed since the plan was compiled
+         *
+         * @param view the template view
+         * @param currentClassAttr the current value of the class attribute
+         * @return the resolved class attribute
+         */
+        ClassAttr getClassAttr(TemplateView view, String currentClassAttr) {
+            if (resolved != null && (currentClassAttr == classAttr || currentClassAttr.equals(classAttr))) {
+                return resolved;
+            }
+            return resolveClassAttr(view, currentClassAttr);
+        }
+
+        /**
+         * @return true if neither this node nor any of its descendants
+         * contains directives in the class attribute, and none of the class
+         * attributes need cleaning up
+         */
+        boolean isStatic() {
+            return isStatic;
+        }
+    }
+
+    /**
+     * A class attribute split into the directives it contains and
+     * whatever is left over once they are removed
+     */
+    static final class ClassAttr {
+
+        private final List<TemplateDirective> directives;
+        private final String cleaned;
+        private final boolean changed;
+
+        ClassAttr(TemplateView view, String classAttr) {
+            List<TemplateDirective> dirs = null;
+            StringBuilder sb = null;
+            int len = classAttr.length();
+            int pos = 0;
+            while (pos < len) {
+                while (pos < len && classAttr.charAt(pos) == ' ') {
+                    pos++;
+                }
+                if (pos >= len) {
+                    break;
+                }
+                int end = classAttr.indexOf(' ', pos);
+                if (end < 0) {
+                    end = len;
+                }
+                String token = classAttr.substring(pos, end);
+                TemplateDirective td = view.lookupDir(token);
+                if (td != null) {
+                    if (dirs == null) {
+                        dirs = new ArrayList<>(1);
+                    }
+                    dirs.add(td);
+                } else {
+                    if (sb == null) {
+                        sb = new StringBuilder(len);
+                    } else {
+                        sb.append(' ');
+                    }
+                    sb.append(token);
+                }
+                pos = end;
+            }
+            directives = (dirs == null ? Collections.<TemplateDirective>emptyList() : Collections.unmodifiableList(dirs));
+            cleaned = (sb == null ? "" : sb.toString());
+            changed = !classAttr.equals(cleaned);
+        }
+
+        /**
+         * @return the directives found in the class attribute, in the order in
+         * which they occur (never null, unmodifiable)
+         */
+        List<TemplateDirective> getDirectives() {
+            return directives;
+        }
+
+        /**
+         * @return the class attribute with the directives removed (and the
+         * remaining entries separated by single spaces)
+         */
+        String getCleaned() {
+            return cleaned;
+        }
+
+        /**
+         * @return true if the cleaned class attribute differs from the original
+         */
+        boolean isChanged() {
+            return changed;
+        }
+
+        /**
+         * @return true if rendering the node involves more than just copying
+         * it across
+         */
+        boolean isDynamic() {
+            return changed || !directives.isEmpty();
+        }
+    }
+}
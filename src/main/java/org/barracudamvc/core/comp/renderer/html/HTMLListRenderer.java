@@ -227,7 +227,11 @@ public class HTMLListRenderer extends HTMLComponentRenderer {
         }
     }
 
-    private void addItemToList(BList blist, Node node, ViewContext vc, Object item) throws RenderException {
+    /**
+     * Add a single item to the list node. Any components created or bound
+     * along the way are added as step children of the parent component.
+     */
+    void addItemToList(BComponent parent, Node node, ViewContext vc, Object item) throws RenderException {
         if (item == null) {
             logger.warn("Ignoring attempt to add null item to the list");
             return;
@@ -321,7 +325,7 @@ public class HTMLListRenderer extends HTMLComponentRenderer {
             }
             
             //now add the comp as a step child
-            blist.addStepChild(wcomp);
+            parent.addStepChild(wcomp);
 
         //..Nodes
         } else if (item instanceof Node) {
@@ -372,7 +376,7 @@ public class HTMLListRenderer extends HTMLComponentRenderer {
             if (newNode!=null) {
                 BText textComp = new BText(s);
                 textComp.setView(new DefaultView(newNode));
-                blist.addStepChild(textComp);
+                parent.addStepChild(textComp);
                 addAttrsToNode(item, newNode);
                 addChildToParent(node, newNode);
                 
@@ -389,7 +393,7 @@ public class HTMLListRenderer extends HTMLComponentRenderer {
      * @param node
      * @since 1.2.7
      */
-    private static void addAttrsToNode(Object item, Node node) {
+    static void addAttrsToNode(Object item, Node node) {
         if ((item instanceof Attrs) &&  (node instanceof Element)) {
             Map attrs = ((Attrs) item).getAttrMap();
             if (attrs!=null) {
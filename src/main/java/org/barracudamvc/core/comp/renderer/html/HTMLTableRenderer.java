@@ -19,6 +19,8 @@
  */
 package org.barracudamvc.core.comp.renderer.html;
 
+import java.util.List;
+
 import org.apache.log4j.Logger;
 import org.barracudamvc.core.comp.BComponent;
 import org.barracudamvc.core.comp.BList;
@@ -36,6 +38,7 @@ import org.barracudamvc.core.comp.TableView;
 import org.barracudamvc.core.comp.UnsupportedFormatException;
 import org.barracudamvc.core.comp.View;
 import org.barracudamvc.core.comp.ViewContext;
+import org.barracudamvc.plankton.StringUtil;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -133,6 +136,32 @@ public class HTMLTableRenderer extends HTMLComponentRenderer {
                     // fro_060407_2 end
                 }
 
+                //work out which slice of the body model to render
+                int firstRow = btable.getFirstRow();
+                int maxRows = btable.getMaxRows();
+
+                //in direct mode, write the rows straight into the section nodes
+                if (btable.isDirectRendering()) {
+                    Element rowHeaderNode = (headerNode!=null && headerModel!=null) ? headerNode : bodyNode;
+                    Element rowFooterNode = (footerNode!=null && footerModel!=null) ? footerNode : bodyNode;
+                    removeAllChildren(bodyNode);
+                    if (rowHeaderNode!=bodyNode) removeAllChildren(rowHeaderNode);
+                    if (rowFooterNode!=bodyNode) removeAllChildren(rowFooterNode);
+                    if (headerModel!=null) {
+                        if (logger.isDebugEnabled()) logger.debug("Rendering header directly...");
+                        renderRowsDirectly(btable, node, vc, headerModel, rowHeaderNode, 0, -1);
+                    }
+                    if (model!=null) {
+                        if (logger.isDebugEnabled()) logger.debug("Rendering body directly...");
+                        renderRowsDirectly(btable, node, vc, model, bodyNode, firstRow, maxRows);
+                    }
+                    if (footerModel!=null) {
+                        if (logger.isDebugEnabled()) logger.debug("Rendering footer directly...");
+                        renderRowsDirectly(btable, node, vc, footerModel, rowFooterNode, 0, -1);
+                    }
+                    return;
+                }
+
                 //now create a list component and bind it to the data section node.
                 //(be sure to add the comp as a temporary child--by doing this, we 
                 //ensure that the child will get rendered as well. After rendering, 
@@ -170,15 +199,15 @@ public class HTMLTableRenderer extends HTMLComponentRenderer {
                 //now populate the rowModel
                 if (headerModel!=null) {
                     if (logger.isDebugEnabled()) logger.debug("Rendering header...");
-                    populateTableFromModel(node, vc, headerModel, rowHeaderModel, rowHeaderList);
+                    populateTableFromModel(node, vc, headerModel, rowHeaderModel, rowHeaderList, 0, -1);
                 }
                 if (model!=null) {
                     if (logger.isDebugEnabled()) logger.debug("Rendering body...");
-                    populateTableFromModel(node, vc, model, rowBodyModel, rowBodyList);
+                    populateTableFromModel(node, vc, model, rowBodyModel, rowBodyList, firstRow, maxRows);
                 }
                 if (footerModel!=null) {
                     if (logger.isDebugEnabled()) logger.debug("Rendering footer...");
-                    populateTableFromModel(node, vc, footerModel, rowFooterModel, rowFooterList);
+                    populateTableFromModel(node, vc, footerModel, rowFooterModel, rowFooterList, 0, -1);
                 }
             } else {
                 if (logger.isDebugEnabled()) logger.debug("Interface "+node.getClass().getName()+" not a supported View for a BTable component...");
@@ -192,7 +221,7 @@ public class HTMLTableRenderer extends HTMLComponentRenderer {
         }
     }
     
-    private static void populateTableFromModel(Node node, ViewContext vc, TableModel curModel, DefaultListModel rowModel, BList rowList) throws RenderException {
+    private static void populateTableFromModel(Node node, ViewContext vc, TableModel curModel, DefaultListModel rowModel, BList rowList, int firstRow, int maxRows) throws RenderException {
 
         //give the model a chance to initialize
         curModel.setViewContext(vc);
@@ -202,7 +231,7 @@ public class HTMLTableRenderer extends HTMLComponentRenderer {
                 
         //now process items in the model based on model type
         try {
-            for (int i=0,max=curModel.getRowCount(); i<max; i++) {
+            for (int i=firstRow,max=lastRow(curModel, firstRow, maxRows); i<max; i++) {
 
                 //create a generic row element and add it to the rowModel
                 Element rowNode = node.getOwnerDocument().createElement("TR");
@@ -227,4 +256,75 @@ public class HTMLTableRenderer extends HTMLComponentRenderer {
             curModel.setViewContext(null);
         }
     }
+
+    /**
+     * Render a slice of the model straight into the section node: one TR per
+     * row, and one TD per text item. Nodes are added as they are, while
+     * BComponent items are handed to the list renderer, which binds them as
+     * step children of the table so they render themselves.
+     */
+    private void renderRowsDirectly(BTable btable, Node node, ViewContext vc, TableModel curModel, Element sectionNode, int firstRow, int maxRows) throws RenderException {
+
+        //give the model a chance to initialize
+        curModel.setViewContext(vc);
+        curModel.resetModel();
+        Node origTemplateNode = vc.getTemplateNode();
+        vc.putState(ViewContext.TEMPLATE_NODE, node);
+
+        Document doc = node.getOwnerDocument();
+        HTMLListRenderer cellRenderer = null;
+        try {
+            for (int i=firstRow,max=lastRow(curModel, firstRow, maxRows); i<max; i++) {
+                Element rowNode = doc.createElement("TR");
+                sectionNode.appendChild(rowNode);
+                for (int j=0,jmax=curModel.getColumnCount(); j<jmax; j++) {
+                    Object item = curModel.getItemAt(i, j);
+                    if (item==null) continue;
+
+                    //lists and arrays contribute one cell per entry, just as
+                    //they do when rendered by a BList
+                    Object[] items = null;
+                    if (item instanceof List) items = ((List) item).toArray();
+                    else if (item instanceof Object[]) items = (Object[]) item;
+                    else items = new Object[] {item};
+
+                    for (int k=0; k<items.length; k++) {
+                        Object cell = items[k];
+                        if (cell==null) continue;
+                        if (cell instanceof BComponent) {
+                            if (cellRenderer==null) cellRenderer = new HTMLListRenderer();
+                            vc.putState(ViewContext.TEMPLATE_NODE, rowNode);
+                            cellRenderer.addItemToList(btable, rowNode, vc, cell);
+                            vc.putState(ViewContext.TEMPLATE_NODE, node);
+                        } else if (cell instanceof Node) {
+                            addChildToParent(rowNode, (Node) cell);
+                        } else {
+                            Element cellNode = doc.createElement("TD");
+                            cellNode.appendChild(doc.createTextNode(StringUtil.sanitize(cell.toString())));
+                            HTMLListRenderer.addAttrsToNode(cell, cellNode);
+                            rowNode.appendChild(cellNode);
+                        }
+                    }
+                }
+            }
+        } finally {
+            vc.putState(ViewContext.TEMPLATE_NODE, origTemplateNode);
+            curModel.setViewContext(null);
+        }
+    }
+
+    /**
+     * @return the index after the last row to render
+     */
+    private static int lastRow(TableModel curModel, int firstRow, int maxRows) {
+        int max = curModel.getRowCount();
+        if (maxRows>=0 && maxRows<max-firstRow) max = firstRow+maxRows;
+        return max;
+    }
+
+    private static void removeAllChildren(Node node) {
+        while (node.hasChildNodes()) {
+            node.removeChild(node.getFirstChild());
+        }
+    }
 }
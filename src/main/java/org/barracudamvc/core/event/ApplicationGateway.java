@@ -26,10 +26,15 @@ import org.barracudamvc.core.helper.servlet.*;
 import org.barracudamvc.core.view.ViewCapabilities;
 import org.barracudamvc.plankton.Classes;
 import org.barracudamvc.plankton.data.ObjectRepository;
+import org.barracudamvc.plankton.data.RepositoryScope;
 import org.barracudamvc.plankton.exceptions.ExceptionUtil;
 import org.barracudamvc.plankton.exceptions.NestableException;
 import org.barracudamvc.plankton.http.URLRewriter;
+import org.barracudamvc.plankton.io.parser.URLEncoded.LimitExceededException;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -37,6 +42,15 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * <p>The application gateway is responsible for a number of things.
@@ -84,12 +98,21 @@ import java.util.*;
 public class ApplicationGateway extends HttpServlet implements EventGateway {
 
     private static final Class CLASS = ApplicationGateway.class;
+    protected static final Logger logger = Logger.getLogger(CLASS.getName());
 
     public static boolean USE_EVENT_POOLING = true;
     public static boolean RESPOND_WITH_404 = false;
     public static RequestWrapper REQUEST_WRAPPER = null;
     public static ResponseWrapper RESPONSE_WRAPPER = null;
+    //...async dispatch defaults (ASYNC_DISPATCH may be overridden per servlet with the AsyncDispatch init param)
+    public static boolean ASYNC_DISPATCH = false;
+    public static Executor ASYNC_EXECUTOR = null;
+    public static int ASYNC_THREADS = 64;
+    public static int ASYNC_QUEUE_PER_THREAD = 4;
+    public static long ASYNC_TIMEOUT = 0;
     //...configuration constants (set through servlet init params)
+    private static final String ASYNC_DISPATCH_PARAM = "AsyncDispatch";
+    private static final String REDIRECT_CONTEXT_STORE = "RedirectContextStore";
     private static final String APPLICATION_ASSEMBLER = "ApplicationAssembler";
     private static final String ASSEMBLY_DESCRIPTOR = "AssemblyDescriptor";
     private static final String SAX_PARSER = "SAXParser";
@@ -109,6 +132,8 @@ public class ApplicationGateway extends HttpServlet implements EventGateway {
     protected EventGateway eventGateway = (EventGateway) Classes.newInstance(A_Classes.DEFAULT_EVENT_GATEWAY);
     protected List<EventGateway> gateways = null;
     Set<EventBroker> eventBrokers = new HashSet<>();
+    protected boolean asyncDispatch = ASYNC_DISPATCH;
+    private ExecutorService asyncPool = null;
 
     /**
      * <p>Handle the default HttpRequest. It will probably be rare for
@@ -135,21 +160,238 @@ public class ApplicationGateway extends HttpServlet implements EventGateway {
      * @throws IOException
      */
     public void handleDefault(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        if (isAsyncDispatch(req)) {
+            handleAsync(req, resp);
+            return;
+        }
         try {
             ObjectRepository.setupSessionRepository(req);
-            String target;
-            if (req.getServletPath() == null || req.getServletPath().isEmpty()) {
-                target = req.getRequestURI();
-            } else {
-                target = req.getServletPath();
-            }
-            handle(req, resp, target);
+            handle(req, resp, getTarget(req));
         } finally {
             ObjectRepository.removeLocalRepository();
             ObjectRepository.removeSessionRepository();
         }
     }
 
+    private String getTarget(HttpServletRequest req) {
+        if (req.getServletPath() == null || req.getServletPath().isEmpty()) {
+            return req.getRequestURI();
+        } else {
+            return req.getServletPath();
+        }
+    }
+
+    /**
+     * <p>Decide whether a request should be dispatched asynchronously. By
+     * default this is the case when async dispatch has been turned on (see
+     * ASYNC_DISPATCH and the AsyncDispatch init param) and the container
+     * allows async processing for the request (the servlet must be declared
+     * with async-supported). Override to pick out particular requests.
+     *
+     * @param req the servlet request
+     * @return true if the request should be handled asynchronously
+     */
+    protected boolean isAsyncDispatch(HttpServletRequest req) {
+        return asyncDispatch && req.isAsyncSupported() && !req.isAsyncStarted();
+    }
+
+    /**
+     * <p>Get the executor that async requests are dispatched on. This is
+     * ASYNC_EXECUTOR if one has been set (on Java 21 a virtual thread per
+     * task executor is a good choice, as listeners block freely); otherwise
+     * the gateway creates a pool of ASYNC_THREADS daemon threads, which queues
+     * up to ASYNC_QUEUE_PER_THREAD requests per thread. Once the queue is full
+     * requests are rejected, and handled on the container thread instead, so
+     * the container's own limits push back on the clients.
+     */
+    protected synchronized Executor getAsyncExecutor() {
+        if (ASYNC_EXECUTOR != null) {
+            return ASYNC_EXECUTOR;
+        }
+        if (asyncPool == null) {
+            final String prefix = getClass().getSimpleName() + "-async-";
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(ASYNC_THREADS, ASYNC_THREADS, 60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(Math.max(1, ASYNC_THREADS * ASYNC_QUEUE_PER_THREAD)), new ThreadFactory() {
+                        private final AtomicInteger counter = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread t = new Thread(r, prefix + counter.incrementAndGet());
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+            pool.allowCoreThreadTimeOut(true);
+            asyncPool = pool;
+        }
+        return asyncPool;
+    }
+
+    /**
+     * <p>Handle a request asynchronously. The session repository is set up
+     * here, on the container thread, in a RepositoryScope of its own; the
+     * scope is then attached to the executor thread that dispatches the
+     * event, so listeners see the same Local and Session repositories they
+     * would during a synchronous request. The container thread is released
+     * as soon as the dispatch has been handed off, and the response is
+     * completed once the event (including any view events) has been handled.
+     *
+     * <p>By default async requests don't time out (ASYNC_TIMEOUT is 0). If a
+     * timeout is set and a request times out before it has been dispatched,
+     * the dispatch is cancelled and the client gets a 503. If it is already
+     * being dispatched, the dispatching thread is interrupted and the timeout
+     * waits for it to finish, so the container never recycles a request that
+     * is still being written to.
+     *
+     * @param req the servlet request
+     * @param resp the servlet response
+     */
+    protected void handleAsync(final HttpServletRequest req, final HttpServletResponse resp) throws ServletException, IOException {
+        final String target = getTarget(req);
+        final RepositoryScope scope = new RepositoryScope(Thread.currentThread().getName());
+        RepositoryScope previous = scope.attach();
+        try {
+            ObjectRepository.setupSessionRepository(req);
+        } finally {
+            scope.detach(previous);
+        }
+
+        AsyncContext ac = req.startAsync();
+        if (ASYNC_TIMEOUT >= 0) {
+            ac.setTimeout(ASYNC_TIMEOUT);
+        }
+        AsyncDispatch dispatch = new AsyncDispatch(ac, req, resp, target, scope);
+        ac.addListener(dispatch);
+
+        try {
+            getAsyncExecutor().execute(dispatch);
+        } catch (RejectedExecutionException e) {
+            logger.warn("Async executor rejected request, dispatching on the container thread: " + target);
+            dispatch.run();
+        }
+    }
+
+    /**
+     * An async request. The dispatching thread and the container's timeout
+     * both want to finish off the response; whichever claims the request
+     * first does so, and the other leaves the request alone.
+     */
+    private class AsyncDispatch implements Runnable, AsyncListener {
+
+        private static final int QUEUED = 0;
+        private static final int RUNNING = 1;
+        private static final int FINISHED = 2;
+        private static final int TIMED_OUT = 3;
+
+        private final AsyncContext ac;
+        private final HttpServletRequest req;
+        private final HttpServletResponse resp;
+        private final String target;
+        private final RepositoryScope scope;
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private volatile Thread worker = null;
+        private volatile boolean cancelled = false;
+
+        AsyncDispatch(AsyncContext iac, HttpServletRequest ireq, HttpServletResponse iresp, String itarget, RepositoryScope iscope) {
+            ac = iac;
+            req = ireq;
+            resp = iresp;
+            target = itarget;
+            scope = iscope;
+        }
+
+        @Override
+        public void run() {
+            worker = Thread.currentThread();
+            if (!state.compareAndSet(QUEUED, RUNNING)) {
+                //timed out while queued; the client has already had its answer
+                worker = null;
+                return;
+            }
+            RepositoryScope previous = scope.attach();
+            try {
+                handle(req, resp, target);
+            } catch (Exception | Error e) {
+                if (!cancelled) {
+                    logger.error("Error dispatching async request: " + target, e);
+                    sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                }
+                if (e instanceof Error) {
+                    throw (Error) e;
+                }
+            } finally {
+                ObjectRepository.removeLocalRepository();
+                ObjectRepository.removeSessionRepository();
+                scope.detach(previous);
+                worker = null;
+                if (cancelled) {
+                    //whatever the dispatch managed to do, the request timed out
+                    logger.warn("Async request cancelled: " + target);
+                    sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                    //don't leave the interrupt set on a pooled thread
+                    Thread.interrupted();
+                }
+                state.set(FINISHED);
+                try {
+                    ac.complete();
+                } finally {
+                    finished.countDown();
+                }
+            }
+        }
+
+        private void sendError(int status) {
+            try {
+                if (!resp.isCommitted()) {
+                    resp.sendError(status);
+                }
+            } catch (IOException | IllegalStateException e) {
+            }
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) throws IOException {
+            if (state.compareAndSet(QUEUED, TIMED_OUT)) {
+                logger.warn("Async request timed out before it was dispatched: " + target);
+                RepositoryScope previous = scope.attach();
+                try {
+                    ObjectRepository.removeSessionRepository();
+                } finally {
+                    scope.detach(previous);
+                }
+                sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                ac.complete();
+                return;
+            }
+
+            //already dispatching: cancel it and wait until it lets go of the response
+            logger.warn("Async request timed out, cancelling: " + target);
+            cancelled = true;
+            Thread t = worker;
+            if (t != null) {
+                t.interrupt();
+            }
+            try {
+                finished.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+
     protected void handle(HttpServletRequest req, HttpServletResponse resp, String target) throws RuntimeException, ServletException, IOException {
         ObjectRepository lor = ObjectRepository.getLocalRepository();
         lor.putState(HTTP_SERVLET_REQUEST, req);
@@ -187,6 +429,20 @@ public class ApplicationGateway extends HttpServlet implements EventGateway {
     @Override
     public void init() throws ServletException {
         try {
+            String async = this.getServletConfig().getInitParameter(ASYNC_DISPATCH_PARAM);
+            if (async != null) {
+                asyncDispatch = Boolean.parseBoolean(async.trim());
+            }
+
+            //where event contexts are kept across client side redirects
+            String storeName = this.getServletConfig().getInitParameter(REDIRECT_CONTEXT_STORE);
+            if (storeName != null) {
+                RedirectContextStore store = (RedirectContextStore) Classes.newInstance(storeName.trim());
+                if (store != null) {
+                    DefaultEventContext.REDIRECT_CONTEXT_STORE = store;
+                }
+            }
+
             //perform any automated assembly if necessary
             String assemblerName = this.getServletConfig().getInitParameter(APPLICATION_ASSEMBLER);
             String descriptor = this.getServletConfig().getInitParameter(ASSEMBLY_DESCRIPTOR);
@@ -624,7 +880,15 @@ public class ApplicationGateway extends HttpServlet implements EventGateway {
     }
 
     protected void service(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-        req = wrapRequest(req);
+        try {
+            req = wrapRequest(req);
+        } catch (LimitExceededException e) {
+            //the body went over one of the form parser's limits; that's the
+            //client's doing, not ours
+            logger.warn("Rejected request body: " + e.getMessage());
+            resp.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+            return;
+        }
         resp = wrapResponse(resp);
 
         String method = req.getMethod();
@@ -709,6 +973,13 @@ public class ApplicationGateway extends HttpServlet implements EventGateway {
         
         
         masterEventBroker = null;
+
+        synchronized (this) {
+            if (asyncPool != null) {
+                asyncPool.shutdown();
+                asyncPool = null;
+            }
+        }
         
         ObjectRepository.destroy();
         this.cleanUp();
@@ -156,34 +156,34 @@ public class DefaultDispatchQueue implements DispatchQueue {
         }
     }
 
-    private List<BaseEvent> expandEvent(BaseEvent baseEvent) {
-        List<BaseEvent> list = new ArrayList<>();
-        //add the initial event
-        list.add(baseEvent);
+    private BaseEvent[] expandEvent(BaseEvent baseEvent) {
         if (baseEvent.isHandled()) {
             //if the event has been handled, ignore Polymorphic connotations
-            return list;
+            return new BaseEvent[]{baseEvent};
         }
+
+        //the chain knows the Polymorphic ancestors, we just need to create 
+        //them (furthest ancestor first, each one sourced from its child)
+        EventChain chain = EventChain.of(baseEvent.getClass());
+        int depth = Math.max(0, Math.min(chain.getPolymorphicDepth(), MAX_POLY_CHAIN_DEPTH - 1));
+        BaseEvent[] list = new BaseEvent[depth + 1];
+        list[depth] = baseEvent;
         BaseEvent curEvent = baseEvent;
-        Class superclazz = curEvent.getClass().getSuperclass();
-        int cntr = 0;
-        while ((Polymorphic.class.isAssignableFrom(superclazz))
-                && (++cntr < MAX_POLY_CHAIN_DEPTH)) {
+        for (int i = 0; i < depth; i++) {
             //get the parent event
             BaseEvent parentEvent = null;
             try {
-                parentEvent = (BaseEvent) superclazz.newInstance();
+                parentEvent = chain.newPolymorphicAncestor(i);
                 parentEvent.setSource(curEvent);
             } catch (InstantiationException | IllegalAccessException ie) {
                 throw new IllegalStateException(ie);
             }
 
-            //insert it at the beginning of the list
-            list.add(0, parentEvent);
+            //insert it ahead of its child
+            list[depth - 1 - i] = parentEvent;
 
             //keep a reference to the cur event
             curEvent = parentEvent;
-            superclazz = curEvent.getClass().getSuperclass();
         }
         return list;
     }
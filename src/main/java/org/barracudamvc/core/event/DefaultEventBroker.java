@@ -22,9 +22,11 @@ package org.barracudamvc.core.event;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import org.barracudamvc.plankton.Classes;
 
 /**
@@ -65,15 +67,31 @@ import org.barracudamvc.plankton.Classes;
  * <p>The event extension is used by whatever instantiates the broker (usually
  * an ApplicationGateway) to define the particular event extension this
  * broker is handling).
+ *
+ * <p>The registrations are kept in immutable maps which are copied and
+ * republished whenever something is registered or removed. Registrations are
+ * rare (mostly at startup) while lookups happen on every request, so lookups
+ * never lock and always see a consistent map, even if a gateway registers
+ * listeners while events are being dispatched. The lists handed out by
+ * getEventListeners() are part of that snapshot and therefore unmodifiable.
+ *
+ * <p>The broker also caches a DispatchPlan for each class of event it has
+ * dispatched. Any change to the listener registrations invalidates them.
  */
 public class DefaultEventBroker implements EventBroker {
 
-    protected Map<String, ListenerFactory> listenerFactories = new HashMap<>();
-    protected Map<Class<? extends BaseEvent>, List<ListenerFactory>> eventListenerFactories = new HashMap<>();
-    protected Map<String, Object> idXref = new HashMap<>();
-    protected Map<String, Object> eventXref = new HashMap<>();
+    protected volatile Map<String, ListenerFactory> listenerFactories = Collections.emptyMap();
+    protected volatile Map<Class<? extends BaseEvent>, List<ListenerFactory>> eventListenerFactories = Collections.emptyMap();
+    protected volatile Map<String, Object> idXref = Collections.unmodifiableMap(new HashMap<String, Object>());
+    protected volatile Map<String, Object> eventXref = Collections.unmodifiableMap(new HashMap<String, Object>());
+    //alias (as registered) -> lower case xref key, so exact matches skip toLowerCase()
+    private volatile Map<String, String> idAliasKeys = Collections.emptyMap();
+    private volatile Map<String, String> eventAliasKeys = Collections.emptyMap();
+    protected final Object registrationLock = new Object();
     protected String extension = null;
     protected DispatcherFactory dispatcherFactory = null;
+    protected final ConcurrentMap<Class<? extends BaseEvent>, DispatchPlan> dispatchPlans = new ConcurrentHashMap<>();
+    protected final AtomicLong registrationVersion = new AtomicLong();
 
     /**
      * Public constructor
@@ -115,12 +133,17 @@ public class DefaultEventBroker implements EventBroker {
         }
         String lid = factory.getListenerID();
 
-        //add it to the idMap
-        listenerFactories.put(lid, factory);
+        synchronized (registrationLock) {
+            //add it to the idMap
+            Map<String, ListenerFactory> ids = new HashMap<>(listenerFactories);
+            ids.put(lid, factory);
+            listenerFactories = Collections.unmodifiableMap(ids);
 
-        //get the aliases and add it to the id xref
-        List<String> lAliases = getAliases(lid);
-        addAliases(lid, lAliases, idXref);
+            //get the aliases and add it to the id xref
+            List<String> lAliases = getAliases(lid);
+            addIdAliases(lid, lAliases);
+            registrationsChanged();
+        }
     }
 
     /**
@@ -139,27 +162,35 @@ public class DefaultEventBroker implements EventBroker {
         if (factory == null || event == null) {
             return;
         }
-        //add it to the eventMap
-        List<ListenerFactory> eventList = eventListenerFactories.get(event);
-        if (eventList == null) {
-            eventList = new ArrayList<>();
-            eventListenerFactories.put(event, eventList);
-        }
-        eventList.add(factory);
-
-        //get the event aliases and add it to the event xref
-        String eid = event.getName();
-        addAliases(eid, getAliases(eid), eventXref);
+        synchronized (registrationLock) {
+            //add it to the eventMap
+            Map<Class<? extends BaseEvent>, List<ListenerFactory>> events = new HashMap<>(eventListenerFactories);
+            List<ListenerFactory> eventList = new ArrayList<>();
+            List<ListenerFactory> existing = events.get(event);
+            if (existing != null) {
+                eventList.addAll(existing);
+            }
+            eventList.add(factory);
+            events.put(event, Collections.unmodifiableList(eventList));
+            eventListenerFactories = Collections.unmodifiableMap(events);
+
+            //get the event aliases and add it to the event xref
+            String eid = event.getName();
+            addEventAliases(eid, getAliases(eid));
+
+            //make sure it's also in the idMap
+            String lid = factory.getListenerID();
+            if (listenerFactories.get(lid) == null) {
+                Map<String, ListenerFactory> ids = new HashMap<>(listenerFactories);
+                ids.put(lid, factory);
+                listenerFactories = Collections.unmodifiableMap(ids);
+            }
 
-        //make sure it's also in the idMap
-        String lid = factory.getListenerID();
-        if (listenerFactories.get(lid) == null) {
-            listenerFactories.put(lid, factory);
+            //get the aliases and add it to the id xref
+            List<String> lAliases = getAliases(lid);
+            addIdAliases(lid, lAliases);
+            registrationsChanged();
         }
-
-        //get the aliases and add it to the id xref
-        List<String> lAliases = getAliases(lid);
-        addAliases(lid, lAliases, idXref);
     }
 
     /**
@@ -175,8 +206,11 @@ public class DefaultEventBroker implements EventBroker {
         }
         String lid = factory.getListenerID();
 
-        //remove it from the idMap
-        listenerFactories.remove(lid);
+        synchronized (registrationLock) {
+            //remove it from the idMap
+            removeListenerID(lid);
+            registrationsChanged();
+        }
     }
 
     /**
@@ -197,19 +231,18 @@ public class DefaultEventBroker implements EventBroker {
             return;
         }
 
-        //remove it from the eventMap
-        List<ListenerFactory> eventList = eventListenerFactories.get(event);
-        if (eventList != null) {
-            while (eventList.contains(factory)) {
-                eventList.remove(factory);
+        synchronized (registrationLock) {
+            //remove it from the eventMap
+            if (eventListenerFactories.containsKey(event)) {
+                Map<Class<? extends BaseEvent>, List<ListenerFactory>> events = new HashMap<>(eventListenerFactories);
+                removeFromList(events, event, factory);
+                eventListenerFactories = Collections.unmodifiableMap(events);
             }
-            if (eventList.size() < 1) {
-                eventListenerFactories.remove(event);
-            }
-        }
 
-        //make sure we also remove it from the idMap
-        listenerFactories.remove(factory.getListenerID());
+            //make sure we also remove it from the idMap
+            removeListenerID(factory.getListenerID());
+            registrationsChanged();
+        }
     }
 
     /**
@@ -225,22 +258,48 @@ public class DefaultEventBroker implements EventBroker {
             return;
         }
 
-        //remove it from the idMap
-        String lid = factory.getListenerID();
-        listenerFactories.remove(lid);
-
-        //remove it from all lists in the eventMap
-        Iterator<Map.Entry<Class<? extends BaseEvent>, List<ListenerFactory>>> it = eventListenerFactories.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry<Class<? extends BaseEvent>, List<ListenerFactory>> entry = it.next();
+        synchronized (registrationLock) {
+            //remove it from the idMap
+            String lid = factory.getListenerID();
+            removeListenerID(lid);
 
-            List eventList = entry.getValue();
-            while (eventList.contains(factory)) {
-                eventList.remove(factory);
-            }
-            if (eventList.size() < 1) {
-                it.remove();
+            //remove it from all lists in the eventMap
+            Map<Class<? extends BaseEvent>, List<ListenerFactory>> events = new HashMap<>(eventListenerFactories);
+            for (Map.Entry<Class<? extends BaseEvent>, List<ListenerFactory>> entry : eventListenerFactories.entrySet()) {
+                if (entry.getValue().contains(factory)) {
+                    removeFromList(events, entry.getKey(), factory);
+                }
             }
+            eventListenerFactories = Collections.unmodifiableMap(events);
+            registrationsChanged();
+        }
+    }
+
+    /**
+     * Republish the idMap without the given listener id (caller must hold
+     * the registration lock)
+     */
+    private void removeListenerID(String lid) {
+        if (listenerFactories.containsKey(lid)) {
+            Map<String, ListenerFactory> ids = new HashMap<>(listenerFactories);
+            ids.remove(lid);
+            listenerFactories = Collections.unmodifiableMap(ids);
+        }
+    }
+
+    /**
+     * Replace the list for an event in a (copied) eventMap with one that
+     * no longer contains the factory
+     */
+    private static void removeFromList(Map<Class<? extends BaseEvent>, List<ListenerFactory>> events, Class<? extends BaseEvent> event, ListenerFactory factory) {
+        List<ListenerFactory> eventList = new ArrayList<>(events.get(event));
+        while (eventList.contains(factory)) {
+            eventList.remove(factory);
+        }
+        if (eventList.size() < 1) {
+            events.remove(event);
+        } else {
+            events.put(event, Collections.unmodifiableList(eventList));
         }
     }
 
@@ -257,14 +316,13 @@ public class DefaultEventBroker implements EventBroker {
         }
 
         //return a reference if it exists
-        return (ListenerFactory) listenerFactories.get(id);
+        return listenerFactories.get(id);
     }
 
     /**
-     * Get a List of listeners for a type of event. Returns a copy 
-     * of the broker's internal list, so you can do what you want 
-     * with it. If the class referenced is not an instance of BaseEvent,
-     * a InvalidClassException will be thrown. 
+     * Get a List of listeners for a type of event. The list returned is
+     * an unmodifiable snapshot of the current registrations, so it is safe 
+     * to iterate even if the registrations change in the meantime.
      *
      * @param event the event class we are looking for
      * @return a List of listeners that are interested in this class of event
@@ -278,6 +336,32 @@ public class DefaultEventBroker implements EventBroker {
         return listeners == null ? Collections.<ListenerFactory>emptyList() : listeners;
     }
 
+    /**
+     * Get the DispatchPlan for a class of event. Plans are compiled the first
+     * time they are asked for and reused until the registrations change.
+     *
+     * @param event the event class we are dispatching
+     * @return the plan for this class of event
+     */
+    public DispatchPlan getDispatchPlan(Class<? extends BaseEvent> event) {
+        long version = registrationVersion.get();
+        DispatchPlan plan = dispatchPlans.get(event);
+        if (plan == null || plan.getVersion() != version) {
+            plan = new DispatchPlan(event, getEventListeners(event), version, false);
+            dispatchPlans.put(event, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * Invalidate the cached DispatchPlans. Subclasses that modify the
+     * registrations directly should call this when they are done.
+     */
+    protected void registrationsChanged() {
+        registrationVersion.incrementAndGet();
+        dispatchPlans.clear();
+    }
+
     /**
      * Given a partial event class name, return the fully qualified class
      * name if it's possible to determine. If it is unknown, throw and
@@ -294,7 +378,7 @@ public class DefaultEventBroker implements EventBroker {
         if (eventStr == null) {
             throw new InvalidClassException();
         }
-        Object result = eventXref.get(eventStr.toLowerCase());
+        Object result = eventXref.get(aliasKey(eventStr, eventAliasKeys));
         if (result == null || result instanceof List) {
             throw new InvalidClassException();
         } else {
@@ -318,7 +402,7 @@ public class DefaultEventBroker implements EventBroker {
         if (idStr == null) {
             throw new InvalidClassException();
         }
-        Object result = idXref.get(idStr.toLowerCase());
+        Object result = idXref.get(aliasKey(idStr, idAliasKeys));
         if (result == null || result instanceof List) {
             throw new InvalidClassException();
         } else {
@@ -326,6 +410,15 @@ public class DefaultEventBroker implements EventBroker {
         }
     }
 
+    /**
+     * Map an alias to its xref key. Aliases are usually requested exactly as 
+     * they were registered, in which case the lower case key is precomputed.
+     */
+    private static String aliasKey(String alias, Map<String, String> keys) {
+        String key = keys.get(alias);
+        return (key != null ? key : alias.toLowerCase());
+    }
+
     /**
      * The purpose of this method is to take a fully qualified
      * class name and return a list of aliases for it. For instance,
@@ -401,18 +494,54 @@ public class DefaultEventBroker implements EventBroker {
         if (!((BaseEvent.class).isAssignableFrom(event))) {
             throw new InvalidClassException("Class " + event.getName() + " is not a BaseEvent");
         }
-        List<String> lAliases = getAliases(alias);
-        addAliases(event.getName(), lAliases, eventXref);
+        addEventAliases(event.getName(), getAliases(alias));
     }
 
     /**
      * Given an id and a list of aliases, add them to the 
-     * specified xref
+     * specified xref. The map passed in is modified directly, so it can't be
+     * one of the broker's own (published) xrefs; use addIdAliases() or
+     * addEventAliases() for those.
      */
-    @SuppressWarnings("unchecked")
     protected void addAliases(String id, List<String> aliases, Map<String, Object> xref) {
-        for (String alias : aliases) {
-            alias = alias.toLowerCase();
+        putAliases(id, aliases, xref, null);
+    }
+
+    /**
+     * Given a listener id and a list of aliases, publish a new copy of the
+     * id xref with them added
+     */
+    protected void addIdAliases(String id, List<String> aliases) {
+        synchronized (registrationLock) {
+            Map<String, Object> newXref = new HashMap<>(idXref);
+            Map<String, String> newKeys = new HashMap<>(idAliasKeys);
+            putAliases(id, aliases, newXref, newKeys);
+            idAliasKeys = Collections.unmodifiableMap(newKeys);
+            idXref = Collections.unmodifiableMap(newXref);
+        }
+    }
+
+    /**
+     * Given an event class name and a list of aliases, publish a new copy of
+     * the event xref with them added
+     */
+    protected void addEventAliases(String id, List<String> aliases) {
+        synchronized (registrationLock) {
+            Map<String, Object> newXref = new HashMap<>(eventXref);
+            Map<String, String> newKeys = new HashMap<>(eventAliasKeys);
+            putAliases(id, aliases, newXref, newKeys);
+            eventAliasKeys = Collections.unmodifiableMap(newKeys);
+            eventXref = Collections.unmodifiableMap(newXref);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void putAliases(String id, List<String> aliases, Map<String, Object> xref, Map<String, String> keys) {
+        for (String registered : aliases) {
+            String alias = registered.toLowerCase();
+            if (keys != null) {
+                keys.put(registered, alias);
+            }
             Object ref = xref.get(alias);
 
             //if it's not, just add it
@@ -420,9 +549,13 @@ public class DefaultEventBroker implements EventBroker {
                 xref.put(alias, id);
             } else {
                 //if the ref is not a list, create one and add it to the list
+                //(lists may already be published, so we never modify them)
                 List<Object> list;
                 if (ref instanceof List) {
-                    list = (List<Object>) ref;
+                    if (((List<Object>) ref).contains(id)) {
+                        continue;
+                    }
+                    list = new ArrayList<>((List<Object>) ref);
                 } else {
                     //first make sure this isn't a dupe (if it is, just continue)
                     if (id.equals(ref)) {
@@ -432,14 +565,12 @@ public class DefaultEventBroker implements EventBroker {
                     //go ahead and create the list
                     list = new ArrayList<>();
                     list.add(ref);
-                    xref.put(alias, list);
                 }
 
-                //now add the reference to the list if the id is not
-                //already in there (this prevents dupes)
-                if (!list.contains(id)) {
-                    list.add(id);
-                }
+                //now add the reference to the list (the checks above 
+                //prevent dupes)
+                list.add(id);
+                xref.put(alias, Collections.unmodifiableList(list));
             }
         }
     }
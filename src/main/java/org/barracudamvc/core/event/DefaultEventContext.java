@@ -49,24 +49,34 @@ import org.barracudamvc.plankton.data.StateMapContainer;
 public class DefaultEventContext extends StateMapContainer implements ViewEventContext {
     /*
      * Note:
-     * Persisting Context in a Soft Global Repository, rather than in the user 
+     * Persisting Context in a RedirectContextStore, rather than in the user 
      * session, which inherantly had problems if multiple frames on a client 
      * were firing different events at the same time. The down side of this 
      * is that the redirected url shows in the browser with something like 
-     * this tacked onto the url: $ctxid=_1030135624563
+     * this tacked onto the url: $ctxid=Xq3v...
      * 
-     * The use of the Soft Global Repository was choosen as it allows for
-     * the data to be cleaned up if the user never returns to claim the
-     * resources stored.
+     * The store drops the data if the user never returns to claim the
+     * resources stored (the default store keeps it in memory for a limited
+     * time, up to a limited number of contexts). Use a store that is shared
+     * between nodes (eg. a FileRedirectContextStore on a shared directory)
+     * if the redirect may not come back to the same node.
      */
     
     //public vars
     protected static final Logger logger = Logger.getLogger(DefaultEventContext.class.getName());
+    /**
+     * where contexts are kept across client side redirects
+     */
+    public static RedirectContextStore REDIRECT_CONTEXT_STORE = new DefaultRedirectContextStore();
     //private vars
     private static final String CONTEXT_ID = "$ctxid";
-    private static final String STATE = "_STATE";
-    private static final String LOCAL_OR = "_LOCAL_OR";
-    private static long uid = System.currentTimeMillis();
+    // per request values, which are put again by the constructor (or, in the
+    // local repository, by the gateway)
+    private static final Object[] REQUEST_KEYS = {EventContext.DISPATCH_QUEUE,
+        EventContext.VIEW_CAPABILITIES, ControlEventContext.SERVLET_CONFIG,
+        ControlEventContext.HTTP_SERVLET_REQUEST, ViewEventContext.HTTP_SERVLET_RESPONSE,
+        DefaultEventDispatcher.DEFAULT_RESPONSE_EVENT,
+        ApplicationGateway.HTTP_SERVLET_REQUEST, ApplicationGateway.HTTP_SERVLET_RESPONSE};
 
     /**
      * Public constructor. 
@@ -172,34 +182,29 @@ public class DefaultEventContext extends StateMapContainer implements ViewEventC
             logger.info("persisting event context");
         }
 
-        ObjectRepository wgor = ObjectRepository.getSoftGlobalRepository();
-        String id = getUID();
-
-        // persist the statemap and local repository information in the soft 
-        // global repository (note that the NS is what will keep this unique)
-        // persisting statemap
-        String stateMapKey = CONTEXT_ID + id + STATE;
-        wgor.putState(stateMapKey, getStateMap());
-        if (logger.isDebugEnabled()) {
-            logger.debug("saved evemt context statemap, key: [" 
-                    + stateMapKey + "] ");
-        }
-
-        // Local Repository
+        // persist the statemap and local repository information in the 
+        // redirect context store (the id it returns keeps this unique),
+        // leaving out the per-request values: they would keep the old
+        // request alive and be written over the new one's when restored
+        @SuppressWarnings("unchecked")
+        Map<Object, Object> store = getStateMap().getStateStore();
+        Map<Object, Object> state = new HashMap<>(store);
+        Map<Object, Object> local = new HashMap<>();
         ObjectRepository lr = ObjectRepository.getLocalRepository();
-        Set keySet = lr.getStateKeys();
-        if (keySet != null && keySet.size() > 0) {
-            StateMap sm = new DefaultStateMap();
-            String lorStateMapKey = CONTEXT_ID + id + LOCAL_OR;
-            wgor.putState(lorStateMapKey, sm);
-            if (logger.isDebugEnabled()) {
-                logger.debug("saved Local Object Repository, key: ["
-                        + lorStateMapKey + "] ");
-            }
+        Set<?> keySet = lr.getStateKeys();
+        if (keySet != null) {
             for (Object key : keySet) {
-                sm.putState(key, lr.getState(key));
+                local.put(key, lr.getState(key));
             }
         }
+        for (Object key : REQUEST_KEYS) {
+            state.remove(key);
+            local.remove(key);
+        }
+        String id = REDIRECT_CONTEXT_STORE.save(new RedirectContext(state, local));
+        if (logger.isDebugEnabled()) {
+            logger.debug("saved event context, id: [" + id + "] ");
+        }
 
         // finally, adjust the redirect url to ensure that we can extract the 
         // NS id from the url when it comes time to restore the context
@@ -228,34 +233,25 @@ public class DefaultEventContext extends StateMapContainer implements ViewEventC
             return;
         }
 
-        ObjectRepository wgor = ObjectRepository.getSoftGlobalRepository();
+        StateMap sm = new DefaultStateMap();
+        setStateMap(sm);
+        RedirectContext context = REDIRECT_CONTEXT_STORE.take(id);
+        if (context == null) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("no event context for id: [" + id + "] ");
+            }
+            return;
+        }
         // restore statemap
-        String stkey = CONTEXT_ID + id + STATE;
-        Object stateMapObject = wgor.getState(stkey);
-        if (stateMapObject instanceof StateMap) {
-            setStateMap((StateMap) stateMapObject);
-        } else {
-            setStateMap(new DefaultStateMap());
+        for (Map.Entry<Object, Object> entry : context.getState().entrySet()) {
+            sm.putState(entry.getKey(), entry.getValue());
         }
-
-        wgor.removeState(stkey);
         // restore local repository
-        stkey = CONTEXT_ID + id + LOCAL_OR;
-        Object lorStateMapObject = wgor.getState(stkey);
-        if (lorStateMapObject instanceof StateMap) {
-            StateMap localStateMap = (StateMap) lorStateMapObject;
-            Set keySet = localStateMap.getStateKeys();
-            if (keySet != null) {
-                ObjectRepository lr = ObjectRepository.getLocalRepository();
-                for (Object key : keySet) {
-                    lr.putState(key, localStateMap.getState(key));
-                }
+        if (!context.getLocal().isEmpty()) {
+            ObjectRepository lr = ObjectRepository.getLocalRepository();
+            for (Map.Entry<Object, Object> entry : context.getLocal().entrySet()) {
+                lr.putState(entry.getKey(), entry.getValue());
             }
         }
-        wgor.removeState(stkey);
-    }
-
-    private synchronized static String getUID() {
-        return "_" + (++uid);
     }
-}
\ No newline at end of file
+}
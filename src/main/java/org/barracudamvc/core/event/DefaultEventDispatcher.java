@@ -20,11 +20,14 @@
 package org.barracudamvc.core.event;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import javax.servlet.http.HttpServletRequest;
 import org.apache.log4j.Logger;
 import org.barracudamvc.core.helper.servlet.BarracudaServletRequestWrapper;
+import org.barracudamvc.core.metrics.Metrics;
+import org.barracudamvc.core.metrics.MetricsCollector;
 
 /**
  * <p>This class is responsible for dispatching a queue of events
@@ -51,7 +54,9 @@ import org.barracudamvc.core.helper.servlet.BarracudaServletRequestWrapper;
  * If we enouncter an event that implements Exceptional and that event
  * is NOT handled, then we add it's parent event to the queue.
  *
- * <p>Note that the getEventChain method could probably be better optimized...
+ * <p>The class hierarchy walking and listener lookups needed for each class
+ * of event are precomputed into a DispatchPlan, which DefaultEventBroker caches
+ * until its registrations change.
  */
 public class DefaultEventDispatcher implements EventDispatcher {
 
@@ -89,6 +94,17 @@ public class DefaultEventDispatcher implements EventDispatcher {
         DefaultDispatchQueue eventQueue = (DefaultDispatchQueue) ieventQueue;
         eventQueue.setResponseHandled(false);
 
+        MetricsCollector metrics = Metrics.getCollector();
+        try {
+            dispatchPhases(eb, context, eventQueue);
+        } finally {
+            if (metrics.isEnabled()) {
+                metrics.recordValue(Metrics.QUEUE_DEPTH, eventQueue.numberOfEventsProcessed());
+            }
+        }
+    }
+
+    private void dispatchPhases(EventBroker eb, EventContext context, DefaultDispatchQueue eventQueue) throws EventException {
         // recursive 2 Phase dispatch loop
         while (eventQueue.hasNextControlEvent() || eventQueue.hasNextViewEvent()) {
             //dispatch the request phase
@@ -137,11 +153,18 @@ public class DefaultEventDispatcher implements EventDispatcher {
             BaseEvent event = getNextEvent(dispatchPhase, eventQueue);
             event.setEventExtension(ext);
 
+            DispatchPlan plan = getDispatchPlan(event, eventBroker);
+            MetricsCollector metrics = Metrics.getCollector();
+            long start = metrics.isEnabled() ? System.nanoTime() : 0;
             try {
-                notifyListeners(event, findListeners(event, eventBroker), context);
+                notifyListeners(event, findListeners(event, eventBroker, plan), context);
             } catch (InterruptDispatchException e) {
                 eventQueue.markEventsHandled();
                 eventQueue.addEvent(e.getNewEvent());
+            } finally {
+                if (metrics.isEnabled()) {
+                    metrics.recordTime(Metrics.dispatch(event.getClass()), System.nanoTime() - start);
+                }
             }
 
             // if we're in the response phase and the event was handled,
@@ -154,7 +177,7 @@ public class DefaultEventDispatcher implements EventDispatcher {
             // add it's parent event to the queue...
             if (!event.isHandled() && event instanceof Exceptional) {
                 try {
-                    BaseEvent newEvent = (BaseEvent) event.getClass().getSuperclass().newInstance();
+                    BaseEvent newEvent = plan.getChain().newParent();
                     newEvent.setSource(event);
                     eventQueue.addEvent(newEvent);
                 } catch (InstantiationException ie) {
@@ -179,33 +202,63 @@ public class DefaultEventDispatcher implements EventDispatcher {
     }
 
 
+    /**
+     * Get the dispatch plan for an event. If the broker is a DefaultEventBroker
+     * we use its cached plans, otherwise we compile one on the spot.
+     *
+     * @param event the event we are about to dispatch
+     * @param eb the event broker to use when looking up listeners
+     */
+    protected DispatchPlan getDispatchPlan(BaseEvent event, EventBroker eb) {
+        if (eb instanceof DefaultEventBroker) {
+            return ((DefaultEventBroker) eb).getDispatchPlan(event.getClass());
+        }
+        return DispatchPlan.compile(eb, event.getClass());
+    }
+
     /**
      * Find the listeners for an event
      *
      * @param event the base event for which we're trying to find listeners
      * @param eb the event broker to use when looking up listeners
      */
-    @SuppressWarnings("unchecked")
     protected List<ListenerFactory> findListeners(BaseEvent event, EventBroker eb) {
+        return findListeners(event, eb, getDispatchPlan(event, eb));
+    }
+
+    /**
+     * Find the listeners for an event, falling back to the listeners in
+     * the plan if the event isn't targeted at specific listener ids
+     *
+     * @param event the base event for which we're trying to find listeners
+     * @param eb the event broker to use when looking up listeners
+     * @param plan the dispatch plan for this event's class
+     */
+    protected List<ListenerFactory> findListeners(BaseEvent event, EventBroker eb, DispatchPlan plan) {
         //see if this event is targeted for a specific group of listeners
-        List<ListenerFactory> factoryList = null;
         List<String> listenerIDs = event.getListenerIDs();
         if (listenerIDs != null && !listenerIDs.isEmpty()) {
-            factoryList = new ArrayList<>();
-            for (String id : listenerIDs) {
-                ListenerFactory factory = eb.getEventListener(id);
+            if (listenerIDs.size() == 1) {
+                ListenerFactory factory = eb.getEventListener(listenerIDs.get(0));
                 if (factory != null) {
-                    factoryList.add(factory);
+                    return Collections.singletonList(factory);
+                }
+            } else {
+                List<ListenerFactory> factoryList = new ArrayList<>(listenerIDs.size());
+                for (String id : listenerIDs) {
+                    ListenerFactory factory = eb.getEventListener(id);
+                    if (factory != null) {
+                        factoryList.add(factory);
+                    }
+                }
+                if (!factoryList.isEmpty()) {
+                    return factoryList;
                 }
             }
         }
 
         //if not, get all listeners for this particular event
-        if (factoryList == null || factoryList.isEmpty()) {
-            factoryList = eb.getEventListeners((Class<BaseEvent>) event.getClass());
-        }
-
-        return factoryList;
+        return plan.getListeners();
     }
 
     /**
@@ -249,6 +302,7 @@ public class DefaultEventDispatcher implements EventDispatcher {
         //listener always receives the correct event)
         context.putState(EventContext.BASE_EVENT, event);
 
+        MetricsCollector metrics = Metrics.getCollector();
         for (ListenerFactory factory : listenerFactories) {
             //see if it even needs to be notified
             if (event.isHandled() && !factory.notifyAlways()) {
@@ -259,7 +313,16 @@ public class DefaultEventDispatcher implements EventDispatcher {
             BaseEventListener listener = factory.getInstance();
 
             //dispatch the event to the listener
-            listener.handleEvent(context);
+            if (!metrics.isEnabled()) {
+                listener.handleEvent(context);
+                continue;
+            }
+            long start = System.nanoTime();
+            try {
+                listener.handleEvent(context);
+            } finally {
+                metrics.recordTime(Metrics.listener(listener.getClass()), System.nanoTime() - start);
+            }
         }
     }
 }
@@ -19,17 +19,28 @@
  */
 package org.barracudamvc.core.event;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.log4j.Logger;
+import org.barracudamvc.core.metrics.Metrics;
+import org.barracudamvc.core.metrics.MetricsCollector;
 
 /**
  * This class acts as a pool for Events. Should significantly improve 
  * performance by allowing us to reuse event objects.
+ *
+ * <p>Each class of event gets its own lock-free free list, so checking events
+ * in and out never blocks on other threads. When a free list runs dry the pool
+ * simply instantiates another event rather than waiting for one to come back;
+ * the pool size only limits how many released events are kept around for reuse.
+ * Hit, miss, instantiation and forced release counts are kept so you can tell
+ * whether the pool size suits your load.
  */
 public class DefaultEventPool implements EventPool {
 
@@ -42,22 +53,24 @@ public class DefaultEventPool implements EventPool {
     public static int DEFAULT_MAX_RETRIES = 3;              //csc_060903_1
     public static long DEFAULT_CLEANUP_INTERVAL = 600000;   //csc_060903_1
     //private vars
-    protected Map<Class, EventList> eventMap = null;
+    protected ConcurrentMap<Class, EventList> eventMap = null;
     protected int poolSize = -1;
     protected long timeout = -1;
     protected long retryInterval = -1;
     protected int maxRetries = -1;
     protected long cleanupInterval = -1;
-    protected long lastUpdate = -1;
-    protected long lastCleanup = -1;
-    protected Object sync = new Object();
+    protected volatile long lastUpdate = -1;
+    protected volatile long lastCleanup = -1;
+    protected final AtomicLong hits = new AtomicLong();
+    protected final AtomicLong misses = new AtomicLong();
+    protected final AtomicLong instantiations = new AtomicLong();
+    protected final AtomicLong forcedReleases = new AtomicLong();
     private Thread thread = null;
-    private boolean stayAlive = true;
+    private volatile boolean stayAlive = true;
 
     /**
      * Default constructor. Defaults to pool size of 50 with
-     * a timeout of 60 seconds. Retry interval of 50 millis, 
-     * with max retries of 3. Cleanup thread runs every 10 
+     * a timeout of 60 seconds. Cleanup thread runs every 10 
      * minutes.
      */
     public DefaultEventPool() {
@@ -69,77 +82,56 @@ public class DefaultEventPool implements EventPool {
     /**
      * Public constructor. 
      *
-     * @param ipoolSize - how many event instances to keep for each 
-     *        class of event)
+     * @param ipoolSize - how many released event instances to keep for 
+     *        each class of event
      * @param itimeout - how long may an event be checked out before
      *         it may be reclaimed by the pool
-     * @param iretryInterval - how long between retries if there are no 
-     *        events currently available
-     * @param imaxRetries - maximum number of retries
+     * @param iretryInterval - no longer used (the pool grows instead of
+     *        waiting for events to be released)
+     * @param imaxRetries - no longer used (the pool grows instead of
+     *        waiting for events to be released)
      * @param icleanupInterval - how often should the cleanup thread run (millisecs).
      */
     public DefaultEventPool(int ipoolSize, long itimeout, long iretryInterval, int imaxRetries, long icleanupInterval) {
         //set up working vars
-        eventMap = new HashMap<Class, EventList>();
+        eventMap = new ConcurrentHashMap<Class, EventList>();
         poolSize = ipoolSize;
         timeout = itimeout;
         retryInterval = iretryInterval;
         maxRetries = imaxRetries;
         cleanupInterval = icleanupInterval;
         if (logger.isInfoEnabled())
-            logger.info("Instantiating EventPool:" + this + " Pool size:" + poolSize + " Timeout:" + timeout + " Retry Interval:" + retryInterval + " Max Retries:" + maxRetries + " Cleanup Interval:" + cleanupInterval);
+            logger.info("Instantiating EventPool:" + this + " Pool size:" + poolSize + " Timeout:" + timeout + " Cleanup Interval:" + cleanupInterval);
 
         //start the cleanup thread
         thread = new Thread(new EventListCleanerUpper());
         thread.setName("Barracuda event pool cleanup thread");
+        thread.setDaemon(true);
         thread.start();
     }
 
     /**
-     * check out an event from the EventPool.
+     * check out an event from the EventPool. If there are no free events
+     * of the requested class a new one is instantiated, so this never
+     * waits on other threads.
      *
      * @param event the class of event we are interested in checking out
      * @return the checked out event
-     * @throws NoAvailableEventsException if there are no available events in the queue
+     * @throws NoAvailableEventsException never thrown by this implementation
      * @throws InvalidClassException if the event class is not valid
      */
     @Override
     public BaseEvent checkoutEvent(Class event) throws NoAvailableEventsException, InvalidClassException {
-        if (!((BaseEvent.class).isAssignableFrom(event)))
-            throw new InvalidClassException("Class " + event.getName() + " is not a BaseEvent");
-
-        //we catch NoAvailbleEventsExceptions at this level so as
-        //to allow for an unlock on the sync object (thus allowing other
-        //threads to check in events while we sleep).
-        int cntr = 1;
-        BaseEvent be = null;
-        while (be == null) {
-            try {
-                synchronized (sync) {
-                    EventList el = eventMap.get(event);
-                    if (el == null) {
-                        el = new EventList();
-                        eventMap.put(event, el);
-                    }
-                    be = el.lock(event);
-                }
-            } catch (NoAvailableEventsException e) {
-                //if we have to wait for more than 3 iterations (150 millisecs) return
-                try {
-                    if (++cntr > maxRetries) {
-                        logger.warn("ALERT: EventPool timeout. You might want to consider upping your pool size to avoid this condition");
-                        throw e;
-                    }
-                    if (logger.isDebugEnabled())
-                        logger.debug("Waiting " + cntr + " for next available event " + event.getName());
-                    Thread.yield();
-                    Thread.sleep(retryInterval);
-                } catch (InterruptedException ie) {
-                }
-            }
+        EventList el = eventMap.get(event);
+        if (el == null) {
+            if (!((BaseEvent.class).isAssignableFrom(event)))
+                throw new InvalidClassException("Class " + event.getName() + " is not a BaseEvent");
+            EventList newList = new EventList(event);
+            el = eventMap.putIfAbsent(event, newList);
+            if (el == null)
+                el = newList;
         }
-
-        return be;
+        return el.lock();
     }
 
     /**
@@ -148,15 +140,14 @@ public class DefaultEventPool implements EventPool {
      *
      * @param event the event we're releasing our lock on
      */
+    @Override
     public void releaseEvent(BaseEvent event) {
-        if (logger.isInfoEnabled())
-            logger.info("Releasing event " + event);
-        synchronized (sync) {
-            EventList el = eventMap.get(event.getClass());
-            if (el == null)
-                return;
-            el.release(event);
-        }
+        if (logger.isDebugEnabled())
+            logger.debug("Releasing event " + event);
+        EventList el = eventMap.get(event.getClass());
+        if (el == null)
+            return;
+        el.release(event);
     }
 
     /**
@@ -165,19 +156,45 @@ public class DefaultEventPool implements EventPool {
      * to run this method. It will get invoked automatically
      * when the cleaner-upper runs
      */
+    @Override
     public void cleanupLockedEvents() {
         lastCleanup = System.currentTimeMillis();
         if (logger.isInfoEnabled())
             logger.info("Cleaning up locked events @" + lastCleanup);
-        synchronized (sync) {
-            Iterator it = eventMap.values().iterator();
-            while (it.hasNext()) {
-                EventList el = (EventList) it.next();
-                el.cleanup();
-            }
+        for (EventList el : eventMap.values()) {
+            el.cleanup();
         }
     }
 
+    /**
+     * @return how many checkouts were satisfied from a free list
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return how many checkouts found the free list empty
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return how many events the pool has instantiated
+     */
+    public long getInstantiationCount() {
+        return instantiations.get();
+    }
+
+    /**
+     * @return how many events were reclaimed by the cleanup thread because
+     * they were checked out for longer than the timeout
+     */
+    public long getForcedReleaseCount() {
+        return forcedReleases.get();
+    }
+
     //lb_032801_start - Patch submitted by Larry Brasfield 
     //[larry.brasfield@theplatform.com] so JVM can exit once 
     //the servlet's destroy() method is called.  This method 
@@ -186,6 +203,7 @@ public class DefaultEventPool implements EventPool {
     /**
      * Shutdown the event pool
      */
+    @Override
     public void shutdown() {
         stayAlive = false;
         if (thread != null) {
@@ -196,119 +214,134 @@ public class DefaultEventPool implements EventPool {
     }
     //lb_032801_end
 
+    /**
+     * Events don't define a usable identity (equals() matches on class), 
+     * so checked out events are tracked by reference
+     */
+    static final class EventKey {
+
+        final BaseEvent event;
+
+        EventKey(BaseEvent event) {
+            this.event = event;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(event);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return (o instanceof EventKey) && ((EventKey) o).event == event;
+        }
+    }
+
     /**
      * This inner class is used to store individual lists
      * of event instances
      */
     class EventList {
 
-        String name = null;
-        List<BaseEvent> freeList = new ArrayList<BaseEvent>(poolSize);
-        List<BaseEvent> lockedList = new ArrayList<BaseEvent>(poolSize);
+        final Class event;
+        final String name;
+        final ConcurrentLinkedDeque<BaseEvent> freeList = new ConcurrentLinkedDeque<BaseEvent>();
+        final AtomicInteger freeCount = new AtomicInteger();
+        final Map<EventKey, BaseEvent> lockedMap = new ConcurrentHashMap<EventKey, BaseEvent>();
+
+        EventList(Class ievent) {
+            event = ievent;
+            name = ievent.getName();
+        }
 
         /**
          * lock an event within the local event list
          *
-         * @param event the class of event to get a lock on
          * @return a locked instance of the event
          */
-        public BaseEvent lock(Class event) throws InvalidClassException, NoAvailableEventsException {
-            //set the name
-            if (name == null)
-                name = event.getName();
-            if (logger.isDebugEnabled())
-                logger.debug("Attempting to lock event " + name);
-
-
-            if (freeList.size() < 1 && lockedList.size() >= poolSize)
-                throw new NoAvailableEventsException("No available events:" + event);
-
-            //try and get the next available event
-            BaseEvent be = null;
-            if (freeList.size() > 0) {
-                if (logger.isDebugEnabled())
-                    logger.debug("Looking up next event " + name);
-                be = (BaseEvent) freeList.get(0);
-                freeList.remove(0);
-            }
-
-            //instantiate it if need be
-            if (be == null) {
+        public BaseEvent lock() throws InvalidClassException {
+            //try and get the next available event (most recently released
+            //first, since it's the most likely to still be in cache)
+            BaseEvent be = freeList.pollFirst();
+            MetricsCollector metrics = Metrics.getCollector();
+            if (be != null) {
+                freeCount.decrementAndGet();
+                hits.incrementAndGet();
+                if (metrics.isEnabled())
+                    metrics.increment(Metrics.POOL_HIT, 1);
+            } else {
+                misses.incrementAndGet();
+                if (metrics.isEnabled())
+                    metrics.increment(Metrics.POOL_MISS, 1);
                 if (logger.isDebugEnabled())
                     logger.debug("Instantiating event " + name);
                 try {
                     //Note: the event pool assumes all event objects must have
                     //a noargs constructor
-                    if (logger.isDebugEnabled())
-                        logger.debug("Instantiating Event");
                     be = (BaseEvent) event.newInstance();
                 } catch (Exception e) {
                     throw new InvalidClassException("Error instantiating event:" + event, e);
                 }
+                instantiations.incrementAndGet();
             }
 
-            //now move the event to the locked list, set the timestamp,
+            //now track the event as locked, set the timestamp,
             //and return the event
-            if (logger.isDebugEnabled())
-                logger.debug("Locking event " + be + " in EventList: " + name);
             be.touch();
-            lockedList.add(be);
+            lockedMap.put(new EventKey(be), be);
             lastUpdate = be.getTimestamp();
             return be;
         }
 
         /**
-         * release an event within the local event list
+         * release an event within the local event list. Events the pool
+         * doesn't know about (or has already reclaimed) are ignored.
          *
          * @param be the locked event to be released
          */
         public void release(BaseEvent be) {
-            if (logger.isDebugEnabled())
-                logger.debug("Releasing event " + be + " in EventList: " + name);
-            lockedList.remove(be);
+            if (lockedMap.remove(new EventKey(be)) == null)
+                return;
+            recycle(be);
+        }
+
+        /**
+         * put an event back on the free list, unless there are already 
+         * enough of them there (in which case it's left for the gc)
+         */
+        void recycle(BaseEvent be) {
+            if (freeCount.incrementAndGet() > poolSize) {
+                freeCount.decrementAndGet();
+                return;
+            }
             be.reset();
-            freeList.add(be);
+            freeList.offerFirst(be);
         }
 
         /**
-         * Cleanup the locked list
+         * Cleanup the locked list. Events that have been checked out for too
+         * long are forgotten rather than recycled, since whoever checked them
+         * out may well still be using them.
          */
         public void cleanup() {
             if (logger.isDebugEnabled())
                 logger.debug("Cleaning up EventList: " + name);
             boolean gotSome = false;
-            Iterator it = lockedList.iterator();
             long curTime = System.currentTimeMillis();
+            Iterator<BaseEvent> it = lockedMap.values().iterator();
             while (it.hasNext()) {
-                BaseEvent be = (BaseEvent) it.next();
-                if (be.getTimestamp() - curTime > timeout) {
+                BaseEvent be = it.next();
+                if (curTime - be.getTimestamp() > timeout) {
                     if (logger.isDebugEnabled())
                         logger.debug("Forcing release for event:" + be);
-                    release(be);
+                    it.remove();
+                    forcedReleases.incrementAndGet();
                     gotSome = true;
                 }
             }
             if (logger.isDebugEnabled() && !gotSome)
                 logger.debug("All was clean...no events needed to be released");
         }
-
-        protected void finalize() {
-            if (logger.isInfoEnabled())
-                logger.info("Finalizing event pool...");
-            stayAlive = false;
-
-            //lb_032801_start - Patch submitted by Larry Brasfield 
-            //[larry.brasfield@theplatform.com] so JVM can exit once 
-            //the servlet's destroy() method is called. You can find 
-            //related changes by searching for lb_032801
-//            if (thread!=null) thread.interrupt();
-            if (thread != null) {
-                thread.interrupt();
-                // Let it loose to break circular reference.
-                thread = null;
-            }
-            //lb_032801_end
-        }
     }
 
     /**
@@ -317,6 +350,7 @@ public class DefaultEventPool implements EventPool {
      */
     class EventListCleanerUpper implements Runnable {
 
+        @Override
         public void run() {
             if (logger.isInfoEnabled())
                 logger.info("Starting EventListCleanerUpper (ELCU)...");
@@ -327,7 +361,6 @@ public class DefaultEventPool implements EventPool {
                     //sleep for a while
                     if (logger.isDebugEnabled())
                         logger.debug("ELCU...Going to sleep");
-                    Thread.yield();
                     Thread.sleep(cleanupInterval);
 
                     //see if anything has even changed since we last checked
@@ -0,0 +1,126 @@
+package org.barracudamvc.core.event;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.log4j.Logger;
+
+/**
+ * <p>The default RedirectContextStore: keeps contexts in memory for a fixed
+ * time to live, holding at most a fixed number of them. Contexts are held
+ * strongly, so they stay until they are claimed, expire or are pushed out by
+ * newer ones, rather than whenever the garbage collector decides.
+ *
+ * <p>Because every context lives for the same time, the order in which they
+ * were saved is also the order in which they expire. The contexts are kept in
+ * that order, so expired ones are dropped from the front as new ones are
+ * saved, and once there are too many the oldest is dropped. A context is let
+ * go of as soon as it is taken, so at most DEFAULT_MAX_CONTEXTS contexts are
+ * ever held.
+ *
+ * <p>Contexts are only visible to the JVM that saved them; use a
+ * {@link FileRedirectContextStore} on a shared directory if redirects may be
+ * followed on another node.
+ */
+public class DefaultRedirectContextStore implements RedirectContextStore {
+
+    protected static final Logger logger = Logger.getLogger(DefaultRedirectContextStore.class.getName());
+
+    /**
+     * how long (in milliseconds) a context is kept if it is not claimed
+     */
+    public static long DEFAULT_TTL = 5 * 60 * 1000L;
+    /**
+     * the maximum number of contexts kept
+     */
+    public static int DEFAULT_MAX_CONTEXTS = 10000;
+
+    protected final long ttl;
+    protected final int maxContexts;
+    // in the order the contexts were saved (ie. the order they expire in)
+    private final LinkedHashMap<String, Entry> contexts;
+
+    public DefaultRedirectContextStore() {
+        this(DEFAULT_TTL, DEFAULT_MAX_CONTEXTS);
+    }
+
+    /**
+     * @param ittl how long (in milliseconds) a context is kept
+     * @param imaxContexts the maximum number of contexts kept
+     */
+    public DefaultRedirectContextStore(long ittl, int imaxContexts) {
+        ttl = ittl;
+        maxContexts = imaxContexts;
+        contexts = new LinkedHashMap<String, Entry>() {
+            private static final long serialVersionUID = 1;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= maxContexts) {
+                    return false;
+                }
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Dropped redirect context " + eldest.getKey() + " to stay within " + maxContexts + " contexts");
+                }
+                return true;
+            }
+        };
+    }
+
+    @Override
+    public String save(RedirectContext context) {
+        String id = RedirectContext.newId();
+        long now = System.currentTimeMillis();
+        Entry e = new Entry(context, now + ttl);
+        synchronized (contexts) {
+            purge(now);
+            contexts.put(id, e);
+        }
+        return id;
+    }
+
+    @Override
+    public RedirectContext take(String id) {
+        if (id == null) {
+            return null;
+        }
+        Entry e;
+        synchronized (contexts) {
+            e = contexts.remove(id);
+        }
+        if (e == null || e.expires < System.currentTimeMillis()) {
+            return null;
+        }
+        return e.context;
+    }
+
+    /**
+     * @return the number of contexts waiting to be claimed
+     */
+    public int size() {
+        synchronized (contexts) {
+            return contexts.size();
+        }
+    }
+
+    /**
+     * Drop the contexts that have expired (the caller holds the lock)
+     */
+    private void purge(long now) {
+        Iterator<Entry> it = contexts.values().iterator();
+        while (it.hasNext() && it.next().expires < now) {
+            it.remove();
+        }
+    }
+
+    private static final class Entry {
+
+        final RedirectContext context;
+        final long expires;
+
+        Entry(RedirectContext icontext, long iexpires) {
+            context = icontext;
+            expires = iexpires;
+        }
+    }
+}
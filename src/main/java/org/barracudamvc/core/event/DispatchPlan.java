@@ -0,0 +1,72 @@
+package org.barracudamvc.core.event;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>Everything the dispatcher needs to know in order to deliver a particular
+ * class of event: its EventChain (Polymorphic ancestors and Exceptional parent)
+ * along with a snapshot of the listener factories registered for it.
+ *
+ * <p>DefaultEventBroker compiles these on demand and hangs on to them until its
+ * registrations change, so repeat dispatches of the same class of event just
+ * reuse the plan. The listener list is an unmodifiable copy and is therefore
+ * safe to iterate even if listeners are registered while we are dispatching.
+ */
+public final class DispatchPlan {
+
+    private final Class<? extends BaseEvent> eventClass;
+    private final EventChain chain;
+    private final List<ListenerFactory> listeners;
+    private final long version;
+
+    /**
+     * @param copy false if the listener list is already an unmodifiable
+     * snapshot that can be used as is
+     */
+    DispatchPlan(Class<? extends BaseEvent> ieventClass, List<ListenerFactory> ilisteners, long iversion, boolean copy) {
+        eventClass = ieventClass;
+        chain = EventChain.of(ieventClass);
+        if (ilisteners == null || ilisteners.isEmpty()) {
+            listeners = Collections.<ListenerFactory>emptyList();
+        } else {
+            listeners = (copy ? Collections.unmodifiableList(new ArrayList<>(ilisteners)) : ilisteners);
+        }
+        version = iversion;
+    }
+
+    /**
+     * Build a plan for a broker that doesn't cache them
+     *
+     * @param eb the event broker to take the listeners from
+     * @param eventClass the class of event
+     * @return a freshly compiled plan
+     */
+    static DispatchPlan compile(EventBroker eb, Class<? extends BaseEvent> eventClass) {
+        return new DispatchPlan(eventClass, eb.getEventListeners(eventClass), -1, true);
+    }
+
+    /**
+     * @return the class of event this plan was compiled for
+     */
+    public Class<? extends BaseEvent> getEventClass() {
+        return eventClass;
+    }
+
+    /**
+     * @return the listener factories registered for this class of event
+     * at the time the plan was compiled (never null)
+     */
+    public List<ListenerFactory> getListeners() {
+        return listeners;
+    }
+
+    EventChain getChain() {
+        return chain;
+    }
+
+    long getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,134 @@
+package org.barracudamvc.core.event;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>The class hierarchy information the dispatcher needs for a particular class
+ * of event: the chain of Polymorphic ancestors that get fired before the event
+ * itself, and the parent event that gets queued when an Exceptional event goes
+ * unhandled.
+ *
+ * <p>Chains are worked out the first time a class of event is dispatched and
+ * then kept (per class, so they go away with the class loader). The parent
+ * constructors are resolved to method handles up front, which means steady state
+ * dispatch never has to walk the hierarchy or go through Class.newInstance().
+ */
+final class EventChain {
+
+    private static final MethodType EVENT_FACTORY_TYPE = MethodType.methodType(BaseEvent.class);
+    private static final ClassValue<EventChain> CHAINS = new ClassValue<EventChain>() {
+        @Override
+        protected EventChain computeValue(Class<?> type) {
+            return new EventChain(type);
+        }
+    };
+
+    private final EventFactory[] polymorphicAncestors;
+    private final EventFactory parent;
+
+    private EventChain(Class<?> eventClass) {
+        Class<?> superclazz = eventClass.getSuperclass();
+        parent = (superclazz != null ? new EventFactory(superclazz) : null);
+
+        List<EventFactory> ancestors = new ArrayList<>();
+        while (superclazz != null && Polymorphic.class.isAssignableFrom(superclazz)) {
+            ancestors.add(new EventFactory(superclazz));
+            superclazz = superclazz.getSuperclass();
+        }
+        polymorphicAncestors = ancestors.toArray(new EventFactory[ancestors.size()]);
+    }
+
+    /**
+     * Get the chain for a given class of event
+     *
+     * @param eventClass the class of event
+     * @return the chain for that class
+     */
+    static EventChain of(Class<?> eventClass) {
+        return CHAINS.get(eventClass);
+    }
+
+    /**
+     * @return the number of Polymorphic ancestors above this class of event
+     */
+    int getPolymorphicDepth() {
+        return polymorphicAncestors.length;
+    }
+
+    /**
+     * Create the Polymorphic ancestor at the given depth (0 being the
+     * immediate parent)
+     */
+    BaseEvent newPolymorphicAncestor(int depth) throws InstantiationException, IllegalAccessException {
+        return polymorphicAncestors[depth].newInstance();
+    }
+
+    /**
+     * Create an instance of the immediate parent class (used when an
+     * Exceptional event goes unhandled)
+     */
+    BaseEvent newParent() throws InstantiationException, IllegalAccessException {
+        if (parent == null) {
+            throw new InstantiationException("Event has no parent class");
+        }
+        return parent.newInstance();
+    }
+
+    /**
+     * Creates instances of one particular class of event through its noargs
+     * constructor. If the class can't be instantiated, the reason is remembered
+     * and reported every time an instance is asked for, just as it would have
+     * been had we called newInstance() on the class directly.
+     */
+    static final class EventFactory {
+
+        private final Class<?> eventClass;
+        private final MethodHandle constructor;
+        private final ReflectiveOperationException failure;
+
+        EventFactory(Class<?> ieventClass) {
+            eventClass = ieventClass;
+            MethodHandle mh = null;
+            ReflectiveOperationException ex = null;
+            try {
+                if (Modifier.isAbstract(eventClass.getModifiers()) || !BaseEvent.class.isAssignableFrom(eventClass)) {
+                    throw new InstantiationException(eventClass.getName());
+                }
+                Constructor<?> c = eventClass.getDeclaredConstructor();
+                c.setAccessible(true);
+                mh = MethodHandles.lookup().unreflectConstructor(c).asType(EVENT_FACTORY_TYPE);
+            } catch (NoSuchMethodException e) {
+                ex = (InstantiationException) new InstantiationException(eventClass.getName()).initCause(e);
+            } catch (ReflectiveOperationException e) {
+                ex = e;
+            } catch (SecurityException e) {
+                ex = (IllegalAccessException) new IllegalAccessException(eventClass.getName()).initCause(e);
+            }
+            constructor = mh;
+            failure = ex;
+        }
+
+        BaseEvent newInstance() throws InstantiationException, IllegalAccessException {
+            if (failure instanceof IllegalAccessException) {
+                throw (IllegalAccessException) failure;
+            }
+            if (failure != null) {
+                throw (InstantiationException) (failure instanceof InstantiationException ? failure
+                        : new InstantiationException(eventClass.getName()).initCause(failure));
+            }
+            try {
+                return (BaseEvent) constructor.invokeExact();
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw (InstantiationException) new InstantiationException(eventClass.getName()).initCause(t);
+            }
+        }
+    }
+}
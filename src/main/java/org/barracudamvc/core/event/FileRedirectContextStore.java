@@ -0,0 +1,407 @@
+package org.barracudamvc.core.event;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import org.apache.log4j.Logger;
+import org.barracudamvc.plankton.data.StateMap;
+
+/**
+ * <p>A RedirectContextStore that writes each context to its own file. If the
+ * directory is shared between nodes, a redirect can be followed on any of them,
+ * so sticky sessions are not needed; otherwise it simply keeps contexts out of
+ * the heap.
+ *
+ * <p>Contexts are written with Java serialization through a Deflater, so a
+ * context typically takes a few hundred bytes. Each entry is serialized on its
+ * own, and entries that cannot be serialized are left out (and logged) rather
+ * than failing the redirect.
+ *
+ * <p>Since anyone who can write to the directory can put a file there, entries
+ * are only read back if every class in them is on an allow-list: the common
+ * JDK value and collection types, StateMaps (which includes events), and
+ * whatever classes or packages the application adds with allowClass and
+ * allowPackage. Entries holding anything else are skipped.
+ *
+ * <p>A context is claimed by renaming its file, so only one request can take
+ * it even when several nodes share the directory. Files older than the time to
+ * live are ignored and swept up from time to time.
+ */
+public class FileRedirectContextStore implements RedirectContextStore {
+
+    protected static final Logger logger = Logger.getLogger(FileRedirectContextStore.class.getName());
+
+    /**
+     * the directory used by the default constructor
+     */
+    public static File DEFAULT_DIRECTORY = new File(System.getProperty("java.io.tmpdir"), "barracuda-redirect");
+    /**
+     * how often (in milliseconds) expired files are swept
+     */
+    public static long SWEEP_INTERVAL = 60 * 1000L;
+    /**
+     * the largest a context may be once inflated, in bytes; bigger files
+     * (like corrupt ones) are discarded rather than read
+     */
+    public static int MAX_CONTEXT_SIZE = 16 * 1024 * 1024;
+
+    private static final String SUFFIX = ".ctx";
+    private static final int VERSION = 1;
+    private static final Set<String> JDK_CLASSES = new HashSet<>(Arrays.asList(
+            "java.lang.String", "java.lang.Boolean", "java.lang.Character", "java.lang.Number",
+            "java.lang.Byte", "java.lang.Short", "java.lang.Integer", "java.lang.Long",
+            "java.lang.Float", "java.lang.Double", "java.lang.Enum",
+            "java.math.BigInteger", "java.math.BigDecimal",
+            "java.util.ArrayList", "java.util.LinkedList", "java.util.ArrayDeque", "java.util.Arrays$ArrayList",
+            "java.util.HashMap", "java.util.LinkedHashMap", "java.util.TreeMap", "java.util.Hashtable",
+            "java.util.HashSet", "java.util.LinkedHashSet", "java.util.TreeSet", "java.util.Vector", "java.util.Stack",
+            "java.util.concurrent.ConcurrentHashMap", "java.util.concurrent.ConcurrentHashMap$Segment",
+            "java.util.concurrent.locks.ReentrantLock", "java.util.concurrent.locks.ReentrantLock$Sync",
+            "java.util.concurrent.locks.ReentrantLock$NonfairSync", "java.util.concurrent.locks.AbstractQueuedSynchronizer",
+            "java.util.concurrent.locks.AbstractOwnableSynchronizer",
+            "java.util.Date", "java.util.Locale", "java.util.UUID", "java.util.Currency",
+            "java.sql.Date", "java.sql.Time", "java.sql.Timestamp", "java.time.Ser"));
+    private static final String[] JDK_CLASS_PREFIXES = {"java.util.Collections$"};
+
+    protected final Path directory;
+    protected final long ttl;
+    private final AtomicLong nextSweep = new AtomicLong();
+    private final Set<String> allowedClasses = new CopyOnWriteArraySet<>();
+    private final Set<String> allowedPackages = new CopyOnWriteArraySet<>();
+
+    public FileRedirectContextStore() {
+        this(DEFAULT_DIRECTORY, DefaultRedirectContextStore.DEFAULT_TTL);
+    }
+
+    /**
+     * @param idirectory the directory the contexts are written to; it is
+     *     created if needed
+     * @param ittl how long (in milliseconds) a context is kept
+     */
+    public FileRedirectContextStore(File idirectory, long ittl) {
+        directory = idirectory.toPath();
+        ttl = ittl;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot create redirect context directory " + idirectory, e);
+        }
+        nextSweep.set(System.currentTimeMillis() + SWEEP_INTERVAL);
+    }
+
+    @Override
+    public String save(RedirectContext context) {
+        sweep();
+        String id = RedirectContext.newId();
+        Path tmp = directory.resolve(id + ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp, StandardOpenOption.CREATE_NEW)) {
+                write(context, out);
+            }
+            try {
+                Files.move(tmp, directory.resolve(id + SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, directory.resolve(id + SUFFIX));
+            }
+        } catch (IOException e) {
+            delete(tmp);
+            throw new IllegalStateException("Cannot save redirect context", e);
+        }
+        return id;
+    }
+
+    @Override
+    public RedirectContext take(String id) {
+        if (!RedirectContext.isValidId(id)) {
+            return null;
+        }
+        Path file = directory.resolve(id + SUFFIX);
+        Path claimed = directory.resolve(id + ".taken");
+        try {
+            Files.move(file, claimed, StandardCopyOption.ATOMIC_MOVE);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            logger.warn("Cannot claim redirect context " + id, e);
+            return null;
+        }
+        try {
+            if (Files.getLastModifiedTime(claimed).toMillis() + ttl < System.currentTimeMillis()) {
+                return null;
+            }
+            return read(claimed);
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            logger.warn("Cannot read redirect context " + id, e);
+            return null;
+        } finally {
+            delete(claimed);
+        }
+    }
+
+    /**
+     * Delete the files of expired contexts. This is called from save at most
+     * once every SWEEP_INTERVAL.
+     */
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        long next = nextSweep.get();
+        if (now < next || !nextSweep.compareAndSet(next, now + SWEEP_INTERVAL)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                try {
+                    if (Files.getLastModifiedTime(file).toMillis() + ttl < now) {
+                        delete(file);
+                    }
+                } catch (IOException e) {
+                    // taken or swept by someone else
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Cannot sweep redirect contexts in " + directory, e);
+        }
+    }
+
+    /**
+     * Allow instances of a class to be read back from a context file
+     *
+     * @param clazz the class
+     * @return this store
+     */
+    public FileRedirectContextStore allowClass(Class<?> clazz) {
+        allowedClasses.add(clazz.getName());
+        return this;
+    }
+
+    /**
+     * Allow instances of the classes in a package (and its subpackages)
+     * to be read back from a context file
+     *
+     * @param packageName the package name, eg. "com.example.model"
+     * @return this store
+     */
+    public FileRedirectContextStore allowPackage(String packageName) {
+        allowedPackages.add(packageName.endsWith(".") ? packageName : packageName + ".");
+        return this;
+    }
+
+    /**
+     * Decide whether a class may be read back from a context file. Override
+     * to widen or narrow the allow-list.
+     *
+     * @param className the name of the class
+     * @param clazz the class (loaded, but not initialized)
+     * @return true if the class may be deserialized
+     */
+    protected boolean isAllowed(String className, Class<?> clazz) {
+        if (clazz.isArray()) {
+            Class<?> component = clazz;
+            while (component.isArray()) {
+                component = component.getComponentType();
+            }
+            return component.isPrimitive() || isAllowed(component.getName(), component);
+        }
+        if (JDK_CLASSES.contains(className) || allowedClasses.contains(className)) {
+            return true;
+        }
+        for (String prefix : JDK_CLASS_PREFIXES) {
+            if (className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        for (String prefix : allowedPackages) {
+            if (className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return StateMap.class.isAssignableFrom(clazz);
+    }
+
+    protected void write(RedirectContext context, OutputStream out) throws IOException {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            DeflaterOutputStream zout = new DeflaterOutputStream(out, deflater, 4096);
+            DataOutputStream dout = new DataOutputStream(new BufferedOutputStream(zout, 4096));
+            ByteArrayOutputStream buf = new ByteArrayOutputStream(256);
+            dout.writeInt(VERSION);
+            writeEntries(context.getState(), dout, buf);
+            writeEntries(context.getLocal(), dout, buf);
+            dout.flush();
+            zout.finish();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Write the entries of a map, each serialized on its own (into buf, so
+     * that an entry that turns out not to be serializable can simply be
+     * dropped)
+     */
+    private void writeEntries(Map<Object, Object> map, DataOutputStream out, ByteArrayOutputStream buf) throws IOException {
+        int count = 0;
+        ByteArrayOutputStream entries = new ByteArrayOutputStream();
+        DataOutputStream eout = new DataOutputStream(entries);
+        for (Map.Entry<Object, Object> entry : map.entrySet()) {
+            Object key = entry.getKey();
+            Object value = entry.getValue();
+            buf.reset();
+            try {
+                if (!isSerializable(key) || !isSerializable(value)) {
+                    throw new NotSerializableException(key + "");
+                }
+                ObjectOutputStream oout = new ObjectOutputStream(buf);
+                oout.writeObject(key);
+                oout.writeObject(value);
+                oout.flush();
+            } catch (NotSerializableException e) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Redirect context entry " + key + " is not Serializable and was left out");
+                }
+                continue;
+            }
+            eout.writeInt(buf.size());
+            buf.writeTo(eout);
+            count++;
+        }
+        out.writeInt(count);
+        entries.writeTo(out);
+    }
+
+    protected RedirectContext read(Path file) throws IOException, ClassNotFoundException {
+        byte[] bytes;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate((int) channel.size());
+            while (buf.hasRemaining() && channel.read(buf) >= 0) {
+            }
+            bytes = buf.array();
+        }
+        //inflate the whole context up front, so every length read from it can
+        //be checked against what is actually there
+        bytes = inflate(bytes);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readInt() != VERSION) {
+                throw new IOException("Unknown redirect context format");
+            }
+            Map<Object, Object> state = readEntries(in);
+            Map<Object, Object> local = readEntries(in);
+            return new RedirectContext(state, local);
+        }
+    }
+
+    private Map<Object, Object> readEntries(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        Map<Object, Object> result = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            int len = in.readInt();
+            if (len < 0 || len > in.available()) {
+                throw new IOException("Corrupt redirect context");
+            }
+            byte[] entry = new byte[len];
+            in.readFully(entry);
+            try (ObjectInputStream oin = new ContextObjectInputStream(new ByteArrayInputStream(entry))) {
+                Object key = oin.readObject();
+                result.put(key, oin.readObject());
+            } catch (InvalidClassException | ClassNotFoundException e) {
+                logger.warn("Redirect context entry skipped: " + e);
+            }
+        }
+        return result;
+    }
+
+    private static byte[] inflate(byte[] compressed) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 4);
+        try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(compressed))) {
+            byte[] chunk = new byte[8192];
+            int n;
+            while ((n = in.read(chunk)) >= 0) {
+                if (out.size() + n > MAX_CONTEXT_SIZE) {
+                    throw new IOException("Redirect context is larger than " + MAX_CONTEXT_SIZE + " bytes");
+                }
+                out.write(chunk, 0, n);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static boolean isSerializable(Object o) {
+        return o == null || o instanceof Serializable;
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Cannot delete " + file, e);
+        }
+    }
+
+    /**
+     * Resolves classes with the context class loader, so that application
+     * classes stored in a context can be read back, and refuses the ones that
+     * are not allowed
+     */
+    private final class ContextObjectInputStream extends ObjectInputStream {
+
+        ContextObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            Class<?> clazz = null;
+            ClassLoader loader = Thread.currentThread().getContextClassLoader();
+            if (loader != null) {
+                try {
+                    clazz = Class.forName(desc.getName(), false, loader);
+                } catch (ClassNotFoundException e) {
+                    // fall back to the default
+                }
+            }
+            if (clazz == null) {
+                clazz = super.resolveClass(desc);
+            }
+            if (!clazz.isPrimitive() && !isAllowed(desc.getName(), clazz)) {
+                throw new InvalidClassException(desc.getName(), "not allowed in a redirect context");
+            }
+            return clazz;
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(String[] interfaces) throws IOException, ClassNotFoundException {
+            throw new InvalidClassException("proxy", "not allowed in a redirect context");
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.barracudamvc.core.event;
+
+import java.io.Serializable;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The state an event context carries across a client side redirect: the
+ * context's own state map and the local object repository.
+ */
+public class RedirectContext implements Serializable {
+
+    private static final long serialVersionUID = 1;
+    private static final SecureRandom random = new SecureRandom();
+    private static final char[] ID_CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+
+    private final Map<Object, Object> state;
+    private final Map<Object, Object> local;
+
+    /**
+     * @param istate the state of the event context
+     * @param ilocal the state of the local repository
+     */
+    public RedirectContext(Map<Object, Object> istate, Map<Object, Object> ilocal) {
+        state = istate != null ? istate : new HashMap<Object, Object>();
+        local = ilocal != null ? ilocal : new HashMap<Object, Object>();
+    }
+
+    public Map<Object, Object> getState() {
+        return state;
+    }
+
+    public Map<Object, Object> getLocal() {
+        return local;
+    }
+
+    /**
+     * @return a new random id of 22 URL safe characters (132 bits), which can
+     *     neither be guessed nor collide between nodes
+     */
+    public static String newId() {
+        byte[] bytes = new byte[22];
+        random.nextBytes(bytes);
+        char[] id = new char[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            id[i] = ID_CHARS[bytes[i] & 0x3f];
+        }
+        return new String(id);
+    }
+
+    /**
+     * @return true if the id only has characters newId could have made
+     */
+    public static boolean isValidId(String id) {
+        if (id == null || id.isEmpty() || id.length() > 64) {
+            return false;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (!((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-' || c == '_')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
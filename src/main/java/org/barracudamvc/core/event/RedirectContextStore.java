@@ -0,0 +1,33 @@
+package org.barracudamvc.core.event;
+
+/**
+ * <p>Holds the state of an event context across a client side redirect.
+ * When a ClientSideRedirectException is thrown, DefaultEventContext saves the
+ * context in the store and adds the returned id to the redirect URL; the
+ * request that follows the redirect takes the context back out.
+ *
+ * <p>Implementations must be threadsafe. Contexts should expire if they are
+ * never claimed, so that abandoned redirects do not accumulate.
+ *
+ * @see DefaultRedirectContextStore
+ * @see FileRedirectContextStore
+ */
+public interface RedirectContextStore {
+
+    /**
+     * Save a context
+     *
+     * @param context the context to save
+     * @return the id to pass along with the redirect; it must be safe to use
+     *     in a URL as is
+     */
+    public String save(RedirectContext context);
+
+    /**
+     * Remove and return a context. A context can be taken only once.
+     *
+     * @param id the id returned by save
+     * @return the context, or null if the id is unknown or has expired
+     */
+    public RedirectContext take(String id);
+}
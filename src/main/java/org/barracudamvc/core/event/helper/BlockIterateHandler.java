@@ -37,10 +37,14 @@ import org.barracudamvc.core.comp.TemplateDirective;
 import org.barracudamvc.core.comp.ViewContext;
 import org.barracudamvc.core.comp.renderer.TemplateHelper;
 import org.barracudamvc.core.event.*;
+import org.barracudamvc.core.metrics.CountingOutputStream;
+import org.barracudamvc.core.metrics.Metrics;
+import org.barracudamvc.core.metrics.MetricsCollector;
 import org.barracudamvc.core.util.dom.CommaSeparatedDOMWriter;
 import org.barracudamvc.core.util.dom.DOMWriter;
 import org.barracudamvc.core.util.dom.DefaultDOMLoader;
 import org.barracudamvc.core.util.dom.DefaultDOMWriter;
+import org.barracudamvc.core.util.dom.StreamingDOMWriter;
 import org.enhydra.xml.io.OutputOptions;
 import org.w3c.dom.*;
 import org.w3c.dom.CharacterData;
@@ -111,10 +115,8 @@ public abstract class BlockIterateHandler extends DefaultBaseEventListener {
      * Handle the ViewEvent
      */
     public void handleViewEvent(ViewEventContext vec, Document page) throws EventException, ServletException, IOException {
-        long bmillis = 0;
-        if (logger.isInfoEnabled()) {
-            bmillis = System.currentTimeMillis();
-        }
+        MetricsCollector metrics = Metrics.getCollector();
+        long bnanos = (logger.isInfoEnabled() || metrics.isEnabled()) ? System.nanoTime() : 0;
         if (logger.isInfoEnabled()) {
             logger.info("Handling ViewEvent in " + this);
         }
@@ -130,7 +132,8 @@ public abstract class BlockIterateHandler extends DefaultBaseEventListener {
             //returned by getWriter() apparently has no buffer whereas the ServletOutputStream does.
             //This means that using the PrintWriter would cause the message chunks in the response to
             //be extremely small, with each call to print() causing a new chunk to be sent.
-            Writer out = new OutputStreamWriter(resp.getOutputStream());
+            CountingOutputStream counter = null;
+            Writer out;
 
             //give the handler a chance to initialize
             initHandler();
@@ -142,49 +145,78 @@ public abstract class BlockIterateHandler extends DefaultBaseEventListener {
             writer = getDOMWriter();
             writer.setLeaveWriterOpen(true);
 
-            //prepare the response (sets the appropriate headers)
-            writer.prepareResponse(page, resp);
-
-            //saw_020204_1 begin
-            //This is a bit of an ugly hack, but our HTML DOM trees don't have a DOCTYPE node within
-            //them which means we can't print it out via normal means (apparently DOMFormatter
-            //usually does this for us when it encounters a Document node and the appropriate 
-            //OutputOptions. Since we don't want the whole DOM tree to print at once we can't simply
-            //pass the Document node to the DOMWriter (and therefore DOMFormatter).
-            if (writer instanceof DefaultDOMWriter && page.getDoctype() == null) {
-                OutputOptions oo = ((DefaultDOMWriter) writer).getOutputOptions();
-                if (oo == null) {
-                    oo = DefaultDOMWriter.getDefaultOutputOptions(page);
+            //if the head has already gone out (see StreamingDOMWriter.writeHead),
+            //just write the rest of the page after it
+            if (writer instanceof StreamingDOMWriter && ((StreamingDOMWriter) writer).hasWrittenHead(page)) {
+                StreamingDOMWriter sdw = (StreamingDOMWriter) writer;
+                Node child = sdw.getWrittenHead().getNextSibling();
+                counter = sdw.getStartedCounter();
+                out = sdw.resume();
+                while (child != null) {
+                    printNode(writer, child, out, 2, true);
+                    child = (nextNode != null && nextNode.getNodeType() == Node.ELEMENT_NODE ? nextNode : child.getNextSibling());
                 }
+                StreamingDOMWriter.writeEndTag(page.getDocumentElement(), out, true);
 
-                if (!oo.getOmitDocType()) {
-                    if (logger.isDebugEnabled()) {
-                        logger.debug("printing document type header");
-                    }
-                    out.write("<!DOCTYPE ");
-                    out.write(page.getDocumentElement().getNodeName());
+            } else {
+                if (metrics.isEnabled()) {
+                    counter = new CountingOutputStream(resp.getOutputStream());
+                    out = new OutputStreamWriter(counter);
+                } else {
+                    out = new OutputStreamWriter(resp.getOutputStream());
+                }
 
-                    String publicId = oo.getPublicId();
-                    if (publicId != null) {
-                        out.write(" PUBLIC \"" + publicId + "\"");
+                //prepare the response (sets the appropriate headers)
+                writer.prepareResponse(page, resp);
+
+                //saw_020204_1 begin
+                //This is a bit of an ugly hack, but our HTML DOM trees don't have a DOCTYPE node within
+                //them which means we can't print it out via normal means (apparently DOMFormatter
+                //usually does this for us when it encounters a Document node and the appropriate 
+                //OutputOptions. Since we don't want the whole DOM tree to print at once we can't simply
+                //pass the Document node to the DOMWriter (and therefore DOMFormatter).
+                if (writer instanceof DefaultDOMWriter && page.getDoctype() == null) {
+                    OutputOptions oo = ((DefaultDOMWriter) writer).getOutputOptions();
+                    if (oo == null) {
+                        oo = DefaultDOMWriter.getDefaultOutputOptions(page);
                     }
 
-                    String systemId = oo.getSystemId();
-                    if (systemId != null) {
-                        out.write(" \"" + systemId + "\"");
-                    }
+                    if (!oo.getOmitDocType()) {
+                        if (logger.isDebugEnabled()) {
+                            logger.debug("printing document type header");
+                        }
+                        out.write("<!DOCTYPE ");
+                        out.write(page.getDocumentElement().getNodeName());
 
-                    out.write(">");
+                        String publicId = oo.getPublicId();
+                        if (publicId != null) {
+                            out.write(" PUBLIC \"" + publicId + "\"");
+                        }
+
+                        String systemId = oo.getSystemId();
+                        if (systemId != null) {
+                            out.write(" \"" + systemId + "\"");
+                        }
+
+                        out.write(">");
+                    }
                 }
-            }
-            //saw_020204_1 end
+                //saw_020204_1 end
 
-            //finally, start processing the document            
-            printNode(writer, page, out, 0, (page instanceof HTMLDocument));    //csc_012804_1
+                //finally, start processing the document            
+                printNode(writer, page, out, 0, (page instanceof HTMLDocument));    //csc_012804_1
+            }
             out.close();
 
+            long elapsed = System.nanoTime() - bnanos;
+            if (metrics.isEnabled()) {
+                metrics.recordTime(Metrics.PHASE_BLOCK_ITERATE, elapsed);
+                if (counter != null) {
+                    metrics.recordValue(Metrics.RESPONSE_BYTES, counter.getCount());
+                }
+            }
             if (logger.isInfoEnabled()) {
-                logger.info("ViewEvent handled! (rendered in " + (System.currentTimeMillis() - bmillis) + " millis)");
+                logger.info("ViewEvent handled! (rendered in " + (elapsed / 1000000) + " millis)");
             }
 
         } catch (RenderException e) {
@@ -505,14 +537,7 @@ public abstract class BlockIterateHandler extends DefaultBaseEventListener {
                         if (logger.isDebugEnabled()) {
                             logger.debug("...write start tag: <" + tag + ">");
                         }
-                        out.write("<" + el.getTagName());
-                        String sep = " ";
-                        NamedNodeMap nnm = el.getAttributes();
-                        for (int i = 0, max = nnm.getLength(); i < max; i++) {
-                            Attr attr = (Attr) nnm.item(i);
-                            out.write(sep + attr);
-                        }
-                        out.write(">");
+                        StreamingDOMWriter.writeStartTag(el, out);
                     }
 
                     //print the children
@@ -535,17 +560,10 @@ public abstract class BlockIterateHandler extends DefaultBaseEventListener {
 
                     //print the closing tag (if it's not forbidden, as the given html tags are)
                     if (printNode) {
-                        if (!isHtml
-                                || (!tag.equals("area") && !tag.equals("base") && !tag.equals("basefont")
-                                && !tag.equals("br") && !tag.equals("col") && !tag.equals("frame")
-                                && !tag.equals("hr") && !tag.equals("image") && !tag.equals("input")
-                                && !tag.equals("isindex") && !tag.equals("link") && !tag.equals("meta")
-                                && !tag.equals("param"))) {
-                            if (logger.isDebugEnabled()) {
-                                logger.debug("...write close tag: </" + tag + ">");
-                            }
-                            out.write("</" + el.getTagName() + ">");
+                        if (logger.isDebugEnabled()) {
+                            logger.debug("...write close tag: </" + tag + ">");
                         }
+                        StreamingDOMWriter.writeEndTag(el, out, isHtml);
                     }
                     if (isCSVRow) {
                         out.write(csvEOL);
@@ -20,23 +20,34 @@
 package org.barracudamvc.core.event.helper;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.servlet.ServletException;
 
 import org.apache.log4j.*;
+import org.barracudamvc.core.comp.AbstractBComponent;
 import org.barracudamvc.core.comp.BComponent;
+import org.barracudamvc.core.comp.BContainer;
+import org.barracudamvc.core.comp.BCssResource;
+import org.barracudamvc.core.comp.BScript;
+import org.barracudamvc.core.comp.BScriptResource;
 import org.barracudamvc.core.comp.BlockIterator;
 import org.barracudamvc.core.comp.DefaultViewContext;
 import org.barracudamvc.core.comp.RenderException;
 import org.barracudamvc.core.comp.TemplateDirective;
+import org.barracudamvc.core.comp.View;
 import org.barracudamvc.core.comp.ViewContext;
 import org.barracudamvc.core.event.*;
 import org.barracudamvc.core.helper.servlet.ScriptDetector;
+import org.barracudamvc.core.metrics.Metrics;
+import org.barracudamvc.core.metrics.MetricsCollector;
 import org.barracudamvc.core.util.dom.DOMWriter;
 import org.barracudamvc.core.util.dom.DefaultDOMWriter;
+import org.barracudamvc.core.util.dom.StreamingDOMWriter;
 import org.barracudamvc.plankton.data.ObjectRepository;
 import org.w3c.dom.Document;
+import org.w3c.dom.Node;
 
 /**
  * <p>A very simple view handler that provides a default implementation
@@ -62,6 +73,9 @@ public abstract class DefaultViewHandler extends DefaultBaseEventListener {
     //csc_061202.1_end
     protected boolean recycleChildren = false;
     protected ViewContext vc = null;    //csc_030503.1
+    //the DOMWriter for the view being handled (so a head written before
+    //rendering and the rest of the page go through the same writer)
+    private DOMWriter domWriter = null;
 
     /**
      * Public noargs constructor
@@ -121,7 +135,9 @@ public abstract class DefaultViewHandler extends DefaultBaseEventListener {
 
     /**
      * <p>Get a DOMWriter. By default, we use a DefaultDOMWriter. If
-     * you'd like to use something else, override this method.
+     * you'd like to use something else, override this method (ie. return
+     * a StreamingDOMWriter to have large pages sent to the client a
+     * subtree at a time).
      *
      * @return a DOMWriter to be used to render the DOM
      */
@@ -170,14 +186,12 @@ public abstract class DefaultViewHandler extends DefaultBaseEventListener {
      */
     @Override
     public void handleViewEvent(ViewEventContext vec) throws EventException, ServletException, IOException {
-        long bmillis = 0;
-        long smillis = 0;
-        long emillis = 0;
-        long elapsed1 = 0;
-        long elapsed2 = 0;
-        if (logger.isInfoEnabled()) {
-            bmillis = System.currentTimeMillis();
-        }
+        //phase timings are taken when they are either logged or collected
+        MetricsCollector metrics = Metrics.getCollector();
+        boolean timed = logger.isInfoEnabled() || metrics.isEnabled();
+        long bnanos = timed ? System.nanoTime() : 0;
+        long renderNanos = 0;
+        long writeNanos = 0;
         if (logger.isInfoEnabled()) {
             logger.info("Handling ViewEvent in " + this);
         }
@@ -214,36 +228,43 @@ public abstract class DefaultViewHandler extends DefaultBaseEventListener {
             if (logger.isDebugEnabled()) {
                 logger.debug("Pre-component render");
             }
-            if (logger.isDebugEnabled()) {
-                smillis = System.currentTimeMillis();
-            }
+            long snanos = timed ? System.nanoTime() : 0;
             preCompRender(broot);
-            if (logger.isDebugEnabled()) {
-                elapsed1 = System.currentTimeMillis() - smillis;
+            if (timed) {
+                phase(metrics, Metrics.PHASE_PRE_RENDER, snanos);
+            }
+
+            //if the writer is set up for it, send the head while the rest of the
+            //page is being rendered
+            domWriter = this.getDOMWriter();
+            if (domWriter instanceof StreamingDOMWriter && ((StreamingDOMWriter) domWriter).getWriteHeadEarly()
+                    && !ScriptDetector.DETECT_CLIENT_SCRIPTING_ENABLED) {
+                List<Node> boundNodes = new ArrayList<Node>();
+                if (collectBoundNodes(broot, boundNodes)
+                        && ((StreamingDOMWriter) domWriter).writeHead(doc, vec.getResponse(), boundNodes)
+                        && logger.isDebugEnabled()) {
+                    logger.debug("Wrote the head ahead of rendering");
+                }
             }
 
             //now render the component
             if (logger.isDebugEnabled()) {
                 logger.debug("Rendering component hierarchy");
             }
-            if (logger.isDebugEnabled()) {
-                smillis = System.currentTimeMillis();
-            }
+            snanos = timed ? System.nanoTime() : 0;
             broot.render(vc);
-            if (logger.isDebugEnabled()) {
-                elapsed1 = System.currentTimeMillis() - smillis;
+            if (timed) {
+                renderNanos = phase(metrics, Metrics.PHASE_RENDER, snanos);
             }
 
             //allow for post-rendering processing
             if (logger.isDebugEnabled()) {
                 logger.debug("Post-component render");
             }
-            if (logger.isDebugEnabled()) {
-                smillis = System.currentTimeMillis();
-            }
+            snanos = timed ? System.nanoTime() : 0;
             postCompRender(broot);
-            if (logger.isDebugEnabled()) {
-                elapsed1 = System.currentTimeMillis() - smillis;
+            if (timed) {
+                phase(metrics, Metrics.PHASE_POST_RENDER, snanos);
             }
 
             //its possible the implementor may want to recycle children...if so, remove them
@@ -289,13 +310,10 @@ public abstract class DefaultViewHandler extends DefaultBaseEventListener {
                 if (logger.isDebugEnabled()) {
                     logger.debug("Rendering the DOM");
                 }
-                if (logger.isInfoEnabled()) {
-                    smillis = System.currentTimeMillis();
-                }
-                this.getDOMWriter().write(doc, vec.getResponse());
-                if (logger.isInfoEnabled()) {
-                    elapsed2 = System.currentTimeMillis() - smillis;
-                    emillis = System.currentTimeMillis();
+                snanos = timed ? System.nanoTime() : 0;
+                domWriter.write(doc, vec.getResponse());
+                if (timed) {
+                    writeNanos = phase(metrics, Metrics.PHASE_SERIALIZE, snanos);
                 }
                 if (logger.isDebugEnabled()) {
                     logger.debug("Finished rendering the DOM");
@@ -322,11 +340,54 @@ public abstract class DefaultViewHandler extends DefaultBaseEventListener {
             //finally, allow for any cleanup
             cleanup();
             setViewContext(null); //csc_030503.1
+            domWriter = null;
         }
 
         if (logger.isInfoEnabled()) {
-            logger.info("ViewEvent handled! (rendered in " + (elapsed1) + "/written in " + (elapsed2) + " of " + (emillis - bmillis) + " millis)");
+            logger.info("ViewEvent handled! (rendered in " + (renderNanos / 1000000) + "/written in " + (writeNanos / 1000000) + " of " + ((System.nanoTime() - bnanos) / 1000000) + " millis)");
+        }
+    }
+
+    /**
+     * Collect the nodes the components in a hierarchy are bound to
+     *
+     * @return false if the hierarchy has a component that renders into the
+     *         head wherever it is bound (scripts and resources)
+     */
+    private static boolean collectBoundNodes(BContainer comp, List<Node> nodes) {
+        if (comp instanceof BScript || comp instanceof BScriptResource || comp instanceof BCssResource) {
+            return false;
+        }
+        if (comp instanceof AbstractBComponent) {
+            List<View> views = ((AbstractBComponent) comp).getViews();
+            if (views != null) {
+                for (View view : views) {
+                    nodes.add(view.getNode());
+                }
+            }
+        }
+        List<BContainer> children = comp.getChildren();
+        if (children != null) {
+            for (BContainer child : children) {
+                if (!collectBoundNodes(child, nodes)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Record the time taken by a view phase
+     *
+     * @return the elapsed nanoseconds since start
+     */
+    private static long phase(MetricsCollector metrics, String name, long start) {
+        long elapsed = System.nanoTime() - start;
+        if (metrics.isEnabled()) {
+            metrics.recordTime(name, elapsed);
         }
+        return elapsed;
     }
 
     class LocalBlockIterateHandler extends BlockIterateHandler {
@@ -348,7 +409,7 @@ public abstract class DefaultViewHandler extends DefaultBaseEventListener {
          */
         @Override
         public DOMWriter getDOMWriter() {
-            return DefaultViewHandler.this.getDOMWriter();
+            return (domWriter != null ? domWriter : DefaultViewHandler.this.getDOMWriter());
         }
 
         /**
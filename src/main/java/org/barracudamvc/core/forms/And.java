@@ -181,7 +181,7 @@ public class And extends AbstractFormValidator {
      */
     @Override
     public void validate(FormElement element, FormMap map, boolean deferExceptions) throws ValidationException, DeferredValidationException {
-        DeferredValidationException validationExceptions = new DeferredValidationException();
+        DeferredValidationException validationExceptions = null;
 
         for (FormValidator validator : validators) {
             try {
@@ -193,10 +193,13 @@ public class And extends AbstractFormValidator {
                 }
 
             } catch (ValidationException validationException) {
+                if (validationExceptions == null) {
+                    validationExceptions = new DeferredValidationException();
+                }
                 validationExceptions.addSubException(validationException);
             }
         }
-        if (validationExceptions.hasSubExceptions()) {
+        if (validationExceptions != null) {
             throw validationExceptions;
         }
     }
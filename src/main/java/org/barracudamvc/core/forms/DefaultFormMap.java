@@ -65,6 +65,11 @@ public class DefaultFormMap implements FormMap, AcceptsUnparsableElements {
     protected Set<FormElement> withParseErrors = new HashSet<>();
 
     protected FormMapper formMapper = null;
+    protected ValidationEngine validationEngine = null;
+    protected int definitionVersion = 0;
+    private FormSchema schema = null;
+    private FormElement[] schemaElements = null;
+    private int schemaVersion = -1;
 
     public DefaultFormMap() {
     }
@@ -78,6 +83,17 @@ public class DefaultFormMap implements FormMap, AcceptsUnparsableElements {
         this.setFormMapper(new PrefixFormMapper(iprefix));
     }
 
+    /**
+     * Schema constructor. The form is defined from a compiled schema, which
+     * is much cheaper than repeating the definition for every request.
+     *
+     * @param ischema the compiled form definition
+     */
+    public DefaultFormMap(FormSchema ischema) {
+        ischema.defineIn(this);
+        bindSchema(ischema);
+    }
+
     //--------------- FormMap ------------------------------------
     /**
      * This defines an element to be mapped by this form, using
@@ -111,7 +127,9 @@ public class DefaultFormMap implements FormMap, AcceptsUnparsableElements {
         if (key == null) {
             return element; //eliminate the obvious (TreeMap doesn't like calls to get(null))
         }
-        elements.put(key, element);
+        if (elements.put(key, element) != element) {
+            definitionVersion++;
+        }
         element.setParentForm(this);
         return element;
     }
@@ -149,16 +167,18 @@ public class DefaultFormMap implements FormMap, AcceptsUnparsableElements {
                     + " before adding a validator to it.");
         }
 
+        //build a new And rather than adding to the existing one, which may be
+        //shared with a FormSchema and the other forms created from it
         FormValidator existingValidator = element.getValidator();
         if (existingValidator == null) {
             element.setValidator(validator);
+        } else if (existingValidator.getClass() == And.class) {
+            And existingAnd = (And) existingValidator;
+            element.setValidator(new And(existingAnd.getSubValidators(), existingAnd.getErrorMessage()).addValidator(validator));
         } else {
-            if (existingValidator instanceof And) {
-                ((And) existingValidator).addValidator(validator);
-            } else {
-                element.setValidator(new And(existingValidator, validator));
-            }
+            element.setValidator(new And(existingValidator, validator));
         }
+        definitionVersion++;
     }
 
     /**
@@ -214,7 +234,7 @@ public class DefaultFormMap implements FormMap, AcceptsUnparsableElements {
             return (Map) ((HttpRequest) request).getContentValues();
         } else {
             Enumeration<String> e = request.getParameterNames();
-            Map<String, Object> map = new TreeMap<>();
+            Map<String, Object> map = new LinkedHashMap<>();
             while (e.hasMoreElements()) {
                 String key = e.nextElement();
                 map.put(key, getValue(request, key));
@@ -287,13 +307,14 @@ public class DefaultFormMap implements FormMap, AcceptsUnparsableElements {
         if (localLogger.isInfoEnabled()) {
             localLogger.info("Validating FormMap (form & elements)");
         }
-        DeferredValidationException dve = new DeferredValidationException();
+        DeferredValidationException dve = null;
 
         try {
             //validate each individual element
             try {
                 validateElements(deferExceptions);
             } catch (DeferredValidationException e) {
+                dve = new DeferredValidationException();
                 dve.addSubException(e);
             }
 
@@ -301,6 +322,9 @@ public class DefaultFormMap implements FormMap, AcceptsUnparsableElements {
             try {
                 validateForm(deferExceptions);
             } catch (DeferredValidationException e) {
+                if (dve == null) {
+                    dve = new DeferredValidationException();
+                }
                 dve.addSubException(e);
             }
         } catch (ValidationException e) {
@@ -310,7 +334,7 @@ public class DefaultFormMap implements FormMap, AcceptsUnparsableElements {
 
         //now, if we have generated a ValidationExceptions,
         //rethrow it
-        if (dve.hasSubExceptions()) {
+        if (dve != null) {
             ErrorManager.handleError(dve);
             throw dve;
         }
@@ -330,8 +354,6 @@ public class DefaultFormMap implements FormMap, AcceptsUnparsableElements {
      */
     @Override
     public FormMap validateElements(boolean deferExceptions) throws ValidationException {
-        DeferredValidationException dve = new DeferredValidationException();
-
         // see if we are going to require the elements to have a certain infix 
         // - basically, in the case of a UIDFormMapper, we only want to 
         // consider elemetns that were actually mapped (and thus have the :: 
@@ -341,11 +363,22 @@ public class DefaultFormMap implements FormMap, AcceptsUnparsableElements {
             infix = UIDFormMapper.UID_TOKEN;
         }
 
+        //hand the elements over to the validation engine if there is one
+        if (validationEngine != null) {
+            List<FormElement> toValidate = new ArrayList<>(elements.size());
+            for (FormElement element : elements.values()) {
+                if (infix == null || element.getKey().indexOf(infix) >= 0) {
+                    toValidate.add(element);
+                }
+            }
+            validationEngine.validateElements(toValidate, this, deferExceptions);
+            return this;
+        }
+
         //validate each individual element
-        Iterator it = elements.values().iterator();
+        DeferredValidationException dve = null;
         for (FormElement element : elements.values()) {
             try {
-                element = (FormElement) it.next();
                 if (infix != null && element.getKey().indexOf(infix) < 0) {
                     continue;
                 }
@@ -355,8 +388,14 @@ public class DefaultFormMap implements FormMap, AcceptsUnparsableElements {
                 }
 
             } catch (DeferredValidationException e) {
+                if (dve == null) {
+                    dve = new DeferredValidationException();
+                }
                 dve.addSubException(e);
             } catch (ValidationException validationException) {
+                if (dve == null) {
+                    dve = new DeferredValidationException();
+                }
                 dve.addSubException(validationException);
                 if (!deferExceptions) {
                     throw validationException;
@@ -366,7 +405,7 @@ public class DefaultFormMap implements FormMap, AcceptsUnparsableElements {
 
         //now, if we have generated a ValidationExceptions,
         //rethrow it
-        if (dve.hasSubExceptions()) {
+        if (dve != null) {
             throw dve;
         }
         return this;
@@ -385,22 +424,23 @@ public class DefaultFormMap implements FormMap, AcceptsUnparsableElements {
      */
     @Override
     public FormMap validateForm(boolean deferExceptions) throws ValidationException {
-        DeferredValidationException dfve = new DeferredValidationException();
+        DeferredValidationException dfve = null;
 
         for (FormValidator fv : validators) {
             try {
                 fv.validate(null, this, deferExceptions);
-            } catch (DeferredValidationException e) {
-                dfve.addSubException(e);
             } catch (ValidationException ve) {
+                if (dfve == null) {
+                    dfve = new DeferredValidationException();
+                }
                 dfve.addSubException(ve);
-                if (!deferExceptions) {
+                if (!deferExceptions && !(ve instanceof DeferredValidationException)) {
                     throw ve;
                 }
             }
         }
 
-        if (dfve.hasSubExceptions()) {
+        if (dfve != null) {
             throw dfve;
         }
         return this;
@@ -550,6 +590,53 @@ public class DefaultFormMap implements FormMap, AcceptsUnparsableElements {
         formMapper = imapper;
     }
 
+    /**
+     * Get the compiled schema for the current definition of this form. The
+     * schema is compiled again only after the definition has changed.
+     *
+     * @return the compiled form definition
+     */
+    public FormSchema getSchema() {
+        if (schema == null || schemaVersion != definitionVersion) {
+            bindSchema(FormSchema.compile(this));
+        }
+        return schema;
+    }
+
+    /**
+     * @return this form's elements, in the order of the elements of
+     *         {@link #getSchema()}
+     */
+    FormElement[] getSchemaElements() {
+        getSchema();
+        return schemaElements;
+    }
+
+    private void bindSchema(FormSchema ischema) {
+        FormElement[] bound = new FormElement[ischema.size()];
+        for (int i = 0; i < bound.length; i++) {
+            bound[i] = elements.get(ischema.getKey(i));
+        }
+        schema = ischema;
+        schemaElements = bound;
+        schemaVersion = definitionVersion;
+    }
+
+    /**
+     * Validate the elements of this form with the given engine rather than
+     * one after another on the calling thread (see {@link ValidationEngine}).
+     * Pass null to go back to sequential validation.
+     *
+     * @param iengine the engine to validate the elements with
+     */
+    public void setValidationEngine(ValidationEngine iengine) {
+        validationEngine = iengine;
+    }
+
+    public ValidationEngine getValidationEngine() {
+        return validationEngine;
+    }
+
     @Override
     public FormMapper getFormMapper() {
         if (formMapper == null) {
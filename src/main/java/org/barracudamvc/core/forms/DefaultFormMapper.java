@@ -75,6 +75,10 @@ public class DefaultFormMapper implements FormMapper {
 
     @Override
     public FormMap mapForm(FormMap fm, Map<String, Object> paramMap) {
+        if (fm instanceof DefaultFormMap && usesSchema()) {
+            mapFormWithSchema((DefaultFormMap) fm, paramMap);
+            return fm;
+        }
         this.preMap();
         if (iterateOverParams) {
             for (Map.Entry<String, Object> entry : paramMap.entrySet()) {
@@ -93,6 +97,63 @@ public class DefaultFormMapper implements FormMapper {
         return fm;
     }
 
+    /**
+     * Map a form in a single pass over the parameters, resolving them with the
+     * form's compiled schema. This does exactly what the generic mapping does
+     * for a plain DefaultFormMapper or PrefixFormMapper.
+     */
+    private void mapFormWithSchema(DefaultFormMap fm, Map<String, Object> paramMap) {
+        Map<String, Integer> index = fm.getSchema().getParamIndex(this);
+        FormElement[] els = fm.getSchemaElements();
+        if (iterateOverParams) {
+            //only the elements named by the parameters get mapped, in parameter order
+            for (Map.Entry<String, Object> entry : paramMap.entrySet()) {
+                Integer i = index.get(entry.getKey());
+                if (i != null) {
+                    populate(els[i], entry.getValue(), fm, true);
+                    mappedElements.put(els[i].getKey(), els[i]);
+                }
+            }
+        } else {
+            //every element gets mapped, whether or not it has a parameter
+            Object[] values = new Object[els.length];
+            boolean[] present = new boolean[els.length];
+            for (Map.Entry<String, Object> entry : paramMap.entrySet()) {
+                Integer i = index.get(entry.getKey());
+                if (i != null) {
+                    values[i] = entry.getValue();
+                    present[i] = true;
+                }
+            }
+            for (int i = 0; i < els.length; i++) {
+                populate(els[i], values[i], fm, present[i]);
+                mappedElements.put(els[i].getKey(), els[i]);
+            }
+        }
+    }
+
+    /**
+     * Only the stock mappers are known to resolve parameters purely by name,
+     * so subclasses keep using the overridable mapping hooks
+     */
+    boolean usesSchema() {
+        return getClass() == DefaultFormMapper.class;
+    }
+
+    /**
+     * @return the name of the parameter that maps to the given element key
+     */
+    String getParamKey(String elementKey) {
+        return mangleKey(elementKey);
+    }
+
+    /**
+     * @return a value that is equal for mappers which name parameters alike
+     */
+    Object getParamNaming() {
+        return getClass();
+    }
+
     protected void storeValueFieldElement(FormMap fm, String key, Object o, boolean isPresent) {
         //get the filter associated with the key
         FormElement el = getElementForMapping(fm, key);
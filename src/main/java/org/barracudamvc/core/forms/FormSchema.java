@@ -0,0 +1,151 @@
+package org.barracudamvc.core.forms;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.barracudamvc.core.forms.parsers.FormElementParser;
+
+/**
+ * <p>An immutable, compiled form definition: the element keys in form order,
+ * a prototype of every element (key, name, parser, default value, validator
+ * chain) and the form level validators.
+ *
+ * <p>A schema is compiled once from a form that has been defined in the usual
+ * way, and can then be shared between threads. A form created with
+ * {@link DefaultFormMap#DefaultFormMap(FormSchema)} is defined from the schema
+ * without repeating all the defineElement calls, and the mappers resolve the
+ * incoming parameters against the schema's pre-built key index in a single
+ * pass instead of looking every element up by key.
+ *
+ * <p>Validators are shared, not copied, between the schema and the forms
+ * created from it, so they must be stateless (as the standard ones are).
+ */
+public final class FormSchema {
+
+    private final String[] keys;
+    private final FormElement[] prototypes;
+    private final FormValidator[] formValidators;
+    private final Map<String, Integer> keyIndex;
+    private final ConcurrentMap<Object, Map<String, Integer>> paramIndexes = new ConcurrentHashMap<>();
+
+    private FormSchema(String[] ikeys, FormElement[] iprototypes, FormValidator[] iformValidators) {
+        keys = ikeys;
+        prototypes = iprototypes;
+        formValidators = iformValidators;
+        Map<String, Integer> index = new HashMap<>(keys.length * 2);
+        for (int i = 0; i < keys.length; i++) {
+            index.put(keys[i], i);
+        }
+        keyIndex = Collections.unmodifiableMap(index);
+    }
+
+    /**
+     * Compile the current definition of a form. Later changes to the form
+     * do not affect the schema.
+     *
+     * @param fm the defined form
+     * @return the compiled schema
+     */
+    public static FormSchema compile(FormMap fm) {
+        Map<String, FormElement> elements = fm.getElements();
+        String[] keys = new String[elements.size()];
+        FormElement[] prototypes = new FormElement[keys.length];
+        int i = 0;
+        for (Map.Entry<String, FormElement> entry : elements.entrySet()) {
+            keys[i] = entry.getKey();
+            prototypes[i] = new DefaultFormElement(entry.getValue());
+            i++;
+        }
+        FormValidator[] formValidators = new FormValidator[0];
+        if (fm instanceof DefaultFormMap) {
+            Set<FormValidator> validators = ((DefaultFormMap) fm).getValidators();
+            formValidators = validators.toArray(new FormValidator[validators.size()]);
+        }
+        return new FormSchema(keys, prototypes, formValidators);
+    }
+
+    /**
+     * @return the number of elements in the schema
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * @return the key of the element at the given position
+     */
+    public String getKey(int i) {
+        return keys[i];
+    }
+
+    /**
+     * @return the position of the element with the given key, or -1
+     */
+    public int indexOf(String key) {
+        Integer i = keyIndex.get(key);
+        return i == null ? -1 : i;
+    }
+
+    /**
+     * @return a new element for the given position, defined like the original
+     */
+    public FormElement newElement(int i) {
+        return new DefaultFormElement(prototypes[i]);
+    }
+
+    /**
+     * @return the parser of the element at the given position
+     */
+    public FormElementParser<?> getType(int i) {
+        return prototypes[i].getType();
+    }
+
+    /**
+     * @return the validator chain of the element at the given position
+     */
+    public FormValidator getValidator(int i) {
+        return prototypes[i].getValidator();
+    }
+
+    /**
+     * @return the form level validators
+     */
+    public FormValidator[] getFormValidators() {
+        return formValidators.clone();
+    }
+
+    /**
+     * Get the index from request parameter names to element positions for a
+     * mapper. Mappers that name parameters the same way share one index.
+     */
+    Map<String, Integer> getParamIndex(DefaultFormMapper mapper) {
+        Object naming = mapper.getParamNaming();
+        Map<String, Integer> index = paramIndexes.get(naming);
+        if (index == null) {
+            index = new HashMap<>(keys.length * 2);
+            for (int i = 0; i < keys.length; i++) {
+                index.put(mapper.getParamKey(keys[i]), i);
+            }
+            Map<String, Integer> prev = paramIndexes.putIfAbsent(naming, index);
+            if (prev != null) {
+                index = prev;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Define the schema's elements and form validators in a form
+     */
+    void defineIn(DefaultFormMap fm) {
+        for (int i = 0; i < keys.length; i++) {
+            fm.defineElement(keys[i], newElement(i));
+        }
+        for (FormValidator fv : formValidators) {
+            fm.defineValidator(fv);
+        }
+    }
+}
@@ -71,6 +71,18 @@ public class PrefixFormMapper extends DefaultFormMapper {
         return prefix;
     }
 
+    boolean usesSchema() {
+        return getClass() == PrefixFormMapper.class;
+    }
+
+    String getParamKey(String elementKey) {
+        return prefix + elementKey;
+    }
+
+    Object getParamNaming() {
+        return Arrays.asList(getClass(), prefix);
+    }
+
     //------------------------------------------------------------
     //protected methods for custom mappers to override
     //------------------------------------------------------------
@@ -0,0 +1,380 @@
+package org.barracudamvc.core.forms;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.log4j.Logger;
+
+/**
+ * <p>An opt-in engine for validating the elements of a form concurrently. Install
+ * it on a form with {@link DefaultFormMap#setValidationEngine(ValidationEngine)};
+ * a single engine is meant to be shared by many forms.
+ *
+ * <p>Each element only validates its own value, so the element validators are
+ * independent of one another and are run on a bounded executor. Form level
+ * validators compare elements, so they still run afterwards, on the calling
+ * thread. Errors are reported in the order of the form's elements no matter
+ * which validator finishes first, so ErrorManager sees the same exception tree
+ * as with sequential validation.
+ *
+ * <p>The engine evaluates And, Or and Not itself rather than calling their
+ * validate methods. This lets it time each leaf validator and, when short
+ * circuiting is enabled, stop an And at its first failing sub-validator.
+ * Subclasses of the composites are treated as ordinary validators.
+ *
+ * <p>Element validators run on pool threads, so they must not rely on
+ * thread-bound state (such as the local ObjectRepository) and must only read
+ * from the form.
+ */
+public class ValidationEngine {
+
+    protected static final Logger logger = Logger.getLogger(ValidationEngine.class.getName());
+
+    /**
+     * forms with fewer elements than this are validated on the calling thread
+     */
+    public static int DEFAULT_PARALLEL_THRESHOLD = 16;
+
+    protected final ExecutorService executor;
+    protected final boolean ownsExecutor;
+    protected boolean shortCircuit = true;
+    protected int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+    protected final ConcurrentMap<String, Timing> timings = new ConcurrentHashMap<>();
+
+    /**
+     * Create an engine with its own pool of daemon threads. When the pool and
+     * its queue are full (or the engine has been shut down), the calling
+     * thread validates the element itself.
+     *
+     * @param threads the number of pool threads
+     * @param queueSize the number of elements that may wait for a thread
+     */
+    public ValidationEngine(int threads, int queueSize) {
+        this(new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(queueSize), new DaemonThreadFactory(),
+                new ThreadPoolExecutor.AbortPolicy()), true);
+    }
+
+    /**
+     * Create an engine that runs on an existing executor. The executor
+     * should be bounded; it is not shut down by the engine.
+     *
+     * @param iexecutor the executor the element validators run on
+     */
+    public ValidationEngine(ExecutorService iexecutor) {
+        this(iexecutor, false);
+    }
+
+    private ValidationEngine(ExecutorService iexecutor, boolean iownsExecutor) {
+        executor = iexecutor;
+        ownsExecutor = iownsExecutor;
+    }
+
+    /**
+     * Specify whether an And should stop at its first failing sub-validator
+     * (the default). When false, every sub-validator runs and all of their
+     * errors are reported, just as And.validate does.
+     */
+    public ValidationEngine setShortCircuit(boolean val) {
+        shortCircuit = val;
+        return this;
+    }
+
+    public boolean isShortCircuit() {
+        return shortCircuit;
+    }
+
+    /**
+     * Set the number of elements a form needs before its elements are
+     * validated concurrently
+     */
+    public ValidationEngine setParallelThreshold(int val) {
+        parallelThreshold = val;
+        return this;
+    }
+
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Validate the given elements. The exceptions thrown match those of
+     * {@link DefaultFormMap#validateElements(boolean)}: a
+     * DeferredValidationException holding the failures in element order,
+     * or, when exceptions are not deferred, the first plain
+     * ValidationException.
+     *
+     * @param elements the elements to validate, in form order
+     * @param map the form the elements belong to
+     * @param deferExceptions do we want to deferValidation exceptions
+     * @throws ValidationException if any element is invalid
+     */
+    public void validateElements(List<FormElement> elements, FormMap map, boolean deferExceptions) throws ValidationException {
+        ValidationException[] results = new ValidationException[elements.size()];
+        if (elements.size() < parallelThreshold || executor.isShutdown()) {
+            for (int i = 0; i < results.length; i++) {
+                results[i] = validateElement(elements.get(i), map, deferExceptions);
+            }
+        } else {
+            runConcurrently(elements, map, deferExceptions, results);
+        }
+
+        DeferredValidationException dve = null;
+        for (ValidationException e : results) {
+            if (e == null) {
+                continue;
+            }
+            if (dve == null) {
+                dve = new DeferredValidationException();
+            }
+            dve.addSubException(e);
+            if (!deferExceptions && !(e instanceof DeferredValidationException)) {
+                throw e;
+            }
+        }
+        if (dve != null) {
+            throw dve;
+        }
+    }
+
+    private void runConcurrently(final List<FormElement> elements, final FormMap map, final boolean deferExceptions, ValidationException[] results) throws ValidationException {
+        List<Future<ValidationException>> futures = new ArrayList<>(results.length);
+        try {
+            // the last element is validated here rather than left idle waiting
+            for (int i = 0; i < results.length - 1; i++) {
+                final FormElement element = elements.get(i);
+                Callable<ValidationException> task = () -> validateElement(element, map, deferExceptions);
+                try {
+                    futures.add(executor.submit(task));
+                } catch (RejectedExecutionException e) {
+                    //the pool is full or has been shut down; validate it here
+                    //(a CallerRunsPolicy would quietly drop it after shutdown,
+                    //leaving us waiting on a future that never completes)
+                    FutureTask<ValidationException> inline = new FutureTask<>(task);
+                    inline.run();
+                    futures.add(inline);
+                }
+            }
+            results[results.length - 1] = validateElement(elements.get(results.length - 1), map, deferExceptions);
+            for (int i = 0; i < futures.size(); i++) {
+                results[i] = futures.get(i).get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel(futures);
+            throw new UnableToValidateException(map, "Interrupted while validating", e);
+        } catch (ExecutionException e) {
+            cancel(futures);
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new UnableToValidateException(map, "Error validating", (Exception) cause);
+        }
+    }
+
+    private static void cancel(List<Future<ValidationException>> futures) {
+        for (Future<ValidationException> f : futures) {
+            f.cancel(true);
+        }
+    }
+
+    /**
+     * @return the exception for an invalid element, or null if it is valid
+     */
+    protected ValidationException validateElement(FormElement element, FormMap map, boolean deferExceptions) {
+        FormValidator fv = element.getValidator();
+        if (fv == null) {
+            return null;
+        }
+        try {
+            validate(fv, element, map, deferExceptions);
+            return null;
+        } catch (ValidationException e) {
+            return e;
+        }
+    }
+
+    /**
+     * Run a validator, evaluating the And/Or/Not composites here
+     */
+    protected void validate(FormValidator fv, FormElement element, FormMap map, boolean deferExceptions) throws ValidationException {
+        Class<?> cl = fv.getClass();
+        if (cl == And.class) {
+            validateAnd((And) fv, element, map, deferExceptions);
+        } else if (cl == Or.class) {
+            validateOr((Or) fv, element, map, deferExceptions);
+        } else if (cl == Not.class) {
+            validateNot((Not) fv, element, map, deferExceptions);
+        } else {
+            long start = System.nanoTime();
+            try {
+                fv.validate(element, map, deferExceptions);
+            } finally {
+                record(cl.getName(), System.nanoTime() - start);
+            }
+        }
+    }
+
+    private void validateAnd(And and, FormElement element, FormMap map, boolean deferExceptions) throws ValidationException {
+        DeferredValidationException dve = null;
+        for (FormValidator sub : and.getSubValidators()) {
+            try {
+                if (sub == null) {
+                    throw and.generateException(element, deferExceptions, "A given Validator was null");
+                }
+                validate(sub, element, map, deferExceptions);
+            } catch (ValidationException e) {
+                if (dve == null) {
+                    dve = new DeferredValidationException();
+                }
+                dve.addSubException(e);
+                if (shortCircuit) {
+                    break;
+                }
+            }
+        }
+        if (dve != null) {
+            throw dve;
+        }
+    }
+
+    private void validateOr(Or or, FormElement element, FormMap map, boolean deferExceptions) throws ValidationException {
+        FormValidator[] subs = or.getSubValidators();
+        DeferredValidationException dve = null;
+        int exCount = 0;
+        for (int i = 0; i < subs.length; i++) {
+            if (subs[i] == null) {
+                exCount = subs.length;
+                break;
+            }
+            try {
+                validate(subs[i], element, map, deferExceptions);
+                return;
+            } catch (ValidationException e) {
+                if (dve == null) {
+                    dve = new DeferredValidationException();
+                }
+                dve.addSubException(e);
+                exCount++;
+            }
+        }
+        if (exCount == subs.length) {
+            throw dve != null ? dve : new DeferredValidationException();
+        }
+    }
+
+    private void validateNot(Not not, FormElement element, FormMap map, boolean deferExceptions) throws ValidationException {
+        FormValidator sub = not.getSubValidator();
+        if (sub != null) {
+            try {
+                validate(sub, element, map, deferExceptions);
+            } catch (ValidationException e) {
+                return;
+            }
+        }
+        throw not.generateException(element, deferExceptions,
+                "Validator " + sub + " was valid (and it shouldn't have been!)");
+    }
+
+    private void record(String name, long nanos) {
+        Timing t = timings.get(name);
+        if (t == null) {
+            Timing prev = timings.putIfAbsent(name, t = new Timing());
+            if (prev != null) {
+                t = prev;
+            }
+        }
+        t.add(nanos);
+    }
+
+    /**
+     * @return the timings recorded so far, keyed by validator class name
+     */
+    public Map<String, Timing> getTimings() {
+        return Collections.unmodifiableMap(new TreeMap<>(timings));
+    }
+
+    /**
+     * Discard the recorded timings
+     */
+    public void resetTimings() {
+        timings.clear();
+    }
+
+    /**
+     * Shut down the engine's own pool (an executor passed in by the caller
+     * is left alone)
+     */
+    public void shutdown() {
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * The accumulated run time of one kind of validator
+     */
+    public static class Timing {
+
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void add(long nanos) {
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            long max;
+            while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+            }
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.get();
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        @Override
+        public String toString() {
+            return "count:" + getCount() + " total:" + getTotalNanos() + "ns max:" + getMaxNanos() + "ns";
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "form-validation-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
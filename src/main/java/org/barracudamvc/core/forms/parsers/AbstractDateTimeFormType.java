@@ -12,11 +12,15 @@ package org.barracudamvc.core.forms.parsers;
 
 import java.util.Date;
 import java.util.Locale;
+import java.util.concurrent.ConcurrentMap;
 import org.barracudamvc.core.forms.FormType;
 import org.barracudamvc.core.forms.ParseException;
 import org.barracudamvc.core.forms.parsers.formatProviders.DateFormatProvider;
+import org.barracudamvc.core.forms.parsers.formatProviders.DateParsePlan;
 import org.barracudamvc.core.forms.parsers.formatProviders.DateTimeParser;
 import org.barracudamvc.plankton.StringUtil;
+import org.barracudamvc.plankton.data.ConcurrentReferenceCache;
+import org.barracudamvc.plankton.data.ConcurrentReferenceCache.ReferenceType;
 
 /**
  *
@@ -24,6 +28,16 @@ import org.barracudamvc.plankton.StringUtil;
  */
 public abstract class AbstractDateTimeFormType<DateType extends Date> extends FormType<DateType>  {
 
+    /**
+     * the maximum number of locales a parse plan is kept for (per form type);
+     * the locale comes from the client, so the least recently used are dropped
+     * first. Fixed, since each form type sizes its cache when it is created.
+     */
+    public static final int MAX_PLAN_LOCALES = 100;
+
+    //the formats from getProvider(), prepared for each locale we've parsed in
+    private final ConcurrentMap<Locale, DateParsePlan> plans = new ConcurrentReferenceCache<>(ReferenceType.STRONG, MAX_PLAN_LOCALES);
+
     @Override
     public DateType parse(String origVal, Locale locale) throws ParseException {
         String trimmed = StringUtil.trim(origVal);
@@ -33,15 +47,44 @@ public abstract class AbstractDateTimeFormType<DateType extends Date> extends Fo
         if (locale == null)
             locale = Locale.getDefault();
 
-        for (DateFormatProvider provider : getProvider()) {
+        DateParsePlan plan = getPlan(locale);
+        DateTimeParser<DateType> parser = getParser();
+        long shape = DateParsePlan.shapeOf(trimmed);
+        for (int i = 0, max = plan.size(); i < max; i++) {
+            if (!plan.mightParse(i, shape)) {
+                continue;
+            }
             try {
-                return getParser().parse(provider, locale, trimmed);
+                return parser.parse(plan.getProvider(i), locale, trimmed);
             } catch (java.text.ParseException e1) {
             }
         }
         throw new ParseException(origVal, "Could not parse the date [" + trimmed + "]   Locale is " + locale.getCountry());
     }
 
+    private DateParsePlan getPlan(Locale locale) {
+        DateFormatProvider[] providers = getProvider();
+        DateParsePlan plan = plans.get(locale);
+        if (plan == null) {
+            plan = new DateParsePlan(providers, locale);
+            DateParsePlan prev = plans.putIfAbsent(locale, plan);
+            if (prev != null && prev.isFor(providers)) {
+                plan = prev;
+            }
+        } else if (!plan.isFor(providers)) {
+            //getProvider() handed back a different array; only swap the plan
+            //if nobody else already has
+            DateParsePlan stale = plan;
+            plan = new DateParsePlan(providers, locale);
+            plans.replace(locale, stale, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * @return the formats to try, in order. Parse plans are cached against
+     * the array that is returned, so return the same array each time.
+     */
     protected abstract DateFormatProvider[] getProvider();
 
     protected abstract DateTimeParser<DateType> getParser();
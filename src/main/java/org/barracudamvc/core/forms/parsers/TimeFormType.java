@@ -24,14 +24,16 @@ import org.barracudamvc.core.forms.parsers.formatProviders.TimeInstanceProvider;
  */
 public class TimeFormType extends AbstractDateTimeFormType<Time> {
 
-    @Override
-    protected DateFormatProvider[] getProvider() {
-        return new DateFormatProvider[]{
+    public static DateFormatProvider[] providers = new DateFormatProvider[]{
             new TimeInstanceProvider(DateFormat.FULL),
             new TimeInstanceProvider(DateFormat.LONG),
             new TimeInstanceProvider(DateFormat.MEDIUM),
-            new TimeInstanceProvider(DateFormat.SHORT) 
-        };
+            new TimeInstanceProvider(DateFormat.SHORT)
+    };
+
+    @Override
+    protected DateFormatProvider[] getProvider() {
+        return providers;
     }
 
     @Override
@@ -26,9 +26,7 @@ import java.util.Locale;
  */
 public class TimestampFormType extends AbstractDateTimeFormType<Timestamp> {
 
-    @Override
-    protected DateFormatProvider[] getProvider() {
-        return new DateFormatProvider[]{
+    public static DateFormatProvider[] providers = new DateFormatProvider[]{
             new SimpleDateFormatFactory("yyyy-MM-dd HH:mm:ss.S"),
             new DateTimeInstance(DateFormat.FULL, DateFormat.FULL),
             new DateTimeInstance(DateFormat.LONG, DateFormat.LONG),
@@ -38,7 +36,11 @@ public class TimestampFormType extends AbstractDateTimeFormType<Timestamp> {
             new SimpleDateFormatFactory("MMM dd, yyyy hh:mm:ss a zz", true),
             new SimpleDateFormatFactory("MMM dd, yyyy hh:mm:ss a", true),
             new SimpleDateFormatFactory("M/d/yy h:mm a", true),
-        };
+    };
+
+    @Override
+    protected DateFormatProvider[] getProvider() {
+        return providers;
     }
 
     @Override
@@ -0,0 +1,194 @@
+package org.barracudamvc.core.forms.parsers.formatProviders;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+
+/**
+ * <p>The formats a date/time form type tries, prepared for one locale. Each format
+ * is created once per thread (DateFormats aren't thread safe) rather than once per
+ * attempt, and the plan knows enough about each format's pattern to rule out formats
+ * that can't possibly match a given input before trying them.
+ *
+ * <p>The pre-check only ever skips formats that would fail anyway (an input that is
+ * missing one of the pattern's separators, or that has no letters when the pattern
+ * needs a month or day name or an am/pm marker), and never changes the order the
+ * formats are tried in, so the result is the same as trying every format in turn.
+ */
+public class DateParsePlan {
+
+    //separators whose counts are compared, one byte of the shape each
+    private static final String SEPARATORS = "/-:.,";
+    private static final long LETTERS = 1L << 48;
+
+    private final DateFormatProvider[] source;
+    private final Locale locale;
+    private final DateFormatProvider[] providers;
+    private final long[] required;
+
+    /**
+     * @param isource the formats, in the order they should be tried
+     * @param ilocale the locale to parse in
+     */
+    public DateParsePlan(DateFormatProvider[] isource, Locale ilocale) {
+        source = isource;
+        locale = ilocale;
+        providers = new DateFormatProvider[isource.length];
+        required = new long[isource.length];
+        for (int i = 0; i < isource.length; i++) {
+            PerThreadFormat provider = new PerThreadFormat(isource[i], ilocale);
+            providers[i] = provider;
+            required[i] = requiredShape(getPattern(isource[i], provider.getDateFormat(ilocale)));
+        }
+    }
+
+    /**
+     * @return true if this plan was made from the given formats
+     */
+    public boolean isFor(DateFormatProvider[] isource) {
+        return source == isource;
+    }
+
+    public Locale getLocale() {
+        return locale;
+    }
+
+    public int size() {
+        return providers.length;
+    }
+
+    /**
+     * @return a provider for the i'th format, which hands back this thread's
+     * instance of the format
+     */
+    public DateFormatProvider getProvider(int i) {
+        return providers[i];
+    }
+
+    /**
+     * @param i the format
+     * @param shape the shape of the input (see shapeOf())
+     * @return false if the i'th format can't possibly parse the input
+     */
+    public boolean mightParse(int i, long shape) {
+        long need = required[i];
+        if ((need & LETTERS) != 0 && (shape & LETTERS) == 0) {
+            return false;
+        }
+        for (int b = 0; b < SEPARATORS.length(); b++) {
+            int shift = b * 8;
+            if (((need >>> shift) & 0xFF) > ((shape >>> shift) & 0xFF)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Work out the shape of an input: how many of each separator it contains,
+     * and whether it contains any letters
+     */
+    public static long shapeOf(String input) {
+        long shape = 0;
+        for (int i = 0, len = input.length(); i < len; i++) {
+            char c = input.charAt(i);
+            int sep = SEPARATORS.indexOf(c);
+            if (sep >= 0) {
+                shape = increment(shape, sep);
+            } else if (Character.isLetter(c)) {
+                shape |= LETTERS;
+            }
+        }
+        return shape;
+    }
+
+    /**
+     * Work out what an input must contain to match a SimpleDateFormat
+     * pattern (every literal separator, and letters if there is a text
+     * field). A null pattern means we don't know, so nothing is required.
+     */
+    static long requiredShape(String pattern) {
+        if (pattern == null) {
+            return 0;
+        }
+        long shape = 0;
+        boolean quoted = false;
+        for (int i = 0, len = pattern.length(); i < len; i++) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                if (i + 1 < len && pattern.charAt(i + 1) == '\'') {
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+                continue;
+            }
+            boolean field = !quoted && ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'));
+            if (field) {
+                int run = 1;
+                while (i + 1 < len && pattern.charAt(i + 1) == c) {
+                    run++;
+                    i++;
+                }
+                //month names, day names and am/pm markers can only be text
+                if (((c == 'M' || c == 'L') && run >= 3) || c == 'E' || c == 'a') {
+                    shape |= LETTERS;
+                }
+            } else {
+                int sep = SEPARATORS.indexOf(c);
+                if (sep >= 0) {
+                    shape = increment(shape, sep);
+                } else if (Character.isLetter(c)) {
+                    shape |= LETTERS;
+                }
+            }
+        }
+        return shape;
+    }
+
+    private static long increment(long shape, int sep) {
+        int shift = sep * 8;
+        if (((shape >>> shift) & 0xFF) < 0xFF) {
+            shape += 1L << shift;
+        }
+        return shape;
+    }
+
+    private static String getPattern(DateFormatProvider provider, DateFormat df) {
+        if (df instanceof SimpleDateFormat) {
+            return ((SimpleDateFormat) df).toPattern();
+        } else if (provider instanceof YearFirstDateParser) {
+            return ((YearFirstDateParser) provider).getPattern();
+        }
+        return null;
+    }
+
+    /**
+     * Hands out one instance of a format per thread (for the plan's locale;
+     * any other locale goes straight to the underlying provider)
+     */
+    private static final class PerThreadFormat implements DateFormatProvider {
+
+        private final DateFormatProvider provider;
+        private final Locale locale;
+        private final ThreadLocal<DateFormat> formats = new ThreadLocal<DateFormat>();
+
+        PerThreadFormat(DateFormatProvider iprovider, Locale ilocale) {
+            provider = iprovider;
+            locale = ilocale;
+        }
+
+        @Override
+        public DateFormat getDateFormat(Locale ilocale) {
+            if (!locale.equals(ilocale)) {
+                return provider.getDateFormat(ilocale);
+            }
+            DateFormat df = formats.get();
+            if (df == null) {
+                df = provider.getDateFormat(locale);
+                formats.set(df);
+            }
+            return df;
+        }
+    }
+}
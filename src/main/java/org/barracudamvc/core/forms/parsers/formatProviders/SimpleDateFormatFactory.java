@@ -13,11 +13,24 @@ package org.barracudamvc.core.forms.parsers.formatProviders;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Locale;
+import java.util.concurrent.ConcurrentMap;
+import org.barracudamvc.plankton.data.ConcurrentReferenceCache;
+import org.barracudamvc.plankton.data.ConcurrentReferenceCache.ReferenceType;
 
 public class SimpleDateFormatFactory implements DateFormatProvider {
 
+    /**
+     * the maximum number of locales a prototype is kept for (per factory); the
+     * locale comes from the client, so the least recently used are dropped
+     * first. Fixed, since each factory sizes its cache when it is created.
+     */
+    public static final int MAX_LOCALES = 100;
+
     String format;
     boolean lenient;
+    //one untouched instance per locale; callers get clones of it, which is
+    //much cheaper than building a SimpleDateFormat from scratch
+    private final ConcurrentMap<Locale, SimpleDateFormat> prototypes = new ConcurrentReferenceCache<>(ReferenceType.STRONG, MAX_LOCALES);
 
     public SimpleDateFormatFactory(String format) {
         this.format = format;
@@ -31,8 +44,16 @@ public class SimpleDateFormatFactory implements DateFormatProvider {
 
     @Override
     public DateFormat getDateFormat(Locale locale) {
-        DateFormat df = new SimpleDateFormat(format, locale);
-        df.setLenient(lenient);
-        return df;
+        SimpleDateFormat prototype = prototypes.get(locale);
+        if (prototype == null) {
+            prototype = new SimpleDateFormat(format, locale);
+            prototype.setLenient(lenient);
+            prototypes.putIfAbsent(locale, prototype);
+        }
+        return (DateFormat) prototype.clone();
+    }
+
+    public String getPattern() {
+        return format;
     }
 }
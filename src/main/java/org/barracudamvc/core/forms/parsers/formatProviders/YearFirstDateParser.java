@@ -34,6 +34,10 @@ public class YearFirstDateParser implements DateFormatProvider {
         return new DateFormatWrapper(format.getDateFormat(locale));
     }
 
+    public String getPattern() {
+        return format.getPattern();
+    }
+
     private static class DateFormatWrapper extends DateFormat {
 
         DateFormat myFormmater;
@@ -29,7 +29,6 @@ import org.barracudamvc.plankton.io.parser.URLEncoded.URLEncodedParser;
 import javax.servlet.ServletRequest;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
-import java.io.ByteArrayInputStream;
 import java.util.*;
 
 //csc_010404_1 - revamped to extend from servlet package's HttpServletRequestWrapper
@@ -50,11 +49,14 @@ public class DefaultServletRequestWrapper extends HttpServletRequestWrapper impl
 
     protected static final Logger logger = Logger.getLogger(DefaultServletRequestWrapper.class.getName());
     public static String DEFAULT_ENCODING = System.getProperty("file.encoding");
-    private static final Enumeration<String> EMPTY_ENUMERATION = new LocalEnumerator(Collections.<Param>emptyList());
+    private static final Enumeration<String> EMPTY_ENUMERATION = new LocalEnumerator(Collections.<String>emptyList());
+    private static final URLEncodedParser QUERY_PARSER = new URLEncodedParser();
 
     HttpServletRequest req = null;
-    List<Param> paramList = null;
+    ParamMap params = null;
     String method = null;
+    //the query string, parsed the first time we need to fall back on it
+    Map<String, List<String>> queryParams = null;
 
     /**
      * Create a DefaultServletRequestWrapper around some other
@@ -112,10 +114,10 @@ public class DefaultServletRequestWrapper extends HttpServletRequestWrapper impl
         if (name == null) {
             return;
         }
-        if (paramList == null) {
+        if (params == null) {
             setupParamList();
         }
-        paramList.add(new Param(name, value));
+        params.add(name, value);
     }
 
     private String _parseParameter(HttpServletRequest req, String keyName) {
@@ -125,43 +127,24 @@ public class DefaultServletRequestWrapper extends HttpServletRequestWrapper impl
         }
 
         // Still no parameter found, check the queryString
-        String queryString = req.getQueryString();
-        if (queryString == null) {
+        List<String> values = getQueryParams().get(keyName);
+        if (values == null) {
             return null;
         }
+        s = values.get(0);
+        return (s == null ? "" : s);
+    }
 
-        try {
-            queryString = java.net.URLDecoder.decode(queryString, DEFAULT_ENCODING);
-        } catch (Exception e) {
-            logger.warn("failed to decode queryString, but allowing to continue", e);
-        }
-
-        //need "=" to know it is a parameter name as opposed to a value
-        // also need '&' to make difference between id and aaa_id for example
-        // if is first param, will be checked in different place
-        int startPos = queryString.indexOf("&" + keyName + "=");
-
-        if (startPos == -1) {
-            // not found  inside parameter list, try find as first
-            if (queryString.startsWith(keyName + "=")) {
-                startPos = 0;
-            }
-        } else {
-            // skip '&'
-            startPos++;
-        }
-
-        if (startPos != -1) {
-            startPos = startPos + keyName.length() + 1;
-            int endPos = queryString.indexOf("&", startPos);
-
-            if (endPos == -1) {
-                s = queryString.substring(startPos);
-            } else {
-                s = queryString.substring(startPos, endPos);
-            }
+    /**
+     * Parse the query string ourselves (only done once, and only if the
+     * container didn't give us what we were after)
+     */
+    private Map<String, List<String>> getQueryParams() {
+        if (queryParams == null) {
+            String queryString = req.getQueryString();
+            queryParams = (queryString == null ? Collections.<String, List<String>>emptyMap() : QUERY_PARSER.parse(queryString));
         }
-        return s;
+        return queryParams;
     }
 
     /**
@@ -178,14 +161,14 @@ public class DefaultServletRequestWrapper extends HttpServletRequestWrapper impl
             return null;
         }
 
-        //if paramList exists, get the value from there
-        if (paramList != null) {
-            for (Param param : paramList) {
-                if (param.getKey().equals(name)) {
-                    return param.getValue() == null ? null : param.getValue().toString();
-                }
+        //if params exists, get the value from there
+        if (params != null) {
+            List<Object> values = params.get(name);
+            if (values == null) {
+                return null;
             }
-            return null;
+            Object value = values.get(0);
+            return value == null ? null : value.toString();
         } else {
             return _parseParameter(req, name);
         }
@@ -199,8 +182,8 @@ public class DefaultServletRequestWrapper extends HttpServletRequestWrapper impl
      */
     @Override
     public Enumeration<String> getParameterNames() {
-        if (paramList != null) {
-            return new LocalEnumerator(paramList);
+        if (params != null) {
+            return new LocalEnumerator(params.keySet());
         } else {
             try {
                 Enumeration<String> parameterNames = req.getParameterNames();
@@ -223,14 +206,12 @@ public class DefaultServletRequestWrapper extends HttpServletRequestWrapper impl
             return EMPTY_ENUMERATION;
         }
 
-        Map<String, List<String>> parse = new URLEncodedParser().parse(new ByteArrayInputStream(req.getQueryString().getBytes()));
-
-        paramList = new ArrayList<>();
-        for (Map.Entry<String, List<String>> entry : parse.entrySet())
+        params = new ParamMap();
+        for (Map.Entry<String, List<String>> entry : getQueryParams().entrySet())
             for (Object o : entry.getValue())
-                paramList.add(new Param(entry.getKey(), o));
+                params.add(entry.getKey(), o);
 
-        return new LocalEnumerator(paramList);
+        return new LocalEnumerator(params.keySet());
     }
 
     /**
@@ -242,26 +223,14 @@ public class DefaultServletRequestWrapper extends HttpServletRequestWrapper impl
     @Override
     @SuppressWarnings("unchecked")
     public Map<String, String[]> getParameterMap() {
-        //if paramList exists, get the value from there
-        if (paramList == null) {
+        //if params exists, get the value from there
+        if (params == null) {
             return req.getParameterMap();
         } else {
-            Map<String, List<Object>> paramMap = new HashMap<>(paramList.size());
-
-            //populate the paramMap with key/val pairs
-            for (Param param : paramList) {
-                String key = param.getKey();
-                List<Object> valList = (List) paramMap.get(key);
-                if (valList == null) {
-                    valList = new ArrayList(10);
-                    paramMap.put(key, valList);
-                }
-                valList.add(param.getValue());
-            }
-            //now run back through the paramMap and convert all the 
-            //List values into String[] (to conform with servlet spec)
-            Map<String, String[]> result = new HashMap<>(paramList.size());
-            for (Map.Entry<String, List<Object>> entry : paramMap.entrySet()) {
+            //convert all the List values into String[] (to conform
+            //with servlet spec)
+            Map<String, String[]> result = new LinkedHashMap<>(params.size());
+            for (Map.Entry<String, List<Object>> entry : params.entrySet()) {
                 String key = entry.getKey();
                 List<Object> values = entry.getValue();
                 String[] valuesArray = new String[values.size()];
@@ -287,17 +256,12 @@ public class DefaultServletRequestWrapper extends HttpServletRequestWrapper impl
             return null;
         }
 
-        //if paramList is not null, build the array from there
-        if (paramList == null) {
+        //if params is not null, build the array from there
+        if (params == null) {
             return req.getParameterValues(name);
         } else {
-            List<Object> valueList = new ArrayList<>(paramList.size());
-            for (Param param : paramList) {
-                if (param.getKey().equals(name)) {
-                    valueList.add(param.getValue());
-                }
-            }
-            if (valueList.isEmpty()) {
+            List<Object> valueList = params.get(name);
+            if (valueList == null) {
                 return null;
             } else {
                 return valueList.toArray(new String[valueList.size()]);
@@ -317,19 +281,13 @@ public class DefaultServletRequestWrapper extends HttpServletRequestWrapper impl
             return;
         }
 
-        //make sure the paramList is initialized
-        if (paramList == null) {
+        //make sure the params are initialized
+        if (params == null) {
             setupParamList();
         }
 
         //finally remove the first occurence of the parameter
-        for (int i = 0, max = paramList.size(); i < max; i++) {
-            Param param = (Param) paramList.get(i);
-            if (param.getKey().equals(name)) {
-                paramList.remove(i);
-                break;
-            }
-        }
+        params.removeFirst(name);
 
     }
 
@@ -345,18 +303,13 @@ public class DefaultServletRequestWrapper extends HttpServletRequestWrapper impl
             return;
         }
 
-        //make sure the paramList is initialized
-        if (paramList == null) {
+        //make sure the params are initialized
+        if (params == null) {
             setupParamList();
         }
 
         //finally remove the all occurences of the parameter
-        for (int i = paramList.size() - 1; i >= 0; i--) {
-            Param param = (Param) paramList.get(i);
-            if (param.getKey().equals(name)) {
-                paramList.remove(i);
-            }
-        }
+        params.removeAll(name);
     }
 
     /**
@@ -365,7 +318,7 @@ public class DefaultServletRequestWrapper extends HttpServletRequestWrapper impl
      */
     @Override
     public void resetParameters() {
-        paramList = null;
+        params = null;
     }
 
     /**
@@ -395,16 +348,16 @@ public class DefaultServletRequestWrapper extends HttpServletRequestWrapper impl
 
     private void setupParamList() {
         //eliminate the obvious (only initialize once!)
-        if (paramList != null) {
+        if (params != null) {
             return;
         }
 
-        //create the param list
-        paramList = new ArrayList<>(10);
+        //create the param map
+        params = new ParamMap();
 
         //now copy in all param values from the underlying servlet
         //request. From this point on then, the param values will
-        //be maintained in the paramList
+        //be maintained in the param map
         Enumeration enumeration = req.getParameterNames();
         while (enumeration.hasMoreElements()) {
             //get the key
@@ -413,7 +366,7 @@ public class DefaultServletRequestWrapper extends HttpServletRequestWrapper impl
             //find all values associated with the key
             String[] vals = req.getParameterValues(key);
             for (int i = 0, max = vals.length; i < max; i++) {
-                paramList.add(new Param(key, vals[i]));
+                params.add(key, vals[i]);
             }
         }
     }
@@ -427,14 +380,9 @@ public class DefaultServletRequestWrapper extends HttpServletRequestWrapper impl
         List<String> keyList = null;
         Iterator<String> it = null;
 
-        public LocalEnumerator(List<Param> iparamList) {
-            keyList = new ArrayList<>(iparamList.size());
-
-            for (Param param : iparamList) {
-                if (!keyList.contains(param.getKey())) {
-                    keyList.add(param.getKey());
-                }
-            }
+        public LocalEnumerator(Collection<String> ikeys) {
+            //copy the keys, so parameters can be changed while enumerating
+            keyList = new ArrayList<>(ikeys);
             it = keyList.iterator();
         }
 
@@ -451,8 +399,8 @@ public class DefaultServletRequestWrapper extends HttpServletRequestWrapper impl
 
 
     public List<Param> getInternalParamList() {
-        if (paramList != null) {
-            return new ArrayList<>(paramList);
+        if (params != null) {
+            return params.toParamList();
         }
         return null;
     }
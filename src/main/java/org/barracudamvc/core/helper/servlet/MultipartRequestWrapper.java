@@ -38,6 +38,8 @@ import org.apache.commons.fileupload.FileUploadException;
 import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
 import org.apache.log4j.Logger;
+import org.barracudamvc.core.http.content.MultipartContent;
+import org.barracudamvc.core.http.content.StreamingMultipartParser;
 
 /**
  * Handles both simple and multipart requests transparently
@@ -51,6 +53,13 @@ import org.apache.log4j.Logger;
  * multipart checks when the request isn't multipart. The performance deficit
  * should, however, be neglegible.</p>
  *
+ * <p>In streaming mode (see {@link #STREAMING}) the request is read by a
+ * {@link StreamingMultipartParser} instead: form fields are indexed by name as
+ * they are read, so parameter lookups no longer scan the item list, and file
+ * parts are spooled straight to disk as
+ * {@link org.barracudamvc.core.http.content.SpooledFileItem}s, which can be
+ * read as InputStreams or ReadableByteChannels.</p>
+ *
  * @author  Stefan Armbruster (sam, 2003-11-15)
  * @author  Shawn A. Wilson
  * @author  Jacob Kjome
@@ -65,8 +74,15 @@ public class MultipartRequestWrapper extends DefaultServletRequestWrapper implem
     protected long maxSize = -1;
     /** indicates if the current request is multipart */
     protected boolean isMultipart;
-    /** contains a list of {@link FileItem file items} */
+    /** contains a list of {@link FileItem file items} (only the file parts in streaming mode) */
     protected List<FileItem> uploadItemList;
+    /** the indexed parts of the request in streaming mode, otherwise null */
+    protected MultipartContent multipartContent;
+    /**
+     * Set to true to read multipart requests with a StreamingMultipartParser
+     * when no FileItemFactory is given
+     */
+    public static boolean STREAMING = false;
     /**
      * Part of HTTP content type header.
      */
@@ -88,7 +104,30 @@ public class MultipartRequestWrapper extends DefaultServletRequestWrapper implem
             logger.debug("request is multipart: " + isMultipart);
         }
         if (this.isMultipart) {
-            initUploadItemList(req, fileItemFactory != null ? fileItemFactory : new DiskFileItemFactory());
+            if (STREAMING && fileItemFactory == null) {
+                initMultipartContent(req, new StreamingMultipartParser().setSizeMax(max));
+            } else {
+                initUploadItemList(req, fileItemFactory != null ? fileItemFactory : new DiskFileItemFactory());
+            }
+        }
+    }
+
+    /**
+     * Reads a multipart request in streaming mode with the given parser
+     *
+     * @param req the request
+     * @param parser the parser, which may be shared between requests
+     */
+    public MultipartRequestWrapper(HttpServletRequest req, StreamingMultipartParser parser) {
+        super(req);
+        this.uploadItemList = new ArrayList<FileItem>();
+        this.maxSize = parser.getSizeMax();
+        this.isMultipart = isMultipartContent(req);
+        if (logger.isDebugEnabled()) {
+            logger.debug("request is multipart: " + isMultipart);
+        }
+        if (this.isMultipart) {
+            initMultipartContent(req, parser);
         }
     }
 
@@ -139,6 +178,31 @@ public class MultipartRequestWrapper extends DefaultServletRequestWrapper implem
         }
     }
 
+    /**
+     * Reads the request with a streaming parser, indexing the form fields
+     * and spooling the file parts
+     *
+     * @param req the request
+     * @param parser the parser
+     */
+    private void initMultipartContent(HttpServletRequest req, StreamingMultipartParser parser) {
+        try {
+            multipartContent = parser.parse(req);
+            uploadItemList = multipartContent.getAllFiles();
+        } catch (FileUploadException | IOException e) {
+            logger.warn(e.getMessage(), e);
+            multipartContent = new MultipartContent();
+        }
+    }
+
+    /**
+     * @return the indexed fields and spooled files of the request, or null
+     *     if the request is not multipart or was not read in streaming mode
+     */
+    public MultipartContent getMultipartContent() {
+        return multipartContent;
+    }
+
     /**
      * Same behavior as ServletRequest.getParameter, but extended to handle
      * parameters when request is multipart. Only non-file parameters are
@@ -177,6 +241,9 @@ public class MultipartRequestWrapper extends DefaultServletRequestWrapper implem
      */
     @Override
     public Enumeration getParameterNames() {
+        if (isMultipart() && multipartContent != null) {
+            return Collections.enumeration(multipartContent.getFieldNames());
+        }
         if (isMultipart()) {
             HashSet<String> allNames = new HashSet<String>();
             for (FileItem item : uploadItemList) {
@@ -205,6 +272,9 @@ public class MultipartRequestWrapper extends DefaultServletRequestWrapper implem
      */
     @Override
     public Enumeration getFileParameterNames() {
+        if (isMultipart() && multipartContent != null) {
+            return Collections.enumeration(multipartContent.getFileNames());
+        }
         List<String> allNames = new ArrayList<String>();
         if (isMultipart()) {
             for (FileItem item : uploadItemList) {
@@ -286,6 +356,9 @@ public class MultipartRequestWrapper extends DefaultServletRequestWrapper implem
         if (name == null) {
             return null;
         }
+        if (multipartContent != null) {
+            return multipartContent.getField(name);
+        }
 
         List<FileItem> items = getFileItems(name);
         FileItem item = items.isEmpty() ? null : items.get(0);
@@ -316,6 +389,9 @@ public class MultipartRequestWrapper extends DefaultServletRequestWrapper implem
         if (!isMultipart()) {
             return null;
         }
+        if (multipartContent != null) {
+            return multipartContent.getFiles(name);
+        }
 
         ArrayList<FileItem> items = new ArrayList<>();
         for (FileItem item : uploadItemList) {
@@ -359,6 +435,9 @@ public class MultipartRequestWrapper extends DefaultServletRequestWrapper implem
         if (name == null) {
             return null;
         }
+        if (multipartContent != null) {
+            return multipartContent.getFieldValues(name);
+        }
 
         ArrayList<FileItem> items = getFileItemsByName(name);
         ArrayList<String> values = new ArrayList<String>();
@@ -396,6 +475,9 @@ public class MultipartRequestWrapper extends DefaultServletRequestWrapper implem
         if (!isMultipart()) {
             return null;
         }
+        if (multipartContent != null) {
+            return new ArrayList<FileItem>(multipartContent.getFiles(name));
+        }
 
         ArrayList<FileItem> items = new ArrayList<FileItem>();
 
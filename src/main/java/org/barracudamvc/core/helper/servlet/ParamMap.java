@@ -0,0 +1,88 @@
+package org.barracudamvc.core.helper.servlet;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.barracudamvc.plankton.data.Param;
+
+/**
+ * The parameters of a DefaultServletRequestWrapper, indexed by key. Keys
+ * are kept in the order they were first added and the values of each key
+ * in the order they were added, so lookups don't have to scan every
+ * parameter in the request.
+ */
+class ParamMap {
+
+    private final Map<String, List<Object>> params = new LinkedHashMap<String, List<Object>>();
+    private int size = 0;
+
+    void add(String key, Object value) {
+        List<Object> values = params.get(key);
+        if (values == null) {
+            values = new ArrayList<Object>(1);
+            params.put(key, values);
+        }
+        values.add(value);
+        size++;
+    }
+
+    /**
+     * @return the values for a key, or null if there aren't any
+     */
+    List<Object> get(String key) {
+        return params.get(key);
+    }
+
+    /**
+     * Remove the first value for a key
+     */
+    void removeFirst(String key) {
+        List<Object> values = params.get(key);
+        if (values == null) {
+            return;
+        }
+        values.remove(0);
+        size--;
+        if (values.isEmpty()) {
+            params.remove(key);
+        }
+    }
+
+    /**
+     * Remove all the values for a key
+     */
+    void removeAll(String key) {
+        List<Object> values = params.remove(key);
+        if (values != null) {
+            size -= values.size();
+        }
+    }
+
+    Set<String> keySet() {
+        return params.keySet();
+    }
+
+    Set<Map.Entry<String, List<Object>>> entrySet() {
+        return params.entrySet();
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return all the parameters as a list of Params
+     */
+    List<Param> toParamList() {
+        List<Param> list = new ArrayList<Param>(size);
+        for (Map.Entry<String, List<Object>> entry : params.entrySet()) {
+            for (Object value : entry.getValue()) {
+                list.add(new Param(entry.getKey(), value));
+            }
+        }
+        return list;
+    }
+}
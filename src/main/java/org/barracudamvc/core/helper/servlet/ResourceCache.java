@@ -0,0 +1,98 @@
+package org.barracudamvc.core.helper.servlet;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>A least recently used cache bounded by the total weight (in bytes) of
+ * its entries rather than by their count. Used by {@link ResourceGateway} so
+ * that static resources stay in memory only up to a fixed budget, instead of
+ * being held by soft references until the heap runs low.
+ *
+ * <p>An entry heavier than the whole budget is never cached.
+ */
+public class ResourceCache {
+
+    private final long maxSize;
+    private long size;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+    /**
+     * @param imaxSize the maximum total weight of the cached entries
+     */
+    public ResourceCache(long imaxSize) {
+        maxSize = imaxSize;
+    }
+
+    /**
+     * @return the cached value, or null
+     */
+    public synchronized Object get(String key) {
+        Entry e = entries.get(key);
+        return e == null ? null : e.value;
+    }
+
+    /**
+     * Cache a value, evicting the least recently used entries until the
+     * cache is back within its budget
+     *
+     * @param key the key
+     * @param value the value
+     * @param weight the approximate number of bytes the value holds
+     */
+    public synchronized void put(String key, Object value, long weight) {
+        remove(key);
+        if (weight > maxSize) {
+            return;
+        }
+        entries.put(key, new Entry(value, weight));
+        size += weight;
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (size > maxSize && it.hasNext()) {
+            size -= it.next().getValue().weight;
+            it.remove();
+        }
+    }
+
+    public synchronized void remove(String key) {
+        Entry e = entries.remove(key);
+        if (e != null) {
+            size -= e.weight;
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * @return the number of cached entries
+     */
+    public synchronized int getCount() {
+        return entries.size();
+    }
+
+    /**
+     * @return the total weight of the cached entries
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    private static class Entry {
+
+        final Object value;
+        final long weight;
+
+        Entry(Object ivalue, long iweight) {
+            value = ivalue;
+            weight = iweight;
+        }
+    }
+}
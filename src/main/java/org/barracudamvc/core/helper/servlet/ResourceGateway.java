@@ -19,27 +19,53 @@
  */
 package org.barracudamvc.core.helper.servlet;
 
-import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.ref.Reference;
 import java.lang.ref.SoftReference;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import org.apache.log4j.Logger;
+import org.barracudamvc.plankton.data.ConcurrentReferenceCache;
+import org.barracudamvc.plankton.data.ConcurrentReferenceCache.ReferenceType;
 import org.barracudamvc.plankton.data.ReferenceFactory;
-import org.barracudamvc.plankton.http.ContextServices;
 import static org.barracudamvc.plankton.io.StreamUtils.readIntoByteArray;
 
 /**
  * <p>The purpose of this servlet is to look for a static resource
  * on the classpath and return it to the client
+ *
+ * <p>Each resource is served with a strong ETag computed from its content
+ * when it is loaded, and If-None-Match, If-Modified-Since, single byte
+ * Range and If-Range requests are answered. Compressible resources carry a
+ * gzip variant, built once alongside the raw bytes, which is sent to clients
+ * that accept it. Resources larger than {@link #MAX_CACHED_RESOURCE_SIZE}
+ * that live in the file system are not held in memory at all; they are
+ * transferred from the file with FileChannel.transferTo. Any other resource
+ * is kept in memory, in the cache, as long as it fits.
+ *
+ * <p>The caching provider keeps resources in a {@link ResourceCache} of
+ * {@link #CACHE_SIZE} bytes per servlet context, and remembers up to
+ * {@link #NOT_FOUND_CACHE_SIZE} names that weren't found separately.
  */
 public class ResourceGateway extends HttpServlet {
 
@@ -48,6 +74,29 @@ public class ResourceGateway extends HttpServlet {
     public static String RESOURCE_NOT_FOUND = "ResourceNotFound";
     protected static final long startup = System.currentTimeMillis();
 
+    /**
+     * the number of bytes of resources the caching provider keeps in memory
+     * for each servlet context
+     */
+    public static long CACHE_SIZE = 32 * 1024 * 1024;
+    /**
+     * files larger than this are not held in memory but served straight from
+     * the file (resources that aren't plain files, such as those in jars, are
+     * always loaded into memory and cached as long as they fit in CACHE_SIZE)
+     */
+    public static int MAX_CACHED_RESOURCE_SIZE = 1024 * 1024;
+    /**
+     * the number of names that weren't found the caching provider remembers
+     * for each servlet context (names come from the client, so these are
+     * kept apart from the resources, where they could push real resources
+     * out)
+     */
+    public static int NOT_FOUND_CACHE_SIZE = 256;
+    /**
+     * resources smaller than this are not worth compressing
+     */
+    public static int GZIP_MIN_SIZE = 256;
+
     public static final NoCacheResourceProvider NO_CACHE = new NoCacheResourceProvider();
     public static final CachingResourceProvider CACHE = new CachingResourceProvider();
     public static ResourceProvider RESOURCE_PROVIDER = CACHE;
@@ -75,29 +124,212 @@ public class ResourceGateway extends HttpServlet {
         String resourceName = EXT_RESOURCE_ID + req.getPathInfo();
         Object resource = RESOURCE_PROVIDER.getResource(getServletContext(), resourceName);
         if (resource instanceof LocalResource) {
+            serveResource(req, resp, (LocalResource) resource);
+        } else {
+            resp.sendError(HttpServletResponse.SC_NOT_FOUND, "Resource Not Found: " + resourceName);
+        }
+    }
 
-            //saw_031604_1 begin
-            // if the client sends an "If-Modified-Since" then we should compare it against the
-            // startup time and send a 304 (Not Modified) response if it hasn't changed
-            long lastTime = req.getDateHeader("If-Modified-Since");
+    /**
+     * Answer a request for a resource: a 304 if the client's copy is
+     * current, a 206 for a satisfiable byte range, otherwise the whole
+     * resource (gzipped if the client accepts it)
+     */
+    protected void serveResource(HttpServletRequest req, HttpServletResponse resp, LocalResource lr) throws IOException {
+        long lastModified = lr.lastModified > 0 ? lr.lastModified : startup;
+        long[] range = getRange(req, lr, lastModified);
+        boolean gzip = range == null && lr.gzipData != null && acceptsGzip(req);
 
-            // divide by 1000 because milliseconds aren't transmitted via HTTP
-            if (lastTime / 1000 >= startup / 1000) {
-                resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
-                return;
-            }
-            resp.setHeader("Cache-Control", "public");
-            resp.setDateHeader("Last-Modified", startup);
+        resp.setHeader("Cache-Control", "public");
+        resp.setDateHeader("Last-Modified", lastModified);
+        resp.setHeader("ETag", gzip ? lr.gzipEtag : lr.etag);
+        resp.setHeader("Accept-Ranges", "bytes");
+        if (lr.gzipData != null) {
+            resp.setHeader("Vary", "Accept-Encoding");
+        }
 
-            LocalResource lr = (LocalResource) resource;
-            resp.setContentType(lr.contentType);
+        if (isNotModified(req, lr, lastModified)) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        if (range == UNSATISFIABLE) {
+            resp.setHeader("Content-Range", "bytes */" + lr.length);
+            resp.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+        }
 
-            OutputStream out = resp.getOutputStream();
-            out.write(lr.contentData);
-            resp.flushBuffer();
+        resp.setContentType(lr.contentType);
+        long start = 0;
+        long count = lr.length;
+        if (range != null) {
+            start = range[0];
+            count = range[1] - range[0] + 1;
+            resp.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            resp.setHeader("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + lr.length);
+        } else if (gzip) {
+            count = lr.gzipData.length;
+            resp.setHeader("Content-Encoding", "gzip");
+        }
+        setContentLength(resp, count);
+        if ("HEAD".equalsIgnoreCase(req.getMethod())) {
+            return;
+        }
+
+        OutputStream out = resp.getOutputStream();
+        if (gzip) {
+            out.write(lr.gzipData);
+        } else if (lr.contentData != null) {
+            out.write(lr.contentData, (int) start, (int) count);
         } else {
-            resp.sendError(HttpServletResponse.SC_NOT_FOUND, "Resource Not Found: " + resourceName);
+            transfer(lr.file, start, count, out);
         }
+        resp.flushBuffer();
+    }
+
+    /**
+     * Send part of a file with FileChannel.transferTo. This saves reading
+     * the file into a byte array of our own, but it is not zero-copy: the
+     * servlet output stream is only wrapped in a channel, so the JDK still
+     * copies the data through a buffer (it can only skip the copy when both
+     * ends are FileChannels)
+     */
+    protected void transfer(File file, long start, long count, OutputStream out) throws IOException {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(out);
+            long pos = start;
+            long end = start + count;
+            while (pos < end) {
+                long n = ch.transferTo(pos, end - pos, target);
+                if (n <= 0) {
+                    throw new IOException("Resource " + file + " is shorter than expected");
+                }
+                pos += n;
+            }
+        }
+    }
+
+    private static void setContentLength(HttpServletResponse resp, long length) {
+        if (length <= Integer.MAX_VALUE) {
+            resp.setContentLength((int) length);
+        } else {
+            resp.setHeader("Content-Length", Long.toString(length));
+        }
+    }
+
+    /**
+     * If-None-Match takes precedence over If-Modified-Since
+     */
+    private static boolean isNotModified(HttpServletRequest req, LocalResource lr, long lastModified) {
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            for (String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals("*") || tag.equals(lr.etag) || tag.equals(lr.gzipEtag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        // divide by 1000 because milliseconds aren't transmitted via HTTP
+        long since = getDateHeader(req, "If-Modified-Since");
+        return since != -1 && since / 1000 >= lastModified / 1000;
+    }
+
+    private static final long[] UNSATISFIABLE = new long[0];
+
+    /**
+     * Parse a single "bytes=" range. Multiple ranges, malformed headers and
+     * ranges whose If-Range no longer matches are ignored, so the whole
+     * resource is sent.
+     *
+     * @return the first and last byte positions, {@link #UNSATISFIABLE},
+     *     or null if the whole resource should be sent
+     */
+    private static long[] getRange(HttpServletRequest req, LocalResource lr, long lastModified) {
+        String header = req.getHeader("Range");
+        if (header == null || !header.startsWith("bytes=") || header.indexOf(',') != -1) {
+            return null;
+        }
+        String ifRange = req.getHeader("If-Range");
+        if (ifRange != null) {
+            if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+                if (!ifRange.equals(lr.etag)) {
+                    return null;
+                }
+            } else if (getDateHeader(req, "If-Range") / 1000 != lastModified / 1000) {
+                return null;
+            }
+        }
+        String spec = header.substring(6).trim();
+        int dash = spec.indexOf('-');
+        if (dash == -1) {
+            return null;
+        }
+        long length = lr.length;
+        long first;
+        long last;
+        try {
+            if (dash == 0) {
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix <= 0) {
+                    return UNSATISFIABLE;
+                }
+                first = Math.max(0, length - suffix);
+                last = length - 1;
+            } else {
+                first = Long.parseLong(spec.substring(0, dash));
+                last = dash == spec.length() - 1 ? length - 1 : Math.min(Long.parseLong(spec.substring(dash + 1)), length - 1);
+                if (last < first && first < length) {
+                    return null;
+                }
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (first >= length || first < 0) {
+            return UNSATISFIABLE;
+        }
+        return new long[]{first, last};
+    }
+
+    private static long getDateHeader(HttpServletRequest req, String name) {
+        try {
+            return req.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return true unless the client does not send gzip (or *) in
+     *     Accept-Encoding, or sends it with q=0
+     */
+    private static boolean acceptsGzip(HttpServletRequest req) {
+        String header = req.getHeader("Accept-Encoding");
+        if (header == null) {
+            return false;
+        }
+        for (String coding : header.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            if (name.equalsIgnoreCase("gzip") || name.equals("*")) {
+                for (int i = 1; i < parts.length; i++) {
+                    String param = parts[i].trim();
+                    if (param.startsWith("q=")) {
+                        try {
+                            return Double.parseDouble(param.substring(2)) > 0;
+                        } catch (NumberFormatException e) {
+                            return false;
+                        }
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -115,19 +347,42 @@ public class ResourceGateway extends HttpServlet {
 
         @Override
         public Reference getObjectReference() {
-            Object result;
+            return new SoftReference<Object>(loadResource());
+        }
+
+        /**
+         * @return the LocalResource, or RESOURCE_NOT_FOUND
+         */
+        public Object loadResource() {
             try {
-                BufferedInputStream in = new BufferedInputStream(getResourceStream());
-                byte[] dstbytes = readIntoByteArray(in);
-                in.close();
+                // The URL is used here instead of going directly against the Class Loader for the resource
+                // as the ClassLoader is allowed to cache resources. Dependent on your class loader 
+                // you will receive caching
+                ClassLoader ctxLoader = Thread.currentThread().getContextClassLoader();
+                URL resURL = ctxLoader.getResource(resourceName);
+                if (resURL == null) {
+                    throw new IOException("Resource Not Found " + resourceName);
+                }
+                File file = toFile(resURL);
+                if (file != null) {
+                    long length = file.length();
+                    long lastModified = file.lastModified();
+                    if (length > MAX_CACHED_RESOURCE_SIZE) {
+                        return new LocalResource(determineMimeType(), file, length, lastModified);
+                    }
+                    return new LocalResource(determineMimeType(), Files.readAllBytes(file.toPath()), lastModified, file);
+                }
 
-                result = new LocalResource(determineMimeType(), dstbytes);
+                URLConnection resConn = resURL.openConnection();
+                resConn.setUseCaches(false);
+                try (InputStream in = resConn.getInputStream()) {
+                    return new LocalResource(determineMimeType(), readIntoByteArray(in), resConn.getLastModified(), null);
+                }
             } catch (IOException e) {
                 if (logger.isDebugEnabled())
                     logger.debug("Failure: " + e);
-                result = RESOURCE_NOT_FOUND;
+                return RESOURCE_NOT_FOUND;
             }
-            return new SoftReference<Object>(result);
         }
 
         private String determineMimeType() {
@@ -137,33 +392,138 @@ public class ResourceGateway extends HttpServlet {
             return contentType;
         }
 
-        private InputStream getResourceStream() throws IOException {
-            // The URL is used here instead of going directly against the Class Loader for the resource
-            // as the ClassLoader is allowed to cache resources. Dependent on your class loader 
-            // you will receive caching
-            ClassLoader ctxLoader = Thread.currentThread().getContextClassLoader();
-            URL resURL = ctxLoader.getResource(resourceName);
-            if (resURL == null) {
-                throw new IOException("Resource Not Found " + resourceName);
+        /**
+         * @return the file behind a file: URL, or null
+         */
+        private static File toFile(URL url) {
+            if (!"file".equals(url.getProtocol())) {
+                return null;
             }
-            URLConnection resConn = resURL.openConnection();
-
-            resConn.setUseCaches(false);
-            return resConn.getInputStream();
+            File file;
+            try {
+                file = new File(url.toURI());
+            } catch (URISyntaxException | IllegalArgumentException e) {
+                file = new File(url.getPath());
+            }
+            return file.isFile() ? file : null;
         }
     }
 
     /**
-     * The actual resource that gets cached
+     * The actual resource that gets cached. Either contentData holds the
+     * whole resource, or it is null and the resource is sent from file.
      */
     static class LocalResource {
 
         public final String contentType;
         public final byte[] contentData;
+        /** the gzipped content, or null if it is not worth compressing */
+        public final byte[] gzipData;
+        public final String etag;
+        public final String gzipEtag;
+        public final long length;
+        /** the modification time of the resource, or 0 if it is not known */
+        public final long lastModified;
+        /** the file behind the resource, or null */
+        public final File file;
 
         public LocalResource(String contentType, byte[] contentData) {
+            this(contentType, contentData, 0, null);
+        }
+
+        /**
+         * A resource held in memory
+         */
+        LocalResource(String contentType, byte[] contentData, long lastModified, File file) {
             this.contentType = contentType;
             this.contentData = contentData;
+            this.length = contentData.length;
+            this.lastModified = lastModified;
+            this.file = file;
+            this.etag = toETag(digest().digest(contentData));
+            this.gzipData = isCompressible(contentType) && contentData.length >= GZIP_MIN_SIZE ? gzip(contentData) : null;
+            this.gzipEtag = gzipData == null ? null : etag.substring(0, etag.length() - 1) + "-gzip\"";
+        }
+
+        /**
+         * A resource sent from its file
+         */
+        LocalResource(String contentType, File file, long length, long lastModified) throws IOException {
+            this.contentType = contentType;
+            this.contentData = null;
+            this.gzipData = null;
+            this.gzipEtag = null;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.file = file;
+            this.etag = toETag(digest(file, length));
+        }
+
+        /**
+         * @return true if the file behind the resource has changed since it
+         *     was loaded
+         */
+        public boolean isStale() {
+            return file != null && (file.lastModified() != lastModified || file.length() != length);
+        }
+
+        /**
+         * @return roughly the number of bytes the resource holds in memory
+         */
+        public long getWeight() {
+            return 128 + (contentData == null ? 0 : contentData.length) + (gzipData == null ? 0 : gzipData.length);
+        }
+
+        private static MessageDigest digest() {
+            try {
+                return MessageDigest.getInstance("SHA-1");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * Digest a file through read only mappings, without reading it into
+         * the heap
+         */
+        private static byte[] digest(File file, long length) throws IOException {
+            MessageDigest md = digest();
+            try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                long chunk = Integer.MAX_VALUE;
+                for (long pos = 0; pos < length; pos += chunk) {
+                    MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(chunk, length - pos));
+                    md.update(buf);
+                }
+            }
+            return md.digest();
+        }
+
+        private static String toETag(byte[] hash) {
+            StringBuilder sb = new StringBuilder(hash.length * 2 + 2);
+            sb.append('"');
+            for (byte b : hash) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.append('"').toString();
+        }
+
+        private static boolean isCompressible(String contentType) {
+            return contentType.startsWith("text/") || contentType.contains("javascript")
+                    || contentType.contains("json") || contentType.contains("xml");
+        }
+
+        /**
+         * @return the gzipped data, or null if it is no smaller
+         */
+        private static byte[] gzip(byte[] data) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 2);
+            try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+                out.write(data);
+            } catch (IOException e) {
+                return null;
+            }
+            return bytes.size() < data.length ? bytes.toByteArray() : null;
         }
     }
 
@@ -172,11 +532,77 @@ public class ResourceGateway extends HttpServlet {
         public Object getResource(ServletContext context, String name);
     }
 
+    /**
+     * Keeps resources in a size bounded {@link ResourceCache} stored in the
+     * servlet context. Resources whose files have changed are reloaded. The
+     * names of resources that weren't found are remembered in a small cache
+     * of their own, bounded by count.
+     */
     public static class CachingResourceProvider implements ResourceProvider {
 
+        private static final String CACHE_KEY = ResourceGateway.class.getName() + ".Cache";
+        private static final String NOT_FOUND_KEY = ResourceGateway.class.getName() + ".NotFound";
+
         @Override
         public Object getResource(ServletContext context, String name) {
-            return ContextServices.getObjectFromCache(context, name, new LocalReferenceFactory(context, name));
+            ResourceCache cache = getCache(context);
+            Object result = cache.get(name);
+            if (result instanceof LocalResource && ((LocalResource) result).isStale()) {
+                result = null;
+            }
+            if (result == null) {
+                Map<String, Boolean> notFound = getNotFoundCache(context);
+                if (notFound.containsKey(name)) {
+                    return RESOURCE_NOT_FOUND;
+                }
+                result = new LocalReferenceFactory(context, name).loadResource();
+                if (result instanceof LocalResource) {
+                    //large files only cost their metadata; anything in memory
+                    //(eg. from a jar) is cached against CACHE_SIZE, so it
+                    //isn't read, digested and gzipped again on every request
+                    LocalResource lr = (LocalResource) result;
+                    cache.put(name, lr, lr.getWeight());
+                } else {
+                    notFound.put(name, Boolean.TRUE);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * @return the cache of the given context, creating it if need be
+         */
+        public ResourceCache getCache(ServletContext context) {
+            ResourceCache cache = (ResourceCache) context.getAttribute(CACHE_KEY);
+            if (cache == null) {
+                synchronized (this) {
+                    cache = (ResourceCache) context.getAttribute(CACHE_KEY);
+                    if (cache == null) {
+                        cache = new ResourceCache(CACHE_SIZE);
+                        context.setAttribute(CACHE_KEY, cache);
+                    }
+                }
+            }
+            return cache;
+        }
+
+        /**
+         * @return the names that weren't found in the given context, creating
+         *     the cache if need be
+         */
+        @SuppressWarnings("unchecked")
+        public Map<String, Boolean> getNotFoundCache(ServletContext context) {
+            Map<String, Boolean> notFound = (Map<String, Boolean>) context.getAttribute(NOT_FOUND_KEY);
+            if (notFound == null) {
+                synchronized (this) {
+                    notFound = (Map<String, Boolean>) context.getAttribute(NOT_FOUND_KEY);
+                    if (notFound == null) {
+                        notFound = new ConcurrentReferenceCache<String, Boolean>(ReferenceType.STRONG, NOT_FOUND_CACHE_SIZE);
+                        context.setAttribute(NOT_FOUND_KEY, notFound);
+                    }
+                }
+            }
+            return notFound;
         }
     }
 
@@ -184,7 +610,7 @@ public class ResourceGateway extends HttpServlet {
 
         @Override
         public Object getResource(ServletContext context, String name) {
-            return new LocalReferenceFactory(context, name).getObjectReference().get();
+            return new LocalReferenceFactory(context, name).loadResource();
         }
     }
 
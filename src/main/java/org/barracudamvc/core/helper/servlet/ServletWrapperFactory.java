@@ -13,12 +13,12 @@ import org.barracudamvc.plankton.io.parser.URLEncoded.URLEncodedParser;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
-import java.io.ByteArrayInputStream;
 import java.util.*;
 
 public class ServletWrapperFactory {
     protected static final Logger logger = Logger.getLogger(ServletWrapperFactory.class.getName());
     private static final ContentParserFactory parser = new ContentParserFactory();
+    private static final URLEncodedParser queryParser = new URLEncodedParser();
     private static final String GET = "GET";
     private static final String POST = "POST";
     private static final String URL_FORM_ENCODED = "application/x-www-form-urlencoded";
@@ -63,7 +63,7 @@ public class ServletWrapperFactory {
     }
 
     private Map<String, String[]> parseURIParameters(HttpServletRequest request) {
-        Map<String, List<String>> parse = new URLEncodedParser().parse(new ByteArrayInputStream(request.getQueryString().getBytes()));
+        Map<String, List<String>> parse = queryParser.parse(request.getQueryString());
         return convertAtomicValuesToArray(parse);
     }
 
@@ -0,0 +1,119 @@
+package org.barracudamvc.core.http.content;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.commons.fileupload.FileItem;
+
+/**
+ * The parts of a multipart request as read by {@link StreamingMultipartParser}:
+ * the form fields, decoded and indexed by name, and the file parts, spooled
+ * to disk and indexed by field name. Names keep the order in which they first
+ * appeared in the request.
+ */
+public class MultipartContent {
+
+    private final Map<String, List<String>> fields = new LinkedHashMap<>();
+    private final Map<String, List<FileItem>> files = new LinkedHashMap<>();
+
+    void addField(String name, String value) {
+        List<String> values = fields.get(name);
+        if (values == null) {
+            values = new ArrayList<>(1);
+            fields.put(name, values);
+        }
+        values.add(value);
+    }
+
+    void addFile(FileItem item) {
+        List<FileItem> items = files.get(item.getFieldName());
+        if (items == null) {
+            items = new ArrayList<>(1);
+            files.put(item.getFieldName(), items);
+        }
+        items.add(item);
+    }
+
+    /**
+     * @return the names of the form fields
+     */
+    public Set<String> getFieldNames() {
+        return Collections.unmodifiableSet(fields.keySet());
+    }
+
+    /**
+     * @return the first value of the named form field, or null
+     */
+    public String getField(String name) {
+        List<String> values = fields.get(name);
+        return values == null ? null : values.get(0);
+    }
+
+    /**
+     * @return the values of the named form field, or null
+     */
+    public String[] getFieldValues(String name) {
+        List<String> values = fields.get(name);
+        return values == null ? null : values.toArray(new String[values.size()]);
+    }
+
+    /**
+     * @return the names of the file fields
+     */
+    public Set<String> getFileNames() {
+        return Collections.unmodifiableSet(files.keySet());
+    }
+
+    /**
+     * @return the files sent under the given field name (never null)
+     */
+    public List<FileItem> getFiles(String name) {
+        List<FileItem> items = files.get(name);
+        return items == null ? Collections.<FileItem>emptyList() : Collections.unmodifiableList(items);
+    }
+
+    /**
+     * @return every file part, in request order within each field
+     */
+    public List<FileItem> getAllFiles() {
+        List<FileItem> all = new ArrayList<>();
+        for (List<FileItem> items : files.values()) {
+            all.addAll(items);
+        }
+        return all;
+    }
+
+    /**
+     * @return the fields and files in the shape returned by
+     *         {@link ContentParser#getContent}
+     */
+    public Map<String, List<Object>> toContentMap() {
+        Map<String, List<Object>> map = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> entry : fields.entrySet()) {
+            map.put(entry.getKey(), new ArrayList<Object>(entry.getValue()));
+        }
+        for (Map.Entry<String, List<FileItem>> entry : files.entrySet()) {
+            List<Object> values = map.get(entry.getKey());
+            if (values == null) {
+                map.put(entry.getKey(), new ArrayList<Object>(entry.getValue()));
+            } else {
+                values.addAll(entry.getValue());
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Delete the spool files of every file part
+     */
+    public void delete() {
+        for (List<FileItem> items : files.values()) {
+            for (FileItem item : items) {
+                item.delete();
+            }
+        }
+    }
+}
@@ -18,10 +18,23 @@ import org.apache.commons.fileupload.servlet.ServletFileUpload;
 
 public class MultipartFileContentParser implements ContentParser {
 
+    /**
+     * Set to true to read requests with a {@link StreamingMultipartParser},
+     * which spools file parts straight to disk as {@link SpooledFileItem}s
+     */
+    public static boolean STREAMING = false;
     private static FileItemFactory fileItemFactory = new DiskFileItemFactory();
+    private static StreamingMultipartParser streamingParser = new StreamingMultipartParser();
 
     @Override
     public Map<String, List<Object>> getContent(HttpServletRequest request) {
+        if (STREAMING) {
+            try {
+                return streamingParser.parse(request).toContentMap();
+            } catch (Exception ex) {
+                return new MapOfList();
+            }
+        }
         ServletFileUpload upload = new ServletFileUpload(fileItemFactory);
 
         MapOfList result = new MapOfList();
@@ -0,0 +1,243 @@
+package org.barracudamvc.core.http.content;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import org.apache.commons.fileupload.FileItem;
+import org.apache.commons.fileupload.FileItemHeaders;
+import org.apache.commons.fileupload.ParameterParser;
+
+/**
+ * <p>A file part of a multipart request that was written straight to a spool
+ * file by {@link StreamingMultipartParser}. The content is never held in
+ * memory: {@link #getInputStream()} and {@link #getChannel()} read the spool
+ * file directly, and {@link #write(File)} moves it into place instead of
+ * copying it when it can.
+ *
+ * <p>The spool file is removed by {@link #delete()}, or when the item is
+ * garbage collected (as DiskFileItem does).
+ */
+public class SpooledFileItem implements FileItem {
+
+    /**
+     * the charset used by getString() when the part does not name one
+     */
+    public static final String DEFAULT_CHARSET = "ISO-8859-1";
+
+    private String fieldName;
+    private final String name;
+    private final String contentType;
+    private FileItemHeaders headers;
+    private File file;
+    private final long size;
+
+    /**
+     * @param ifieldName the name of the form field
+     * @param iname the original file name, as sent by the browser
+     * @param icontentType the content type of the part
+     * @param iheaders the part headers
+     * @param ifile the spool file holding the content
+     * @param isize the number of bytes in the spool file
+     */
+    public SpooledFileItem(String ifieldName, String iname, String icontentType, FileItemHeaders iheaders, File ifile, long isize) {
+        fieldName = ifieldName;
+        name = iname;
+        contentType = icontentType;
+        headers = iheaders;
+        file = ifile;
+        size = isize;
+    }
+
+    /**
+     * @return the spool file, or null once the item has been deleted or
+     *         moved with write(File)
+     */
+    public File getStoreLocation() {
+        return file;
+    }
+
+    /**
+     * Open a channel on the spool file. The caller must close it.
+     */
+    public ReadableByteChannel getChannel() throws IOException {
+        return FileChannel.open(getFile().toPath(), StandardOpenOption.READ);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return Channels.newInputStream(getChannel());
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @return the charset named by the part's content type, or null
+     */
+    public String getCharSet() {
+        if (contentType == null) {
+            return null;
+        }
+        ParameterParser parser = new ParameterParser();
+        parser.setLowerCaseNames(true);
+        return parser.parse(contentType, ';').get("charset");
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean isInMemory() {
+        return false;
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Read the whole content into memory. Prefer getInputStream or
+     * getChannel for large uploads.
+     */
+    @Override
+    public byte[] get() {
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("File item is too large to be held in memory: " + size + " bytes");
+        }
+        byte[] data = new byte[(int) size];
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        try (FileChannel ch = FileChannel.open(getFile().toPath(), StandardOpenOption.READ)) {
+            while (buf.hasRemaining() && ch.read(buf) != -1) {
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return data;
+    }
+
+    @Override
+    public String getString(String charset) throws UnsupportedEncodingException {
+        return new String(get(), charset);
+    }
+
+    @Override
+    public String getString() {
+        String charset = getCharSet();
+        try {
+            return getString(charset != null ? charset : DEFAULT_CHARSET);
+        } catch (UnsupportedEncodingException e) {
+            return new String(get());
+        }
+    }
+
+    /**
+     * Move the spool file to the destination, falling back to a channel
+     * transfer if it cannot be renamed (for example across file systems).
+     * The item cannot be read afterwards.
+     */
+    @Override
+    public void write(File dest) throws Exception {
+        File src = getFile();
+        try {
+            Files.move(src.toPath(), dest.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            try (FileChannel in = FileChannel.open(src.toPath(), StandardOpenOption.READ);
+                    FileChannel out = FileChannel.open(dest.toPath(), StandardOpenOption.WRITE,
+                            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                long pos = 0;
+                while (pos < size) {
+                    pos += in.transferTo(pos, size - pos, out);
+                }
+            }
+            src.delete();
+        }
+        file = null;
+    }
+
+    @Override
+    public void delete() {
+        File f = file;
+        file = null;
+        if (f != null && f.exists()) {
+            f.delete();
+        }
+    }
+
+    @Override
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    @Override
+    public void setFieldName(String val) {
+        fieldName = val;
+    }
+
+    @Override
+    public boolean isFormField() {
+        return false;
+    }
+
+    /**
+     * Spooled items are always file items
+     */
+    @Override
+    public void setFormField(boolean val) {
+        if (val) {
+            throw new UnsupportedOperationException("A spooled file item cannot be a form field");
+        }
+    }
+
+    /**
+     * The content is written once, while the request is parsed
+     */
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        throw new UnsupportedOperationException("A spooled file item is read only");
+    }
+
+    @Override
+    public FileItemHeaders getHeaders() {
+        return headers;
+    }
+
+    @Override
+    public void setHeaders(FileItemHeaders val) {
+        headers = val;
+    }
+
+    private File getFile() throws IllegalStateException {
+        if (file == null) {
+            throw new IllegalStateException("The spool file of " + fieldName + " has been deleted or moved");
+        }
+        return file;
+    }
+
+    @Override
+    protected void finalize() throws Throwable {
+        try {
+            delete();
+        } finally {
+            super.finalize();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SpooledFileItem{fieldName=" + fieldName + ", name=" + name + ", size=" + size + ", file=" + file + "}";
+    }
+}
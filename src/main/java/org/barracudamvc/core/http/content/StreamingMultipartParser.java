@@ -0,0 +1,186 @@
+package org.barracudamvc.core.http.content;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import javax.servlet.http.HttpServletRequest;
+import org.apache.commons.fileupload.FileCountLimitExceededException;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUploadBase;
+import org.apache.commons.fileupload.FileUploadException;
+import org.apache.commons.fileupload.ParameterParser;
+import org.apache.commons.fileupload.servlet.ServletFileUpload;
+import org.apache.commons.fileupload.util.Streams;
+
+/**
+ * <p>Reads a multipart request in a single pass over the commons-fileupload
+ * item iterator, instead of materializing every part as a FileItem first.
+ * Form fields are decoded as they are read and indexed by name; file parts
+ * are transferred from the request straight into a spool file with a
+ * FileChannel and returned as {@link SpooledFileItem}s, which handlers can
+ * read as an InputStream or a ReadableByteChannel without another copy.
+ *
+ * <p>A parser holds only its limits, so one instance may be shared by any
+ * number of requests.
+ */
+public class StreamingMultipartParser {
+
+    /**
+     * the number of bytes handed to each FileChannel.transferFrom call
+     */
+    public static long TRANSFER_SIZE = 1024 * 1024;
+
+    private static final String SPOOL_PREFIX = "upload_";
+    private static final String SPOOL_SUFFIX = ".tmp";
+
+    protected File repository;
+    protected long sizeMax = -1;
+    protected long fileSizeMax = -1;
+    protected long fileCountMax = -1;
+
+    /**
+     * Set the directory the spool files are written to. The default (null)
+     * is the system temporary directory.
+     */
+    public StreamingMultipartParser setRepository(File val) {
+        repository = val;
+        return this;
+    }
+
+    public File getRepository() {
+        return repository;
+    }
+
+    /**
+     * Set the maximum size of the whole request, -1 for no limit
+     */
+    public StreamingMultipartParser setSizeMax(long val) {
+        sizeMax = val;
+        return this;
+    }
+
+    public long getSizeMax() {
+        return sizeMax;
+    }
+
+    /**
+     * Set the maximum size of a single part, -1 for no limit
+     */
+    public StreamingMultipartParser setFileSizeMax(long val) {
+        fileSizeMax = val;
+        return this;
+    }
+
+    public long getFileSizeMax() {
+        return fileSizeMax;
+    }
+
+    /**
+     * Set the maximum number of parts (fields and files), -1 for no limit
+     */
+    public StreamingMultipartParser setFileCountMax(long val) {
+        fileCountMax = val;
+        return this;
+    }
+
+    public long getFileCountMax() {
+        return fileCountMax;
+    }
+
+    /**
+     * Read every part of the request. If the request cannot be read, any
+     * files spooled so far are deleted before the exception is thrown.
+     *
+     * @param req a multipart request
+     * @return the fields and spooled files of the request
+     * @throws FileUploadException if the request is malformed or exceeds a limit
+     * @throws IOException if the request or a spool file cannot be read or written
+     */
+    public MultipartContent parse(HttpServletRequest req) throws FileUploadException, IOException {
+        ServletFileUpload upload = new ServletFileUpload();
+        upload.setSizeMax(sizeMax);
+        upload.setFileSizeMax(fileSizeMax);
+
+        MultipartContent content = new MultipartContent();
+        boolean ok = false;
+        try {
+            FileItemIterator it = upload.getItemIterator(req);
+            long count = 0;
+            while (it.hasNext()) {
+                FileItemStream part = it.next();
+                if (fileCountMax != -1 && ++count > fileCountMax) {
+                    throw new FileCountLimitExceededException("Request has more than " + fileCountMax + " parts", fileCountMax);
+                }
+                InputStream in = part.openStream();
+                try {
+                    if (part.isFormField()) {
+                        content.addField(part.getFieldName(), Streams.asString(in, getCharset(req, part)));
+                    } else {
+                        content.addFile(spool(part, in));
+                    }
+                } finally {
+                    in.close();
+                }
+            }
+            ok = true;
+            return content;
+        } catch (FileUploadBase.FileUploadIOException e) {
+            // a limit was exceeded while a part was being read
+            throw (FileUploadException) e.getCause();
+        } finally {
+            if (!ok) {
+                content.delete();
+            }
+        }
+    }
+
+    /**
+     * Transfer a file part into a new spool file
+     */
+    protected SpooledFileItem spool(FileItemStream part, InputStream in) throws IOException {
+        File file = File.createTempFile(SPOOL_PREFIX, SPOOL_SUFFIX, repository);
+        long size = 0;
+        boolean ok = false;
+        try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            ReadableByteChannel src = Channels.newChannel(in);
+            long n;
+            while ((n = out.transferFrom(src, size, TRANSFER_SIZE)) > 0) {
+                size += n;
+            }
+            ok = true;
+        } finally {
+            if (!ok) {
+                file.delete();
+            }
+        }
+        return new SpooledFileItem(part.getFieldName(), part.getName(), part.getContentType(), part.getHeaders(), file, size);
+    }
+
+    /**
+     * The charset for a form field: the request's encoding, else the one
+     * named by the part, else ISO-8859-1 (as for FileItem.getString()).
+     * An unknown charset also falls back to ISO-8859-1.
+     */
+    private static String getCharset(HttpServletRequest req, FileItemStream part) {
+        String charset = req.getCharacterEncoding();
+        if (charset == null && part.getContentType() != null) {
+            ParameterParser parser = new ParameterParser();
+            parser.setLowerCaseNames(true);
+            charset = parser.parse(part.getContentType(), ';').get("charset");
+        }
+        try {
+            if (charset != null && Charset.isSupported(charset)) {
+                return charset;
+            }
+        } catch (IllegalArgumentException e) {
+            //illegal charset name, fall through to the default
+        }
+        return SpooledFileItem.DEFAULT_CHARSET;
+    }
+}
@@ -7,21 +7,45 @@
 package org.barracudamvc.core.http.content;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import javax.servlet.http.HttpServletRequest;
+import org.barracudamvc.plankton.io.parser.URLEncoded.LimitExceededException;
 import org.barracudamvc.plankton.io.parser.URLEncoded.URLEncodedParser;
 
 public class UrlEncodedContentParser implements ContentParser {
 
     private static final URLEncodedParser parser = new URLEncodedParser();
 
+    /**
+     * @throws LimitExceededException if the body goes over one of the
+     *     parser's limits; it is left to the gateway to turn that into a 413
+     *     (unlike an unreadable body, which just gives no content)
+     */
+    @Override
     public Map<String, List<Object>> getContent(HttpServletRequest request) {
         try {
-            return (Map) parser.parse(request.getInputStream());
+            return (Map) parser.parse(request.getInputStream(), getCharset(request));
         } catch (IOException ex) {
             return Collections.<String, List<Object>>emptyMap();
         }
     }
+
+    /**
+     * Use the request's character encoding if it has one we know about,
+     * otherwise the parser's default (UTF-8)
+     */
+    private Charset getCharset(HttpServletRequest request) {
+        String encoding = request.getCharacterEncoding();
+        if (encoding != null) {
+            try {
+                return Charset.forName(encoding);
+            } catch (IllegalArgumentException e) {
+                //unknown or illegal encoding, fall through to the default
+            }
+        }
+        return parser.getCharset();
+    }
 }
@@ -0,0 +1,89 @@
+package org.barracudamvc.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>A lock-free histogram of non-negative values. Values are counted in
+ * power of two buckets, so percentiles are estimates that are accurate to
+ * within a factor of two (the upper bound of the bucket is reported), while
+ * the count, total, minimum and maximum are exact.
+ */
+public class Histogram {
+
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Record a value (negative values are counted as 0)
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        buckets.incrementAndGet(bucket(value));
+        total.addAndGet(value);
+        long cur;
+        while (value < (cur = min.get()) && !min.compareAndSet(cur, value)) {
+        }
+        while (value > (cur = max.get()) && !max.compareAndSet(cur, value)) {
+        }
+    }
+
+    /**
+     * bucket 0 holds 0, bucket n holds values in [2^(n-1), 2^n)
+     */
+    private static int bucket(long value) {
+        return BUCKETS - Long.numberOfLeadingZeros(value);
+    }
+
+    private static long upperBound(int bucket) {
+        return bucket == 0 ? 0 : (bucket >= BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1);
+    }
+
+    /**
+     * @return a consistent enough copy of the histogram for reporting (values
+     *         recorded while the snapshot is taken may or may not be included)
+     */
+    public HistogramSnapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            n += counts[i];
+        }
+        if (n == 0) {
+            return new HistogramSnapshot(0, 0, 0, 0, 0, 0, 0);
+        }
+        return new HistogramSnapshot(n, total.get(), Math.min(min.get(), max.get()), max.get(),
+                percentile(counts, n, 0.50), percentile(counts, n, 0.90), percentile(counts, n, 0.99));
+    }
+
+    private long percentile(long[] counts, long n, double p) {
+        long rank = (long) Math.ceil(n * p);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Discard all recorded values
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        total.set(0);
+        min.set(Long.MAX_VALUE);
+        max.set(Long.MIN_VALUE);
+    }
+}
@@ -0,0 +1,141 @@
+package org.barracudamvc.core.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.apache.log4j.Logger;
+
+/**
+ * <p>A collector that keeps everything in memory: a {@link Histogram} for
+ * every timed or sampled metric and a counter for every counted one. It can
+ * be registered as an MXBean with {@link #registerMBean()} and is what
+ * {@link MetricsServlet} reports on.
+ */
+public class HistogramMetricsCollector implements MetricsCollector, MetricsMXBean {
+
+    protected static final Logger logger = Logger.getLogger(HistogramMetricsCollector.class.getName());
+
+    public static String DEFAULT_OBJECT_NAME = "org.barracudamvc:type=Metrics";
+
+    protected final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+    protected final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private ObjectName objectName = null;
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void recordTime(String name, long nanos) {
+        getHistogram(name).record(nanos);
+    }
+
+    @Override
+    public void recordValue(String name, long value) {
+        getHistogram(name).record(value);
+    }
+
+    @Override
+    public void increment(String name, long delta) {
+        AtomicLong counter = counters.get(name);
+        if (counter == null) {
+            AtomicLong prev = counters.putIfAbsent(name, counter = new AtomicLong());
+            if (prev != null) {
+                counter = prev;
+            }
+        }
+        counter.addAndGet(delta);
+    }
+
+    /**
+     * @return the histogram for a metric, created if necessary
+     */
+    public Histogram getHistogram(String name) {
+        Histogram h = histograms.get(name);
+        if (h == null) {
+            Histogram prev = histograms.putIfAbsent(name, h = new Histogram());
+            if (prev != null) {
+                h = prev;
+            }
+        }
+        return h;
+    }
+
+    /**
+     * @return the current value of a counter
+     */
+    public long getCounter(String name) {
+        AtomicLong counter = counters.get(name);
+        return counter == null ? 0 : counter.get();
+    }
+
+    @Override
+    public Map<String, HistogramSnapshot> getHistograms() {
+        Map<String, HistogramSnapshot> result = new TreeMap<>();
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().get());
+        }
+        return result;
+    }
+
+    @Override
+    public double getPoolHitRate() {
+        long hits = getCounter(Metrics.POOL_HIT);
+        long total = hits + getCounter(Metrics.POOL_MISS);
+        return total == 0 ? Double.NaN : (double) hits / total;
+    }
+
+    @Override
+    public void reset() {
+        histograms.clear();
+        counters.clear();
+    }
+
+    /**
+     * Register this collector with the platform MBean server under
+     * DEFAULT_OBJECT_NAME
+     */
+    public synchronized void registerMBean() throws JMException {
+        if (objectName != null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(DEFAULT_OBJECT_NAME);
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+        server.registerMBean(this, name);
+        objectName = name;
+    }
+
+    /**
+     * Remove this collector from the platform MBean server
+     */
+    public synchronized void unregisterMBean() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            logger.warn("Unable to unregister " + objectName + ": " + e);
+        }
+        objectName = null;
+    }
+}
@@ -0,0 +1,63 @@
+package org.barracudamvc.core.metrics;
+
+/**
+ * A point in time summary of a {@link Histogram}
+ */
+public class HistogramSnapshot {
+
+    private final long count;
+    private final long total;
+    private final long min;
+    private final long max;
+    private final long p50;
+    private final long p90;
+    private final long p99;
+
+    public HistogramSnapshot(long icount, long itotal, long imin, long imax, long ip50, long ip90, long ip99) {
+        count = icount;
+        total = itotal;
+        min = imin;
+        max = imax;
+        p50 = ip50;
+        p90 = ip90;
+        p99 = ip99;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public long getMin() {
+        return min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : (double) total / count;
+    }
+
+    public long getP50() {
+        return p50;
+    }
+
+    public long getP90() {
+        return p90;
+    }
+
+    public long getP99() {
+        return p99;
+    }
+
+    @Override
+    public String toString() {
+        return "count:" + count + " mean:" + (long) getMean() + " min:" + min + " p50:" + p50
+                + " p90:" + p90 + " p99:" + p99 + " max:" + max;
+    }
+}
@@ -0,0 +1,67 @@
+package org.barracudamvc.core.metrics;
+
+/**
+ * <p>Holds the installed {@link MetricsCollector} and defines the names the
+ * framework records under:
+ *
+ * <ul>
+ *   <li><strong>dispatch.</strong><em>event class</em> - time to notify the
+ *       listeners of an event</li>
+ *   <li><strong>listener.</strong><em>listener class</em> - time spent in a
+ *       listener's handleEvent</li>
+ *   <li><strong>phase.</strong><em>phase</em> - time spent in a view phase
+ *       (pre-render, render, post-render, serialize, block-iterate)</li>
+ *   <li><strong>queue.depth</strong> - events dispatched per request</li>
+ *   <li><strong>pool.hit</strong> / <strong>pool.miss</strong> - event pool
+ *       checkouts served from / not served from the pool</li>
+ *   <li><strong>response.bytes</strong> - bytes written per serialized page</li>
+ * </ul>
+ */
+public final class Metrics {
+
+    public static final String DISPATCH_PREFIX = "dispatch.";
+    public static final String LISTENER_PREFIX = "listener.";
+    public static final String PHASE_PREFIX = "phase.";
+    public static final String PHASE_PRE_RENDER = PHASE_PREFIX + "pre-render";
+    public static final String PHASE_RENDER = PHASE_PREFIX + "render";
+    public static final String PHASE_POST_RENDER = PHASE_PREFIX + "post-render";
+    public static final String PHASE_SERIALIZE = PHASE_PREFIX + "serialize";
+    public static final String PHASE_BLOCK_ITERATE = PHASE_PREFIX + "block-iterate";
+    public static final String QUEUE_DEPTH = "queue.depth";
+    public static final String POOL_HIT = "pool.hit";
+    public static final String POOL_MISS = "pool.miss";
+    public static final String RESPONSE_BYTES = "response.bytes";
+
+    private static volatile MetricsCollector collector = NoOpMetricsCollector.INSTANCE;
+
+    private Metrics() {
+    }
+
+    /**
+     * @return the installed collector (never null)
+     */
+    public static MetricsCollector getCollector() {
+        return collector;
+    }
+
+    /**
+     * Install a collector; null restores the no-op collector
+     */
+    public static void setCollector(MetricsCollector icollector) {
+        collector = (icollector == null ? NoOpMetricsCollector.INSTANCE : icollector);
+    }
+
+    /**
+     * @return the dispatch metric name for a class of event
+     */
+    public static String dispatch(Class<?> eventClass) {
+        return DISPATCH_PREFIX + eventClass.getName();
+    }
+
+    /**
+     * @return the listener metric name for a class of listener
+     */
+    public static String listener(Class<?> listenerClass) {
+        return LISTENER_PREFIX + listenerClass.getName();
+    }
+}
@@ -0,0 +1,45 @@
+package org.barracudamvc.core.metrics;
+
+/**
+ * <p>The service provider interface for event/render pipeline metrics. The
+ * framework reports into whichever collector is installed with
+ * {@link Metrics#setCollector(MetricsCollector)}; by default that is a no-op
+ * collector, so the instrumentation costs nothing more than an isEnabled()
+ * check.
+ *
+ * <p>Metrics are identified by name (see the constants and helpers in
+ * {@link Metrics}). Implementations are called concurrently from request
+ * threads and must not block.
+ */
+public interface MetricsCollector {
+
+    /**
+     * @return false if nothing is recorded, in which case callers may skip
+     *         taking measurements altogether
+     */
+    boolean isEnabled();
+
+    /**
+     * Record the duration of an operation
+     *
+     * @param name the metric name
+     * @param nanos the duration in nanoseconds
+     */
+    void recordTime(String name, long nanos);
+
+    /**
+     * Record a sampled value, such as a size or a depth
+     *
+     * @param name the metric name
+     * @param value the value
+     */
+    void recordValue(String name, long value);
+
+    /**
+     * Add to a counter
+     *
+     * @param name the metric name
+     * @param delta the amount to add
+     */
+    void increment(String name, long delta);
+}
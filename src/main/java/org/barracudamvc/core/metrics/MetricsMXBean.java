@@ -0,0 +1,22 @@
+package org.barracudamvc.core.metrics;
+
+import java.util.Map;
+
+/**
+ * The JMX view of a {@link HistogramMetricsCollector}. Times are in
+ * nanoseconds.
+ */
+public interface MetricsMXBean {
+
+    Map<String, HistogramSnapshot> getHistograms();
+
+    Map<String, Long> getCounters();
+
+    /**
+     * @return hits / (hits + misses) for the event pool, or NaN if the pool
+     *         has not been used
+     */
+    double getPoolHitRate();
+
+    void reset();
+}
@@ -0,0 +1,144 @@
+package org.barracudamvc.core.metrics;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Map;
+import javax.management.JMException;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.log4j.Logger;
+import org.barracudamvc.plankton.io.parser.json.JSONWriter;
+
+/**
+ * <p>A lightweight status page for the pipeline metrics. GET reports the
+ * histograms (times in nanoseconds) and counters of the installed
+ * {@link HistogramMetricsCollector} as plain text, or as JSON when called
+ * with format=json; POST resets them.
+ *
+ * <p>Init params:
+ * <ul>
+ *   <li><strong>Install</strong> (default true) - install a
+ *       HistogramMetricsCollector when init() finds none installed</li>
+ *   <li><strong>RegisterMBean</strong> (default false) - also register the
+ *       collector with the platform MBean server</li>
+ * </ul>
+ *
+ * <p>The page exposes class names and timings, so map it somewhere that is
+ * not publicly reachable.
+ */
+public class MetricsServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1;
+
+    protected static final Logger logger = Logger.getLogger(MetricsServlet.class.getName());
+
+    private static final String INSTALL = "Install";
+    private static final String REGISTER_MBEAN = "RegisterMBean";
+
+    private HistogramMetricsCollector registered = null;
+
+    @Override
+    public void init() throws ServletException {
+        String install = getInitParameter(INSTALL);
+        if ((install == null || Boolean.parseBoolean(install.trim()))
+                && !(Metrics.getCollector() instanceof HistogramMetricsCollector)) {
+            Metrics.setCollector(new HistogramMetricsCollector());
+        }
+        String register = getInitParameter(REGISTER_MBEAN);
+        if (register != null && Boolean.parseBoolean(register.trim())) {
+            HistogramMetricsCollector collector = getHistogramCollector();
+            if (collector != null) {
+                try {
+                    collector.registerMBean();
+                    registered = collector;
+                } catch (JMException e) {
+                    logger.warn("Unable to register metrics MBean: " + e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (registered != null) {
+            registered.unregisterMBean();
+            registered = null;
+        }
+    }
+
+    /**
+     * @return the installed collector if it is a HistogramMetricsCollector,
+     *         otherwise null
+     */
+    protected HistogramMetricsCollector getHistogramCollector() {
+        MetricsCollector collector = Metrics.getCollector();
+        return collector instanceof HistogramMetricsCollector ? (HistogramMetricsCollector) collector : null;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        resp.setHeader("Cache-Control", "no-cache");
+        HistogramMetricsCollector collector = getHistogramCollector();
+        if (collector == null) {
+            resp.sendError(HttpServletResponse.SC_NOT_FOUND, "No in-memory metrics collector is installed");
+            return;
+        }
+        Map<String, HistogramSnapshot> histograms = collector.getHistograms();
+        Map<String, Long> counters = collector.getCounters();
+        double hitRate = collector.getPoolHitRate();
+
+        if ("json".equals(req.getParameter("format"))) {
+            resp.setContentType("application/json");
+            resp.setCharacterEncoding("UTF-8");
+            JSONWriter json = new JSONWriter(resp.getWriter());
+            json.beginObject().name("histograms").beginObject();
+            for (Map.Entry<String, HistogramSnapshot> entry : histograms.entrySet()) {
+                HistogramSnapshot s = entry.getValue();
+                json.name(entry.getKey()).beginObject()
+                        .name("count").value(s.getCount())
+                        .name("mean").value(s.getMean())
+                        .name("min").value(s.getMin())
+                        .name("p50").value(s.getP50())
+                        .name("p90").value(s.getP90())
+                        .name("p99").value(s.getP99())
+                        .name("max").value(s.getMax())
+                        .endObject();
+            }
+            json.endObject().name("counters").value(counters);
+            json.name("poolHitRate");
+            if (Double.isNaN(hitRate)) {
+                json.nullValue();
+            } else {
+                json.value(hitRate);
+            }
+            json.endObject().flush();
+        } else {
+            resp.setContentType("text/plain");
+            resp.setCharacterEncoding("UTF-8");
+            PrintWriter out = resp.getWriter();
+            for (Map.Entry<String, HistogramSnapshot> entry : histograms.entrySet()) {
+                out.println(entry.getKey() + " " + entry.getValue());
+            }
+            for (Map.Entry<String, Long> entry : counters.entrySet()) {
+                out.println(entry.getKey() + " " + entry.getValue());
+            }
+            if (!Double.isNaN(hitRate)) {
+                out.println("pool.hitRate " + hitRate);
+            }
+            out.flush();
+        }
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        HistogramMetricsCollector collector = getHistogramCollector();
+        if (collector == null) {
+            resp.sendError(HttpServletResponse.SC_NOT_FOUND, "No in-memory metrics collector is installed");
+            return;
+        }
+        collector.reset();
+        resp.setStatus(HttpServletResponse.SC_NO_CONTENT);
+    }
+}
@@ -0,0 +1,29 @@
+package org.barracudamvc.core.metrics;
+
+/**
+ * The default collector, which records nothing
+ */
+public final class NoOpMetricsCollector implements MetricsCollector {
+
+    public static final NoOpMetricsCollector INSTANCE = new NoOpMetricsCollector();
+
+    private NoOpMetricsCollector() {
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+
+    @Override
+    public void recordTime(String name, long nanos) {
+    }
+
+    @Override
+    public void recordValue(String name, long value) {
+    }
+
+    @Override
+    public void increment(String name, long delta) {
+    }
+}
@@ -0,0 +1,270 @@
+package org.barracudamvc.core.util.dom;
+
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.w3c.dom.Document;
+
+/**
+ * <p>A DOMFactory that sits in front of another DOMFactory and keeps the first
+ * document it gets for each template as a prototype. Every subsequent request
+ * for the template gets a deep clone of the prototype, which saves instantiating
+ * (or re-parsing) the template each time. XMLC generated documents clone
+ * themselves along with their access methods, so the clones behave exactly like
+ * freshly created instances.
+ *
+ * <p>Templates are keyed by class (DefaultDOMLoader has already resolved the locale
+ * by the time it calls the factory, so each locale variant gets its own prototype)
+ * or by document path. Prototypes are held through soft references, so they can be
+ * reclaimed under memory pressure, and the number of prototypes is capped (the least
+ * recently used ones are evicted first). Hit and miss counts are kept so you can see
+ * how well the cache is doing.
+ *
+ * <p>Since the prototype is never reloaded, don't use this with a factory that is
+ * expected to pick up changes to the templates on the fly (ie. during development).
+ * To use it, wrap the loader's factory:
+ * <pre>
+ *   DefaultDOMLoader.getGlobalInstance().setDefaultDOMFactory(
+ *           new CachingDOMFactory(new XMLCDeferredParsingDOMFactory()));
+ * </pre>
+ */
+public class CachingDOMFactory implements DOMFactory {
+
+    protected static final Logger logger = Logger.getLogger(CachingDOMFactory.class.getName());
+
+    /**
+     * default maximum number of prototypes to keep
+     */
+    public static int DEFAULT_MAX_ENTRIES = 256;
+
+    protected DOMFactory delegate = null;
+    protected volatile int maxEntries = DEFAULT_MAX_ENTRIES;
+
+    private final ConcurrentMap<Object, Entry> prototypes = new ConcurrentHashMap<Object, Entry>();
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Create a caching factory in front of an XMLCDeferredParsingDOMFactory
+     * (the same factory DefaultDOMLoader uses by default)
+     */
+    public CachingDOMFactory() {
+        this(new XMLCDeferredParsingDOMFactory());
+    }
+
+    /**
+     * Create a caching factory in front of the given factory
+     *
+     * @param idelegate the factory that actually creates the documents
+     */
+    public CachingDOMFactory(DOMFactory idelegate) {
+        delegate = idelegate;
+    }
+
+    /**
+     * Get a new instance of the DOM associated with the given class
+     *
+     * @param clazz the class to be loaded as a DOM object
+     * @return a clone of the cached prototype for that class
+     */
+    @Override
+    public Document getInstance(final Class<?> clazz) throws IOException {
+        return checkout(clazz, new Loader() {
+            @Override
+            public Document load() throws IOException {
+                return delegate.getInstance(clazz);
+            }
+        });
+    }
+
+    /**
+     * Get a new instance of the DOM located at the given path
+     *
+     * @param docPath the path to the document
+     * @return a clone of the cached prototype for that path
+     */
+    @Override
+    public Document getInstance(final String docPath) throws IOException {
+        return checkout(docPath, new Loader() {
+            @Override
+            public Document load() throws IOException {
+                return delegate.getInstance(docPath);
+            }
+        });
+    }
+
+    /**
+     * Return a clone of the prototype for the given key, loading the
+     * prototype first if necessary
+     */
+    protected Document checkout(Object key, Loader loader) throws IOException {
+        Entry entry = prototypes.get(key);
+        Document clone = (entry != null ? entry.checkout(clock.incrementAndGet()) : null);
+        if (clone != null) {
+            hits.incrementAndGet();
+            return clone;
+        }
+
+        misses.incrementAndGet();
+        Document prototype = loader.load();
+        if (prototype == null) {
+            return null;
+        }
+        entry = new Entry(prototype, clock.incrementAndGet());
+        try {
+            clone = entry.checkout(clock.incrementAndGet());
+        } catch (RuntimeException e) {
+            clone = null;
+        }
+        if (clone == null) {
+            //couldn't clone it, so don't bother caching it either
+            if (logger.isDebugEnabled()) logger.debug("Unable to clone " + key + ", not caching it");
+            return prototype;
+        }
+        prototypes.put(key, entry);
+        evictIfNecessary();
+        return clone;
+    }
+
+    /**
+     * Remove the least recently used prototypes (and any that have been
+     * reclaimed) if we're holding more than maxEntries
+     */
+    private void evictIfNecessary() {
+        while (prototypes.size() > maxEntries) {
+            Object oldestKey = null;
+            Entry oldest = null;
+            for (Map.Entry<Object, Entry> me : prototypes.entrySet()) {
+                Entry entry = me.getValue();
+                if (entry.isCleared()) {
+                    oldestKey = me.getKey();
+                    oldest = entry;
+                    break;
+                }
+                if (oldest == null || entry.lastUsed < oldest.lastUsed) {
+                    oldestKey = me.getKey();
+                    oldest = entry;
+                }
+            }
+            if (oldestKey == null) {
+                return;
+            }
+            if (prototypes.remove(oldestKey, oldest)) {
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Throw away all the cached prototypes
+     */
+    public void clear() {
+        prototypes.clear();
+    }
+
+    /**
+     * Throw away the cached prototype for a particular template
+     *
+     * @param key the template class or document path
+     */
+    public void invalidate(Object key) {
+        prototypes.remove(key);
+    }
+
+    public DOMFactory getDelegate() {
+        return delegate;
+    }
+
+    public void setDelegate(DOMFactory idelegate) {
+        delegate = idelegate;
+        clear();
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int imaxEntries) {
+        maxEntries = imaxEntries;
+        evictIfNecessary();
+    }
+
+    /**
+     * @return the number of prototypes currently cached
+     */
+    public int size() {
+        return prototypes.size();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * @return the fraction of requests that were served from a cached
+     * prototype (0 if there haven't been any)
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return (total == 0 ? 0 : (double) h / total);
+    }
+
+    @Override
+    public String toString() {
+        return "CachingDOMFactory[" + delegate + ", size=" + size() + ", hits=" + getHitCount() + ", misses=" + getMissCount() + "]";
+    }
+
+    /**
+     * Loads a prototype from the delegate
+     */
+    protected interface Loader {
+        Document load() throws IOException;
+    }
+
+    /**
+     * A cached prototype. Cloning reads the prototype, and DOM implementations
+     * aren't necessarily safe for concurrent readers (lazy DOMs expand nodes as they
+     * are visited) so each prototype is only cloned by one thread at a time.
+     */
+    private static final class Entry {
+
+        private final SoftReference<Document> prototype;
+        volatile long lastUsed;
+
+        Entry(Document iprototype, long now) {
+            prototype = new SoftReference<Document>(iprototype);
+            lastUsed = now;
+        }
+
+        Document checkout(long now) {
+            Document doc = prototype.get();
+            if (doc == null) {
+                return null;
+            }
+            lastUsed = now;
+            synchronized (this) {
+                return (Document) doc.cloneNode(true);
+            }
+        }
+
+        boolean isCleared() {
+            return prototype.get() == null;
+        }
+    }
+}
@@ -36,6 +36,9 @@ import org.w3c.dom.Document;
  * <p>Where Implementations do not support a particular getInstance() method,
  * they should simply throw an IOException and document their lack of support.</p>
  *
+ * <p>DefaultDOMLoader does not serialize calls to its factories, so implementations
+ * must be safe to call from several threads at once.</p>
+ *
  * @see DOMLoader
  */
 public interface DOMFactory {
@@ -48,7 +51,7 @@ public interface DOMFactory {
      * @return a Document object
      * @throws IOException
      */
-    public Document getInstance(Class clazz) throws IOException;
+    public Document getInstance(Class<?> clazz) throws IOException;
     
     /**
      * Obtain an instance of the DOM from a path to a document.  The syntax of
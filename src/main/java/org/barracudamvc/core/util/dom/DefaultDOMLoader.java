@@ -20,22 +20,44 @@
 package org.barracudamvc.core.util.dom;
 
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.apache.log4j.Logger;
+import org.barracudamvc.plankton.data.ConcurrentReferenceCache;
+import org.barracudamvc.plankton.data.ConcurrentReferenceCache.ReferenceType;
 import org.w3c.dom.Document;
 
 
 /**
  * Default implementation of a DOMLoader
  *
+ * <p>The loader doesn't hold any locks while documents are being created, so
+ * unrelated templates load in parallel. Working out which class to use for a
+ * particular class/locale combination is done once per combination and then
+ * remembered (as are the locale variants that turned out not to exist), so
+ * after warm-up it costs a single map lookup.
+ *
  * @see DOMLoader
  */
 public class DefaultDOMLoader implements DOMLoader {
 
     protected static final Logger logger = Logger.getLogger(DefaultDOMLoader.class.getName());
 
+    /**
+     * the maximum number of class lookups (found or not) remembered; the
+     * least recently used are forgotten first
+     */
+    public static int MAX_CLASS_LOOKUPS = 2000;
+
+    /**
+     * the maximum number of class/locale resolutions remembered; the least
+     * recently used are forgotten first (locales come from the client, so
+     * there is no natural limit to how many turn up)
+     */
+    public static int MAX_RESOLUTIONS = 2000;
+
     /**
      * @see #getGlobalInstance()
      */
@@ -50,12 +72,12 @@ public class DefaultDOMLoader implements DOMLoader {
      * used for flagging whether the globalLoader has been initialized and
      * avoiding unnecessary instantiation and synchronization.
      */
-    protected static boolean initialized = false;
+    protected static volatile boolean initialized = false;
 
     /**
      * @see #setDefaultDOMFactory(DOMFactory)
      */
-    protected DOMFactory defaultDOMFactory = null;
+    protected volatile DOMFactory defaultDOMFactory = null;
     
     /**
      * @see #registerDOMFactory(DOMFactory, String)
@@ -66,7 +88,12 @@ public class DefaultDOMLoader implements DOMLoader {
     /**
      * @see #lookupClass(String)
      */
-    protected Map<String, Class> classmap = null;
+    protected ConcurrentMap<String, ClassRef> classmap = null;
+
+    /**
+     * class/locale combinations that have already been resolved
+     */
+    protected ConcurrentMap<ResolutionKey, Resolution> resolutions = null;
 
     /**
      * Make sure no one can directly instantiate this class using the
@@ -75,8 +102,9 @@ public class DefaultDOMLoader implements DOMLoader {
      */
     private DefaultDOMLoader() {
         defaultDOMFactory = new XMLCDeferredParsingDOMFactory();
-        factories = new HashMap<String, DOMFactory>();
-        classmap = new HashMap<String, Class>();
+        factories = new ConcurrentHashMap<String, DOMFactory>();
+        classmap = new ConcurrentReferenceCache<String, ClassRef>(ReferenceType.STRONG, MAX_CLASS_LOOKUPS);
+        resolutions = new ConcurrentReferenceCache<ResolutionKey, Resolution>(ReferenceType.STRONG, MAX_RESOLUTIONS);
     }
 
     /**
@@ -130,6 +158,41 @@ public class DefaultDOMLoader implements DOMLoader {
      * then invokes a dom factory to load the document associated with the class
      */
     private Document _getDOM(String className, Locale locale) throws IOException {
+        Resolution resolution = resolve(className, locale);
+        if (resolution == null) throw new IOException("Unexpected Invalid class: class is null"); //essentially impossible for this to happen
+
+        //at this point we should have a valid class; now we
+        //need to create a DOM for it
+        if (logger.isDebugEnabled()) logger.debug("Loading DOM");
+        DOMFactory df = factories.get(resolution.targetName);
+        if (df!=null) {
+            return df.getInstance(resolution.targetClass);
+        }
+        return defaultDOMFactory.getInstance(resolution.targetClass);
+    }
+
+    /**
+     * Figure out the real class to use for a given class name and locale,
+     * remembering the answer for next time
+     *
+     * @return the resolved class, or null if not even the base class exists
+     */
+    private Resolution resolve(String className, Locale locale) {
+        ResolutionKey key = new ResolutionKey(className, locale);
+        Resolution resolution = resolutions.get(key);
+        if (resolution == null) {
+            resolution = resolveUncached(className, locale);
+            if (resolution != null) {
+                Resolution existing = resolutions.putIfAbsent(key, resolution);
+                if (existing != null) {
+                    resolution = existing;
+                }
+            }
+        }
+        return resolution;
+    }
+
+    private Resolution resolveUncached(String className, Locale locale) {
         //first we need to figure out the real class name (taking into account
         //the locale). To do this, we must understand the naming convention. As
         //with resource bundles, we'll look for class name + locale. For example,
@@ -160,18 +223,7 @@ public class DefaultDOMLoader implements DOMLoader {
             targetClass = lookupClass(targetName);
         }
         if (logger.isDebugEnabled()) logger.debug("Target class: "+targetClass);
-        if (targetClass==null) throw new IOException("Unexpected Invalid class: class is null"); //essentially impossible for this to happen
-
-        //at this point we should have a valid class; now we
-        //need to create a DOM for it
-        synchronized (factories) {
-            if (logger.isDebugEnabled()) logger.debug("Loading DOM");
-            DOMFactory df = (DOMFactory) factories.get(targetName);
-            if (df!=null) {
-                return df.getInstance(targetClass);
-            }
-            return defaultDOMFactory.getInstance(targetClass);
-        }
+        return (targetClass!=null ? new Resolution(targetName, targetClass) : null);
     }
 
     /**
@@ -184,14 +236,12 @@ public class DefaultDOMLoader implements DOMLoader {
         if (docPath==null) throw new IOException("Invalid document path:"+docPath);
         
         //need to create a DOM for it
-        synchronized (factories) {
-            if (logger.isDebugEnabled()) logger.debug("Loading DOM");
-            DOMFactory df = (DOMFactory) factories.get(docPath);
-            if (df!=null) {
-                return df.getInstance(docPath);
-            }
-            return defaultDOMFactory.getInstance(docPath);
+        if (logger.isDebugEnabled()) logger.debug("Loading DOM");
+        DOMFactory df = factories.get(docPath);
+        if (df!=null) {
+            return df.getInstance(docPath);
         }
+        return defaultDOMFactory.getInstance(docPath);
     }
 
     /**
@@ -209,25 +259,28 @@ public class DefaultDOMLoader implements DOMLoader {
 
     /**
      * Find a stored reference to a class. If not found, instantiate it
-     * and store it for later reference and faster retrieval.
+     * and store it for later reference and faster retrieval. Classes that
+     * can't be found are remembered too, so missing locale variants only
+     * get looked for once.
      *
      * @param className the fully qualified name of a class
-     * @return the instantiated class
+     * @return the instantiated class, or null if there is no such class
      */
     protected Class lookupClass(String className) {
-        synchronized (classmap) {
-            //first see if we have a reference to that class in our classmap
-            Class clazz = (Class) classmap.get(className);
-
-            //if not, try to instantiate it
-            if (clazz==null) {
-                try {
-                    clazz = Class.forName(className, true, Thread.currentThread().getContextClassLoader());
-                    classmap.put(className, clazz);
-                } catch (Exception e) {}
-            }
-            return clazz;
+        //first see if we have a reference to that class in our classmap
+        ClassRef ref = classmap.get(className);
+
+        //if not, try to instantiate it
+        if (ref==null) {
+            Class clazz = null;
+            try {
+                clazz = Class.forName(className, true, Thread.currentThread().getContextClassLoader());
+            } catch (Exception e) {}
+            ref = new ClassRef(clazz);
+            ClassRef existing = classmap.putIfAbsent(className, ref);
+            if (existing!=null) ref = existing;
         }
+        return ref.clazz;
     }
 
     /**
@@ -237,9 +290,7 @@ public class DefaultDOMLoader implements DOMLoader {
      */
     public void setDefaultDOMFactory(DOMFactory df) {
         if (logger.isDebugEnabled()) logger.debug("Setting default DOM factory:"+df);
-        synchronized (factories) {
-            defaultDOMFactory = df;
-        }
+        defaultDOMFactory = df;
     }
 
     /**
@@ -250,9 +301,7 @@ public class DefaultDOMLoader implements DOMLoader {
      * @param key the string which key's a particular DOMFactory to be used
      */
     public void registerDOMFactory(DOMFactory df, String key) {
-        synchronized (factories) {
-            factories.put(key, df);
-        }
+        factories.put(key, df);
     }
 
     /**
@@ -263,9 +312,7 @@ public class DefaultDOMLoader implements DOMLoader {
      */
     public void deregisterDOMFactory(String key) {
         if (logger.isDebugEnabled()) logger.debug("Deregistering DOM factory for key:"+key);
-        synchronized (factories) {
-            factories.remove(key);
-        }
+        factories.remove(key);
     }
 
     /**
@@ -276,6 +323,7 @@ public class DefaultDOMLoader implements DOMLoader {
     public static DefaultDOMLoader getGlobalInstance() {
         if (initialized == false) {
             synchronized (sync) {
+                if (initialized) return globalLoader;
                 logger.info("initializing global instance of DefaultDOMLoader");
                 globalLoader = new DefaultDOMLoader();
                 initialized = true;
@@ -284,4 +332,55 @@ public class DefaultDOMLoader implements DOMLoader {
         return globalLoader;
     }
 
+    /**
+     * The result of looking up a class (clazz is null if there was no such class)
+     */
+    protected static final class ClassRef {
+        final Class<?> clazz;
+
+        ClassRef(Class<?> iclazz) {
+            clazz = iclazz;
+        }
+    }
+
+    /**
+     * A class name/locale combination
+     */
+    protected static final class ResolutionKey {
+        final String className;
+        final Locale locale;
+        final int hash;
+
+        ResolutionKey(String iclassName, Locale ilocale) {
+            className = iclassName;
+            locale = ilocale;
+            hash = 31 * className.hashCode() + locale.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ResolutionKey)) return false;
+            ResolutionKey key = (ResolutionKey) o;
+            return className.equals(key.className) && locale.equals(key.locale);
+        }
+    }
+
+    /**
+     * The class (and its name) that a class name/locale combination resolved to
+     */
+    protected static final class Resolution {
+        final String targetName;
+        final Class<?> targetClass;
+
+        Resolution(String itargetName, Class<?> itargetClass) {
+            targetName = itargetName;
+            targetClass = itargetClass;
+        }
+    }
 }
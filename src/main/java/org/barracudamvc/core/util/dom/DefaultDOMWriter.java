@@ -29,6 +29,9 @@ import java.io.Writer;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.log4j.Logger;
+import org.barracudamvc.core.metrics.CountingOutputStream;
+import org.barracudamvc.core.metrics.Metrics;
+import org.barracudamvc.core.metrics.MetricsCollector;
 import org.enhydra.xml.io.DOMFormatter;
 import org.enhydra.xml.io.OutputOptions;
 import org.w3c.dom.Document;
@@ -228,7 +231,17 @@ public class DefaultDOMWriter implements DOMWriter {
      */
     public void write(Node node, HttpServletResponse resp) throws IOException {
         prepareResponse(node, resp);
-        write(node, new OutputStreamWriter(resp.getOutputStream()));
+        MetricsCollector metrics = Metrics.getCollector();
+        if (!metrics.isEnabled()) {
+            write(node, new OutputStreamWriter(resp.getOutputStream()));
+            return;
+        }
+        CountingOutputStream counter = new CountingOutputStream(resp.getOutputStream());
+        try {
+            write(node, new OutputStreamWriter(counter));
+        } finally {
+            metrics.recordValue(Metrics.RESPONSE_BYTES, counter.getCount());
+        }
     }
 
     /**
@@ -257,6 +270,24 @@ public class DefaultDOMWriter implements DOMWriter {
      */
     @Override
     public void write(Node node, Writer writer) throws IOException {
+        configureFormatter(node);
+
+        //now print...
+        //write the doc directly to the writer
+        dfm.write(node, writer);
+        if (!leaveWriterOpen) {
+            writer.close();
+        }
+    }
+
+    /**
+     * Build the DOMFormatter if necessary and configure it with the output
+     * options for the given node
+     *
+     * @param node the DOM node about to be written out
+     * @return the output options in effect
+     */
+    protected OutputOptions configureFormatter(Node node) {
         //build the default DOMFormatter if necessary
         if (dfm == null) {
             dfm = new DOMFormatter();
@@ -279,13 +310,7 @@ public class DefaultDOMWriter implements DOMWriter {
 
         //configure the formatter
         dfm.setOutputOptions(localoo);
-
-        //now print...
-        //write the doc directly to the writer
-        dfm.write(node, writer);
-        if (!leaveWriterOpen) {
-            writer.close();
-        }
+        return localoo;
     }
 
     public void setPrettyPrint(boolean val) {
@@ -0,0 +1,511 @@
+package org.barracudamvc.core.util.dom;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.barracudamvc.core.metrics.CountingOutputStream;
+import org.barracudamvc.core.metrics.Metrics;
+import org.enhydra.xml.io.OutputOptions;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.html.HTMLDocument;
+
+/**
+ * <p>A DOMWriter that streams an HTML document out a piece at a time rather than
+ * handing the whole thing to the DOMFormatter in one go. The outer skeleton of the
+ * document (by default the &lt;html&gt; element and its immediate children, ie.
+ * &lt;head&gt; and &lt;body&gt;) is written out directly; everything below that is
+ * written one subtree at a time, and the writer is flushed after each subtree so the
+ * container can start sending chunks to the client while the rest of the page is
+ * still being formatted.
+ *
+ * <p>On its own this only changes how the page is written, not when: the
+ * writer is handed the document once it has been completely rendered, so the
+ * first byte goes out no sooner than it would with DefaultDOMWriter. To get
+ * bytes to the client earlier, set writeHeadEarly. DefaultViewHandler then calls
+ * writeHead() before it renders the component hierarchy, which sends the
+ * doctype, the &lt;html&gt; start tag and the whole &lt;head&gt; (so the client
+ * can start fetching stylesheets and scripts while the body is rendered), and
+ * the rest of the document follows once rendering is done. The head is only
+ * written early if no component is bound in or above it; anything that changes
+ * the head after that point (eg. preCompRender or postCompRender overrides, or
+ * components created by a template while it renders) would be lost, so only
+ * enable it for views whose head is fixed by the template.
+ *
+ * <p>If releaseWrittenNodes is set, subtrees are detached from the document once they
+ * have been written, which allows them to be garbage collected before the end of the
+ * request (only use this if nothing needs the document after it has been written).
+ *
+ * <p>To use it, override DefaultViewHandler.getDOMWriter() and return an instance of
+ * this class. Documents that aren't HTML (or that have a DocumentType node), and
+ * pretty printed output, are simply handed on to DefaultDOMWriter.
+ *
+ * <p>The static writeStartTag() and writeEndTag() methods are also used by
+ * BlockIterateHandler, which streams a document as it renders it.
+ */
+public class StreamingDOMWriter extends DefaultDOMWriter {
+
+    /**
+     * default depth down to which the document skeleton is written out
+     * directly (children of elements at this depth are written whole)
+     */
+    public static int DEFAULT_STREAM_DEPTH = 2;
+    /**
+     * default value for releasing nodes once they have been written, false
+     * unless modified at runtime
+     */
+    public static boolean DEFAULT_RELEASE_WRITTEN_NODES = false;
+    /**
+     * default value for writing the head before the body is rendered, false
+     * unless modified at runtime
+     */
+    public static boolean DEFAULT_WRITE_HEAD_EARLY = false;
+
+    //html elements that don't have an end tag
+    private static final Set<String> EMPTY_HTML_ELEMENTS = new HashSet<String>(Arrays.asList(
+            "area", "base", "basefont", "br", "col", "frame", "hr", "image", "img", "input",
+            "isindex", "link", "meta", "param"));
+    //html elements whose content must be passed through to the formatter as is
+    private static final Set<String> RAW_HTML_ELEMENTS = new HashSet<String>(Arrays.asList(
+            "script", "style", "textarea", "pre"));
+    //lower case names and end tags for the html 4 elements, in either case (names
+    //outside this fixed set are worked out each time rather than remembered)
+    private static final Map<String, String> LOWER_CASE_NAMES;
+    private static final Map<String, String> END_TAGS;
+
+    static {
+        String[] names = {
+            "a", "abbr", "acronym", "address", "applet", "area", "b", "base", "basefont", "bdo",
+            "big", "blockquote", "body", "br", "button", "caption", "center", "cite", "code", "col",
+            "colgroup", "dd", "del", "dfn", "dir", "div", "dl", "dt", "em", "fieldset", "font",
+            "form", "frame", "frameset", "h1", "h2", "h3", "h4", "h5", "h6", "head", "hr", "html",
+            "i", "iframe", "image", "img", "input", "ins", "isindex", "kbd", "label", "legend", "li",
+            "link", "map", "menu", "meta", "noframes", "noscript", "object", "ol", "optgroup",
+            "option", "p", "param", "pre", "q", "s", "samp", "script", "select", "small", "span",
+            "strike", "strong", "style", "sub", "sup", "table", "tbody", "td", "textarea", "tfoot",
+            "th", "thead", "title", "tr", "tt", "u", "ul", "var"};
+        Map<String, String> lowerCaseNames = new HashMap<String, String>();
+        Map<String, String> endTags = new HashMap<String, String>();
+        for (String name : names) {
+            String upper = name.toUpperCase();
+            lowerCaseNames.put(name, name);
+            lowerCaseNames.put(upper, name);
+            endTags.put(name, "</" + name + ">");
+            endTags.put(upper, "</" + upper + ">");
+        }
+        LOWER_CASE_NAMES = Collections.unmodifiableMap(lowerCaseNames);
+        END_TAGS = Collections.unmodifiableMap(endTags);
+    }
+
+    protected int streamDepth = DEFAULT_STREAM_DEPTH;
+    protected boolean releaseWrittenNodes = DEFAULT_RELEASE_WRITTEN_NODES;
+    protected boolean writeHeadEarly = DEFAULT_WRITE_HEAD_EARLY;
+
+    //the document whose head has been written, and where the rest of it goes
+    private Document startedDoc = null;
+    private Element writtenHead = null;
+    private Writer startedWriter = null;
+    private CountingOutputStream startedCounter = null;
+
+    /**
+     * Default constructor
+     */
+    public StreamingDOMWriter() {
+        super();
+    }
+
+    /**
+     * Public constructor. Allows you to specify OutputOptions.
+     *
+     * @param oo OutputOptions to specify how the DOM should be formatted
+     */
+    public StreamingDOMWriter(OutputOptions oo) {
+        super(oo);
+    }
+
+    /**
+     * Public constructor. Allows you to specify the stream depth and
+     * whether written nodes should be released.
+     *
+     * @param istreamDepth the depth down to which the skeleton is written
+     * @param ireleaseWrittenNodes true if nodes should be detached from
+     *        the document once they have been written
+     */
+    public StreamingDOMWriter(int istreamDepth, boolean ireleaseWrittenNodes) {
+        super();
+        setStreamDepth(istreamDepth);
+        setReleaseWrittenNodes(ireleaseWrittenNodes);
+    }
+
+    public void setStreamDepth(int val) {
+        streamDepth = val;
+    }
+
+    public int getStreamDepth() {
+        return streamDepth;
+    }
+
+    public void setReleaseWrittenNodes(boolean val) {
+        releaseWrittenNodes = val;
+    }
+
+    public boolean getReleaseWrittenNodes() {
+        return releaseWrittenNodes;
+    }
+
+    public void setWriteHeadEarly(boolean val) {
+        writeHeadEarly = val;
+    }
+
+    public boolean getWriteHeadEarly() {
+        return writeHeadEarly;
+    }
+
+    /**
+     * Write the start of a document before it is rendered: the doctype, the
+     * &lt;html&gt; start tag and everything up to and including the
+     * &lt;head&gt;, and flush it to the client. A later call to
+     * write(doc, resp) writes the rest of the document. Nothing is written
+     * (and false returned) unless writeHeadEarly is set, the document would
+     * be streamed, it has a head, and none of the bound nodes is, contains or
+     * lies inside the head.
+     *
+     * @param doc the document about to be rendered
+     * @param resp the HttpServletResponse object
+     * @param boundNodes the nodes components are bound to (ie. the nodes
+     *        rendering may change)
+     * @return true if the head has been written
+     */
+    public boolean writeHead(Document doc, HttpServletResponse resp, Collection<? extends Node> boundNodes) throws IOException {
+        Element head = findHead(doc);
+        if (!writeHeadEarly || startedDoc != null || head == null
+                || !canStream(doc) || doc.getDoctype() != null || isBound(head, boundNodes)) {
+            return false;
+        }
+
+        prepareResponse(doc, resp);
+        if (Metrics.getCollector().isEnabled()) {
+            startedCounter = new CountingOutputStream(resp.getOutputStream());
+            startedWriter = new OutputStreamWriter(startedCounter);
+        } else {
+            startedWriter = new OutputStreamWriter(resp.getOutputStream());
+        }
+        startedDoc = doc;
+        writtenHead = head;
+
+        OutputOptions localoo = configureFormatter(doc);
+        writeDocType(doc, localoo, startedWriter);
+        Element root = doc.getDocumentElement();
+        writeStartTag(root, startedWriter);
+        Node child = root.getFirstChild();
+        while (child != null) {
+            Node next = child.getNextSibling();
+            streamNode(child, 1, startedWriter);
+            if (child == head) {
+                break;
+            }
+            child = next;
+        }
+        startedWriter.flush();
+        return true;
+    }
+
+    /**
+     * @param doc a document
+     * @return true if writeHead() has written the start of the document
+     */
+    public boolean hasWrittenHead(Document doc) {
+        return doc != null && doc == startedDoc;
+    }
+
+    /**
+     * @return the element the document has been written up to (and
+     *         including) by writeHead(), or null if nothing has been written
+     */
+    public Element getWrittenHead() {
+        return writtenHead;
+    }
+
+    /**
+     * Take over the rest of a document whose head has been written (as
+     * BlockIterateHandler does). Get the started counter first if it is
+     * needed; the caller writes the remaining children
+     * of the &lt;html&gt; element and its end tag, and closes the writer.
+     *
+     * @return the writer the head was written to
+     */
+    public Writer resume() {
+        Writer out = startedWriter;
+        startedDoc = null;
+        writtenHead = null;
+        startedWriter = null;
+        startedCounter = null;
+        return out;
+    }
+
+    /**
+     * @return the stream counting the bytes written for a document whose
+     *         head has been written, or null if metrics weren't enabled
+     */
+    public CountingOutputStream getStartedCounter() {
+        return startedCounter;
+    }
+
+    /**
+     * Write a DOM to a ServletResponse object. If the head of the document
+     * has already been written by writeHead(), only the rest of it is written.
+     *
+     * @param node the DOM node to be written out
+     * @param resp the HttpServletResponse object
+     */
+    @Override
+    public void write(Node node, HttpServletResponse resp) throws IOException {
+        if (!(node instanceof Document) || !hasWrittenHead((Document) node)) {
+            super.write(node, resp);
+            return;
+        }
+
+        Element head = writtenHead;
+        CountingOutputStream counter = startedCounter;
+        Writer out = resume();
+        try {
+            Element root = ((Document) node).getDocumentElement();
+            Node child = head.getNextSibling();
+            while (child != null) {
+                Node next = child.getNextSibling();
+                streamNode(child, 1, out);
+                child = next;
+            }
+            writeEndTag(root, out, true);
+            out.flush();
+            if (!leaveWriterOpen) {
+                out.close();
+            }
+        } finally {
+            if (counter != null) {
+                Metrics.getCollector().recordValue(Metrics.RESPONSE_BYTES, counter.getCount());
+            }
+        }
+    }
+
+    /**
+     * Write a DOM to a Writer, streaming it out a subtree at a time.
+     *
+     * @param node the DOM node to be written out
+     * @param writer the writer to be written to
+     */
+    @Override
+    public void write(Node node, Writer writer) throws IOException {
+        Document doc = (node instanceof Document ? (Document) node : node.getOwnerDocument());
+        if (!(node instanceof Document || node instanceof Element) || !canStream(doc)
+                || (node instanceof Document && doc.getDoctype() != null)) {
+            super.write(node, writer);
+            return;
+        }
+
+        OutputOptions localoo = configureFormatter(node);
+        if (node instanceof Document) {
+            writeDocType(doc, localoo, writer);
+            Element root = doc.getDocumentElement();
+            if (root != null) {
+                streamNode(root, 0, writer);
+            }
+        } else {
+            streamNode(node, 0, writer);
+        }
+
+        writer.flush();
+        if (!leaveWriterOpen) {
+            writer.close();
+        }
+    }
+
+    /**
+     * Write a node out; elements above the stream depth have their tags
+     * written directly and their children streamed, anything else is handed
+     * to the formatter whole
+     */
+    protected void streamNode(Node node, int depth, Writer out) throws IOException {
+        if (depth < streamDepth && node instanceof Element && node.hasChildNodes()
+                && !RAW_HTML_ELEMENTS.contains(lowerCaseName((Element) node))) {
+            Element el = (Element) node;
+            writeStartTag(el, out);
+            Node child = el.getFirstChild();
+            while (child != null) {
+                Node next = child.getNextSibling();
+                streamNode(child, depth + 1, out);
+                child = next;
+            }
+            writeEndTag(el, out, true);
+        } else {
+            dfm.write(node, out);
+            out.flush();
+            if (releaseWrittenNodes && node.getParentNode() != null) {
+                node.getParentNode().removeChild(node);
+            }
+        }
+    }
+
+    /**
+     * @return true if the document can be written a piece at a time
+     */
+    protected boolean canStream(Document doc) {
+        return !printPretty && doc instanceof HTMLDocument;
+    }
+
+    private static Element findHead(Document doc) {
+        Element root = doc.getDocumentElement();
+        if (root == null) {
+            return null;
+        }
+        for (Node child = root.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element && "head".equals(lowerCaseName((Element) child))) {
+                return (Element) child;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return true if any of the bound nodes is, contains or lies inside the
+     *         given element
+     */
+    private static boolean isBound(Element el, Collection<? extends Node> boundNodes) {
+        if (boundNodes == null) {
+            return false;
+        }
+        for (Node bound : boundNodes) {
+            for (Node n = bound; n != null; n = n.getParentNode()) {
+                if (n == el) {
+                    return true;
+                }
+            }
+            for (Node n = el.getParentNode(); n != null; n = n.getParentNode()) {
+                if (n == bound) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Write the DOCTYPE declaration for an HTML document that doesn't have a
+     * DocumentType node, as the formatter would have done had it been handed
+     * the whole document
+     *
+     * @param doc the document
+     * @param oo the output options in effect
+     * @param out the writer to be written to
+     */
+    protected void writeDocType(Document doc, OutputOptions oo, Writer out) throws IOException {
+        String publicId = oo.getPublicId();
+        String systemId = oo.getSystemId();
+        if (oo.getOmitDocType() || (publicId == null && systemId == null)) {
+            return;
+        }
+        out.write("<!DOCTYPE ");
+        out.write(doc.getDocumentElement().getNodeName());
+
+        if (publicId != null) {
+            out.write(" PUBLIC \"");
+            out.write(publicId);
+            out.write('"');
+        }
+
+        if (systemId != null) {
+            out.write(" \"");
+            out.write(systemId);
+            out.write('"');
+        }
+
+        out.write(">");
+    }
+
+    /**
+     * Write the start tag (including attributes) for an element
+     *
+     * @param el the element
+     * @param out the writer to be written to
+     */
+    public static void writeStartTag(Element el, Writer out) throws IOException {
+        out.write('<');
+        out.write(el.getTagName());
+        NamedNodeMap nnm = el.getAttributes();
+        for (int i = 0, max = nnm.getLength(); i < max; i++) {
+            Attr attr = (Attr) nnm.item(i);
+            out.write(' ');
+            out.write(attr.getName());
+            out.write("=\"");
+            writeEscapedAttrValue(attr.getValue(), out);
+            out.write('"');
+        }
+        out.write('>');
+    }
+
+    /**
+     * Write the end tag for an element (html elements that forbid an
+     * end tag are skipped)
+     *
+     * @param el the element
+     * @param out the writer to be written to
+     * @param isHtml true if the element is part of an html document
+     */
+    public static void writeEndTag(Element el, Writer out, boolean isHtml) throws IOException {
+        if (isHtml && EMPTY_HTML_ELEMENTS.contains(lowerCaseName(el))) {
+            return;
+        }
+        String tagName = el.getTagName();
+        String endTag = END_TAGS.get(tagName);
+        if (endTag != null) {
+            out.write(endTag);
+        } else {
+            out.write("</");
+            out.write(tagName);
+            out.write('>');
+        }
+    }
+
+    private static void writeEscapedAttrValue(String value, Writer out) throws IOException {
+        int start = 0;
+        for (int i = 0, len = value.length(); i < len; i++) {
+            String entity;
+            switch (value.charAt(i)) {
+                case '&':
+                    entity = "&amp;";
+                    break;
+                case '"':
+                    entity = "&quot;";
+                    break;
+                case '<':
+                    entity = "&lt;";
+                    break;
+                default:
+                    continue;
+            }
+            out.write(value, start, i - start);
+            out.write(entity);
+            start = i + 1;
+        }
+        out.write(value, start, value.length() - start);
+    }
+
+    private static String lowerCaseName(Element el) {
+        String tagName = el.getTagName();
+        String name = LOWER_CASE_NAMES.get(tagName);
+        return (name != null ? name : tagName.toLowerCase());
+    }
+}
@@ -117,7 +117,7 @@ public class XMLCDeferredParsingDOMFactory implements DOMFactory {
      * used for flagging whether the xmlcFactory has been initialized and
      * avoiding unnecessary synchronization.
      */
-    protected boolean initialized = false;
+    protected volatile boolean initialized = false;
 
     /**
      * XMLCFactory instance, stored so that it isn't re-created on
@@ -213,6 +213,9 @@ public class XMLCDeferredParsingDOMFactory implements DOMFactory {
     private void initFactory() {
         if (initialized == false) {
             synchronized (sync) {
+                if (initialized) {
+                    return;
+                }
                 logger.info("initializing an XMLC deferred parsing factory for returning XMLC-generated documents");
                 xmlcFactory = new XMLCDeferredParsingFactory(null, Thread.currentThread().getContextClassLoader(), null);
 
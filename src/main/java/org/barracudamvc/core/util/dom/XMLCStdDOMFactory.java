@@ -47,7 +47,7 @@ public class XMLCStdDOMFactory implements DOMFactory {
      * used for flagging whether the xmlcFactory has been initialized and
      * avoiding unnecessary synchronization.
      */
-    protected boolean initialized = false;
+    protected volatile boolean initialized = false;
 
     /**
      * XMLCFactory instance, stored so that it isn't re-created on
@@ -82,6 +82,9 @@ public class XMLCStdDOMFactory implements DOMFactory {
     private void initFactory() {
         if (initialized == false) {
             synchronized (sync) {
+                if (initialized) {
+                    return;
+                }
                 logger.info("initializing an XMLC Std factory for returning XMLC-generated documents");
                 xmlcFactory = new XMLCStdFactory(Thread.currentThread().getContextClassLoader(), null);
                 initialized = true;
@@ -0,0 +1,113 @@
+package org.barracudamvc.core.view;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Finds which of up to 64 signatures occur in a header value, ignoring
+ * case, in a single pass (an Aho-Corasick automaton compiled into a table).
+ * The result is a bit mask with bit i set if signature i was found, so that a
+ * chain of <code>indexOf</code> checks becomes a chain of bit tests.
+ *
+ * <p>Signatures must be lower case. Characters that occur in no signature are
+ * folded into a single class, which keeps the table small.
+ */
+final class SignatureMatcher {
+
+    private final int[] classes = new int[128];
+    private final int classCount;
+    // next state for each state and character class
+    private final int[][] next;
+    // signatures found on reaching each state
+    private final long[] found;
+
+    SignatureMatcher(String... signatures) {
+        if (signatures.length > 64) {
+            throw new IllegalArgumentException("At most 64 signatures are supported");
+        }
+        int cls = 1;
+        for (String sig : signatures) {
+            for (int i = 0; i < sig.length(); i++) {
+                char c = sig.charAt(i);
+                if (c >= 128 || c != Character.toLowerCase(c)) {
+                    throw new IllegalArgumentException("Signatures must be lower case ASCII: " + sig);
+                }
+                if (classes[c] == 0) {
+                    classes[c] = cls++;
+                }
+            }
+        }
+        classCount = cls;
+
+        //build the trie
+        List<int[]> trie = new ArrayList<>();
+        List<Long> out = new ArrayList<>();
+        trie.add(new int[classCount]);
+        out.add(0L);
+        for (int s = 0; s < signatures.length; s++) {
+            String sig = signatures[s];
+            int state = 0;
+            for (int i = 0; i < sig.length(); i++) {
+                int c = classes[sig.charAt(i)];
+                if (trie.get(state)[c] == 0) {
+                    trie.get(state)[c] = trie.size();
+                    trie.add(new int[classCount]);
+                    out.add(0L);
+                }
+                state = trie.get(state)[c];
+            }
+            out.set(state, out.get(state) | (1L << s));
+        }
+
+        //turn it into a DFA by following the failure links breadth first
+        next = trie.toArray(new int[trie.size()][]);
+        found = new long[next.length];
+        int[] fail = new int[next.length];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < classCount; c++) {
+            if (next[0][c] != 0) {
+                queue.add(next[0][c]);
+            }
+        }
+        // the unknown class (0) never starts a signature
+        next[0][0] = 0;
+        for (int i = 0; i < found.length; i++) {
+            found[i] = out.get(i);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            found[state] |= found[fail[state]];
+            for (int c = 0; c < classCount; c++) {
+                int child = next[state][c];
+                if (child != 0 && c != 0) {
+                    fail[child] = next[fail[state]][c];
+                    queue.add(child);
+                } else {
+                    next[state][c] = next[fail[state]][c];
+                }
+            }
+        }
+    }
+
+    /**
+     * @param s the value to scan (may be null)
+     * @return the signatures found in s, as a bit mask
+     */
+    long match(String s) {
+        if (s == null) {
+            return 0L;
+        }
+        long result = 0L;
+        int state = 0;
+        for (int i = 0, len = s.length(); i < len; i++) {
+            char c = s.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            state = next[state][c < 128 ? classes[c] : 0];
+            result |= found[state];
+        }
+        return result;
+    }
+}
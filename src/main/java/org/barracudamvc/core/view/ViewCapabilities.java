@@ -52,7 +52,9 @@ import org.barracudamvc.plankton.l10n.Locales;
  * supports HTML 4x and HTML 4.1 comes out, the component should still work just fine.
  *
  * <p>Note that we don't determine the various types from the source until they are
- * actually requested (unless of course they are manually specified).
+ * actually requested (unless of course they are manually specified). The format,
+ * client and scripting types are then all determined at once, which for a client
+ * that has been seen before is a single cache lookup (see ViewUtil).
  */
 public class ViewCapabilities {
 
@@ -128,7 +130,7 @@ public class ViewCapabilities {
      */
     public FormatType getFormatType() {
         if (formatType==null) {
-            formatType = ViewUtil.getFormatType(req);
+            detect();
         }
         return formatType;
     }
@@ -149,7 +151,7 @@ public class ViewCapabilities {
      */
     public ClientType getClientType() {
         if (clientType==null) {
-            clientType = ViewUtil.getClientType(req);
+            detect();
         }
         return clientType;
     }
@@ -170,7 +172,7 @@ public class ViewCapabilities {
      */
     public ScriptingType getScriptingType() {
         if (scriptingType==null) {
-            scriptingType = ViewUtil.getScriptingType(req);
+            detect();
         }
         return scriptingType;
     }
@@ -196,6 +198,14 @@ public class ViewCapabilities {
         return clientLocale;
     }
     
+    //fill in the types that were not specified manually
+    private void detect() {
+        ViewUtil.Capabilities caps = ViewUtil.getCapabilities(req);
+        if (formatType==null) formatType = caps.getFormatType();
+        if (clientType==null) clientType = caps.getClientType();
+        if (scriptingType==null) scriptingType = caps.getScriptingType();
+    }
+
     /**
      * get a string representation of the ViewCapabilities
      *
@@ -23,6 +23,8 @@ import javax.servlet.http.HttpServletRequest;
 
 import org.apache.log4j.Logger;
 import org.barracudamvc.core.helper.servlet.ScriptDetector;
+import org.barracudamvc.plankton.data.ConcurrentReferenceCache;
+import org.barracudamvc.plankton.data.ConcurrentReferenceCache.ReferenceType;
 
 /**
  * <p>This class provides utility functions for determining the ViewCapabilities.
@@ -33,11 +35,27 @@ import org.barracudamvc.core.helper.servlet.ScriptDetector;
  * proper types. If you have expertise working with these other flavors of 
  * markup and would like to help flesh out support for these languages, email
  * the list and we'll be glad to give you pointers...
+ *
+ * <p>The types only depend on the User-Agent and Accept headers and on the
+ * script flag, so they are worked out once for each combination of these and
+ * then cached (see {@link #getCapabilities(HttpServletRequest)}); repeat
+ * clients cost a single lookup.
  */
 public class ViewUtil {
 	
 	protected static Logger logger = Logger.getLogger(ViewUtil.class);
 
+    /**
+     * the number of header combinations whose capabilities are cached
+     * (read when the class is loaded)
+     */
+    public static int CAPABILITY_CACHE_SIZE = 1024;
+    /**
+     * header combinations longer than this are parsed every time rather
+     * than cached, so odd clients cannot fill the cache with huge keys
+     */
+    public static int MAX_CACHED_HEADER_LENGTH = 512;
+
     //base data types
     private static int HTML = 0;
     private static int CHTML = 1;
@@ -47,6 +65,114 @@ public class ViewUtil {
     private static int XHTML_BASIC = 5;
     private static int XHTML_STANDARD = 6;
 
+    //Accept header signatures
+    private static final SignatureMatcher ACCEPT = new SignatureMatcher(
+            "text/html", "text/vnd.wap.wml", "text/chtml", "text/xml");
+    private static final long ACC_HTML = 1L << 0;
+    private static final long ACC_WML = 1L << 1;
+    private static final long ACC_CHTML = 1L << 2;
+    private static final long ACC_XML = 1L << 3;
+
+    //User-Agent header signatures
+    private static final SignatureMatcher USER_AGENT = new SignatureMatcher(
+            "opera", "opera/5", "opera/4", "opera 5", "opera 4", "opera/2", "opera 2",
+            "msie ", "rv:11", "msie 10", "msie 9", "msie 8", "msie 7", "msie 6", "msie 5", "msie 4", "msie 3", "msie 2",
+            "mozilla", "netscape6", "gecko", "mozilla/5", "mozilla/4", "mozilla/3", "mozilla 5", "mozilla 4", "mozilla 3",
+            "lynx", "konqueror", "w3m", "www-mechanize");
+    private static final long OPERA = 1L << 0;
+    private static final long OPERA_SLASH_5 = 1L << 1;
+    private static final long OPERA_SLASH_4 = 1L << 2;
+    private static final long OPERA_5 = 1L << 3;
+    private static final long OPERA_4 = 1L << 4;
+    private static final long OPERA_SLASH_2 = 1L << 5;
+    private static final long OPERA_2 = 1L << 6;
+    private static final long MSIE = 1L << 7;
+    private static final long RV_11 = 1L << 8;
+    private static final long MSIE_10 = 1L << 9;
+    private static final long MSIE_9 = 1L << 10;
+    private static final long MSIE_8 = 1L << 11;
+    private static final long MSIE_7 = 1L << 12;
+    private static final long MSIE_6 = 1L << 13;
+    private static final long MSIE_5 = 1L << 14;
+    private static final long MSIE_4 = 1L << 15;
+    private static final long MSIE_3 = 1L << 16;
+    private static final long MSIE_2 = 1L << 17;
+    private static final long MOZILLA = 1L << 18;
+    private static final long NETSCAPE6 = 1L << 19;
+    private static final long GECKO = 1L << 20;
+    private static final long MOZILLA_SLASH_5 = 1L << 21;
+    private static final long MOZILLA_SLASH_4 = 1L << 22;
+    private static final long MOZILLA_SLASH_3 = 1L << 23;
+    private static final long MOZILLA_5 = 1L << 24;
+    private static final long MOZILLA_4 = 1L << 25;
+    private static final long MOZILLA_3 = 1L << 26;
+    private static final long LYNX = 1L << 27;
+    private static final long KONQUEROR = 1L << 28;
+    private static final long W3M = 1L << 29;
+    private static final long MECHANIZE = 1L << 30;
+
+    private static final Capabilities NO_REQUEST = new Capabilities(FormatType.HTML_4_0, ClientType.UNKNOWN_BROWSER, ScriptingType.NONE);
+    private static final ConcurrentReferenceCache<String, Capabilities> cache =
+            new ConcurrentReferenceCache<>(ReferenceType.STRONG, CAPABILITY_CACHE_SIZE);
+
+    /**
+     * The types determined for a request
+     */
+    public static final class Capabilities {
+
+        private final FormatType formatType;
+        private final ClientType clientType;
+        private final ScriptingType scriptingType;
+
+        Capabilities(FormatType iformatType, ClientType iclientType, ScriptingType iscriptingType) {
+            formatType = iformatType;
+            clientType = iclientType;
+            scriptingType = iscriptingType;
+        }
+
+        public FormatType getFormatType() {
+            return formatType;
+        }
+
+        public ClientType getClientType() {
+            return clientType;
+        }
+
+        public ScriptingType getScriptingType() {
+            return scriptingType;
+        }
+    }
+
+    /**
+     * Determine the format, client and scripting types of a request at
+     * once. The result is cached by the User-Agent and Accept headers and
+     * the script flag, so this is usually a single lookup.
+     *
+     * @param req an HttpServletRequest object
+     * @return the capabilities of the client
+     */
+    public static Capabilities getCapabilities(HttpServletRequest req) {
+        if (req==null) return NO_REQUEST;
+        String uas = req.getHeader("User-Agent");
+        if (uas==null) uas = req.getHeader("user-agent");
+        String acc = req.getHeader("Accept");
+        if (acc==null) acc = req.getHeader("accept");
+        Boolean enabled = ScriptDetector.scriptingEnabled(req);
+
+        int len = (uas==null ? 0 : uas.length()) + (acc==null ? 0 : acc.length());
+        if (len>MAX_CACHED_HEADER_LENGTH) return parse(uas, acc, enabled);
+
+        //headers can't hold line breaks, so they can safely separate the parts
+        String key = (enabled==null ? "-" : enabled.booleanValue() ? "t" : "f")
+                + (uas==null ? "\r" : uas) + "\n" + (acc==null ? "\r" : acc);
+        Capabilities caps = cache.get(key);
+        if (caps==null) {
+            caps = parse(uas, acc, enabled);
+            cache.put(key, caps);
+        }
+        return caps;
+    }
+
     /**
      * Determine the format type by looking at the Accept header in 
      * the request
@@ -56,8 +182,46 @@ public class ViewUtil {
      *      if we are unable to make a positive match)
      */
     public static FormatType getFormatType(HttpServletRequest req) {
+        return getCapabilities(req).getFormatType();
+    }
+
+    /**
+     * Determine the what type of scripting is supported by figuring 
+     * out what kind of browser we're dealing with. Note that this method
+     * does NOT determine whether or not the browser actually has scripting
+     * enabled.
+     *
+     * @param req an HttpServletRequest object
+     * @return the appropriate client type (defaults to ScriptingType.NONE
+     *      if we are unable to make a positive match)
+     */
+    public static ScriptingType getScriptingType(HttpServletRequest req) {
+        return getCapabilities(req).getScriptingType();
+    }
+
+    /**
+     * Determine the client type by looking at the User-Agent header in 
+     * the request
+     *
+     * @param req an HttpServletRequest object
+     * @return the appropriate client type (defaults to ClientType.UNKNOWN_BROWSER
+     *      if we are unable to make a positive match)
+     */
+    public static ClientType getClientType(HttpServletRequest req) {
+        return getCapabilities(req).getClientType();
+    }
+
+    //work out the capabilities from the headers
+    private static Capabilities parse(String uas, String acc, Boolean enabled) {
+        int baseType = getBaseType(acc);
+        ClientType ct = getClientType(uas, baseType);
+        ScriptingType st = getScriptingType(ct, enabled);
+        if (logger.isDebugEnabled()) logger.debug("detecting client: type: " + ct.getClass().getName() + ", ScriptingType: " + st.getClass().getName());
+        return new Capabilities(getFormatType(baseType), ct, st);
+    }
+
+    private static FormatType getFormatType(int baseType) {
         FormatType ft = FormatType.UNKNOWN_FORMAT;
-        int baseType = getBaseType(req);
 
         //figure out what we're dealing with
         //...HTML
@@ -86,175 +250,133 @@ public class ViewUtil {
         return ft;
     }
 
-    /**
-     * Determine the what type of scripting is supported by figuring 
-     * out what kind of browser we're dealing with. Note that this method
-     * does NOT determine whether or not the browser actually has scripting
-     * enabled.
-     *
-     * @param req an HttpServletRequest object
-     * @return the appropriate client type (defaults to ScriptingType.NONE
-     *      if we are unable to make a positive match)
-     */
-    public static ScriptingType getScriptingType(HttpServletRequest req) {
+    private static ScriptingType getScriptingType(ClientType ct, Boolean enabled) {
         ScriptingType st = ScriptingType.NONE;
-        if (req!=null) {
-        
-            //csc_102201.1
-            //first and foremost see if the request includes a scripting tag,
-            //which would be a direct indication from the client of what it
-            //supports. If it comes back false, we can immediately return;
-            //otherwise, we still try to figure out the specific level of support
-            //by looking at the client type (except we can now safely default to
-            //Javascript 1.0)
-            Boolean enabled = ScriptDetector.scriptingEnabled(req);
-            if (enabled!=null) {
-                if (enabled.booleanValue()==false) return ScriptingType.NONE;
-                else st = ScriptingType.JAVASCRIPT_1_0;
-            }
-        
-            //first get the client type
-            ClientType ct = getClientType(req);
-            
-            //now map accordingly (note that we are not actually determining
-            //whether or not the scripting is enabled). I got these mappings from
-            //http://www.digitalroom.net/index2.html
-            //http://www.javascripter.net/faq/javascr3.htm
-            if (ct instanceof ClientType.HtmlBrowser) {
-                if (ct instanceof ClientType.IE5x) st = ScriptingType.JAVASCRIPT_1_3;
-                else if (ct instanceof ClientType.IE4x) st = ScriptingType.JAVASCRIPT_1_2;  //note: the first link asserts (above) IE4x actually supports 1.3
-                else if (ct instanceof ClientType.IE3x) st = ScriptingType.JAVASCRIPT_1_0;
-                else if (ct instanceof ClientType.NN6x) st = ScriptingType.JAVASCRIPT_1_5;
-                else if (ct instanceof ClientType.NN4x) st = ScriptingType.JAVASCRIPT_1_3;
-                else if (ct instanceof ClientType.NN3x) st = ScriptingType.JAVASCRIPT_1_1;  //by 4x we're assuming NN 4.5 or higher
-                else if (ct instanceof ClientType.Opera4x) st = ScriptingType.JAVASCRIPT_1_3;
-                else if (ct instanceof ClientType.Html32Browser) st = ScriptingType.JAVASCRIPT_1_0;
-            } else if (ct instanceof ClientType.WmlBrowser) {
-                st = ScriptingType.WMLSCRIPT_1x;
-            }
-			if (logger.isDebugEnabled()) logger.debug("detecting client: type: " + ct.getClass().getName() + ", ScriptingType: " + st.getClass().getName());
+
+        //csc_102201.1
+        //first and foremost see if the request includes a scripting tag,
+        //which would be a direct indication from the client of what it
+        //supports. If it comes back false, we can immediately return;
+        //otherwise, we still try to figure out the specific level of support
+        //by looking at the client type (except we can now safely default to
+        //Javascript 1.0)
+        if (enabled!=null) {
+            if (enabled.booleanValue()==false) return ScriptingType.NONE;
+            else st = ScriptingType.JAVASCRIPT_1_0;
+        }
+
+        //now map accordingly (note that we are not actually determining
+        //whether or not the scripting is enabled). I got these mappings from
+        //http://www.digitalroom.net/index2.html
+        //http://www.javascripter.net/faq/javascr3.htm
+        if (ct instanceof ClientType.HtmlBrowser) {
+            if (ct instanceof ClientType.IE5x) st = ScriptingType.JAVASCRIPT_1_3;
+            else if (ct instanceof ClientType.IE4x) st = ScriptingType.JAVASCRIPT_1_2;  //note: the first link asserts (above) IE4x actually supports 1.3
+            else if (ct instanceof ClientType.IE3x) st = ScriptingType.JAVASCRIPT_1_0;
+            else if (ct instanceof ClientType.NN6x) st = ScriptingType.JAVASCRIPT_1_5;
+            else if (ct instanceof ClientType.NN4x) st = ScriptingType.JAVASCRIPT_1_3;
+            else if (ct instanceof ClientType.NN3x) st = ScriptingType.JAVASCRIPT_1_1;  //by 4x we're assuming NN 4.5 or higher
+            else if (ct instanceof ClientType.Opera4x) st = ScriptingType.JAVASCRIPT_1_3;
+            else if (ct instanceof ClientType.Html32Browser) st = ScriptingType.JAVASCRIPT_1_0;
+        } else if (ct instanceof ClientType.WmlBrowser) {
+            st = ScriptingType.WMLSCRIPT_1x;
         }
         return st;
     }
 
-    /**
-     * Determine the client type by looking at the User-Agent header in 
-     * the request
-     *
-     * @param req an HttpServletRequest object
-     * @return the appropriate client type (defaults to ClientType.UNKNOWN_BROWSER
-     *      if we are unable to make a positive match)
-     */
-    public static ClientType getClientType(HttpServletRequest req) {
+    private static ClientType getClientType(String uas, int baseType) {
         ClientType ct = ClientType.UNKNOWN_BROWSER;
-        chk: if (req!=null) {
-            //get the user agent string
-            String uas = req.getHeader("User-Agent");
-            if (uas==null) uas = req.getHeader("user-agent");
-            if (uas==null) break chk;
-            uas = uas.toLowerCase();
+        if (uas==null) return ct;
 
-            int baseType = getBaseType(req);
+        //figure out what we're dealing with
+        //...HTML
+        if (baseType==HTML) {
+            //scan the user agent string once for all the signatures
+            long sig = USER_AGENT.match(uas);
 
-            //figure out what we're dealing with
-            //...HTML
-            if (baseType==HTML) {
-                //these here are going to cover the most common situations
-                //...Opera (we check for opera first since it masquerades as both IE and NN)
-                if (uas.indexOf("opera")!=-1) {
-                    if (uas.indexOf("opera/5")!=-1) ct = ClientType.OPERA_5x;
-                    else if (uas.indexOf("opera/4")!=-1) ct = ClientType.OPERA_4x;
-                    else if (uas.indexOf("opera 5")!=-1) ct = ClientType.OPERA_5x;
-                    else if (uas.indexOf("opera 4")!=-1) ct = ClientType.OPERA_4x;
-                    else if (uas.indexOf("opera/2")!=-1) ct = ClientType.HTML_BROWSER;
-                    else if (uas.indexOf("opera 2")!=-1) ct = ClientType.HTML_BROWSER;
-                    else ct = ClientType.HTML_3_2_BROWSER;
-                //...IE (next we check for IE, since it also looks like NN)
-                } else if (uas.indexOf("msie ")!=-1) {
-                    if (uas.indexOf("rv:11")!=-1) ct = ClientType.IE_11x;
-                    else if (uas.indexOf("msie 10")!=-1) ct = ClientType.IE_10x;
-              	    else if (uas.indexOf("msie 9")!=-1) ct = ClientType.IE_9x;
-                    else if (uas.indexOf("msie 8")!=-1) ct = ClientType.IE_8x;
-               	    else if (uas.indexOf("msie 7")!=-1) ct = ClientType.IE_7x;
-                    else if (uas.indexOf("msie 6")!=-1) ct = ClientType.IE_6x;
-                    else if (uas.indexOf("msie 5")!=-1) ct = ClientType.IE_5x;
-                    else if (uas.indexOf("msie 4")!=-1) ct = ClientType.IE_4x;
-                    else if (uas.indexOf("msie 3")!=-1) ct = ClientType.IE_3x;
-                    else if (uas.indexOf("msie 2")!=-1) ct = ClientType.HTML_BROWSER;
-                    else ct = ClientType.HTML_3_2_BROWSER;
-                //...NN  (it its none of the above, its probably NN)
-                } else if (uas.indexOf("mozilla")!=-1) {
-                    if (uas.indexOf("netscape6")!=-1) ct = ClientType.NN_6x;
-                    else if (uas.indexOf("gecko")!=-1) ct = ClientType.NN_6x;
-                    else if (uas.indexOf("mozilla/5")!=-1) ct = ClientType.HTML_4_0_BROWSER;
-                    else if (uas.indexOf("mozilla/4")!=-1) ct = ClientType.NN_4x;
-                    else if (uas.indexOf("mozilla/3")!=-1) ct = ClientType.NN_3x;
-                    else if (uas.indexOf("mozilla 5")!=-1) ct = ClientType.HTML_4_0_BROWSER;
-                    else if (uas.indexOf("mozilla 4")!=-1) ct = ClientType.NN_4x;
-                    else if (uas.indexOf("mozilla 3")!=-1) ct = ClientType.NN_3x;
-                    else ct = ClientType.HTML_BROWSER;
-                }
-                if (ct!=ClientType.UNKNOWN_BROWSER) break chk;
-            
-            
-                //if we're still looking at an unknown browser, now we can get 
-                //more specific (we do these checks down here for performance 
-                //purposes...we only want to check these when we have to)
-                if (uas.indexOf("lynx")!=-1) ct = ClientType.HTML_BROWSER;
-				else if (uas.indexOf("konqueror")!=-1) ct = ClientType.HTML_BROWSER;
-                else if (uas.indexOf("mozilla")!=-1) ct = ClientType.HTML_BROWSER;
-				else if (uas.indexOf("w3m")!=-1) ct = ClientType.HTML_BROWSER;
-				else if (uas.indexOf("WWW-Mechanize")!=-1) ct = ClientType.HTML_BROWSER;
-            //...CHTML
-            } else if (baseType==CHTML) {
-                //TODO: we still need better granularity for this
-                ct = ClientType.CHTML_BROWSER;
-            //...XML
-            } else if (baseType==XML) {
-                //TODO: we still need better granularity for this
-                ct = ClientType.XML_BROWSER;
-            //...VXML
-            } else if (baseType==VXML) {
-                //TODO: we still need better granularity for this
-                ct = ClientType.VXML_BROWSER;
-            //...WML
-            } else if (baseType==WML) {
-                //TODO: we still need better granularity for this. A good place
-                //to look for a whole slew of sample headers is
-                //http://amaro.g-art.nl/useragent/
-                ct = ClientType.WML_BROWSER;
-            //...XHTML_BASIC
-            } else if (baseType==XHTML_BASIC) {
-                //TODO: we still need better granularity for this
-                ct = ClientType.XHTML_BROWSER;
-            //...XHTML_STANDARD
-            } else if (baseType==XHTML_STANDARD) {
-                //TODO: we still need better granularity for this
-                ct = ClientType.XHTML_BROWSER;
+            //these here are going to cover the most common situations
+            //...Opera (we check for opera first since it masquerades as both IE and NN)
+            if ((sig & OPERA)!=0) {
+                if ((sig & OPERA_SLASH_5)!=0) ct = ClientType.OPERA_5x;
+                else if ((sig & OPERA_SLASH_4)!=0) ct = ClientType.OPERA_4x;
+                else if ((sig & OPERA_5)!=0) ct = ClientType.OPERA_5x;
+                else if ((sig & OPERA_4)!=0) ct = ClientType.OPERA_4x;
+                else if ((sig & OPERA_SLASH_2)!=0) ct = ClientType.HTML_BROWSER;
+                else if ((sig & OPERA_2)!=0) ct = ClientType.HTML_BROWSER;
+                else ct = ClientType.HTML_3_2_BROWSER;
+            //...IE (next we check for IE, since it also looks like NN)
+            } else if ((sig & MSIE)!=0) {
+                if ((sig & RV_11)!=0) ct = ClientType.IE_11x;
+                else if ((sig & MSIE_10)!=0) ct = ClientType.IE_10x;
+                else if ((sig & MSIE_9)!=0) ct = ClientType.IE_9x;
+                else if ((sig & MSIE_8)!=0) ct = ClientType.IE_8x;
+                else if ((sig & MSIE_7)!=0) ct = ClientType.IE_7x;
+                else if ((sig & MSIE_6)!=0) ct = ClientType.IE_6x;
+                else if ((sig & MSIE_5)!=0) ct = ClientType.IE_5x;
+                else if ((sig & MSIE_4)!=0) ct = ClientType.IE_4x;
+                else if ((sig & MSIE_3)!=0) ct = ClientType.IE_3x;
+                else if ((sig & MSIE_2)!=0) ct = ClientType.HTML_BROWSER;
+                else ct = ClientType.HTML_3_2_BROWSER;
+            //...NN  (it its none of the above, its probably NN)
+            } else if ((sig & MOZILLA)!=0) {
+                if ((sig & NETSCAPE6)!=0) ct = ClientType.NN_6x;
+                else if ((sig & GECKO)!=0) ct = ClientType.NN_6x;
+                else if ((sig & MOZILLA_SLASH_5)!=0) ct = ClientType.HTML_4_0_BROWSER;
+                else if ((sig & MOZILLA_SLASH_4)!=0) ct = ClientType.NN_4x;
+                else if ((sig & MOZILLA_SLASH_3)!=0) ct = ClientType.NN_3x;
+                else if ((sig & MOZILLA_5)!=0) ct = ClientType.HTML_4_0_BROWSER;
+                else if ((sig & MOZILLA_4)!=0) ct = ClientType.NN_4x;
+                else if ((sig & MOZILLA_3)!=0) ct = ClientType.NN_3x;
+                else ct = ClientType.HTML_BROWSER;
+            //...a few other HTML browsers
+            } else if ((sig & (LYNX | KONQUEROR | W3M | MECHANIZE))!=0) {
+                ct = ClientType.HTML_BROWSER;
             }
+        //...CHTML
+        } else if (baseType==CHTML) {
+            //TODO: we still need better granularity for this
+            ct = ClientType.CHTML_BROWSER;
+        //...XML
+        } else if (baseType==XML) {
+            //TODO: we still need better granularity for this
+            ct = ClientType.XML_BROWSER;
+        //...VXML
+        } else if (baseType==VXML) {
+            //TODO: we still need better granularity for this
+            ct = ClientType.VXML_BROWSER;
+        //...WML
+        } else if (baseType==WML) {
+            //TODO: we still need better granularity for this. A good place
+            //to look for a whole slew of sample headers is
+            //http://amaro.g-art.nl/useragent/
+            ct = ClientType.WML_BROWSER;
+        //...XHTML_BASIC
+        } else if (baseType==XHTML_BASIC) {
+            //TODO: we still need better granularity for this
+            ct = ClientType.XHTML_BROWSER;
+        //...XHTML_STANDARD
+        } else if (baseType==XHTML_STANDARD) {
+            //TODO: we still need better granularity for this
+            ct = ClientType.XHTML_BROWSER;
         }
         return ct;
     }
 
     //look in the accept header to determine the basic content type
-    private static int getBaseType(HttpServletRequest req) {
+    private static int getBaseType(String acc) {
         int baseType = HTML;    //default
-        chk: if (req!=null) {
-            //get the accept string
-            String acc = req.getHeader("Accept");
-            if (acc==null) acc = req.getHeader("accept");
-            if (acc==null) break chk;
-            acc = acc.toLowerCase();
+        if (acc!=null) {
+            long sig = ACCEPT.match(acc);
 
             //now figure out what we're dealing with
-            if (acc.indexOf("text/html")!=-1) baseType = HTML;
-            else if (acc.indexOf("text/vnd.wap.wml")!=-1) baseType = WML;
-            else if (acc.indexOf("text/chtml")!=-1) baseType = CHTML;
-            else if (acc.indexOf("text/xml")!=-1) baseType = XML;
+            if ((sig & ACC_HTML)!=0) baseType = HTML;
+            else if ((sig & ACC_WML)!=0) baseType = WML;
+            else if ((sig & ACC_CHTML)!=0) baseType = CHTML;
+            else if ((sig & ACC_XML)!=0) baseType = XML;
             //TODO: identify VXML
             //TODO: identify XHTML_BASIC
             //TODO: identify XHTML_STANDARD
-       }
+        }
         return baseType;
     }
-}
\ No newline at end of file
+}
@@ -20,9 +20,9 @@
 package org.barracudamvc.plankton;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.apache.log4j.Logger;
 
 /**
@@ -31,7 +31,7 @@ import org.apache.log4j.Logger;
 public class Classes {
 
     protected static final Logger logger = Logger.getLogger(Classes.class.getName());
-    protected static Map<String, Class> clCache = null;
+    protected static final ConcurrentMap<String, Class> clCache = new ConcurrentHashMap<String, Class>();
     protected static final Class EMPTY = Empty.class;
 
     /**
@@ -44,30 +44,25 @@ public class Classes {
      * @param clName the fully qualified class name
      * @return a reference to the Class 
      */
-    public synchronized static Class getClass(String clName) {
+    public static Class getClass(String clName) {
         if (clName == null) {
             return null;
         }
-        if (clCache == null) {
-            clCache = new HashMap<String, Class>();
-        }
-        Class cl = null;
-        try {
-            Object o = clCache.get(clName);
-            if (EMPTY.equals(o)) {
-                return null;
-            }
-            if (o != null) {
-                cl = (Class) o;
-            } else {
+        Class cl = clCache.get(clName);
+        if (cl == null) {
+            // load outside the map: a static initializer may look up further classes,
+            // and two threads racing here simply resolve the same class twice
+            try {
                 cl = Class.forName(clName, true, Thread.currentThread().getContextClassLoader());
-                clCache.put(clName, cl);
+            } catch (Exception e) {
+                cl = EMPTY;
+            }
+            Class<?> prev = clCache.putIfAbsent(clName, cl);
+            if (prev != null) {
+                cl = prev;
             }
-        } catch (Exception e) {
-            clCache.put(clName, EMPTY);
-            cl = null;
         }
-        return cl;
+        return cl == EMPTY ? null : cl;
     }
 
     /**
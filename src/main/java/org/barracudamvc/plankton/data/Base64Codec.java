@@ -0,0 +1,299 @@
+package org.barracudamvc.plankton.data;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Stateless RFC 2045 Base64 codec. All state lives in the caller's buffers, so
+ * a single codec may be shared freely between threads without locking.
+ * <p>
+ * The buffer methods work incrementally: they consume as much input as fits
+ * in the output buffer, leave any incomplete group in place (the input
+ * buffer's position is not moved past it) and may be called again once the
+ * caller has compacted and refilled the input or drained the output. Pass
+ * <code>endOfInput</code> on the final call so trailing groups are padded
+ * (when encoding) or checked (when decoding).
+ * <p>
+ * Decoding follows the rules of {@link Base64#decode(byte[])}: whitespace is
+ * ignored, the data must form whole four character groups, padding may only
+ * appear in the last group and the unused bits of a padded group must be zero.
+ */
+public final class Base64Codec {
+
+    private static final byte PAD = (byte) '=';
+    private static final byte[] ALPHABET = new byte[64];
+    private static final byte[] VALUES = new byte[256];
+
+    static {
+        for (int i = 0; i < VALUES.length; i++) {
+            VALUES[i] = -1;
+        }
+        for (int i = 0; i < 26; i++) {
+            ALPHABET[i] = (byte) ('A' + i);
+            ALPHABET[i + 26] = (byte) ('a' + i);
+        }
+        for (int i = 0; i < 10; i++) {
+            ALPHABET[i + 52] = (byte) ('0' + i);
+        }
+        ALPHABET[62] = (byte) '+';
+        ALPHABET[63] = (byte) '/';
+        for (int i = 0; i < ALPHABET.length; i++) {
+            VALUES[ALPHABET[i]] = (byte) i;
+        }
+    }
+
+    private Base64Codec() {
+    }
+
+    /**
+     * @return true if the octet is whitespace that decoding skips
+     */
+    public static boolean isWhiteSpace(byte octet) {
+        return octet == 0x20 || octet == 0xd || octet == 0xa || octet == 0x9;
+    }
+
+    /**
+     * @return true if the octet is one of the 64 Base64 data characters
+     */
+    public static boolean isData(byte octet) {
+        return VALUES[octet & 0xff] != -1;
+    }
+
+    /**
+     * @return true if the octet is the pad character
+     */
+    public static boolean isPad(byte octet) {
+        return octet == PAD;
+    }
+
+    /**
+     * @return the number of bytes needed to encode <code>length</code> bytes
+     */
+    public static int encodedLength(int length) {
+        return ((length + 2) / 3) * 4;
+    }
+
+    /**
+     * Encode a whole array
+     *
+     * @param data the bytes to encode
+     * @return the encoded bytes, or null if data is null
+     */
+    public static byte[] encode(byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        return encode(data, 0, data.length);
+    }
+
+    /**
+     * Encode a range of an array
+     *
+     * @return the encoded bytes
+     */
+    public static byte[] encode(byte[] data, int offset, int length) {
+        byte[] result = new byte[encodedLength(length)];
+        encode(ByteBuffer.wrap(data, offset, length), ByteBuffer.wrap(result), true);
+        return result;
+    }
+
+    /**
+     * Encode bytes from <code>in</code> into <code>out</code>. Whole three byte
+     * groups are encoded while both buffers allow it; the final one or two
+     * bytes are only encoded (and padded) when <code>endOfInput</code> is set.
+     *
+     * @param in the bytes to encode
+     * @param out the buffer that receives the encoded characters
+     * @param endOfInput true if no more input will follow
+     * @return true if all of the input has been consumed
+     */
+    public static boolean encode(ByteBuffer in, ByteBuffer out, boolean endOfInput) {
+        int ip = in.position();
+        int il = in.limit();
+        int op = out.position();
+        int ol = out.limit();
+        while (il - ip >= 3 && ol - op >= 4) {
+            int bits = (in.get(ip) & 0xff) << 16 | (in.get(ip + 1) & 0xff) << 8 | (in.get(ip + 2) & 0xff);
+            ip += 3;
+            out.put(op, ALPHABET[bits >>> 18]);
+            out.put(op + 1, ALPHABET[(bits >>> 12) & 0x3f]);
+            out.put(op + 2, ALPHABET[(bits >>> 6) & 0x3f]);
+            out.put(op + 3, ALPHABET[bits & 0x3f]);
+            op += 4;
+        }
+        int remaining = il - ip;
+        if (endOfInput && remaining > 0 && remaining < 3 && ol - op >= 4) {
+            int bits = (in.get(ip) & 0xff) << 16;
+            if (remaining == 2) {
+                bits |= (in.get(ip + 1) & 0xff) << 8;
+            }
+            ip += remaining;
+            out.put(op, ALPHABET[bits >>> 18]);
+            out.put(op + 1, ALPHABET[(bits >>> 12) & 0x3f]);
+            out.put(op + 2, remaining == 2 ? ALPHABET[(bits >>> 6) & 0x3f] : PAD);
+            out.put(op + 3, PAD);
+            op += 4;
+        }
+        in.position(ip);
+        out.position(op);
+        return ip == il;
+    }
+
+    /**
+     * Decode a whole array
+     *
+     * @param data the Base64 characters to decode
+     * @return the decoded bytes, or null if data is null or not valid Base64
+     */
+    public static byte[] decode(byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        return decode(data, 0, data.length);
+    }
+
+    /**
+     * Decode a range of an array
+     *
+     * @return the decoded bytes, or null if the range is not valid Base64
+     */
+    public static byte[] decode(byte[] data, int offset, int length) {
+        byte[] result = new byte[(length / 4) * 3];
+        ByteBuffer out = ByteBuffer.wrap(result);
+        if (!decode(ByteBuffer.wrap(data, offset, length), out, true)) {
+            return null;
+        }
+        if (out.position() == result.length) {
+            return result;
+        }
+        byte[] trimmed = new byte[out.position()];
+        System.arraycopy(result, 0, trimmed, 0, trimmed.length);
+        return trimmed;
+    }
+
+    /**
+     * @return the length of the decoded data, or -1 if the range is not valid
+     *         Base64. Nothing is allocated.
+     */
+    public static int decodedLength(byte[] data, int offset, int length) {
+        int count = 0;
+        int pads = 0;
+        int last = 0;
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            byte b = data[i];
+            if (isWhiteSpace(b)) {
+                continue;
+            }
+            if (b == PAD) {
+                pads++;
+            } else if (pads > 0 || !isData(b)) {
+                return -1;
+            } else {
+                last = VALUES[b & 0xff];
+            }
+            count++;
+        }
+        if (count % 4 != 0 || pads > 2) {
+            return -1;
+        }
+        // the unused bits of a padded group must be zero
+        if ((pads == 2 && (last & 0xf) != 0) || (pads == 1 && (last & 0x3) != 0)) {
+            return -1;
+        }
+        return count / 4 * 3 - pads;
+    }
+
+    /**
+     * Decode characters from <code>in</code> into <code>out</code>, skipping
+     * whitespace. Whole groups are decoded while the output has room; an
+     * incomplete group is left in the input. A padded group ends the data, so
+     * it is only accepted when <code>endOfInput</code> is set and nothing but
+     * whitespace follows it.
+     *
+     * @param in the Base64 characters
+     * @param out the buffer that receives the decoded bytes
+     * @param endOfInput true if no more input will follow
+     * @return false if the input is not valid Base64
+     */
+    public static boolean decode(ByteBuffer in, ByteBuffer out, boolean endOfInput) {
+        int ip = in.position();
+        int il = in.limit();
+        int op = out.position();
+        int ol = out.limit();
+        byte[] group = new byte[4];
+        while (true) {
+            int p = ip;
+            int count = 0;
+            while (count < 4 && p < il) {
+                byte b = in.get(p++);
+                if (!isWhiteSpace(b)) {
+                    group[count++] = b;
+                }
+            }
+            if (count == 0) {
+                // only whitespace left
+                ip = p;
+                break;
+            }
+            if (count < 4) {
+                if (endOfInput) {
+                    return false;
+                }
+                break;
+            }
+            int v1 = VALUES[group[0] & 0xff];
+            int v2 = VALUES[group[1] & 0xff];
+            int v3 = VALUES[group[2] & 0xff];
+            int v4 = VALUES[group[3] & 0xff];
+            if (v1 < 0 || v2 < 0) {
+                return false;
+            }
+            if (v3 >= 0 && v4 >= 0) {
+                if (ol - op < 3) {
+                    break;
+                }
+                int bits = v1 << 18 | v2 << 12 | v3 << 6 | v4;
+                out.put(op, (byte) (bits >>> 16));
+                out.put(op + 1, (byte) (bits >>> 8));
+                out.put(op + 2, (byte) bits);
+                op += 3;
+                ip = p;
+                continue;
+            }
+
+            // a padded group: "xx==" or "xxx="
+            int length;
+            if (group[2] == PAD && group[3] == PAD) {
+                if ((v2 & 0xf) != 0) {
+                    return false;
+                }
+                length = 1;
+            } else if (v3 >= 0 && group[3] == PAD) {
+                if ((v3 & 0x3) != 0) {
+                    return false;
+                }
+                length = 2;
+            } else {
+                return false;
+            }
+            for (int i = p; i < il; i++) {
+                if (!isWhiteSpace(in.get(i))) {
+                    return false;
+                }
+            }
+            if (!endOfInput || ol - op < length) {
+                break;
+            }
+            int bits = v1 << 18 | v2 << 12 | (length == 2 ? v3 << 6 : 0);
+            out.put(op++, (byte) (bits >>> 16));
+            if (length == 2) {
+                out.put(op++, (byte) (bits >>> 8));
+            }
+            ip = il;
+            break;
+        }
+        in.position(ip);
+        out.position(op);
+        return true;
+    }
+}
@@ -0,0 +1,822 @@
+package org.barracudamvc.plankton.data;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>A concurrent map for caching, split into independently locked segments.
+ * Values may be held strongly, or by soft or weak references so that the
+ * garbage collector can reclaim them; entries whose values have been
+ * reclaimed are removed as their references come off each segment's
+ * ReferenceQueue.
+ *
+ * <p>Reads never lock: a lookup goes straight to the segment's
+ * ConcurrentHashMap. For soft and weak caches each read also drops the value
+ * into a small ring of hard references (the hard tier), so the most recently
+ * read values are not collected while they are in use. The ring is
+ * overwritten round robin with an atomic counter, which gives an approximate
+ * LRU without the locking of a linked list.
+ *
+ * <p>A cache may be bounded by its number of entries and/or by the total
+ * weight of its entries. Each segment enforces its share of the bound with a
+ * second chance (CLOCK) policy: a read marks an entry as referenced, and
+ * eviction passes over referenced entries once before removing them. The
+ * bounds are therefore approximate.
+ *
+ * <p>Null keys and values are allowed. Hit, miss, eviction and collection
+ * counts are kept for monitoring.
+ *
+ * <p>Only strongly held entries are serialized; a soft or weak cache is
+ * empty once deserialized.
+ */
+public class ConcurrentReferenceCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>, Serializable {
+
+    private static final long serialVersionUID = 1;
+
+    /**
+     * How the values of a cache are held
+     */
+    public enum ReferenceType {
+
+        STRONG, SOFT, WEAK
+    }
+
+    /**
+     * Computes the weight of an entry for a weight bounded cache
+     */
+    public interface Weigher<K, V> {
+
+        long weigh(K key, V value);
+    }
+
+    /**
+     * the default number of segments
+     */
+    public static int DEFAULT_CONCURRENCY_LEVEL = 16;
+    /**
+     * the default number of hard references kept by a soft cache
+     */
+    public static int DEFAULT_HARD_SIZE = 200;
+
+    private static final Object NULL_KEY = new Object();
+    private static final Object NULL_VALUE = new Object();
+    private static final int CLEANUP_READS = 64;
+
+    private final ReferenceType valueType;
+    private final int concurrencyLevel;
+    private final int hardSize;
+    private final long maxSize;
+    private final Weigher<? super K, ? super V> weigher;
+    private final long maxWeight;
+
+    private transient Segment[] segments;
+    private transient LongAdder hits;
+    private transient LongAdder misses;
+    private transient LongAdder evictions;
+    private transient LongAdder collected;
+    private transient Set<Map.Entry<K, V>> entrySet;
+
+    /**
+     * Create an unbounded cache. Soft caches keep {@link #DEFAULT_HARD_SIZE}
+     * hard references.
+     *
+     * @param ivalueType how values are held
+     */
+    public ConcurrentReferenceCache(ReferenceType ivalueType) {
+        this(ivalueType, 0);
+    }
+
+    /**
+     * Create a cache bounded by its number of entries
+     *
+     * @param ivalueType how values are held
+     * @param imaxSize the maximum number of entries, 0 for no limit
+     */
+    public ConcurrentReferenceCache(ReferenceType ivalueType, long imaxSize) {
+        this(ivalueType, DEFAULT_CONCURRENCY_LEVEL, ivalueType == ReferenceType.SOFT ? DEFAULT_HARD_SIZE : 0, imaxSize, null, 0);
+    }
+
+    /**
+     * @param ivalueType how values are held
+     * @param iconcurrencyLevel the number of segments (rounded up to a power of two)
+     * @param ihardSize the number of recently read values to hold strongly
+     *     (ignored for strong caches)
+     * @param imaxSize the maximum number of entries, 0 for no limit
+     * @param iweigher computes entry weights, or null
+     * @param imaxWeight the maximum total weight, 0 for no limit (requires a weigher)
+     */
+    public ConcurrentReferenceCache(ReferenceType ivalueType, int iconcurrencyLevel, int ihardSize, long imaxSize,
+            Weigher<? super K, ? super V> iweigher, long imaxWeight) {
+        if (ivalueType == null) {
+            throw new IllegalArgumentException("A reference type is required");
+        }
+        if (imaxWeight > 0 && iweigher == null) {
+            throw new IllegalArgumentException("A weight bound requires a weigher");
+        }
+        valueType = ivalueType;
+        concurrencyLevel = Math.max(1, iconcurrencyLevel);
+        hardSize = ivalueType == ReferenceType.STRONG ? 0 : Math.max(0, ihardSize);
+        maxSize = Math.max(0, imaxSize);
+        weigher = iweigher;
+        maxWeight = Math.max(0, imaxWeight);
+        init();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void init() {
+        int count = 1;
+        while (count < concurrencyLevel) {
+            count <<= 1;
+        }
+        // a bound smaller than the number of segments would be multiplied
+        while (count > 1 && maxSize > 0 && count > maxSize) {
+            count >>= 1;
+        }
+        segments = (Segment[]) new ConcurrentReferenceCache<?, ?>.Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(share(hardSize, count), share(maxSize, count), share(maxWeight, count));
+        }
+        hits = new LongAdder();
+        misses = new LongAdder();
+        evictions = new LongAdder();
+        collected = new LongAdder();
+    }
+
+    private static long share(long total, int count) {
+        return total <= 0 ? 0 : (total + count - 1) / count;
+    }
+
+    private static int share(int total, int count) {
+        return (int) share((long) total, count);
+    }
+
+    private static Object maskKey(Object key) {
+        return key == null ? NULL_KEY : key;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T unmask(Object o, Object sentinel) {
+        return o == sentinel ? null : (T) o;
+    }
+
+    private Segment segmentFor(Object maskedKey) {
+        int h = maskedKey.hashCode();
+        h ^= (h >>> 16);
+        return segments[(h ^ (h >>> 8)) & (segments.length - 1)];
+    }
+
+    @Override
+    public V get(Object key) {
+        Object k = maskKey(key);
+        Segment s = segmentFor(k);
+        Node n = s.map.get(k);
+        Object v = n == null ? null : n.get();
+        if (v != null) {
+            n.referenced = true;
+            s.retain(v);
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        s.readCleanUp();
+        return v == null ? null : ConcurrentReferenceCache.<V>unmask(v, NULL_VALUE);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        Object k = maskKey(key);
+        Node n = segmentFor(k).map.get(k);
+        return n != null && n.get() != null;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        Object k = maskKey(key);
+        return segmentFor(k).put(k, key, value, false);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        Object k = maskKey(key);
+        return segmentFor(k).put(k, key, value, true);
+    }
+
+    @Override
+    public V remove(Object key) {
+        Object k = maskKey(key);
+        return unmask(segmentFor(k).remove(k, null, false), NULL_VALUE);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        Object k = maskKey(key);
+        return segmentFor(k).remove(k, value == null ? NULL_VALUE : value, true) != null;
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        Object k = maskKey(key);
+        return segmentFor(k).replace(k, key, oldValue == null ? NULL_VALUE : oldValue, newValue, true) != null;
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        Object k = maskKey(key);
+        return unmask(segmentFor(k).replace(k, key, null, value, false), NULL_VALUE);
+    }
+
+    @Override
+    public void clear() {
+        for (Segment s : segments) {
+            s.clear();
+        }
+    }
+
+    /**
+     * @return the number of entries, after removing those whose values have
+     *     been collected
+     */
+    @Override
+    public int size() {
+        long size = 0;
+        for (Segment s : segments) {
+            s.cleanUp();
+            size += s.map.size();
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> es = entrySet;
+        return es != null ? es : (entrySet = new EntrySet());
+    }
+
+    /**
+     * @return the total weight of the entries (their number if there is no weigher)
+     */
+    public long getWeight() {
+        long weight = 0;
+        for (Segment s : segments) {
+            weight += s.weight;
+        }
+        return weight;
+    }
+
+    public ReferenceType getValueType() {
+        return valueType;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the fraction of reads that found a value, or 0 if there have
+     *     been no reads
+     */
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * @return the number of entries removed to stay within the bounds
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return the number of entries removed because the garbage collector
+     *     reclaimed their values
+     */
+    public long getCollectedCount() {
+        return collected.sum();
+    }
+
+    /**
+     * Reset the hit, miss, eviction and collection counts
+     */
+    public void resetStatistics() {
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+        collected.reset();
+    }
+
+    /**
+     * @return the number of nodes in the eviction order, live or not (so
+     *     tests can check removed nodes don't pile up)
+     */
+    int getClockSize() {
+        int size = 0;
+        for (Segment s : segments) {
+            s.lock.lock();
+            try {
+                size += s.clock == null ? 0 : s.clock.size();
+            } finally {
+                s.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" + valueType + ", size=" + size() + ", hits=" + getHitCount()
+                + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + ", collected=" + getCollectedCount() + "}";
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        if (valueType != ReferenceType.STRONG) {
+            out.writeInt(0);
+            return;
+        }
+        Map<K, V> copy = new HashMap<>(this);
+        out.writeInt(copy.size());
+        for (Map.Entry<K, V> entry : copy.entrySet()) {
+            out.writeObject(entry.getKey());
+            out.writeObject(entry.getValue());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        init();
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            put((K) in.readObject(), (V) in.readObject());
+        }
+    }
+
+    /**
+     * The holder of a value; its reference is strong, soft or weak
+     */
+    private interface ValueRef {
+
+        Object get();
+
+        Node node();
+    }
+
+    /**
+     * What a node holds once it has left the map, so the clock doesn't keep
+     * its value alive until the node is compacted away
+     */
+    private static final ValueRef CLEARED = new ValueRef() {
+        @Override
+        public Object get() {
+            return null;
+        }
+
+        @Override
+        public Node node() {
+            return null;
+        }
+    };
+
+    private static final class StrongValue implements ValueRef {
+
+        private final Object value;
+        private final Node node;
+
+        StrongValue(Object ivalue, Node inode) {
+            value = ivalue;
+            node = inode;
+        }
+
+        @Override
+        public Object get() {
+            return value;
+        }
+
+        @Override
+        public Node node() {
+            return node;
+        }
+    }
+
+    private static final class SoftValue extends SoftReference<Object> implements ValueRef {
+
+        private final Node node;
+
+        SoftValue(Object value, Node inode, ReferenceQueue<Object> queue) {
+            super(value, queue);
+            node = inode;
+        }
+
+        @Override
+        public Node node() {
+            return node;
+        }
+    }
+
+    private static final class WeakValue extends WeakReference<Object> implements ValueRef {
+
+        private final Node node;
+
+        WeakValue(Object value, Node inode, ReferenceQueue<Object> queue) {
+            super(value, queue);
+            node = inode;
+        }
+
+        @Override
+        public Node node() {
+            return node;
+        }
+    }
+
+    private static final class Node {
+
+        final Object key;
+        final long weight;
+        ValueRef ref;
+        volatile boolean referenced;
+        boolean removed;
+
+        Node(Object ikey, long iweight) {
+            key = ikey;
+            weight = iweight;
+        }
+
+        Object get() {
+            return ref.get();
+        }
+    }
+
+    /**
+     * A part of the cache with its own lock, reference queue, hard tier and
+     * share of the bounds. The map is read without locking; every change is
+     * made while holding the lock.
+     */
+    private final class Segment {
+
+        final ConcurrentHashMap<Object, Node> map = new ConcurrentHashMap<>();
+        final ReentrantLock lock = new ReentrantLock();
+        final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+        final AtomicReferenceArray<Object> hard;
+        final AtomicInteger hardIndex = new AtomicInteger();
+        final AtomicInteger reads = new AtomicInteger();
+        final long segMaxSize;
+        final long segMaxWeight;
+        // the eviction order, only kept for bounded caches (guarded by lock)
+        final ArrayDeque<Node> clock;
+        volatile long weight;
+
+        Segment(int ihardSize, long imaxSize, long imaxWeight) {
+            int size = 1;
+            while (size < ihardSize) {
+                size <<= 1;
+            }
+            hard = ihardSize > 0 ? new AtomicReferenceArray<Object>(size) : null;
+            segMaxSize = imaxSize;
+            segMaxWeight = imaxWeight;
+            clock = imaxSize > 0 || imaxWeight > 0 ? new ArrayDeque<Node>() : null;
+        }
+
+        /**
+         * Hold a value strongly until the ring comes round again
+         */
+        void retain(Object value) {
+            if (hard != null) {
+                hard.lazySet(hardIndex.getAndIncrement() & (hard.length() - 1), value);
+            }
+        }
+
+        Node newNode(Object k, K key, V value) {
+            Object v = value == null ? NULL_VALUE : value;
+            Node n = new Node(k, weigher == null ? 1 : weigher.weigh(key, value));
+            switch (valueType) {
+                case SOFT:
+                    n.ref = new SoftValue(v, n, queue);
+                    break;
+                case WEAK:
+                    n.ref = new WeakValue(v, n, queue);
+                    break;
+                default:
+                    n.ref = new StrongValue(v, n);
+            }
+            return n;
+        }
+
+        V put(Object k, K key, V value, boolean onlyIfAbsent) {
+            lock.lock();
+            try {
+                drainQueue();
+                Node old = map.get(k);
+                Object oldValue = old == null ? null : old.get();
+                if (onlyIfAbsent && oldValue != null) {
+                    old.referenced = true;
+                    return unmask(oldValue, NULL_VALUE);
+                }
+                Node n = newNode(k, key, value);
+                map.put(k, n);
+                if (old != null) {
+                    unlink(old);
+                }
+                link(n);
+                evict();
+                compact();
+                return oldValue == null ? null : ConcurrentReferenceCache.<V>unmask(oldValue, NULL_VALUE);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return the (masked) value removed, or null
+         */
+        Object remove(Object k, Object expected, boolean conditional) {
+            lock.lock();
+            try {
+                drainQueue();
+                Node n = map.get(k);
+                Object v = n == null ? null : n.get();
+                if (v == null || (conditional && !v.equals(expected))) {
+                    return null;
+                }
+                map.remove(k, n);
+                unlink(n);
+                compact();
+                return v;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return the (masked) value replaced, or null
+         */
+        Object replace(Object k, K key, Object expected, V value, boolean conditional) {
+            lock.lock();
+            try {
+                drainQueue();
+                Node old = map.get(k);
+                Object v = old == null ? null : old.get();
+                if (v == null || (conditional && !v.equals(expected))) {
+                    return null;
+                }
+                Node n = newNode(k, key, value);
+                map.put(k, n);
+                unlink(old);
+                link(n);
+                evict();
+                compact();
+                return v;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void clear() {
+            lock.lock();
+            try {
+                map.clear();
+                if (clock != null) {
+                    clock.clear();
+                }
+                weight = 0;
+                if (hard != null) {
+                    for (int i = 0; i < hard.length(); i++) {
+                        hard.set(i, null);
+                    }
+                }
+                while (queue.poll() != null) {
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Reads clean up now and then, if nobody else holds the lock
+         */
+        void readCleanUp() {
+            if (valueType != ReferenceType.STRONG && (reads.incrementAndGet() & (CLEANUP_READS - 1)) == 0 && lock.tryLock()) {
+                try {
+                    drainQueue();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+
+        void cleanUp() {
+            if (valueType != ReferenceType.STRONG) {
+                lock.lock();
+                try {
+                    drainQueue();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+
+        /**
+         * Remove the entries whose values have been collected (lock held)
+         */
+        private void drainQueue() {
+            Reference<?> ref;
+            while ((ref = queue.poll()) != null) {
+                Node n = ((ValueRef) ref).node();
+                if (map.remove(n.key, n)) {
+                    unlink(n);
+                    collected.increment();
+                }
+            }
+            compact();
+        }
+
+        private void link(Node n) {
+            weight += n.weight;
+            if (clock != null) {
+                clock.add(n);
+            }
+        }
+
+        /**
+         * Account for a node that has left the map and let go of its value.
+         * The node itself stays in the clock until eviction or compaction
+         * passes it. (A reader that already had the node just sees a miss.)
+         */
+        private void unlink(Node n) {
+            n.removed = true;
+            n.ref = CLEARED;
+            weight -= n.weight;
+        }
+
+        /**
+         * Evict with the second chance policy until the segment is within
+         * its bounds (lock held)
+         */
+        private void evict() {
+            if (clock == null) {
+                return;
+            }
+            // after one full pass referenced entries are evicted regardless
+            int passes = clock.size();
+            while (overBounds()) {
+                Node n = clock.poll();
+                if (n == null) {
+                    break;
+                }
+                if (n.removed) {
+                    continue;
+                }
+                if (n.referenced && passes-- > 0) {
+                    n.referenced = false;
+                    clock.add(n);
+                    continue;
+                }
+                map.remove(n.key, n);
+                unlink(n);
+                evictions.increment();
+            }
+        }
+
+        private boolean overBounds() {
+            return (segMaxSize > 0 && map.size() > segMaxSize) || (segMaxWeight > 0 && weight > segMaxWeight);
+        }
+
+        /**
+         * Drop removed nodes from the clock once they outnumber the live ones
+         * (lock held). Every path that unlinks a node calls this, so the
+         * clock stays within about twice the live entries however often keys are
+         * overwritten.
+         */
+        private void compact() {
+            if (clock != null && clock.size() > 2 * map.size() + 16) {
+                Iterator<Node> it = clock.iterator();
+                while (it.hasNext()) {
+                    if (it.next().removed) {
+                        it.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    private final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return ConcurrentReferenceCache.this.size();
+        }
+
+        @Override
+        public void clear() {
+            ConcurrentReferenceCache.this.clear();
+        }
+    }
+
+    /**
+     * A weakly consistent iterator over the entries whose values are still
+     * reachable
+     */
+    private final class EntryIterator implements Iterator<Map.Entry<K, V>> {
+
+        private int segment = 0;
+        private Iterator<Node> nodes = segments[0].map.values().iterator();
+        private Map.Entry<K, V> next;
+        private Map.Entry<K, V> last;
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                while (!nodes.hasNext()) {
+                    if (++segment >= segments.length) {
+                        return false;
+                    }
+                    nodes = segments[segment].map.values().iterator();
+                }
+                Node n = nodes.next();
+                Object v = n.get();
+                if (v != null) {
+                    next = new WriteThroughEntry(ConcurrentReferenceCache.<K>unmask(n.key, NULL_KEY),
+                            ConcurrentReferenceCache.<V>unmask(v, NULL_VALUE));
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            next = null;
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            ConcurrentReferenceCache.this.remove(last.getKey());
+            last = null;
+        }
+    }
+
+    private final class WriteThroughEntry extends AbstractMap.SimpleEntry<K, V> {
+
+        private static final long serialVersionUID = 1;
+
+        WriteThroughEntry(K key, V value) {
+            super(key, value);
+        }
+
+        @Override
+        public V setValue(V value) {
+            put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+}
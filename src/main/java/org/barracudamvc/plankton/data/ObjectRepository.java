@@ -22,7 +22,6 @@ package org.barracudamvc.plankton.data;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.Serializable;
-import java.lang.ref.SoftReference;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -32,8 +31,10 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
+import org.barracudamvc.plankton.data.ConcurrentReferenceCache.ReferenceType;
 
 /**
  * This class provides access to several different generic statemap repositories,
@@ -55,10 +56,14 @@ import javax.servlet.http.HttpSession;
  * cycle. Note that the ApplicationGateway and ComponentGateway classes clean up both Session and
  * Local repositories.
  *
- * The Weak and Soft maps are backed by WeakHashMap and SoftHashMap maps respectively (the basic
- * distinction being that weak references will generally be cleaned up as soon as possible while
- * soft references will generally be held on to as long as possible). The soft map is generally
- * a better choice for caching.
+ * Both the Session and Local repositories live in a RepositoryScope which is bound to the
+ * current thread, so looking them up does not require any locking. If a request hops threads,
+ * use RepositoryScope.current() to get a handle on the scope and attach it on the other side.
+ *
+ * The Weak maps are backed by a WeakHashMap (so an entry goes once nothing else refers to its
+ * key) and the Soft maps by a ConcurrentReferenceCache holding soft values (which will generally
+ * be held on to as long as possible). The soft map is generally a better choice for caching. The
+ * threadsafe map uses the same cache with strong values, so it doesn't take a global lock.
  *
  * You can also get non-scoped ObjectRepositories by using either NameSpace or String keys. IF you
  * use this approach, its up to you to manually remove the repositories when you're done with them
@@ -83,11 +88,9 @@ public class ObjectRepository extends DefaultStateMap implements Serializable {
     protected static ObjectRepository weakGlobal = new WeakThreadsafeRepository("WeakGlobalOR");
     protected static ObjectRepository softGlobal = new SoftThreadsafeRepository("SoftGlobalOR");
     protected static SoftHashMap<String, HttpSession> rawSessions = new SoftHashMap<>();
-    protected static Map<String, ObjectRepository> session = new HashMap<>();
-    protected static Map<String, String> sessionIDs = new HashMap<>();
+    protected static Map<String, SessionRepository> sessionIDs = new ConcurrentHashMap<>();
     protected static Map weaksession = new HashMap();
     protected static Map softsession = new HashMap();
-    protected static Map<String, ObjectRepository> local = new HashMap<>();
     protected static Map<Object, ObjectRepository> custom = new HashMap<>();
     protected String name = "[unnamed]";
 
@@ -117,23 +120,27 @@ public class ObjectRepository extends DefaultStateMap implements Serializable {
         rawSessions.clear();
         rawSessions = null;
 
-        for (Entry<String, ObjectRepository> stringObjectRepositoryEntry : session.entrySet()) {
-            stringObjectRepositoryEntry.getValue().clearState();
+        for (SessionRepository sessionRepository : sessionIDs.values()) {
+            if (sessionRepository.req != null) {
+                sessionRepository.clearState();
+            }
         }
-        session.clear();
-        session = null;
-        
         sessionIDs.clear();
         sessionIDs = null;
         
         weaksession.clear();
         softsession.clear();
 
-        for (Entry<String, ObjectRepository> entry : local.entrySet()) {
-            entry.getValue().clearState();            
+        //scopes bound to other threads are released as their requests finish,
+        //all we can do here is let go of our own
+        RepositoryScope scope = RepositoryScope.current();
+        if (scope != null) {
+            ObjectRepository or = scope.removeLocalRepository();
+            if (or != null) {
+                or.clearState();
+            }
+            scope.removeSessionRepository();
         }
-        local.clear();
-        local = null;
 
         for (Entry<Object, ObjectRepository> entry : custom.entrySet()) {
             entry.getValue().clearState();
@@ -185,10 +192,8 @@ public class ObjectRepository extends DefaultStateMap implements Serializable {
      * state map.
      */
     public static void setupSessionRepository(HttpServletRequest req) {
-        String key = "SessionOR_" + Thread.currentThread().getName();
-        synchronized (session) {
-            session.put(key, new SessionRepository(req));
-        }
+        RepositoryScope scope = RepositoryScope.currentOrCreate();
+        scope.setSessionRepository(new SessionRepository(req, scope));
     }
 
     /**
@@ -207,62 +212,51 @@ public class ObjectRepository extends DefaultStateMap implements Serializable {
      * you would be wise to check instanceof first...
      */
     public static ObjectRepository getSessionRepository() {
-        String key = "SessionOR_" + Thread.currentThread().getName();
-        return getSessionRepository(key);
-    }
-
-    protected static ObjectRepository getSessionRepository(String key) {
-
-        ObjectRepository or = (ObjectRepository) session.get(key);
-        if (or == null) {
-            or = new ObjectRepository(key);
-            synchronized (session) {
-                session.put(key, or);
-            }
-        }
-        return or;
+        return RepositoryScope.currentOrCreate().getSessionRepository();
     }
 
     /**
      * Release the Session repository
      */
     public static void removeSessionRepository() {
-        String key = "SessionOR_" + Thread.currentThread().getName();
-        synchronized (session) {
-            ObjectRepository or = session.remove(key);
+        RepositoryScope scope = RepositoryScope.current();
+        if (scope == null) {
+            return;
+        }
+        ObjectRepository or = scope.removeSessionRepository();
 
-            // If the Object Repository stored in the session slot is not a
-            // SessionRepository we can't do anything further. 
-            if (!(or instanceof SessionRepository)) {
-                return;
-            }
+        // If the Object Repository stored in the session slot is not a
+        // SessionRepository we can't do anything further. 
+        if (!(or instanceof SessionRepository)) {
+            return;
+        }
 
-            SessionRepository sessionRepository = (SessionRepository) or;
-            HttpServletRequest hsr = sessionRepository.req;
-            HttpSession hs = (hsr != null ? hsr.getSession(false) : null);
+        SessionRepository sessionRepository = (SessionRepository) or;
+        HttpServletRequest hsr = sessionRepository.req;
+        HttpSession hs = (hsr != null ? hsr.getSession(false) : null);
 
-            //now, if the underlying session exists, we save a reference to 
-            //it since it may have been created this pass
-            if (hs != null) {
-                try {
-                    //this will test to make sure its not invalidated
-                    hs.getAttributeNames();
-                    synchronized (rawSessions) {
-                        rawSessions.put(hs.getId(), hs);
-                    }
-                } catch (IllegalStateException e) {
-                    //not a big deal - just means that the session was 
-                    //invalidated (perhaps programatically) during
-                    //the req cycle, and therefor there is no point in 
-                    //trying to store a reference to this in rawSessions                
-                }
-                sessionIDs.remove(hs.getId());
+        //now, if the underlying session exists, we save a reference to 
+        //it since it may have been created this pass
+        if (hs != null) {
+            try {
+                //this will test to make sure its not invalidated
+                hs.getAttributeNames();
+                rawSessions.put(hs.getId(), hs);
+            } catch (IllegalStateException e) {
+                //not a big deal - just means that the session was 
+                //invalidated (perhaps programatically) during
+                //the req cycle, and therefor there is no point in 
+                //trying to store a reference to this in rawSessions                
             }
+        }
+        if (sessionRepository.sessionID != null) {
+            sessionIDs.remove(sessionRepository.sessionID, sessionRepository);
+        }
 
-            //regardless of the state of the session, we want to completely 
-            //clean up the statemap that we were using to wrap it and remove 
-            //it from the session OR we do this because next time around, 
-            //it'll be registered under a different thread name anyway)
+        //regardless of the state of the session, we want to completely 
+        //clean up the statemap that we were using to wrap it (the next
+        //request gets a brand new one anyway)
+        synchronized (sessionRepository) {
             sessionRepository.req = null;
             sessionRepository.map = null;
         }
@@ -312,21 +306,17 @@ public class ObjectRepository extends DefaultStateMap implements Serializable {
      * like the Barracuda ApplicationGateway or ComponentGateway)
      */
     public static ObjectRepository getLocalRepository() {
-        String key = "LocalOR_" + Thread.currentThread().getName();
-        ObjectRepository or = local.get(key);
-        if (or == null) {
-            or = new ObjectRepository(key);
-            local.put(key, or);
-        }
-        return or;
+        return RepositoryScope.currentOrCreate().getLocalRepository();
     }
 
     /**
      * Release the Local repository.
      */
     public static void removeLocalRepository() {
-        String key = "LocalOR_" + Thread.currentThread().getName();
-        local.remove(key);
+        RepositoryScope scope = RepositoryScope.current();
+        if (scope != null) {
+            scope.removeLocalRepository();
+        }
     }
 
     /**
@@ -441,25 +431,15 @@ public class ObjectRepository extends DefaultStateMap implements Serializable {
      */
     public static void invalidateSession(String sessionID) {
         //first, clean up any Barracuda structures that might be pointing to this session
-        synchronized (session) {
-            String key = (String) sessionIDs.remove(sessionID);
-            if (key != null) {
-                Object possibleSessionRepository = session.remove(key);
-                if (possibleSessionRepository instanceof SessionRepository) {
-                    SessionRepository sessionRepository = (SessionRepository) possibleSessionRepository;
-                    sessionRepository.map = null;
-                    sessionRepository.registered = false;
-                }
-            }
+        SessionRepository sessionRepository = sessionIDs.remove(sessionID);
+        if (sessionRepository != null) {
+            sessionRepository.unregister();
         }
 
         //now see if we can clean up the real session for this id
-        synchronized (rawSessions) {
-            HttpSession hs = (HttpSession) rawSessions.get(sessionID);
-            if (hs != null) {
-                hs.invalidate();
-            }
-            rawSessions.remove(sessionID);
+        HttpSession hs = rawSessions.remove(sessionID);
+        if (hs != null) {
+            hs.invalidate();
         }
     }
 
@@ -469,25 +449,18 @@ public class ObjectRepository extends DefaultStateMap implements Serializable {
      * this if you are performing large scale session management (ie. logging out all users, etc)
      */
     public static void invalidateAllSessions() {
-        synchronized (session) {
-            session.clear();
-            sessionIDs = new HashMap<String, String>();
+        for (SessionRepository sessionRepository : sessionIDs.values()) {
+            sessionRepository.unregister();
         }
+        sessionIDs.clear();
 
         //now see if we can clean up the real session for this id
-        synchronized (rawSessions) {
-            Iterator it = rawSessions.values().iterator();
-            while (it.hasNext()) {
-                Object reference = it.next();
-                if (reference instanceof SoftReference) {
-                    Object hs = ((SoftReference) reference).get();
-                    if (hs instanceof HttpSession) {
-                        ((HttpSession) hs).invalidate();
-                    }
-                }
-            }
+        Iterator<HttpSession> it = rawSessions.values().iterator();
+        while (it.hasNext()) {
+            HttpSession hs = it.next();
+            it.remove();
+            hs.invalidate();
         }
-        rawSessions = new SoftHashMap<String, HttpSession>();
     }
 
     /**
@@ -499,18 +472,16 @@ public class ObjectRepository extends DefaultStateMap implements Serializable {
      */
     public static Map getSessionStore() {
         //for the session list, we want to pull the underlying session objects out of their soft referents
-        synchronized (rawSessions) {
-            Map<String, HttpSession> smap = new HashMap<String, HttpSession>(rawSessions.size());
+        Map<String, HttpSession> smap = new HashMap<String, HttpSession>(rawSessions.size());
 
-            for (Entry<String, HttpSession> entry : rawSessions.entrySet()) {
-                if (entry.getKey() == null || entry.getValue() == null) {
-                    continue;
-                }
-                smap.put(entry.getKey(), entry.getValue());
+        for (Entry<String, HttpSession> entry : rawSessions.entrySet()) {
+            if (entry.getKey() == null || entry.getValue() == null) {
+                continue;
             }
-
-            return smap;
+            smap.put(entry.getKey(), entry.getValue());
         }
+
+        return smap;
     }
 
     //csc_011704_1 - added
@@ -537,7 +508,8 @@ public class ObjectRepository extends DefaultStateMap implements Serializable {
         m.put("OR4-rawSessions", getSessionStore());
         m.put("OR5-weak session", weaksession);
         m.put("OR6-soft session", softsession);
-        m.put("OR7-local", local);
+        RepositoryScope scope = RepositoryScope.current();
+        m.put("OR7-local", (scope != null ? scope.peekLocalRepository() : null));
         m.put("OR8-custom", custom);
 
         return m;
@@ -569,12 +541,12 @@ public class ObjectRepository extends DefaultStateMap implements Serializable {
 
         public ThreadsafeRepository() {
             super();
-            props = Collections.synchronizedMap(new HashMap<Object, Object>());
+            props = new ConcurrentReferenceCache<>(ReferenceType.STRONG);
         }
 
         public ThreadsafeRepository(String iname) {
             super(iname);
-            props = Collections.synchronizedMap(new HashMap<Object, Object>());
+            props = new ConcurrentReferenceCache<>(ReferenceType.STRONG);
         }
     }
 
@@ -629,17 +601,18 @@ public class ObjectRepository extends DefaultStateMap implements Serializable {
 
         public SoftRepository() {
             super();
-            props = new SoftHashMap<>();
+            props = new ConcurrentReferenceCache<>(ReferenceType.SOFT);
         }
 
         public SoftRepository(String iname) {
             super(iname);
-            props = new SoftHashMap<>();
+            props = new ConcurrentReferenceCache<>(ReferenceType.SOFT);
         }
     }
 
     /**
-     * A soft threadsafe wrapper around ObjectRepository
+     * A soft threadsafe wrapper around ObjectRepository (the soft
+     * repository's cache is already threadsafe)
      */
     static class SoftThreadsafeRepository extends SoftRepository implements Serializable {
 
@@ -647,12 +620,10 @@ public class ObjectRepository extends DefaultStateMap implements Serializable {
 
         public SoftThreadsafeRepository() {
             super();
-            props = Collections.synchronizedMap(props);
         }
 
         public SoftThreadsafeRepository(String iname) {
             super(iname);
-            props = Collections.synchronizedMap(props);
         }
     }
 
@@ -669,6 +640,8 @@ public class ObjectRepository extends DefaultStateMap implements Serializable {
         HttpServletRequest req = null;
         HttpSessionStateMap map = null;
         boolean registered = false;
+        String sessionID = null;
+        RepositoryScope scope = null;
 
         public SessionRepository() {
             super();
@@ -679,7 +652,13 @@ public class ObjectRepository extends DefaultStateMap implements Serializable {
         }
 
         public SessionRepository(HttpServletRequest ireq) {
+            this(ireq, null);
+        }
+
+        SessionRepository(HttpServletRequest ireq, RepositoryScope iscope) {
+            super(iscope != null ? "SessionOR_" + iscope.getName() : null);
             req = ireq;
+            scope = iscope;
             registerSession();
         }
 
@@ -692,24 +671,30 @@ public class ObjectRepository extends DefaultStateMap implements Serializable {
             if (hs != null) {
                 try {
                     hs.getCreationTime();
-                    String key = "SessionOR_" + Thread.currentThread().getName();
-                    synchronized (session) {
-                        synchronized (rawSessions) {
-                            if (!rawSessions.containsKey(hs.getId())) {
-                                rawSessions.put(hs.getId(), hs);
-                            }
-                        }
-                        if (!sessionIDs.containsKey(hs.getId())) {
-                            sessionIDs.put(hs.getId(), key);
-                        }
-                        registered = true;
+                    rawSessions.putIfAbsent(hs.getId(), hs);
+                    if (sessionIDs.putIfAbsent(hs.getId(), this) == null) {
+                        sessionID = hs.getId();
                     }
+                    registered = true;
                 } catch (IllegalStateException e) {
                     //ok - just means the session has been invalidated
                 }
             }
         }
 
+        /**
+         * Disconnect this repository from the underlying session. If the request
+         * that owns it is still in flight, its scope falls back to a regular
+         * (non session backed) repository from here on.
+         */
+        protected synchronized void unregister() {
+            map = null;
+            registered = false;
+            if (scope != null) {
+                scope.removeSessionRepository(this);
+            }
+        }
+
         @Override
         public synchronized void putState(Object key, Object val) {
             if (map == null) {
@@ -0,0 +1,188 @@
+package org.barracudamvc.plankton.data;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * <p>A RepositoryScope holds the Local and Session object repositories for a single
+ * req-resp cycle. ObjectRepository binds a scope to the current thread the first time
+ * one of the scoped repositories is requested (if none was attached explicitly), and
+ * releases it once both of them have been removed, so code that only uses the static ObjectRepository API never needs to
+ * deal with scopes directly.
+ *
+ * <p>Scopes are bound through a ThreadLocal rather than being keyed by thread name, so
+ * lookups never take a lock and two threads that happen to share a name can no longer
+ * see each other's repositories. Because the binding is per thread, it works the same
+ * way on pooled container threads and on short lived (or virtual) threads.
+ *
+ * <p>If a request is continued on a different thread (ie. an async servlet handing off
+ * to an executor), grab the handle on the original thread and attach it on the new one:
+ * <pre>
+ *   final RepositoryScope scope = RepositoryScope.current();
+ *   executor.execute(new Runnable() {
+ *       public void run() {
+ *           RepositoryScope previous = scope.attach();
+ *           try {
+ *               ...
+ *           } finally {
+ *               scope.detach(previous);
+ *           }
+ *       }
+ *   });
+ * </pre>
+ *
+ * <p>A scope should only be active on one thread at a time; the repositories it holds
+ * are no more threadsafe than they were before.
+ */
+public final class RepositoryScope {
+
+    private static final ThreadLocal<RepositoryScope> CURRENT = new ThreadLocal<>();
+    private static final AtomicReferenceFieldUpdater<RepositoryScope, ObjectRepository> LOCAL =
+            AtomicReferenceFieldUpdater.newUpdater(RepositoryScope.class, ObjectRepository.class, "local");
+    private static final AtomicReferenceFieldUpdater<RepositoryScope, ObjectRepository> SESSION =
+            AtomicReferenceFieldUpdater.newUpdater(RepositoryScope.class, ObjectRepository.class, "session");
+
+    private final String name;
+    private boolean implicit = false;
+    private volatile ObjectRepository local = null;
+    private volatile ObjectRepository session = null;
+
+    /**
+     * Create a new, unbound scope. The name is only used to name the
+     * repositories created within the scope (handy when debugging)
+     */
+    public RepositoryScope(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Get the scope bound to the current thread
+     *
+     * @return the current scope, or null if there isn't one
+     */
+    public static RepositoryScope current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Get the scope bound to the current thread, creating and binding
+     * a new one if necessary
+     *
+     * @return the current scope
+     */
+    public static RepositoryScope currentOrCreate() {
+        RepositoryScope scope = CURRENT.get();
+        if (scope == null) {
+            scope = new RepositoryScope(Thread.currentThread().getName());
+            scope.implicit = true;
+            CURRENT.set(scope);
+        }
+        return scope;
+    }
+
+    /**
+     * Bind this scope to the current thread.
+     *
+     * @return whatever scope was previously bound to the current thread (may be null);
+     * pass it back to detach() when you're done
+     */
+    public RepositoryScope attach() {
+        RepositoryScope previous = CURRENT.get();
+        CURRENT.set(this);
+        return previous;
+    }
+
+    /**
+     * Unbind this scope from the current thread, restoring the scope that
+     * was bound before attach() was called. This does not clear the scope,
+     * so it can still be attached elsewhere.
+     *
+     * @param previous the value returned by attach()
+     */
+    public void detach(RepositoryScope previous) {
+        if (CURRENT.get() != this) {
+            return;
+        }
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * Return the name of this scope
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the Local repository for this scope, creating it if necessary
+     */
+    public ObjectRepository getLocalRepository() {
+        ObjectRepository or = local;
+        if (or == null) {
+            or = new ObjectRepository("LocalOR_" + name);
+            if (!LOCAL.compareAndSet(this, null, or)) {
+                or = local;
+            }
+        }
+        return or;
+    }
+
+    /**
+     * Get the Session repository for this scope. If no session repository has
+     * been set up, a regular (non session backed) repository is created.
+     */
+    public ObjectRepository getSessionRepository() {
+        ObjectRepository or = session;
+        if (or == null) {
+            or = new ObjectRepository("SessionOR_" + name);
+            if (!SESSION.compareAndSet(this, null, or)) {
+                or = session;
+            }
+        }
+        return or;
+    }
+
+    /**
+     * Peek at the Local repository without creating one
+     */
+    ObjectRepository peekLocalRepository() {
+        return local;
+    }
+
+    void setSessionRepository(ObjectRepository or) {
+        session = or;
+    }
+
+    ObjectRepository removeLocalRepository() {
+        ObjectRepository or = LOCAL.getAndSet(this, null);
+        releaseIfEmpty();
+        return or;
+    }
+
+    ObjectRepository removeSessionRepository() {
+        ObjectRepository or = SESSION.getAndSet(this, null);
+        releaseIfEmpty();
+        return or;
+    }
+
+    /**
+     * Remove the session repository, but only if it is still the given instance
+     */
+    boolean removeSessionRepository(ObjectRepository or) {
+        return SESSION.compareAndSet(this, or, null);
+    }
+
+    /**
+     * Once a scope that was created on demand holds nothing there is no point in
+     * keeping it bound to the thread (pooled threads would otherwise hang on to it
+     * indefinitely). Explicitly attached scopes stay put until they are detached.
+     */
+    private void releaseIfEmpty() {
+        if (implicit && local == null && session == null && CURRENT.get() == this) {
+            CURRENT.remove();
+        }
+    }
+}
@@ -1,10 +0,0 @@
-package org.barracudamvc.plankton.io.parser.URLEncoded;
-
-enum Event {
-
-    CHAR,
-    EQUAL,
-    AMPERSAND,
-    PERCENT,
-    PLUS;
-}
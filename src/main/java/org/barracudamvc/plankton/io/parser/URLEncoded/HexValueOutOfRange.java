@@ -0,0 +1,13 @@
+package org.barracudamvc.plankton.io.parser.URLEncoded;
+
+/**
+ * Thrown when a % escape is followed by something other than two hex digits
+ */
+class HexValueOutOfRange extends StreamInvalidException {
+
+    private static final long serialVersionUID = 1;
+
+    public HexValueOutOfRange(Integer index, Character c) {
+        super(index, c);
+    }
+}
@@ -0,0 +1,14 @@
+package org.barracudamvc.plankton.io.parser.URLEncoded;
+
+/**
+ * Thrown when URL encoded data goes over one of the parser's limits on the
+ * number of pairs or the length of a key or value
+ */
+public class LimitExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1;
+
+    public LimitExceededException(String message) {
+        super(message);
+    }
+}
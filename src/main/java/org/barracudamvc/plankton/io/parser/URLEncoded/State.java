@@ -1,8 +0,0 @@
-package org.barracudamvc.plankton.io.parser.URLEncoded;
-
-enum State {
-
-    KEY,
-    VALUE,
-    HEX_VALUE
-}
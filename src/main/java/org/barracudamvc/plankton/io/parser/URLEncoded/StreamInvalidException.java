@@ -0,0 +1,13 @@
+package org.barracudamvc.plankton.io.parser.URLEncoded;
+
+/**
+ * Thrown when the stream holds something that isn't URL encoded data
+ */
+class StreamInvalidException extends RuntimeException {
+
+    private static final long serialVersionUID = 1;
+
+    public StreamInvalidException(Integer index, Character c) {
+        super("Unexpected token found in stream @" + index + " found:" + c);
+    }
+}
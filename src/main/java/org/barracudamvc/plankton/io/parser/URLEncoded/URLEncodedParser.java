@@ -2,137 +2,379 @@ package org.barracudamvc.plankton.io.parser.URLEncoded;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import static org.barracudamvc.plankton.io.parser.URLEncoded.AddSpace.ADD_SPACE;
-import static org.barracudamvc.plankton.io.parser.URLEncoded.AddToken.ADD_CHAR;
-import static org.barracudamvc.plankton.io.parser.URLEncoded.Event.AMPERSAND;
-import static org.barracudamvc.plankton.io.parser.URLEncoded.Event.CHAR;
-import static org.barracudamvc.plankton.io.parser.URLEncoded.Event.EQUAL;
-import static org.barracudamvc.plankton.io.parser.URLEncoded.Event.PERCENT;
-import static org.barracudamvc.plankton.io.parser.URLEncoded.Event.PLUS;
-import static org.barracudamvc.plankton.io.parser.URLEncoded.State.KEY;
-import static org.barracudamvc.plankton.io.parser.URLEncoded.State.VALUE;
-import static org.barracudamvc.plankton.io.parser.URLEncoded.TakeKey.TAKE_KEY;
-import static org.barracudamvc.plankton.io.parser.URLEncoded.TakePairActor.TAKE_PAIR;
 
 /**
- * Thread safe URL encoded key=value parser.
+ * <p>Thread safe URL encoded key=value parser.
+ *
+ * <p>The raw bytes are scanned a block at a time; runs of plain bytes are copied
+ * across in bulk and %XX escapes are decoded to bytes, so multi-byte characters
+ * are put back together properly when each key and value is finally decoded with
+ * the parser's charset (UTF-8 unless you say otherwise). Keys that keep coming up
+ * are cached, so parsing the same form over and over doesn't keep creating the
+ * same key Strings.
+ *
+ * <p>To stop a hostile request from eating up memory, there are limits on the
+ * number of pairs and on the length (in bytes, after decoding) of each key and
+ * value; going over one of them throws a LimitExceededException. A parser that
+ * isn't given its own limits uses the DEFAULT_MAX_* values as they are when each
+ * parse starts, so changing them takes effect for parsers that already exist
+ * (such as the ones shared by the request wrappers).
  *
  * @author Charles H. Lowery <chuck.lowery @ gmail.com>
  */
 public class URLEncodedParser {
 
-    private static final Transition[][] transitions;
+    /**
+     * default maximum number of key=value pairs (read at the start of each parse)
+     */
+    public static int DEFAULT_MAX_PARAMETERS = 10000;
+    /**
+     * default maximum length of a key, in bytes (read at the start of each parse)
+     */
+    public static int DEFAULT_MAX_KEY_LENGTH = 1024;
+    /**
+     * default maximum length of a value, in bytes (read at the start of each parse)
+     */
+    public static int DEFAULT_MAX_VALUE_LENGTH = 2 * 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int KEY_CACHE_SIZE = 256;
+    private static final int MAX_CACHED_KEY_LENGTH = 64;
+
+    //bytes that are copied across as they are
+    private static final boolean[] PLAIN = new boolean[256];
 
     static {
-        transitions = new Transition[State.values().length][Event.values().length];
-
-        transition(KEY, CHAR, KEY, ADD_CHAR);
-        transition(KEY, AMPERSAND, KEY, TAKE_PAIR);
-        transition(KEY, EQUAL, VALUE, TAKE_KEY);
-        transition(KEY, PERCENT, KEY, ADD_CHAR);
-        transition(KEY, PLUS, KEY, ADD_SPACE);
-
-        transition(VALUE, CHAR, VALUE, ADD_CHAR);
-        transition(VALUE, EQUAL, VALUE, ADD_CHAR);
-        transition(VALUE, AMPERSAND, KEY, TAKE_PAIR);
-        transition(VALUE, PERCENT, VALUE, ADD_CHAR);
-        transition(VALUE, PLUS, VALUE, ADD_SPACE);
+        for (int i = 0; i < PLAIN.length; i++) {
+            PLAIN[i] = (i != '&' && i != '=' && i != '+' && i != '%');
+        }
+    }
+
+    //a limit of USE_DEFAULT means the matching DEFAULT_MAX_* value
+    private static final int USE_DEFAULT = -1;
+
+    private final Charset charset;
+    private final int maxParameters;
+    private final int maxKeyLength;
+    private final int maxValueLength;
+    private final CachedKey[] keyCache = new CachedKey[KEY_CACHE_SIZE];
+
+    public URLEncodedParser() {
+        this(StandardCharsets.UTF_8);
+    }
+
+    public URLEncodedParser(Charset icharset) {
+        this(icharset, USE_DEFAULT, USE_DEFAULT, USE_DEFAULT);
+    }
+
+    /**
+     * @param icharset the charset the decoded bytes are in
+     * @param imaxParameters the maximum number of key=value pairs (or -1 for
+     *     DEFAULT_MAX_PARAMETERS)
+     * @param imaxKeyLength the maximum length of a key, in bytes (or -1 for
+     *     DEFAULT_MAX_KEY_LENGTH)
+     * @param imaxValueLength the maximum length of a value, in bytes (or -1
+     *     for DEFAULT_MAX_VALUE_LENGTH)
+     */
+    public URLEncodedParser(Charset icharset, int imaxParameters, int imaxKeyLength, int imaxValueLength) {
+        charset = icharset;
+        maxParameters = imaxParameters;
+        maxKeyLength = imaxKeyLength;
+        maxValueLength = imaxValueLength;
     }
 
     public Map<String, List<String>> parse(InputStream rawStream) {
-        final InputStreamReader stream = new InputStreamReader(rawStream, StandardCharsets.UTF_8);
-        StateContext context = new StateContext();
-        for (context.position = 0; true; context.position++) {
-            if (!scanForToken(stream, context)) {
-                break;
-            }
-            findTransition(context.currentState, context.event).transition(context);
-        }
-        context.takePair();
-        return context.pairs;
+        return parse(rawStream, charset);
     }
 
-    private static boolean scanForToken(final InputStreamReader stream, StateContext context) throws StreamInvalidException {
-        int raw = read(stream);
-        if (raw == -1) {
-            return false;
+    /**
+     * Parse a stream, decoding it with a particular charset (eg. the
+     * character encoding of the request)
+     */
+    public Map<String, List<String>> parse(InputStream rawStream, Charset icharset) {
+        Scanner scanner = new Scanner(icharset);
+        byte[] bytes = new byte[BUFFER_SIZE];
+        int n;
+        while ((n = read(rawStream, bytes)) >= 0) {
+            scanner.scan(bytes, 0, n);
         }
-        context.token = (char) raw;
+        return scanner.finish();
+    }
 
-        switch (context.token) {
-            case '%':
-                context.event = PERCENT;
-                context.token = scanForHexValue(stream, context);
-                context.position += 2;
-                break;
-            case '=':
-                context.event = EQUAL;
-                break;
-            case '&':
-                context.event = AMPERSAND;
-                break;
-            case '+':
-                context.event = PLUS;
-                break;
-            default:
-                context.event = CHAR;
-                break;
-        }
-        return true;
+    public Map<String, List<String>> parse(byte[] bytes, int offset, int length) {
+        Scanner scanner = new Scanner(charset);
+        scanner.scan(bytes, offset, length);
+        return scanner.finish();
     }
 
-    private static char scanForHexValue(final InputStreamReader stream, StateContext context) throws StreamInvalidException, HexValueOutOfRange {
-        int hex1 = read(stream);
-        int hex2 = read(stream);
-        if (hex1 == -1 || hex2 == -1) {
-            throw new StreamInvalidException(context.position, '%');
+    /**
+     * Parse a query string. Containers hand back the query string undecoded,
+     * so each char is normally one raw byte.
+     */
+    public Map<String, List<String>> parse(String query) {
+        Charset raw = StandardCharsets.ISO_8859_1;
+        for (int i = 0, len = query.length(); i < len; i++) {
+            if (query.charAt(i) > 0xFF) {
+                raw = StandardCharsets.UTF_8;
+                break;
+            }
         }
-        checkOutOfBounds((char) hex1, context);
-        checkOutOfBounds((char) hex2, context);
-        return (char) ((toHexValue((char) hex1) << 4) + toHexValue((char) hex2));
+        byte[] bytes = query.getBytes(raw);
+        return parse(bytes, 0, bytes.length);
     }
 
-    private static Transition findTransition(State state, Event event) {
-        return transitions[state.ordinal()][event.ordinal()];
+    public Charset getCharset() {
+        return charset;
     }
 
-    private static int read(InputStreamReader stream) {
+    private static int read(InputStream stream, byte[] bytes) {
         try {
-            return stream.read();
+            int n;
+            do {
+                n = stream.read(bytes, 0, bytes.length);
+            } while (n == 0);
+            return n;
         } catch (IOException ex) {
             throw new UnexpectEndOfStream();
         }
     }
 
-    private static void transition(State given, Event when, State then, StateActor action) {
-        transitions[given.ordinal()][when.ordinal()] = new Transition(then, action);
+    private static int toHexValue(int c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            return 10 + c - 'a';
+        } else if (c >= 'A' && c <= 'F') {
+            return 10 + c - 'A';
+        }
+        return -1;
     }
 
-    private static void checkOutOfBounds(char c, StateContext context) throws HexValueOutOfRange {
-        int value = toHexValue(c);
-        if (value > 15 || value < 0) {
-            throw new HexValueOutOfRange(context.position, c);
+    /**
+     * Turn the bytes of a key into a String, reusing the String from last
+     * time if we've seen this (short, ASCII) key before
+     */
+    String toKey(byte[] bytes, int length, boolean ascii, Charset icharset) {
+        if (!ascii || length > MAX_CACHED_KEY_LENGTH) {
+            return new String(bytes, 0, length, ascii ? StandardCharsets.ISO_8859_1 : icharset);
+        }
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + bytes[i];
         }
+        int slot = (hash ^ (hash >>> 16)) & (KEY_CACHE_SIZE - 1);
+        CachedKey cached = keyCache[slot];
+        if (cached != null && cached.matches(bytes, length, hash)) {
+            return cached.key;
+        }
+        cached = new CachedKey(bytes, length, hash);
+        keyCache[slot] = cached;
+        return cached.key;
     }
 
-    private static int toHexValue(char c) {
-        if (c >= 'a') {
-            return 10 + c - 'a';
-        } else if (c >= 'A') {
-            return 10 + c - 'A';
-        } else {
-            return c - '0';
+    /**
+     * A key we've already made a String for. Instances are immutable, so they
+     * can be shared between threads through the cache without locking.
+     */
+    private static final class CachedKey {
+
+        final byte[] bytes;
+        final int hash;
+        final String key;
+
+        CachedKey(byte[] ibytes, int length, int ihash) {
+            bytes = Arrays.copyOf(ibytes, length);
+            hash = ihash;
+            key = new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+
+        boolean matches(byte[] other, int length, int ohash) {
+            if (hash != ohash || bytes.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (bytes[i] != other[i]) {
+                    return false;
+                }
+            }
+            return true;
         }
     }
-}
 
-class UnexpectEndOfStream extends RuntimeException {
+    /**
+     * The state of a single parse. Escapes (and pairs) can be split across
+     * blocks, so everything needed to pick up where the last block left off
+     * is kept here.
+     */
+    private final class Scanner {
+
+        final Charset charset;
+        final int maxParameters;
+        final int maxKeyLength;
+        final int maxValueLength;
+        final Map<String, List<String>> pairs = new HashMap<String, List<String>>();
+
+        byte[] key = new byte[64];
+        int keyLength = 0;
+        boolean keyAscii = true;
+        byte[] value = new byte[64];
+        int valueLength = 0;
+        boolean valueAscii = true;
+        boolean inValue = false;
+
+        int hexPending = 0;
+        int hexValue;
+        int hexStart;
+        long position = 0;
+        int count = 0;
+
+        Scanner(Charset icharset) {
+            charset = icharset;
+            maxParameters = (URLEncodedParser.this.maxParameters < 0 ? DEFAULT_MAX_PARAMETERS : URLEncodedParser.this.maxParameters);
+            maxKeyLength = (URLEncodedParser.this.maxKeyLength < 0 ? DEFAULT_MAX_KEY_LENGTH : URLEncodedParser.this.maxKeyLength);
+            maxValueLength = (URLEncodedParser.this.maxValueLength < 0 ? DEFAULT_MAX_VALUE_LENGTH : URLEncodedParser.this.maxValueLength);
+        }
+
+        void scan(byte[] bytes, int offset, int length) {
+            int end = offset + length;
+            int i = offset;
+            while (i < end) {
+                int c = bytes[i] & 0xFF;
+                if (hexPending > 0) {
+                    int digit = toHexValue(c);
+                    if (digit < 0) {
+                        throw new HexValueOutOfRange(position(i, offset), (char) c);
+                    }
+                    hexValue = (hexValue << 4) + digit;
+                    if (--hexPending == 0) {
+                        append((byte) hexValue);
+                    }
+                    i++;
+                    continue;
+                }
+                switch (c) {
+                    case '&':
+                        takePair();
+                        i++;
+                        break;
+                    case '=':
+                        if (inValue) {
+                            append((byte) '=');
+                        } else {
+                            inValue = true;
+                        }
+                        i++;
+                        break;
+                    case '+':
+                        append((byte) ' ');
+                        i++;
+                        break;
+                    case '%':
+                        hexPending = 2;
+                        hexValue = 0;
+                        hexStart = position(i, offset);
+                        i++;
+                        break;
+                    default:
+                        int run = i + 1;
+                        while (run < end && PLAIN[bytes[run] & 0xFF]) {
+                            run++;
+                        }
+                        append(bytes, i, run - i);
+                        i = run;
+                }
+            }
+            position += length;
+        }
+
+        Map<String, List<String>> finish() {
+            if (hexPending > 0) {
+                throw new StreamInvalidException(hexStart, '%');
+            }
+            takePair();
+            return pairs;
+        }
+
+        private int position(int i, int offset) {
+            return (int) (position + i - offset);
+        }
 
-    public UnexpectEndOfStream() {
-        super();
+        private void append(byte b) {
+            if (inValue) {
+                ensureValueSpace(1);
+                value[valueLength++] = b;
+                valueAscii &= b >= 0;
+            } else {
+                ensureKeySpace(1);
+                key[keyLength++] = b;
+                keyAscii &= b >= 0;
+            }
+        }
+
+        private void append(byte[] bytes, int offset, int length) {
+            boolean ascii = true;
+            for (int i = offset, end = offset + length; i < end && ascii; i++) {
+                ascii = bytes[i] >= 0;
+            }
+            if (inValue) {
+                ensureValueSpace(length);
+                System.arraycopy(bytes, offset, value, valueLength, length);
+                valueLength += length;
+                valueAscii &= ascii;
+            } else {
+                ensureKeySpace(length);
+                System.arraycopy(bytes, offset, key, keyLength, length);
+                keyLength += length;
+                keyAscii &= ascii;
+            }
+        }
+
+        private void ensureKeySpace(int space) {
+            int needed = keyLength + space;
+            if (needed > maxKeyLength) {
+                throw new LimitExceededException("Key is longer than " + maxKeyLength + " bytes");
+            }
+            if (needed > key.length) {
+                key = Arrays.copyOf(key, Math.min(Math.max(key.length * 2, needed), maxKeyLength));
+            }
+        }
+
+        private void ensureValueSpace(int space) {
+            int needed = valueLength + space;
+            if (needed > maxValueLength) {
+                throw new LimitExceededException("Value is longer than " + maxValueLength + " bytes");
+            }
+            if (needed > value.length) {
+                value = Arrays.copyOf(value, Math.min(Math.max(value.length * 2, needed), maxValueLength));
+            }
+        }
+
+        private void takePair() {
+            if (keyLength > 0 || valueLength > 0) {
+                if (++count > maxParameters) {
+                    throw new LimitExceededException("More than " + maxParameters + " parameters");
+                }
+                String k = (keyLength == 0 ? null : toKey(key, keyLength, keyAscii, charset));
+                String v = (valueLength == 0 ? null : new String(value, 0, valueLength, valueAscii ? StandardCharsets.ISO_8859_1 : charset));
+                List<String> values = pairs.get(k);
+                if (values == null) {
+                    values = new ArrayList<String>(1);
+                    pairs.put(k, values);
+                }
+                values.add(v);
+            }
+            keyLength = 0;
+            keyAscii = true;
+            valueLength = 0;
+            valueAscii = true;
+            inValue = false;
+        }
     }
 }
@@ -0,0 +1,13 @@
+package org.barracudamvc.plankton.io.parser.URLEncoded;
+
+/**
+ * Thrown when the stream being parsed can't be read
+ */
+class UnexpectEndOfStream extends RuntimeException {
+
+    private static final long serialVersionUID = 1;
+
+    public UnexpectEndOfStream() {
+        super();
+    }
+}
@@ -0,0 +1,18 @@
+package org.barracudamvc.plankton.io.parser.json;
+
+/**
+ * The things a JSONReader can find in a stream
+ */
+public enum JSONEvent {
+
+    START_OBJECT,
+    END_OBJECT,
+    START_ARRAY,
+    END_ARRAY,
+    KEY,
+    STRING,
+    NUMBER,
+    BOOLEAN,
+    NULL,
+    END_DOCUMENT
+}
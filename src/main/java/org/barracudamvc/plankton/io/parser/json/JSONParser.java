@@ -13,4 +13,11 @@ public class JSONParser {
 
         return builder.getResult();
     }
+
+    /**
+     * @return a reader that pulls the stream apart one event at a time
+     */
+    public JSONReader read(InputStream stream) {
+        return new JSONReader(stream);
+    }
 }
@@ -6,65 +6,82 @@
  */
 package org.barracudamvc.plankton.io.parser.json;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Stack;
 
+/**
+ * Pretty prints a tree of Maps and Lists (as built by DefaultBuilder) as JSON.
+ * print(Map, Writer) writes straight to a Writer without building the text up
+ * in memory first. For streaming output use JSONWriter.
+ */
 public class JSONPrinter {
 
     public CharSequence print(Map<String, Object> source) {
-        StringBuilder builder = new StringBuilder();
-        Stack<String> tabs = new Stack<>();
-        tabs.add("");
-        print(source, builder, tabs);
-        return builder;
+        StringWriter writer = new StringWriter();
+        try {
+            print(source, writer);
+        } catch (IOException e) {
+            //can't happen with a StringWriter
+            throw new IllegalStateException(e);
+        }
+        return writer.getBuffer();
     }
 
-    private void print(Map<String, Object> source, StringBuilder builder, Stack<String> tabs) {
-        String level = tabs.peek();
-        builder.append("{\n");
-        tabs.push(level + "\t");
+    public void print(Map<String, Object> source, Writer out) throws IOException {
+        print(source, out, 0);
+    }
+
+    private void print(Map<String, Object> source, Writer out, int depth) throws IOException {
+        out.write("{\n");
         String sep = "";
         for (Entry<String, Object> entry : source.entrySet()) {
-            builder.append(sep).append(tabs.peek());
-            printString(builder, entry.getKey()).append(" : ");
-            print(entry.getValue(), builder, tabs);
+            out.write(sep);
+            indent(out, depth + 1);
+            JSONWriter.writeString(String.valueOf(entry.getKey()), out);
+            out.write(" : ");
+            print(entry.getValue(), out, depth + 1);
             sep = ",\n";
         }
 
-        tabs.pop();
-        builder.append("\n").append(level).append("}");
+        out.write('\n');
+        indent(out, depth);
+        out.write('}');
     }
 
-    private void print(Object value, StringBuilder builder, Stack<String> tabs) {
+    private void print(Object value, Writer out, int depth) throws IOException {
         if (value instanceof Map) {
-            print((Map) value, builder, tabs);
+            print((Map) value, out, depth);
         } else if (value instanceof List) {
-            print((List) value, builder, tabs);
+            print((List) value, out, depth);
         } else if (value instanceof String) {
-            printString(builder, value);
+            JSONWriter.writeString((String) value, out);
         } else {
-            builder.append(value);
+            out.write(String.valueOf(value));
         }
     }
 
-    private void print(List<Object> source, StringBuilder builder, Stack<String> tabs) {
-        String level = tabs.peek();
-        builder.append(" [\n");
-        tabs.push(level + "\t");
+    private void print(List<Object> source, Writer out, int depth) throws IOException {
+        out.write(" [\n");
         String sep = "";
         for (Object val : source) {
-            builder.append(sep).append(tabs.peek());
-            print(val, builder, tabs);
+            out.write(sep);
+            indent(out, depth + 1);
+            print(val, out, depth + 1);
             sep = ",\n";
         }
 
-        tabs.pop();
-        builder.append("\n").append(level).append("]");
+        out.write('\n');
+        indent(out, depth);
+        out.write(']');
     }
 
-    private StringBuilder printString(StringBuilder builder, Object o) {
-        return builder.append('"').append(o).append('"');
+    private void indent(Writer out, int depth) throws IOException {
+        for (int i = 0; i < depth; i++) {
+            out.write('\t');
+        }
     }
 }
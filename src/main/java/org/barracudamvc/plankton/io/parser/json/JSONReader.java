@@ -0,0 +1,312 @@
+package org.barracudamvc.plankton.io.parser.json;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.barracudamvc.plankton.io.parser.json.lexer.LexerStream;
+import org.barracudamvc.plankton.io.parser.json.parser.Parser;
+
+/**
+ * <p>Pulls a JSON stream apart one event at a time, so a document never has to
+ * be held in memory as a whole. Numbers and booleans are available as primitives
+ * (getLong(), getDouble(), getBoolean()) without going through a String.
+ *
+ * <p>readValue() builds just the value the reader is positioned on, which makes
+ * it easy to walk through a large array an element at a time:
+ * <pre>
+ *   JSONReader reader = new JSONReader(stream);
+ *   reader.next();  //START_ARRAY
+ *   while (reader.next() != JSONEvent.END_ARRAY) {
+ *       Map row = (Map) reader.readValue();
+ *       ...
+ *   }
+ * </pre>
+ *
+ * <p>Values built by readValue() are typed: objects become LinkedHashMaps, arrays
+ * ArrayLists, and numbers Longs (or Doubles if they have a fraction or exponent or
+ * don't fit in a long).
+ */
+public class JSONReader {
+
+    private final Parser parser;
+
+    private JSONEvent event;
+    private int depth = 0;
+    private String string;
+    private boolean integral;
+    private long longValue;
+    private double doubleValue;
+    private boolean booleanValue;
+
+    public JSONReader(InputStream stream) {
+        parser = new Parser();
+        parser.start(new LexerStream(stream), new Recorder());
+    }
+
+    /**
+     * Move on to the next event in the stream
+     *
+     * @return the event
+     */
+    public JSONEvent next() {
+        if (event == JSONEvent.END_DOCUMENT) {
+            return event;
+        }
+        event = null;
+        while (event == null) {
+            if (!parser.advance()) {
+                event = JSONEvent.END_DOCUMENT;
+            }
+        }
+        return event;
+    }
+
+    /**
+     * @return the current event (null before next() has been called)
+     */
+    public JSONEvent getEvent() {
+        return event;
+    }
+
+    /**
+     * @return how many objects and arrays the reader is inside
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return the key or string for KEY and STRING events, "true" or "false"
+     * for BOOLEAN, and null otherwise. A NUMBER is turned back into text from
+     * its long or double value, so it need not match the source (1e2 comes
+     * back as "100.0", and a double may not hold every digit that was sent).
+     */
+    public String getString() {
+        if (event == null) {
+            return null;
+        }
+        switch (event) {
+            case KEY:
+            case STRING:
+                return string;
+            case NUMBER:
+                return integral ? Long.toString(longValue) : Double.toString(doubleValue);
+            case BOOLEAN:
+                return booleanValue ? "true" : "false";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return true if the current NUMBER is an integer that fits in a long
+     */
+    public boolean isIntegral() {
+        checkEvent(JSONEvent.NUMBER);
+        return integral;
+    }
+
+    public long getLong() {
+        checkEvent(JSONEvent.NUMBER);
+        return integral ? longValue : (long) doubleValue;
+    }
+
+    public int getInt() {
+        long l = getLong();
+        if ((int) l != l) {
+            throw new IllegalStateException(l + " does not fit in an int");
+        }
+        return (int) l;
+    }
+
+    public double getDouble() {
+        checkEvent(JSONEvent.NUMBER);
+        return integral ? (double) longValue : doubleValue;
+    }
+
+    public boolean getBoolean() {
+        checkEvent(JSONEvent.BOOLEAN);
+        return booleanValue;
+    }
+
+    /**
+     * Skip over the value the reader is positioned on. If it is the start of
+     * an object or array, everything up to and including the matching end is
+     * skipped; if it is a key, the key's value is skipped.
+     */
+    public void skipValue() {
+        if (event == JSONEvent.KEY) {
+            next();
+        }
+        if (event == JSONEvent.START_OBJECT || event == JSONEvent.START_ARRAY) {
+            int start = depth;
+            while (depth >= start && next() != JSONEvent.END_DOCUMENT) {
+            }
+        }
+    }
+
+    /**
+     * Build the value the reader is positioned on (for objects and arrays,
+     * this reads up to and including the matching end)
+     *
+     * @return the value
+     */
+    public Object readValue() {
+        if (event == JSONEvent.KEY) {
+            next();
+        }
+        if (event == null) {
+            throw new IllegalStateException("Not positioned on a value: " + event);
+        }
+        switch (event) {
+            case START_OBJECT:
+                Map<String, Object> map = new LinkedHashMap<String, Object>();
+                while (next() == JSONEvent.KEY) {
+                    String key = string;
+                    next();
+                    map.put(key, readValue());
+                }
+                return map;
+            case START_ARRAY:
+                List<Object> list = new ArrayList<Object>();
+                while (next() != JSONEvent.END_ARRAY) {
+                    list.add(readValue());
+                }
+                return list;
+            case STRING:
+                return string;
+            case NUMBER:
+                return integral ? (Object) Long.valueOf(longValue) : (Object) Double.valueOf(doubleValue);
+            case BOOLEAN:
+                return Boolean.valueOf(booleanValue);
+            case NULL:
+                return null;
+            default:
+                throw new IllegalStateException("Not positioned on a value: " + event);
+        }
+    }
+
+    private void checkEvent(JSONEvent expected) {
+        if (event != expected) {
+            throw new IllegalStateException("Expected " + expected + " but the current event is " + event);
+        }
+    }
+
+    private void number(long value) {
+        event = JSONEvent.NUMBER;
+        integral = true;
+        longValue = value;
+    }
+
+    private void number(double value) {
+        event = JSONEvent.NUMBER;
+        integral = false;
+        doubleValue = value;
+    }
+
+    private void bool(boolean value) {
+        event = JSONEvent.BOOLEAN;
+        booleanValue = value;
+    }
+
+    private void string(JSONEvent ievent, String value) {
+        event = ievent;
+        string = value;
+    }
+
+    /**
+     * Turns the parser's callbacks into events
+     */
+    private class Recorder implements TypedBuilder<Void> {
+
+        @Override
+        public void emptyStream() {
+        }
+
+        @Override
+        public void builderMap() {
+            event = JSONEvent.START_OBJECT;
+            depth++;
+        }
+
+        @Override
+        public void buildMapKey(String key) {
+            string(JSONEvent.KEY, key);
+        }
+
+        @Override
+        public void buildMapValue(String value) {
+            string(JSONEvent.STRING, value);
+        }
+
+        @Override
+        public void finishMap() {
+            event = JSONEvent.END_OBJECT;
+            depth--;
+        }
+
+        @Override
+        public void buildArray() {
+            event = JSONEvent.START_ARRAY;
+            depth++;
+        }
+
+        @Override
+        public void buildArrayValue(String value) {
+            string(JSONEvent.STRING, value);
+        }
+
+        @Override
+        public void finishArray() {
+            event = JSONEvent.END_ARRAY;
+            depth--;
+        }
+
+        @Override
+        public void buildMapNull() {
+            event = JSONEvent.NULL;
+        }
+
+        @Override
+        public void buildMapValue(boolean value) {
+            bool(value);
+        }
+
+        @Override
+        public void buildMapValue(long value) {
+            number(value);
+        }
+
+        @Override
+        public void buildMapValue(double value) {
+            number(value);
+        }
+
+        @Override
+        public void buildArrayNull() {
+            event = JSONEvent.NULL;
+        }
+
+        @Override
+        public void buildArrayValue(boolean value) {
+            bool(value);
+        }
+
+        @Override
+        public void buildArrayValue(long value) {
+            number(value);
+        }
+
+        @Override
+        public void buildArrayValue(double value) {
+            number(value);
+        }
+
+        @Override
+        public Void getResult() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package org.barracudamvc.plankton.io.parser.json;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * <p>Writes JSON straight to a Writer as it is produced, the counterpart of
+ * JSONReader. Strings are escaped as they are copied across and integers are
+ * formatted into a scratch buffer, so writing keys, strings, longs and booleans
+ * doesn't allocate anything (doubles still go through Double.toString()).
+ * <pre>
+ *   JSONWriter json = new JSONWriter(writer);
+ *   json.beginObject().name("count").value(3).name("rows").beginArray();
+ *   ...
+ *   json.endArray().endObject().flush();
+ * </pre>
+ *
+ * <p>By default the output is compact; pass pretty=true to get one member per
+ * line, indented with tabs.
+ */
+public class JSONWriter implements Flushable, Closeable {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final String MIN_LONG = Long.toString(Long.MIN_VALUE);
+
+    //what's been written at each level of nesting
+    private static final byte EMPTY_ARRAY = 1;
+    private static final byte ARRAY = 2;
+    private static final byte EMPTY_OBJECT = 3;
+    private static final byte OBJECT = 4;
+    private static final byte NAME = 5;
+
+    private final Writer out;
+    private final boolean pretty;
+    private final char[] scratch = new char[20];
+    private byte[] stack = new byte[16];
+    private int depth = 0;
+    private boolean written = false;
+
+    public JSONWriter(Writer out) {
+        this(out, false);
+    }
+
+    public JSONWriter(Writer out, boolean pretty) {
+        this.out = out;
+        this.pretty = pretty;
+    }
+
+    public JSONWriter beginObject() throws IOException {
+        beforeValue();
+        push(EMPTY_OBJECT);
+        out.write('{');
+        return this;
+    }
+
+    public JSONWriter endObject() throws IOException {
+        return close(EMPTY_OBJECT, OBJECT, '}');
+    }
+
+    public JSONWriter beginArray() throws IOException {
+        beforeValue();
+        push(EMPTY_ARRAY);
+        out.write('[');
+        return this;
+    }
+
+    public JSONWriter endArray() throws IOException {
+        return close(EMPTY_ARRAY, ARRAY, ']');
+    }
+
+    /**
+     * Write the name of the next member of an object
+     */
+    public JSONWriter name(String name) throws IOException {
+        if (name == null) {
+            throw new IllegalArgumentException("Names can't be null");
+        }
+        byte top = peek();
+        if (top != EMPTY_OBJECT && top != OBJECT) {
+            throw new IllegalStateException("Names can only be written inside an object");
+        }
+        if (top == OBJECT) {
+            out.write(',');
+        }
+        newline();
+        stack[depth - 1] = NAME;
+        writeString(name, out);
+        out.write(pretty ? " : " : ":");
+        return this;
+    }
+
+    public JSONWriter value(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        writeString(value, out);
+        return this;
+    }
+
+    public JSONWriter value(long value) throws IOException {
+        beforeValue();
+        if (value == Long.MIN_VALUE) {
+            out.write(MIN_LONG);
+            return this;
+        }
+        int pos = scratch.length;
+        boolean negative = value < 0;
+        if (negative) {
+            value = -value;
+        }
+        do {
+            scratch[--pos] = (char) ('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+        if (negative) {
+            scratch[--pos] = '-';
+        }
+        out.write(scratch, pos, scratch.length - pos);
+        return this;
+    }
+
+    /**
+     * Write a double (JSON has no way of representing NaN or infinity,
+     * so those aren't allowed)
+     */
+    public JSONWriter value(double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("JSON numbers must be finite: " + value);
+        }
+        beforeValue();
+        out.write(Double.toString(value));
+        return this;
+    }
+
+    public JSONWriter value(boolean value) throws IOException {
+        beforeValue();
+        out.write(value ? "true" : "false");
+        return this;
+    }
+
+    public JSONWriter nullValue() throws IOException {
+        beforeValue();
+        out.write("null");
+        return this;
+    }
+
+    /**
+     * Write a value built out of Maps, Collections, arrays, Strings, Numbers
+     * and Booleans (anything else is written as a string using toString())
+     */
+    public JSONWriter value(Object value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        } else if (value instanceof CharSequence) {
+            return value(value.toString());
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return value(((Number) value).longValue());
+        } else if (value instanceof Number) {
+            return value(((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            return value(((Boolean) value).booleanValue());
+        } else if (value instanceof Map) {
+            beginObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                name(String.valueOf(entry.getKey()));
+                value(entry.getValue());
+            }
+            return endObject();
+        } else if (value instanceof Collection) {
+            beginArray();
+            for (Object element : (Collection<?>) value) {
+                value(element);
+            }
+            return endArray();
+        } else if (value instanceof Object[]) {
+            return value(Arrays.asList((Object[]) value));
+        }
+        return value(value.toString());
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Write a string as a quoted JSON string, escaping it as necessary
+     *
+     * @param value the string
+     * @param out the writer to be written to
+     */
+    public static void writeString(String value, Writer out) throws IOException {
+        out.write('"');
+        int start = 0;
+        int len = value.length();
+        for (int i = 0; i < len; i++) {
+            char c = value.charAt(i);
+            if (c >= ' ' && c != '"' && c != '\\' && c != '\u2028' && c != '\u2029') {
+                continue;
+            }
+            out.write(value, start, i - start);
+            start = i + 1;
+            switch (c) {
+                case '"':
+                    out.write("\\\"");
+                    break;
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                case '\b':
+                    out.write("\\b");
+                    break;
+                case '\f':
+                    out.write("\\f");
+                    break;
+                default:
+                    out.write("\\u");
+                    out.write(HEX[(c >> 12) & 0xF]);
+                    out.write(HEX[(c >> 8) & 0xF]);
+                    out.write(HEX[(c >> 4) & 0xF]);
+                    out.write(HEX[c & 0xF]);
+            }
+        }
+        out.write(value, start, len - start);
+        out.write('"');
+    }
+
+    private void beforeValue() throws IOException {
+        if (depth == 0) {
+            if (written) {
+                throw new IllegalStateException("A JSON document can only have one top level value");
+            }
+            written = true;
+            return;
+        }
+        switch (stack[depth - 1]) {
+            case NAME:
+                stack[depth - 1] = OBJECT;
+                break;
+            case ARRAY:
+                out.write(',');
+                newline();
+                break;
+            case EMPTY_ARRAY:
+                stack[depth - 1] = ARRAY;
+                newline();
+                break;
+            default:
+                throw new IllegalStateException("Values inside an object need a name first");
+        }
+    }
+
+    private JSONWriter close(byte empty, byte nonEmpty, char bracket) throws IOException {
+        byte top = peek();
+        if (top != empty && top != nonEmpty) {
+            throw new IllegalStateException("Nothing to close with " + bracket);
+        }
+        depth--;
+        if (top == nonEmpty) {
+            newline();
+        }
+        out.write(bracket);
+        return this;
+    }
+
+    private void push(byte state) {
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+        stack[depth++] = state;
+    }
+
+    private byte peek() {
+        return depth == 0 ? 0 : stack[depth - 1];
+    }
+
+    private void newline() throws IOException {
+        if (pretty) {
+            out.write('\n');
+            for (int i = 0; i < depth; i++) {
+                out.write('\t');
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package org.barracudamvc.plankton.io.parser.json;
+
+/**
+ * A Builder that is handed null, true/false and numbers as primitives rather
+ * than as Strings. Strings, keys and structure still come through the plain
+ * Builder methods. Integers that fit in a long are delivered as a long; any
+ * other number (a fraction, an exponent, or an integer too big for a long) is
+ * delivered as a double.
+ */
+public interface TypedBuilder<Type> extends Builder<Type> {
+
+    public void buildMapNull();
+
+    public void buildMapValue(boolean value);
+
+    public void buildMapValue(long value);
+
+    public void buildMapValue(double value);
+
+    public void buildArrayNull();
+
+    public void buildArrayValue(boolean value);
+
+    public void buildArrayValue(long value);
+
+    public void buildArrayValue(double value);
+}
@@ -20,6 +20,16 @@ public class CharBuffer {
         mark += bs.length;
     }
 
+    /**
+     * Append ASCII bytes (each byte becomes one character)
+     */
+    public void append(byte[] bs, int offset, int length) {
+        ensureAdditionalSpace(length);
+        for (int i = 0; i < length; i++) {
+            chars[mark++] = (char) bs[offset + i];
+        }
+    }
+
     protected void ensureAdditionalSpace(int space) {
         if (chars == null) {
             chars = new char[nextSize(space)];
@@ -31,7 +41,8 @@ public class CharBuffer {
     }
 
     private int nextSize(int space) {
-        return (space < chunkSize ? chunkSize : space) + mark;
+        int size = Math.max(getBufferSize() * 2, chunkSize);
+        return Math.max(size, space + mark);
     }
 
     private int getBufferSize() {
@@ -39,11 +50,11 @@ public class CharBuffer {
     }
 
     public char[] toArray() {
-        return copyOf(chars, mark);
+        return chars == null ? new char[0] : copyOf(chars, mark);
     }
 
     public String toString() {
-        return new String(toArray());
+        return chars == null ? "" : new String(chars, 0, mark);
     }
 
     public void reset() {
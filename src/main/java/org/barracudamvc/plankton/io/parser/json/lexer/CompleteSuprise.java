@@ -0,0 +1,17 @@
+package org.barracudamvc.plankton.io.parser.json.lexer;
+
+/**
+ * Thrown when the input holds something that can't start or continue a token
+ */
+class CompleteSuprise extends IllegalStateException {
+
+    private static final long serialVersionUID = 1;
+
+    public CompleteSuprise(int position, int line, char[] tokens) {
+        this(position, line, tokens, "");
+    }
+
+    public CompleteSuprise(int position, int line, char[] tokens, String message) {
+        super(line + ":" + position + " This came as a complete suprise to me: " + new String(tokens) + " " + message);
+    }
+}
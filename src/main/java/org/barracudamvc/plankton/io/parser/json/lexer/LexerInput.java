@@ -0,0 +1,192 @@
+package org.barracudamvc.plankton.io.parser.json.lexer;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Buffered UTF-8 input for the lexer. Bytes are read from the underlying
+ * stream a block at a time and decoded into UTF-16 code units as they are
+ * asked for (characters outside the BMP come back as a surrogate pair, and
+ * malformed sequences as U+FFFD). One character of push back is supported.
+ */
+class LexerInput {
+
+    static final int DEFAULT_BUFFER_SIZE = 8192;
+    static final int REPLACEMENT_CHARACTER = 0xFFFD;
+    private static final int NONE = -2;
+
+    private final InputStream stream;
+    private final byte[] bytes;
+    private int pos = 0;
+    private int limit = 0;
+    private boolean eof = false;
+    private int pushedBack = NONE;
+    private int pendingLowSurrogate = NONE;
+
+    LexerInput(InputStream stream) {
+        this(stream, DEFAULT_BUFFER_SIZE);
+    }
+
+    LexerInput(InputStream stream, int bufferSize) {
+        this.stream = stream;
+        this.bytes = new byte[bufferSize];
+    }
+
+    /**
+     * @return the next character, or -1 at the end of the stream
+     */
+    int read() {
+        if (pushedBack != NONE) {
+            int c = pushedBack;
+            pushedBack = NONE;
+            return c;
+        }
+        if (pendingLowSurrogate != NONE) {
+            int c = pendingLowSurrogate;
+            pendingLowSurrogate = NONE;
+            return c;
+        }
+        if (pos >= limit && !fill()) {
+            return -1;
+        }
+        int b = bytes[pos++];
+        return (b >= 0 ? b : decode(b & 0xFF));
+    }
+
+    /**
+     * Push a character back so it is returned by the next read(). Only one
+     * character may be pushed back at a time.
+     */
+    void unread(int c) {
+        if (pushedBack != NONE) {
+            throw new IllegalStateException("Push back buffer is full");
+        }
+        pushedBack = c;
+    }
+
+    /**
+     * Copy characters straight out of the byte buffer for as long as they are
+     * plain ASCII and don't end or escape a string. This is the fast path for
+     * strings; it stops (without consuming anything) at the first character the
+     * caller needs to look at itself.
+     *
+     * @param out where to put the characters
+     * @return the number of characters copied
+     */
+    int copyAsciiString(CharBuffer out) {
+        return copyAscii(out, false);
+    }
+
+    /**
+     * Copy the digits 0-9 straight out of the byte buffer, stopping (without
+     * consuming anything) at the first character that isn't one. This is the
+     * fast path for numbers.
+     *
+     * @param out where to put the digits
+     * @return the number of digits copied
+     */
+    int copyDigits(CharBuffer out) {
+        return copyAscii(out, true);
+    }
+
+    private int copyAscii(CharBuffer out, boolean digitsOnly) {
+        if (pushedBack != NONE || pendingLowSurrogate != NONE) {
+            return 0;
+        }
+        int copied = 0;
+        while (true) {
+            if (pos >= limit && !fill()) {
+                return copied;
+            }
+            int start = pos;
+            int end = pos;
+            if (digitsOnly) {
+                while (end < limit && bytes[end] >= '0' && bytes[end] <= '9') {
+                    end++;
+                }
+            } else {
+                byte b;
+                while (end < limit && (b = bytes[end]) >= 0 && b != '"' && b != '\\') {
+                    end++;
+                }
+            }
+            if (end > start) {
+                out.append(bytes, start, end - start);
+                copied += end - start;
+                pos = end;
+            }
+            if (end < limit) {
+                return copied;
+            }
+        }
+    }
+
+    private boolean fill() {
+        if (eof) {
+            return false;
+        }
+        try {
+            int n;
+            do {
+                n = stream.read(bytes, 0, bytes.length);
+            } while (n == 0);
+            if (n < 0) {
+                eof = true;
+                return false;
+            }
+            pos = 0;
+            limit = n;
+            return true;
+        } catch (IOException io) {
+            throw new UnexpectedEndOfStream();
+        }
+    }
+
+    private int nextContinuation() {
+        if (pos >= limit && !fill()) {
+            return -1;
+        }
+        int b = bytes[pos] & 0xFF;
+        if ((b & 0xC0) != 0x80) {
+            return -1;
+        }
+        pos++;
+        return b & 0x3F;
+    }
+
+    private int decode(int b) {
+        int needed;
+        int cp;
+        int min;
+        if ((b & 0xE0) == 0xC0) {
+            needed = 1;
+            cp = b & 0x1F;
+            min = 0x80;
+        } else if ((b & 0xF0) == 0xE0) {
+            needed = 2;
+            cp = b & 0x0F;
+            min = 0x800;
+        } else if ((b & 0xF8) == 0xF0) {
+            needed = 3;
+            cp = b & 0x07;
+            min = 0x10000;
+        } else {
+            return REPLACEMENT_CHARACTER;
+        }
+        for (int i = 0; i < needed; i++) {
+            int cont = nextContinuation();
+            if (cont < 0) {
+                return REPLACEMENT_CHARACTER;
+            }
+            cp = (cp << 6) | cont;
+        }
+        if (cp < min || cp > Character.MAX_CODE_POINT || (cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE)) {
+            return REPLACEMENT_CHARACTER;
+        }
+        if (cp >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+            pendingLowSurrogate = Character.lowSurrogate(cp);
+            return Character.highSurrogate(cp);
+        }
+        return cp;
+    }
+}
@@ -1,27 +1,30 @@
 package org.barracudamvc.plankton.io.parser.json.lexer;
 
-import java.io.IOException;
 import java.io.InputStream;
-import java.io.PushbackInputStream;
-import static org.barracudamvc.plankton.io.parser.json.lexer.StaticHelpers.read;
 import static org.barracudamvc.plankton.io.parser.json.lexer.StaticHelpers.readChar;
 
-
+/**
+ * Splits a UTF-8 encoded stream of JSON into Terminals. The input is read
+ * through a buffer rather than a byte at a time, and the same Terminal instance
+ * is handed back by every call to next() (so copy anything you need out of it
+ * before asking for the next one).
+ */
 public class LexerStream {
 
-    PushbackInputStream stream;
+    LexerInput stream;
     int position = 0;
     int line = 1;
     char rawCharacter;
     boolean hasMore = true;
 
-    Terminal eos;
+    Terminal token;
     CharBuffer buffer;
     StringLexer stringLexer;
     NumberLexer numberLexer;
 
     public LexerStream(InputStream stream) {
-        this.stream = new PushbackInputStream(stream, 1);
+        this.stream = new LexerInput(stream);
+        token = new Terminal();
         buffer = new CharBuffer();
         stringLexer = new StringLexer(this.stream);
         numberLexer = new NumberLexer(this.stream);
@@ -30,12 +33,11 @@ public class LexerStream {
     public Terminal next() {
         int raw;
         while (true) {
-            raw = read(stream);
+            raw = stream.read();
             switch (raw) {
                 case -1:
-                    eos = asToken(TerminalType.EOS);
                     hasMore = false;
-                    return eos;
+                    return asToken(TerminalType.EOS);
                 case ' ':
                 case '\t':
                     position++;
@@ -47,8 +49,8 @@ public class LexerStream {
                 case '\r':
                     position = 0;
                     line++;
-                    if ((raw = read(stream)) != '\n') {
-                        uncheckPushBack(raw);
+                    if ((raw = stream.read()) != '\n') {
+                        stream.unread(raw);
                     }
                     break;
                 default:
@@ -57,19 +59,7 @@ public class LexerStream {
         }
     }
 
-    private void uncheckPushBack(int raw) {
-        try {
-            stream.unread(raw);
-        } catch (IOException ioe) {
-            throw new IllegalStateException(ioe);
-        }
-    }
-
     private Terminal parseToken(int raw) throws CompleteSuprise {
-        Terminal token = new Terminal();
-        token.line = line;
-        token.position = position;
-
         rawCharacter = (char) raw;
 
         switch (rawCharacter) {
@@ -104,8 +94,8 @@ public class LexerStream {
             case '8':
             case '9':
             case '0':
-                uncheckPushBack((int) rawCharacter);
-                return numberLexer.lexNumber(position, line);
+                stream.unread(rawCharacter);
+                return numberLexer.lexNumber(token, position, line);
             default:
                 throw new CompleteSuprise(position, line, new char[]{rawCharacter});
         }
@@ -119,18 +109,14 @@ public class LexerStream {
     }
 
     private Terminal lexStringToken() {
-        char[] chars = stringLexer.lexString(position, line);
-        Terminal t = asToken(TerminalType.STRING_LITERAL, chars.length);
-        t.value = new String(chars);
+        String value = stringLexer.lexString(position, line);
+        Terminal t = asToken(TerminalType.STRING_LITERAL, value.length());
+        t.value = value;
         return t;
     }
 
     private Terminal asToken(TerminalType type, int length) {
-        Terminal token = new Terminal();
-        token.line = line;
-        token.position = position + length;
-        token.value = null;
-        token.type = type;
+        token.reset(type, position + length, line);
         return token;
     }
 
@@ -147,18 +133,3 @@ public class LexerStream {
         }
     }
 }
-
-class UnexpectedEndOfStream extends IllegalStateException {
-
-}
-
-class CompleteSuprise extends IllegalStateException {
-
-    public CompleteSuprise(int position, int line, char[] tokens) {
-        this(position, line, tokens, "");
-    }
-
-    public CompleteSuprise(int position, int line, char[] tokens, String message) {
-        super(line + ":" + position + " This came as a complete suprise to me: " + new String(tokens) + " " + message);
-    }
-}
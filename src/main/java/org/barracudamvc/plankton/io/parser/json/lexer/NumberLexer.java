@@ -1,29 +1,30 @@
 package org.barracudamvc.plankton.io.parser.json.lexer;
 
-import java.io.IOException;
-import java.io.PushbackInputStream;
-import static org.barracudamvc.plankton.io.parser.json.lexer.StaticHelpers.read;
 
 class NumberLexer {
 
-    PushbackInputStream stream;
+    LexerInput stream;
     CharBuffer buffer;
 
     int position;
     int line;
 
-    NumberLexer(PushbackInputStream stream) {
+    NumberLexer(LexerInput stream) {
         this.stream = stream;
         buffer = new CharBuffer();
     }
 
-    Terminal lexNumber(int position, int line) {
+    Terminal lexNumber(Terminal token, int position, int line) {
         buffer.reset();
         Type type;
         State current = State.START;
         State nextState;
         while (current.isNot(State.DONE)) {
-            int c = read(stream);
+            //runs of digits don't change the state, so copy them straight across
+            if (current == State.NATURAL_NUMBER || current == State.RATIONAL_NUMBER || current == State.PRECISION) {
+                position += stream.copyDigits(buffer);
+            }
+            int c = stream.read();
             type = toType(c);
 
             nextState = transitions[current.ordinal()][type.ordinal()];
@@ -31,20 +32,50 @@ class NumberLexer {
                 throw new IllegalStateException();
             }
             if (nextState.equals(State.DONE)) {
-                unread(c);
+                stream.unread(c);
             } else {
                 position++;
                 buffer.append((char) c);
             }
             current = nextState;
         }
-        Terminal token = new Terminal();
-        token.line = line;
-        token.type = TerminalType.VALUE_LITERAL;
-        token.value = buffer.toString();
-        token.position = position;
+        token.reset(TerminalType.VALUE_LITERAL, position, line);
+        token.number = true;
+        token.pendingValue = buffer;
+        toLong(token);
         return token;
+    }
 
+    /**
+     * Work out the value of an integer straight from the buffer (so callers
+     * that want a long never need the String). Anything with a fraction or
+     * exponent, or too big for a long, is left to Double.parseDouble().
+     */
+    private void toLong(Terminal token) {
+        char[] chars = buffer.chars;
+        int len = buffer.length();
+        int i = 0;
+        boolean negative = chars[0] == '-';
+        if (negative) {
+            i++;
+        }
+        //accumulate negatively so Long.MIN_VALUE fits
+        long result = 0;
+        for (; i < len; i++) {
+            int digit = chars[i] - '0';
+            if (digit < 0 || digit > 9 || result < (Long.MIN_VALUE + digit) / 10) {
+                return;
+            }
+            result = result * 10 - digit;
+        }
+        if (!negative) {
+            if (result == Long.MIN_VALUE) {
+                return;
+            }
+            result = -result;
+        }
+        token.integral = true;
+        token.longValue = result;
     }
 
     private Type toType(int c) {
@@ -105,14 +136,6 @@ class NumberLexer {
         transitions[state.ordinal()][type.ordinal()] = next;
     }
 
-    private void unread(int c) {
-        try {
-            stream.unread(c);
-        } catch (IOException io) {
-            throw new IllegalStateException();
-        }
-    }
-
     private enum Type {
 
         DIGIT_1_9,
@@ -1,28 +1,29 @@
 package org.barracudamvc.plankton.io.parser.json.lexer;
 
-import java.io.PushbackInputStream;
 import static org.barracudamvc.plankton.io.parser.json.lexer.StaticHelpers.readChar;
 
 class StringLexer {
 
-    PushbackInputStream stream;
+    LexerInput stream;
     CharBuffer buffer;
     char[] unicodeCharacterbuffer = new char[]{'\\', 'u', '\0', '\0', '\0', '\0'};
 
     int position;
     int line;
 
-    public StringLexer(PushbackInputStream stream) {
+    public StringLexer(LexerInput stream) {
         this.stream = stream;
         this.buffer = new CharBuffer();
     }
 
-    char[] lexString(int position, int line) {
+    String lexString(int position, int line) {
         this.line = line;
         this.position = position;
         buffer.reset();
 
         while (true) {
+            //plain ASCII runs are copied straight across
+            stream.copyAsciiString(buffer);
             char rawCharacter = readChar(stream);
             switch (rawCharacter) {
                 case '\\':
@@ -30,7 +31,7 @@ class StringLexer {
                     buffer.append(rawCharacter);
                     break;
                 case '"':
-                    return buffer.toArray();
+                    return buffer.toString();
                 default:
                     buffer.append(rawCharacter);
             }
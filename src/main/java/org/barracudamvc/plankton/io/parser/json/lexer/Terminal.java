@@ -7,6 +7,12 @@ public class Terminal {
     TerminalType type;
     String value;
 
+    //numbers are kept as characters until somebody asks for the String
+    CharBuffer pendingValue;
+    boolean number;
+    boolean integral;
+    long longValue;
+
     public int getPosition() {
         return position;
     }
@@ -20,11 +26,68 @@ public class Terminal {
     }
 
     public String getValue() {
+        if (pendingValue != null) {
+            value = pendingValue.toString();
+            pendingValue = null;
+        }
         return value;
     }
 
+    /**
+     * @return true if this is a number literal
+     */
+    public boolean isNumber() {
+        return number;
+    }
+
+    /**
+     * @return true if this is a number literal with no fraction or exponent
+     * that fits in a long
+     */
+    public boolean isIntegral() {
+        return integral;
+    }
+
+    /**
+     * @return true if this is the literal null
+     */
+    public boolean isNull() {
+        return type == TerminalType.VALUE_LITERAL && !number && value == null;
+    }
+
+    /**
+     * @return true if this is the literal true or false
+     */
+    public boolean isBoolean() {
+        return type == TerminalType.VALUE_LITERAL && !number && value != null;
+    }
+
+    public boolean getBooleanValue() {
+        return "true".equals(value);
+    }
+
+    public long getLongValue() {
+        return integral ? longValue : (long) getDoubleValue();
+    }
+
+    public double getDoubleValue() {
+        return integral ? (double) longValue : Double.parseDouble(getValue());
+    }
+
+    void reset(TerminalType itype, int iposition, int iline) {
+        type = itype;
+        position = iposition;
+        line = iline;
+        value = null;
+        pendingValue = null;
+        number = false;
+        integral = false;
+        longValue = 0;
+    }
+
     public String toString() {
-        return line + ":" + position + " " + type + " " + (value == null ? type.getCommonValue() : value.toString());
+        String v = getValue();
+        return line + ":" + position + " " + type + " " + (v == null ? type.getCommonValue() : v);
     }
 
 }
@@ -0,0 +1,9 @@
+package org.barracudamvc.plankton.io.parser.json.lexer;
+
+/**
+ * Thrown when the input runs out in the middle of a token
+ */
+class UnexpectedEndOfStream extends IllegalStateException {
+
+    private static final long serialVersionUID = 1;
+}
@@ -1,6 +1,7 @@
 package org.barracudamvc.plankton.io.parser.json.parser;
 
 import org.barracudamvc.plankton.io.parser.json.Builder;
+import org.barracudamvc.plankton.io.parser.json.TypedBuilder;
 import java.util.Stack;
 import org.barracudamvc.plankton.io.parser.json.lexer.LexerStream;
 import org.barracudamvc.plankton.io.parser.json.lexer.Terminal;
@@ -71,24 +72,53 @@ public class Parser {
 
     private State current = State.INITIAL;
     private Stack<State> stack = new Stack<>();
-    private Builder builder;
+    private Builder<?> builder;
+    private TypedBuilder<?> typedBuilder;
+    private LexerStream stream;
     private Terminal terminal;
 
-    public void parse(LexerStream stream, Builder builder) {
+    public void parse(LexerStream stream, Builder<?> builder) {
+        start(stream, builder);
+        while (advance()) {
+        }
+    }
+
+    /**
+     * Get ready to parse a stream a token at a time (see advance()).
+     * If the builder is a TypedBuilder, null, booleans and numbers are
+     * handed to it as primitives.
+     */
+    public void start(LexerStream stream, Builder<?> builder) {
+        this.stream = stream;
         this.builder = builder;
-        while (!current.equals(State.FINISHED)) {
-            terminal = stream.next();
-            Transition transition = transitions[current.ordinal()][terminal.getType().ordinal()];
-            if (transition == null) {
-                handleError(current, terminal);
-            } else {
-                current = transition.next;
-                if (transition.operation != null) {
-                    transition.operation.accept(this);
-                }
+        this.typedBuilder = (builder instanceof TypedBuilder ? (TypedBuilder<?>) builder : null);
+    }
+
+    /**
+     * Consume the next token from the stream, calling the builder if the
+     * token completes something.
+     *
+     * @return false if the stream had already been parsed to the end
+     */
+    public boolean advance() {
+        if (current.equals(State.FINISHED)) {
+            return false;
+        }
+        terminal = stream.next();
+        Transition transition = transitions[current.ordinal()][terminal.getType().ordinal()];
+        if (transition == null) {
+            handleError(current, terminal);
+        } else {
+            current = transition.next;
+            if (transition.operation != null) {
+                transition.operation.accept(this);
             }
         }
+        return true;
+    }
 
+    public boolean isFinished() {
+        return current.equals(State.FINISHED);
     }
 
     static class Transition {
@@ -180,14 +210,38 @@ public class Parser {
     private static class AddMapValue implements Operation {
 
         public void accept(Parser parser) {
-            parser.builder.buildMapValue(parser.terminal.getValue());
+            Terminal t = parser.terminal;
+            TypedBuilder<?> typed = parser.typedBuilder;
+            if (typed == null || t.getType() != VALUE_LITERAL) {
+                parser.builder.buildMapValue(t.getValue());
+            } else if (t.isIntegral()) {
+                typed.buildMapValue(t.getLongValue());
+            } else if (t.isNumber()) {
+                typed.buildMapValue(t.getDoubleValue());
+            } else if (t.isBoolean()) {
+                typed.buildMapValue(t.getBooleanValue());
+            } else {
+                typed.buildMapNull();
+            }
         }
     }
 
     private static class AddArrayValue implements Operation {
 
         public void accept(Parser parser) {
-            parser.builder.buildArrayValue(parser.terminal.getValue());
+            Terminal t = parser.terminal;
+            TypedBuilder<?> typed = parser.typedBuilder;
+            if (typed == null || t.getType() != VALUE_LITERAL) {
+                parser.builder.buildArrayValue(t.getValue());
+            } else if (t.isIntegral()) {
+                typed.buildArrayValue(t.getLongValue());
+            } else if (t.isNumber()) {
+                typed.buildArrayValue(t.getDoubleValue());
+            } else if (t.isBoolean()) {
+                typed.buildArrayValue(t.getBooleanValue());
+            } else {
+                typed.buildArrayNull();
+            }
         }
     }
 
@@ -0,0 +1,125 @@
+package org.barracudamvc.testbed.servlet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+/**
+ * <p>A mockup AsyncContext, as returned by MockHttpServletRequest.startAsync.
+ * Tests can wait for the request to be completed with awaitCompletion, and
+ * simulate a container timeout with fireTimeout.
+ */
+public class MockAsyncContext implements AsyncContext {
+
+    private final ServletRequest request;
+    private final ServletResponse response;
+    private final List<AsyncListener> listeners = new ArrayList<AsyncListener>();
+    private final CountDownLatch completed = new CountDownLatch(1);
+    private long timeout = 30000;
+
+    public MockAsyncContext(ServletRequest irequest, ServletResponse iresponse) {
+        request = irequest;
+        response = iresponse;
+    }
+
+    public ServletRequest getRequest() {
+        return request;
+    }
+
+    public ServletResponse getResponse() {
+        return response;
+    }
+
+    public boolean hasOriginalRequestAndResponse() {
+        return true;
+    }
+
+    public void dispatch() {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    public void dispatch(String path) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    public void dispatch(ServletContext context, String path) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    public synchronized void complete() {
+        if (isCompleted()) {
+            throw new IllegalStateException("Async request has already been completed");
+        }
+        completed.countDown();
+        for (AsyncListener l : listeners) {
+            try {
+                l.onComplete(new AsyncEvent(this, request, response));
+            } catch (IOException e) {
+            }
+        }
+    }
+
+    public boolean isCompleted() {
+        return completed.getCount() == 0;
+    }
+
+    /**
+     * Wait for the request to be completed
+     *
+     * @return true if the request was completed within the timeout
+     */
+    public boolean awaitCompletion(long millis) throws InterruptedException {
+        return completed.await(millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Notify the listeners that the request has timed out, as the container
+     * would
+     */
+    public void fireTimeout() throws IOException {
+        List<AsyncListener> copy;
+        synchronized (this) {
+            copy = new ArrayList<AsyncListener>(listeners);
+        }
+        for (AsyncListener l : copy) {
+            l.onTimeout(new AsyncEvent(this, request, response));
+        }
+    }
+
+    public void start(Runnable run) {
+        new Thread(run).start();
+    }
+
+    public synchronized void addListener(AsyncListener listener) {
+        listeners.add(listener);
+    }
+
+    public synchronized void addListener(AsyncListener listener, ServletRequest req, ServletResponse resp) {
+        listeners.add(listener);
+    }
+
+    public <T extends AsyncListener> T createListener(Class<T> clazz) throws ServletException {
+        try {
+            return clazz.newInstance();
+        } catch (Exception e) {
+            throw new ServletException(e);
+        }
+    }
+
+    public void setTimeout(long itimeout) {
+        timeout = itimeout;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+}
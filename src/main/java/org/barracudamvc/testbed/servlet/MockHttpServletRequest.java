@@ -46,8 +46,11 @@ public class MockHttpServletRequest implements HttpServletRequest {
     public Map<String, Object> atttributes = new HashMap<String, Object>();
     private MockServletInputStream is;
     private String method = "GET";
+    private String pathInfo = null;
     private int contentLength = -1;
     private URL requestURL;
+    private boolean asyncSupported = false;
+    private MockAsyncContext asyncContext = null;
 
     public MockHttpServletRequest(URL url) {
         this(null, url);
@@ -150,7 +153,22 @@ public class MockHttpServletRequest implements HttpServletRequest {
 
     @Override
     public long getDateHeader(String name) {
-        return -1;
+        String value = getHeader(name);
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            //not millis, so try an HTTP date
+        }
+        java.text.SimpleDateFormat fmt = new java.text.SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        fmt.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            return fmt.parse(value).getTime();
+        } catch (java.text.ParseException e) {
+            throw new IllegalArgumentException("Not a date: " + value);
+        }
     }
 
     /**
@@ -199,7 +217,11 @@ public class MockHttpServletRequest implements HttpServletRequest {
 
     @Override
     public String getPathInfo() {
-        return null;
+        return pathInfo;
+    }
+
+    public void setPathInfo(String val) {
+        pathInfo = val;
     }
 
     @Override
@@ -513,23 +535,37 @@ public class MockHttpServletRequest implements HttpServletRequest {
     }
 
     public AsyncContext startAsync() {
-        throw new UnsupportedOperationException("Not supported yet.");
+        return startAsync(this, null);
     }
 
     public AsyncContext startAsync(ServletRequest sr, ServletResponse sr1) {
-        throw new UnsupportedOperationException("Not supported yet.");
+        if (!asyncSupported) {
+            throw new IllegalStateException("Async is not supported by this request");
+        }
+        if (asyncContext != null) {
+            throw new IllegalStateException("Async has already been started");
+        }
+        asyncContext = new MockAsyncContext(sr, sr1);
+        return asyncContext;
     }
 
     public boolean isAsyncStarted() {
-        throw new UnsupportedOperationException("Not supported yet.");
+        return asyncContext != null && !asyncContext.isCompleted();
     }
 
     public boolean isAsyncSupported() {
-        throw new UnsupportedOperationException("Not supported yet.");
+        return asyncSupported;
+    }
+
+    public void setAsyncSupported(boolean val) {
+        asyncSupported = val;
     }
 
     public AsyncContext getAsyncContext() {
-        throw new UnsupportedOperationException("Not supported yet.");
+        if (asyncContext == null) {
+            throw new IllegalStateException("Async has not been started");
+        }
+        return asyncContext;
     }
 
     public DispatcherType getDispatcherType() {
@@ -15,8 +15,13 @@ import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletResponse;
@@ -32,6 +37,8 @@ public class MockHttpServletResponse implements HttpServletResponse {
     private String contentType;
     private int status = HttpServletResponse.SC_OK;
     private String errorMessage;
+    private String characterEncoding = "ISO-8859-1";
+    private final Map<String, List<String>> headers = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
 
     public MockHttpServletResponse() {
 
@@ -44,7 +51,7 @@ public class MockHttpServletResponse implements HttpServletResponse {
 
     @Override
     public boolean containsHeader(String string) {
-        throw new UnsupportedOperationException();
+        return headers.containsKey(string);
     }
 
     @Override
@@ -69,8 +76,8 @@ public class MockHttpServletResponse implements HttpServletResponse {
 
     @Override
     public void sendError(int i, String string) throws IOException {
-        this.status = status;
-        this.errorMessage = errorMessage;
+        this.status = i;
+        this.errorMessage = string;
     }
 
     @Override
@@ -85,42 +92,48 @@ public class MockHttpServletResponse implements HttpServletResponse {
 
     @Override
     public void setDateHeader(String string, long l) {
-        throw new UnsupportedOperationException();
+        setHeader(string, String.valueOf(l));
     }
 
     @Override
     public void addDateHeader(String string, long l) {
-        throw new UnsupportedOperationException();
+        addHeader(string, String.valueOf(l));
     }
 
     @Override
     public void setHeader(String string, String string1) {
-        throw new UnsupportedOperationException();
+        headers.remove(string);
+        addHeader(string, string1);
     }
 
     @Override
     public void addHeader(String string, String string1) {
-        throw new UnsupportedOperationException();
+        List<String> values = headers.get(string);
+        if (values == null) {
+            values = new ArrayList<String>();
+            headers.put(string, values);
+        }
+        values.add(string1);
     }
 
     @Override
     public void setIntHeader(String string, int i) {
-        throw new UnsupportedOperationException();
+        setHeader(string, String.valueOf(i));
     }
 
     @Override
     public void addIntHeader(String string, int i) {
-        throw new UnsupportedOperationException();
+        addHeader(string, String.valueOf(i));
     }
 
     @Override
     public void setStatus(int i) {
-        throw new UnsupportedOperationException();
+        this.status = i;
     }
 
     @Override
     public void setStatus(int i, String string) {
-        throw new UnsupportedOperationException();
+        this.status = i;
     }
 
     @Override
@@ -130,22 +143,24 @@ public class MockHttpServletResponse implements HttpServletResponse {
 
     @Override
     public String getHeader(String string) {
-        throw new UnsupportedOperationException();
+        List<String> values = headers.get(string);
+        return values == null ? null : values.get(0);
     }
 
     @Override
     public Collection<String> getHeaders(String string) {
-        throw new UnsupportedOperationException();
+        List<String> values = headers.get(string);
+        return values == null ? Collections.<String>emptyList() : new ArrayList<String>(values);
     }
 
     @Override
     public Collection<String> getHeaderNames() {
-        throw new UnsupportedOperationException();
+        return new ArrayList<String>(headers.keySet());
     }
 
     @Override
     public String getCharacterEncoding() {
-        throw new UnsupportedOperationException();
+        return characterEncoding;
     }
 
     @Override
@@ -165,12 +180,12 @@ public class MockHttpServletResponse implements HttpServletResponse {
 
     @Override
     public void setCharacterEncoding(String string) {
-        throw new UnsupportedOperationException();
+        this.characterEncoding = string;
     }
 
     @Override
     public void setContentLength(int i) {
-        throw new UnsupportedOperationException();
+        setIntHeader("Content-Length", i);
     }
 
     @Override
@@ -190,7 +205,7 @@ public class MockHttpServletResponse implements HttpServletResponse {
 
     @Override
     public void flushBuffer() throws IOException {
-        throw new UnsupportedOperationException();
+        outputStream.flush();
     }
 
     @Override
@@ -200,7 +215,7 @@ public class MockHttpServletResponse implements HttpServletResponse {
 
     @Override
     public boolean isCommitted() {
-        throw new UnsupportedOperationException();
+        return false;
     }
 
     @Override
@@ -0,0 +1,233 @@
+package org.barracudamvc.core.comp.renderer;
+
+import org.barracudamvc.core.comp.AbstractIterativeTemplateModel;
+import org.barracudamvc.core.comp.AbstractTemplateModel;
+import org.barracudamvc.core.comp.BTemplate;
+import org.barracudamvc.core.comp.DefaultTemplateView;
+import org.barracudamvc.core.comp.DefaultViewContext;
+import org.barracudamvc.core.comp.TemplateDirective;
+import org.barracudamvc.core.view.FormatType;
+import org.barracudamvc.core.view.ViewCapabilities;
+import org.barracudamvc.plankton.data.ObjectRepository;
+import org.enhydra.xml.xmlc.dom.XMLCDomFactory;
+import org.enhydra.xml.xmlc.dom.XMLCDomFactoryCache;
+import org.enhydra.xml.xmlc.dom.xerces.XercesHTMLDomFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TemplatePlanTest {
+
+    Document document;
+    Element root;
+    Element staticChild;
+    Element dynamicChild;
+
+    @Before
+    public void setup() {
+        XMLCDomFactory factory = XMLCDomFactoryCache.getFactory(XercesHTMLDomFactory.class);
+        document = factory.createDocument(null, "HTML", null);
+
+        root = document.createElement("div");
+        staticChild = document.createElement("p");
+        staticChild.setAttribute("class", "plain");
+        staticChild.appendChild(document.createTextNode("static"));
+        dynamicChild = document.createElement("span");
+        dynamicChild.setAttribute("class", "bold Dir::Get_Data.Model.Key");
+        root.appendChild(staticChild);
+        root.appendChild(dynamicChild);
+    }
+
+    @Test
+    public void given_class_attr_with_directives_expect_directives_stripped() {
+        DefaultTemplateView view = new DefaultTemplateView(root);
+
+        TemplatePlan.ClassAttr classAttr = TemplatePlan.resolveClassAttr(view, " a  Dir::Discard.Model b ");
+
+        assertEquals(1, classAttr.getDirectives().size());
+        assertEquals(TemplateDirective.DISCARD, classAttr.getDirectives().get(0).getCommand());
+        assertEquals("a b", classAttr.getCleaned());
+        assertTrue(classAttr.isChanged());
+    }
+
+    @Test
+    public void given_template_expect_static_and_dynamic_nodes_flagged() {
+        DefaultTemplateView view = new DefaultTemplateView(root);
+        TemplatePlan.Binding plan = TemplatePlan.forView(view);
+        Element master = (Element) view.getMasterTemplate();
+
+        assertFalse(plan.get(master).isStatic());
+        assertTrue(plan.get(master.getFirstChild()).isStatic());
+        assertTrue(plan.get(master.getFirstChild().getFirstChild()).isStatic());
+        assertFalse(plan.get(master.getLastChild()).isStatic());
+    }
+
+    @Test
+    public void given_same_master_template_expect_plan_reused() {
+        DefaultTemplateView view = new DefaultTemplateView(root);
+
+        assertSame(TemplatePlan.forView(view), TemplatePlan.forView(view));
+    }
+
+    @Test
+    public void given_same_template_rendered_twice_expect_plan_reused_and_output_unchanged() throws Exception {
+        Element first = template("test:reused");
+        Element second = template("test:reused");
+        Element unplanned = template("test:reused");
+
+        DefaultTemplateView firstView = render(first, true);
+        DefaultTemplateView secondView = render(second, true);
+        render(unplanned, false);
+
+        assertNotSame(firstView.getMasterTemplate(), secondView.getMasterTemplate());
+        assertSame(TemplatePlan.forView(firstView).getPlan(), TemplatePlan.forView(secondView).getPlan());
+        assertEquals(toString(unplanned), toString(first));
+        assertEquals(toString(unplanned), toString(second));
+        assertTrue(toString(first).contains("<td>Row 2</td>"));
+    }
+
+    @Test
+    public void given_template_without_source_expect_compiled_per_view() {
+        DefaultTemplateView view1 = new DefaultTemplateView(root);
+        DefaultTemplateView view2 = new DefaultTemplateView(root);
+
+        assertNotSame(TemplatePlan.forView(view1).getPlan(), TemplatePlan.forView(view2).getPlan());
+    }
+
+    @Test
+    public void given_changed_class_attr_expect_resolved_again() {
+        DefaultTemplateView view = new DefaultTemplateView(root);
+        TemplatePlan.Binding plan = TemplatePlan.forView(view);
+        Element span = (Element) view.getMasterTemplate().getLastChild();
+
+        TemplatePlan.ClassAttr classAttr = plan.get(span).getClassAttr(view, "Dir::Discard.Model");
+
+        assertEquals(TemplateDirective.DISCARD, classAttr.getDirectives().get(0).getCommand());
+        assertEquals("", classAttr.getCleaned());
+    }
+
+    private Element template(String uri) {
+        Document doc = XMLCDomFactoryCache.getFactory(XercesHTMLDomFactory.class).createDocument(null, "HTML", null);
+        doc.setDocumentURI(uri);
+        Element template = doc.createElement("DIV");
+        Element title = element(doc, "H1", "Dir::Get_Data.Page.Title", "Title");
+        Element intro = element(doc, "P", "intro", "Some static text");
+        Element table = doc.createElement("TABLE");
+        Element row = element(doc, "TR", "row Dir::Iterate_Next.Rows", null);
+        row.appendChild(element(doc, "TD", "Dir::Get_Data.Rows.Name", "Name"));
+        row.appendChild(element(doc, "TD", "cell", "static cell"));
+        table.appendChild(row);
+        table.appendChild(element(doc, "TR", "Dir::Iterate_End.Rows Dir::Discard", null));
+        template.appendChild(title);
+        template.appendChild(intro);
+        template.appendChild(table);
+        doc.getDocumentElement().appendChild(template);
+        return template;
+    }
+
+    private static Element element(Document doc, String tag, String cls, String text) {
+        Element el = doc.createElement(tag);
+        el.setAttribute("class", cls);
+        if (text != null) {
+            el.appendChild(doc.createTextNode(text));
+        }
+        return el;
+    }
+
+    private static DefaultTemplateView render(Element template, boolean usePlans) throws Exception {
+        DefaultTemplateView view = new DefaultTemplateView(template);
+        BTemplate btemplate = new BTemplate();
+        btemplate.addModel(new PageModel());
+        btemplate.addModel(new RowModel(3));
+        btemplate.setView(view);
+        boolean old = TemplateHelper.USE_TEMPLATE_PLANS;
+        TemplateHelper.USE_TEMPLATE_PLANS = usePlans;
+        try {
+            btemplate.render(new DefaultViewContext(new ViewCapabilities(FormatType.HTML_4_0, null, null, null), null, null));
+        } finally {
+            TemplateHelper.USE_TEMPLATE_PLANS = old;
+            ObjectRepository.removeLocalRepository();
+        }
+        return view;
+    }
+
+    private static String toString(Node node) {
+        StringBuilder sb = new StringBuilder();
+        append(node, sb);
+        return sb.toString();
+    }
+
+    private static void append(Node node, StringBuilder sb) {
+        if (node.getNodeType() == Node.TEXT_NODE) {
+            sb.append(node.getNodeValue());
+            return;
+        }
+        sb.append('<').append(node.getNodeName().toLowerCase());
+        NamedNodeMap attrs = node.getAttributes();
+        for (int i = 0; attrs != null && i < attrs.getLength(); i++) {
+            sb.append(' ').append(attrs.item(i).getNodeName()).append("=\"").append(attrs.item(i).getNodeValue()).append('"');
+        }
+        sb.append('>');
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            append(child, sb);
+        }
+        sb.append("</").append(node.getNodeName().toLowerCase()).append('>');
+    }
+
+    static class PageModel extends AbstractTemplateModel {
+
+        @Override
+        public String getName() {
+            return "Page";
+        }
+
+        @Override
+        public Object getItem(String key) {
+            return "Test page";
+        }
+    }
+
+    static class RowModel extends AbstractIterativeTemplateModel {
+
+        final int count;
+        int current = -1;
+
+        RowModel(int icount) {
+            count = icount;
+        }
+
+        @Override
+        public String getName() {
+            return "Rows";
+        }
+
+        @Override
+        public void preIterate() {
+            current = -1;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return current + 1 < count;
+        }
+
+        @Override
+        public void loadNext() {
+            current++;
+        }
+
+        @Override
+        public Object getItem(String key) {
+            return "Row " + current;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.barracudamvc.core.comp.renderer.html;
+
+import org.barracudamvc.core.comp.AbstractTableModel;
+import org.barracudamvc.core.comp.BTable;
+import org.barracudamvc.core.comp.DefaultTableView;
+import org.barracudamvc.core.comp.DefaultViewContext;
+import org.barracudamvc.core.comp.RenderException;
+import org.barracudamvc.core.view.FormatType;
+import org.barracudamvc.core.view.ViewCapabilities;
+import org.enhydra.xml.xmlc.dom.XMLCDomFactoryCache;
+import org.enhydra.xml.xmlc.dom.xerces.XercesHTMLDomFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import static org.junit.Assert.assertEquals;
+
+public class HTMLTableRendererTest {
+
+    Document document;
+    Element table;
+    Element body;
+    CountingModel model;
+
+    @Before
+    public void setup() {
+        document = XMLCDomFactoryCache.getFactory(XercesHTMLDomFactory.class).createDocument(null, "HTML", null);
+        table = document.createElement("TABLE");
+        body = document.createElement("TBODY");
+        body.appendChild(document.createElement("TR"));
+        table.appendChild(body);
+        document.getDocumentElement().appendChild(table);
+        model = new CountingModel(50, 3);
+    }
+
+    @Test
+    public void given_direct_rendering_expect_same_rows_as_list_rendering() throws RenderException {
+        String listed = render(new BTable(model));
+        String direct = render(new BTable(model).setDirectRendering(true));
+
+        assertEquals(listed, direct);
+        assertEquals(50, body.getElementsByTagName("TR").getLength());
+        assertEquals("r49c2", cell(49, 2));
+    }
+
+    @Test
+    public void given_row_window_expect_only_slice_read() throws RenderException {
+        render(new BTable(model).setDirectRendering(true).setRowWindow(10, 5));
+
+        assertEquals(5, body.getElementsByTagName("TR").getLength());
+        assertEquals("r10c0", cell(0, 0));
+        assertEquals("r14c2", cell(4, 2));
+        assertEquals(15, model.reads);
+    }
+
+    @Test
+    public void given_row_window_past_end_expect_remaining_rows() throws RenderException {
+        render(new BTable(model).setRowWindow(48, 10));
+
+        assertEquals(2, body.getElementsByTagName("TR").getLength());
+        assertEquals("r48c0", cell(0, 0));
+    }
+
+    @Test
+    public void given_markup_in_text_expect_text_node() throws RenderException {
+        model = new CountingModel(1, 1) {
+            @Override
+            public Object getItemAt(int row, int col) {
+                return "a < b";
+            }
+        };
+        render(new BTable(model).setDirectRendering(true));
+
+        assertEquals("a < b", cell(0, 0));
+    }
+
+    private String render(BTable btable) throws RenderException {
+        btable.setView(new DefaultTableView(table));
+        btable.render(new DefaultViewContext(new ViewCapabilities(FormatType.HTML_4_0, null, null, null), null, null));
+        StringBuilder sb = new StringBuilder();
+        NodeList rows = body.getElementsByTagName("TR");
+        for (int i = 0; i < rows.getLength(); i++) {
+            NodeList cells = ((Element) rows.item(i)).getElementsByTagName("TD");
+            for (int j = 0; j < cells.getLength(); j++) {
+                sb.append(cells.item(j).getTextContent()).append('|');
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private String cell(int row, int col) {
+        Element tr = (Element) body.getElementsByTagName("TR").item(row);
+        return tr.getElementsByTagName("TD").item(col).getTextContent();
+    }
+
+    static class CountingModel extends AbstractTableModel {
+
+        final int rows;
+        final int cols;
+        int reads;
+
+        CountingModel(int irows, int icols) {
+            rows = irows;
+            cols = icols;
+        }
+
+        @Override
+        public int getRowCount() {
+            return rows;
+        }
+
+        @Override
+        public int getColumnCount() {
+            return cols;
+        }
+
+        @Override
+        public Object getItemAt(int row, int col) {
+            reads++;
+            return "r" + row + "c" + col;
+        }
+    }
+}
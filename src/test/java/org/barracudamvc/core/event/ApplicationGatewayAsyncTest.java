@@ -0,0 +1,227 @@
+package org.barracudamvc.core.event;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
+import org.barracudamvc.core.event.events.AControlEvent;
+import org.barracudamvc.core.event.events.ARenderEvent;
+import org.barracudamvc.plankton.data.ObjectRepository;
+import org.barracudamvc.plankton.data.RepositoryScope;
+import org.barracudamvc.testbed.servlet.MockAsyncContext;
+import org.barracudamvc.testbed.servlet.MockHttpServletRequest;
+import org.barracudamvc.testbed.servlet.MockHttpServletResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ApplicationGatewayAsyncTest extends AbstractGatewayHelper {
+
+    private ApplicationGateway gateway;
+
+    @Before
+    public void setUp() {
+        gateway = new ApplicationGateway();
+        gateway.asyncDispatch = true;
+    }
+
+    @After
+    public void tearDown() {
+        ApplicationGateway.ASYNC_EXECUTOR = null;
+    }
+
+    @Override
+    protected ApplicationGateway getGateway() {
+        return gateway;
+    }
+
+    private MockAsyncContext getAsync(MockHttpServletRequest request, MockHttpServletResponse response) throws Exception {
+        request.setAsyncSupported(true);
+        gateway.doGet(request, response);
+        MockAsyncContext ac = (MockAsyncContext) request.getAsyncContext();
+        assertTrue("request was not completed", ac.awaitCompletion(10000));
+        return ac;
+    }
+
+    @Test
+    public void given_async_dispatch_expect_view_rendered_on_executor_thread() throws Exception {
+        final String message = "Rendered asynchronously";
+        final AtomicReference<Thread> renderThread = new AtomicReference<>();
+        final AtomicReference<ObjectRepository> sessionRepo = new AtomicReference<>();
+        route(AControlEvent.class).to(new ARenderEvent());
+        addRenderMessage(ARenderEvent.class, message);
+        gateway.getEventBroker().addEventListener(new DefaultListenerFactory() {
+            @Override
+            public BaseEventListener getInstance() {
+                return new DefaultBaseEventListener() {
+                    @Override
+                    public void handleViewEvent(ViewEventContext context) throws EventException, ServletException, IOException {
+                        renderThread.set(Thread.currentThread());
+                        sessionRepo.set(ObjectRepository.getSessionRepository());
+                    }
+                };
+            }
+
+            @Override
+            public String getListenerID() {
+                return "async-probe";
+            }
+        }, ARenderEvent.class);
+
+        MockHttpServletRequest request = request("/" + AControlEvent.class.getName() + ".event");
+        MockHttpServletResponse response = response();
+        getAsync(request, response);
+
+        assertStatusEquals(response, HttpServletResponse.SC_OK);
+        assertResponseContains(response, message);
+        assertNotNull(renderThread.get());
+        assertFalse(renderThread.get() == Thread.currentThread());
+        assertNotNull(sessionRepo.get());
+        assertNull(RepositoryScope.current());
+    }
+
+    @Test
+    public void given_async_executor_expect_dispatch_on_that_executor() throws Exception {
+        final AtomicReference<Thread> executorThread = new AtomicReference<>();
+        ApplicationGateway.ASYNC_EXECUTOR = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                Thread t = new Thread(command, "custom-async");
+                executorThread.set(t);
+                t.start();
+            }
+        };
+        final AtomicReference<Thread> renderThread = new AtomicReference<>();
+        route(AControlEvent.class).to(new ARenderEvent());
+        gateway.getEventBroker().addEventListener(new DefaultListenerFactory() {
+            @Override
+            public BaseEventListener getInstance() {
+                return new DefaultBaseEventListener() {
+                    @Override
+                    public void handleViewEvent(ViewEventContext context) throws EventException, ServletException, IOException {
+                        renderThread.set(Thread.currentThread());
+                    }
+                };
+            }
+
+            @Override
+            public String getListenerID() {
+                return ARenderEvent.class.getName();
+            }
+        }, ARenderEvent.class);
+
+        getAsync(request("/" + AControlEvent.class.getName() + ".event"), response());
+
+        assertSame(executorThread.get(), renderThread.get());
+    }
+
+    @Test
+    public void given_async_not_supported_expect_sync_dispatch() throws Exception {
+        final String message = "Rendered synchronously";
+        route(AControlEvent.class).to(new ARenderEvent());
+        addRenderMessage(ARenderEvent.class, message);
+
+        MockHttpServletRequest request = request("/" + AControlEvent.class.getName() + ".event");
+        MockHttpServletResponse response = response();
+        gateway.doGet(request, response);
+
+        assertFalse(request.isAsyncStarted());
+        assertResponseContains(response, message);
+    }
+
+    @Test
+    public void given_timeout_expect_service_unavailable() throws Exception {
+        MockHttpServletRequest request = request("/" + AControlEvent.class.getName() + ".event");
+        MockHttpServletResponse response = response();
+        ApplicationGateway.ASYNC_EXECUTOR = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                //never runs, so the request can only end by timing out
+            }
+        };
+        request.setAsyncSupported(true);
+        gateway.doGet(request, response);
+        MockAsyncContext ac = (MockAsyncContext) request.getAsyncContext();
+        ac.fireTimeout();
+
+        assertTrue(ac.isCompleted());
+        assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, response.getStatus());
+    }
+
+    @Test
+    public void given_timeout_before_dispatch_expect_worker_leaves_response_alone() throws Exception {
+        final String message = "Rendered after the timeout";
+        route(AControlEvent.class).to(new ARenderEvent());
+        addRenderMessage(ARenderEvent.class, message);
+        final AtomicReference<Runnable> queued = new AtomicReference<>();
+        ApplicationGateway.ASYNC_EXECUTOR = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                queued.set(command);
+            }
+        };
+        MockHttpServletRequest request = request("/" + AControlEvent.class.getName() + ".event");
+        MockHttpServletResponse response = response();
+        request.setAsyncSupported(true);
+        gateway.doGet(request, response);
+        MockAsyncContext ac = (MockAsyncContext) request.getAsyncContext();
+        ac.fireTimeout();
+
+        //the worker gets to the request after the container has given up on it
+        queued.get().run();
+
+        assertTrue(ac.isCompleted());
+        assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, response.getStatus());
+        assertFalse(responseToString(response).contains(message));
+        assertNull(RepositoryScope.current());
+    }
+
+    @Test
+    public void given_timeout_during_dispatch_expect_worker_cancelled_before_timeout_returns() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        route(AControlEvent.class).to(new ARenderEvent());
+        gateway.getEventBroker().addEventListener(new DefaultListenerFactory() {
+            @Override
+            public BaseEventListener getInstance() {
+                return new DefaultBaseEventListener() {
+                    @Override
+                    public void handleViewEvent(ViewEventContext context) throws EventException, ServletException, IOException {
+                        started.countDown();
+                        try {
+                            Thread.sleep(30000);
+                        } catch (InterruptedException e) {
+                            throw new ServletException("cancelled", e);
+                        }
+                    }
+                };
+            }
+
+            @Override
+            public String getListenerID() {
+                return "slow-render";
+            }
+        }, ARenderEvent.class);
+        MockHttpServletRequest request = request("/" + AControlEvent.class.getName() + ".event");
+        MockHttpServletResponse response = response();
+        request.setAsyncSupported(true);
+        gateway.doGet(request, response);
+        MockAsyncContext ac = (MockAsyncContext) request.getAsyncContext();
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        long start = System.currentTimeMillis();
+        ac.fireTimeout();
+
+        assertTrue(ac.isCompleted());
+        assertTrue(System.currentTimeMillis() - start < 10000);
+        assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, response.getStatus());
+    }
+}
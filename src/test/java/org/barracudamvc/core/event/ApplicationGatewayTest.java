@@ -10,12 +10,20 @@
  */
 package org.barracudamvc.core.event;
 
+import java.io.ByteArrayInputStream;
+import java.util.Map;
 import javax.servlet.http.HttpServletResponse;
 import org.barracudamvc.core.event.events.AControlEvent;
 import org.barracudamvc.core.event.events.ARenderEvent;
+import org.barracudamvc.core.metrics.HistogramMetricsCollector;
+import org.barracudamvc.core.metrics.HistogramSnapshot;
+import org.barracudamvc.core.metrics.Metrics;
+import org.barracudamvc.testbed.servlet.MockHttpServletRequest;
 import org.barracudamvc.testbed.servlet.MockHttpServletResponse;
 import org.junit.Before;
 import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  *
@@ -60,6 +68,41 @@ public class ApplicationGatewayTest extends AbstractGatewayHelper {
         assertResponseContains(response, message);
     }
 
+    @Test
+    public void given_metrics_collector_expect_dispatch_and_listener_times_recorded() throws Exception {
+        route(AControlEvent.class).to(new ARenderEvent());
+        addRenderMessage(ARenderEvent.class, "measured");
+        HistogramMetricsCollector metrics = new HistogramMetricsCollector();
+        Metrics.setCollector(metrics);
+        try {
+            get("/" + AControlEvent.class.getName() + ".event");
+        } finally {
+            Metrics.setCollector(null);
+        }
+
+        Map<String, HistogramSnapshot> histograms = metrics.getHistograms();
+        assertEquals(1, histograms.get(Metrics.dispatch(ARenderEvent.class)).getCount());
+        assertEquals(1, histograms.get(Metrics.QUEUE_DEPTH).getCount());
+        assertTrue(histograms.keySet().toString(), histograms.keySet().toString().contains(Metrics.LISTENER_PREFIX));
+    }
+
+    @Test
+    public void given_form_body_over_parser_limit_expect_413() throws Exception {
+        MockHttpServletRequest request = request("/" + AControlEvent.class.getName() + ".event");
+        request.setMethod("PUT");
+        request.setContentType("application/x-www-form-urlencoded");
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            body.append('k');
+        }
+        request.setInputStream(new ByteArrayInputStream(body.append("=v").toString().getBytes("UTF-8")));
+        MockHttpServletResponse response = response();
+
+        gateway.service(request, response);
+
+        assertStatusEquals(response, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+    }
+
     private ApplicationGateway gateway;
 
     @Before
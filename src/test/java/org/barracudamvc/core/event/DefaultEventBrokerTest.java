@@ -19,8 +19,14 @@
  */
 package org.barracudamvc.core.event;
 
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import org.barracudamvc.core.event.events.AControlEvent;
 import org.junit.Test;
 
 public class DefaultEventBrokerTest {
@@ -43,7 +49,7 @@ public class DefaultEventBrokerTest {
             "foo.blah.event2.Test"
         };
         for (String classe : classes) {
-            eb.addAliases(classe, eb.getAliases(classe), eb.eventXref);
+            eb.addEventAliases(classe, eb.getAliases(classe));
         }
 
         //now see if we get matches
@@ -70,4 +76,75 @@ public class DefaultEventBrokerTest {
         result = eb.matchEventClass(id);
         assertTrue("failed to find id:" + id + ", got:" + result, classes[1].equals(result));
     }
+
+    @Test
+    public void given_unchanged_registrations_expect_dispatch_plan_reused() throws InvalidClassException {
+        DefaultEventBroker eb = new DefaultEventBroker(null, ".event");
+        eb.addEventListener(listenerFactory(), AControlEvent.class);
+
+        DispatchPlan plan = eb.getDispatchPlan(AControlEvent.class);
+
+        assertSame(plan, eb.getDispatchPlan(AControlEvent.class));
+        assertEquals(1, plan.getListeners().size());
+    }
+
+    @Test
+    public void given_new_registration_expect_dispatch_plan_recompiled() throws InvalidClassException {
+        DefaultEventBroker eb = new DefaultEventBroker(null, ".event");
+        DispatchPlan plan = eb.getDispatchPlan(AControlEvent.class);
+        eb.addEventListener(listenerFactory(), AControlEvent.class);
+
+        DispatchPlan newPlan = eb.getDispatchPlan(AControlEvent.class);
+
+        assertNotSame(plan, newPlan);
+        assertEquals(0, plan.getListeners().size());
+        assertEquals(1, newPlan.getListeners().size());
+    }
+
+    @Test
+    public void given_listeners_snapshot_expect_unaffected_by_later_registration() throws InvalidClassException {
+        DefaultEventBroker eb = new DefaultEventBroker(null, ".event");
+        eb.addEventListener(listenerFactory(), AControlEvent.class);
+        List<ListenerFactory> snapshot = eb.getEventListeners(AControlEvent.class);
+
+        eb.addEventListener(listenerFactory(), AControlEvent.class);
+
+        assertEquals(1, snapshot.size());
+        assertEquals(2, eb.getEventListeners(AControlEvent.class).size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void given_listeners_snapshot_expect_unmodifiable() throws InvalidClassException {
+        DefaultEventBroker eb = new DefaultEventBroker(null, ".event");
+        eb.addEventListener(listenerFactory(), AControlEvent.class);
+
+        eb.getEventListeners(AControlEvent.class).clear();
+    }
+
+    @Test
+    public void given_purged_listener_expect_id_and_event_registrations_removed() throws InvalidClassException {
+        DefaultEventBroker eb = new DefaultEventBroker(null, ".event");
+        ListenerFactory factory = listenerFactory();
+        eb.addEventListener(factory, AControlEvent.class);
+
+        eb.purgeEventListener(factory);
+
+        assertNull(eb.getEventListener(AControlEvent.class.getName()));
+        assertTrue(eb.getEventListeners(AControlEvent.class).isEmpty());
+        assertEquals(AControlEvent.class.getName(), eb.matchListenerID("AControlEvent"));
+    }
+
+    private ListenerFactory listenerFactory() {
+        return new DefaultListenerFactory() {
+            @Override
+            public BaseEventListener getInstance() {
+                return new DefaultBaseEventListener() {};
+            }
+
+            @Override
+            public String getListenerID() {
+                return AControlEvent.class.getName();
+            }
+        };
+    }
 }
@@ -0,0 +1,46 @@
+package org.barracudamvc.core.event;
+
+import org.barracudamvc.plankton.data.ObjectRepository;
+import org.barracudamvc.testbed.servlet.MockHttpServletRequest;
+import org.barracudamvc.testbed.servlet.MockHttpServletResponse;
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class DefaultEventContextTest {
+
+    @After
+    public void tearDown() {
+        ObjectRepository.removeLocalRepository();
+    }
+
+    @Test
+    public void given_redirect_expect_restored_context_uses_new_request() {
+        MockHttpServletRequest oldReq = new MockHttpServletRequest();
+        MockHttpServletResponse oldResp = new MockHttpServletResponse();
+        ObjectRepository lr = ObjectRepository.getLocalRepository();
+        lr.putState(ApplicationGateway.HTTP_SERVLET_REQUEST, oldReq);
+        lr.putState(ApplicationGateway.HTTP_SERVLET_RESPONSE, oldResp);
+        lr.putState("user", "kept");
+        DefaultEventContext context = new DefaultEventContext(null, null, null, oldReq, oldResp, null);
+        context.putState("form", "kept");
+        ClientSideRedirectException re = new ClientSideRedirectException("/next");
+        context.persistContext(re);
+        String id = re.getRedirectURL().substring(re.getRedirectURL().indexOf('=') + 1);
+
+        ObjectRepository.removeLocalRepository();
+        MockHttpServletRequest newReq = new MockHttpServletRequest("$ctxid=" + id);
+        MockHttpServletResponse newResp = new MockHttpServletResponse();
+        lr = ObjectRepository.getLocalRepository();
+        lr.putState(ApplicationGateway.HTTP_SERVLET_REQUEST, newReq);
+        lr.putState(ApplicationGateway.HTTP_SERVLET_RESPONSE, newResp);
+        DefaultEventContext restored = new DefaultEventContext(null, null, null, newReq, newResp, null);
+
+        assertSame(newReq, restored.getRequest());
+        assertSame(newResp, restored.getResponse());
+        assertEquals("kept", restored.getState("form"));
+        assertSame(newReq, lr.getState(ApplicationGateway.HTTP_SERVLET_REQUEST));
+        assertSame(newResp, lr.getState(ApplicationGateway.HTTP_SERVLET_RESPONSE));
+        assertEquals("kept", lr.getState("user"));
+    }
+}
@@ -0,0 +1,80 @@
+package org.barracudamvc.core.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class DefaultEventPoolTest {
+
+    private DefaultEventPool pool;
+
+    @Before
+    public void setUp() {
+        pool = new DefaultEventPool(2, 60000, 50, 3, 600000);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void given_released_event_when_checked_out_again_expect_same_instance() throws Exception {
+        BaseEvent event = pool.checkoutEvent(HttpRequestEvent.class);
+        pool.releaseEvent(event);
+
+        assertSame(event, pool.checkoutEvent(HttpRequestEvent.class));
+        assertEquals(1, pool.getHitCount());
+        assertEquals(1, pool.getMissCount());
+        assertEquals(1, pool.getInstantiationCount());
+    }
+
+    @Test
+    public void given_exhausted_pool_expect_new_events_instead_of_exception() throws Exception {
+        List<BaseEvent> events = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            events.add(pool.checkoutEvent(HttpRequestEvent.class));
+        }
+
+        assertEquals(5, pool.getInstantiationCount());
+        for (BaseEvent event : events) {
+            pool.releaseEvent(event);
+        }
+        for (int i = 0; i < 5; i++) {
+            pool.checkoutEvent(HttpRequestEvent.class);
+        }
+        assertEquals(2, pool.getHitCount());
+        assertEquals(8, pool.getInstantiationCount());
+    }
+
+    @Test
+    public void given_event_released_twice_expect_it_pooled_once() throws Exception {
+        BaseEvent event = pool.checkoutEvent(HttpRequestEvent.class);
+        pool.releaseEvent(event);
+        pool.releaseEvent(event);
+
+        assertSame(event, pool.checkoutEvent(HttpRequestEvent.class));
+        assertNotSame(event, pool.checkoutEvent(HttpRequestEvent.class));
+    }
+
+    @Test
+    public void given_expired_checkout_expect_forced_release() throws Exception {
+        pool.shutdown();
+        pool = new DefaultEventPool(2, -1, 50, 3, 600000);
+        BaseEvent event = pool.checkoutEvent(HttpRequestEvent.class);
+
+        pool.cleanupLockedEvents();
+        pool.releaseEvent(event);
+
+        assertEquals(1, pool.getForcedReleaseCount());
+        assertNotSame(event, pool.checkoutEvent(HttpRequestEvent.class));
+    }
+
+    @Test(expected = InvalidClassException.class)
+    public void given_non_event_class_expect_invalid_class_exception() throws Exception {
+        pool.checkoutEvent(String.class);
+    }
+}
@@ -0,0 +1,170 @@
+package org.barracudamvc.core.event;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class RedirectContextStoreTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("redirect").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void given_saved_context_expect_taken_only_once() {
+        DefaultRedirectContextStore store = new DefaultRedirectContextStore();
+        RedirectContext context = context("a", "1");
+        String id = store.save(context);
+
+        assertTrue(RedirectContext.isValidId(id));
+        assertSame(context, store.take(id));
+        assertNull(store.take(id));
+        assertNull(store.take("unknown"));
+    }
+
+    @Test
+    public void given_expired_context_expect_not_returned() throws Exception {
+        DefaultRedirectContextStore store = new DefaultRedirectContextStore(1, 100);
+        String id = store.save(context("a", "1"));
+        Thread.sleep(20);
+
+        assertNull(store.take(id));
+    }
+
+    @Test
+    public void given_more_contexts_than_max_expect_oldest_dropped() {
+        DefaultRedirectContextStore store = new DefaultRedirectContextStore(60000, 2);
+        String first = store.save(context("a", "1"));
+        String second = store.save(context("b", "2"));
+        String third = store.save(context("c", "3"));
+
+        assertEquals(2, store.size());
+        assertNull(store.take(first));
+        assertNotNull(store.take(second));
+        assertNotNull(store.take(third));
+    }
+
+    @Test
+    public void given_file_store_expect_context_read_back_and_file_removed() {
+        FileRedirectContextStore store = new FileRedirectContextStore(dir, 60000);
+        RedirectContext context = context("a", "1");
+        context.getLocal().put("count", 5);
+        String id = store.save(context);
+        assertEquals(1, dir.listFiles().length);
+
+        RedirectContext copy = store.take(id);
+        assertEquals("1", copy.getState().get("a"));
+        assertEquals(5, copy.getLocal().get("count"));
+        assertEquals(0, dir.listFiles().length);
+        assertNull(store.take(id));
+    }
+
+    @Test
+    public void given_file_store_expect_unserializable_values_left_out() {
+        FileRedirectContextStore store = new FileRedirectContextStore(dir, 60000);
+        RedirectContext context = context("a", "1");
+        context.getState().put("thread", new Object());
+        HashMap<String, Object> nested = new HashMap<>();
+        nested.put("x", new Object());
+        context.getState().put("nested", nested);
+
+        RedirectContext copy = store.take(store.save(context));
+        assertEquals(1, copy.getState().size());
+        assertEquals("1", copy.getState().get("a"));
+    }
+
+    @Test
+    public void given_file_store_expect_invalid_ids_rejected() {
+        FileRedirectContextStore store = new FileRedirectContextStore(dir, 60000);
+
+        assertNull(store.take("../" + dir.getName()));
+        assertNull(store.take(""));
+        assertNull(store.take(null));
+        assertTrue(dir.exists());
+    }
+
+    @Test
+    public void given_file_store_expect_classes_not_allowed_skipped() {
+        FileRedirectContextStore store = new FileRedirectContextStore(dir, 60000);
+        RedirectContext context = context("a", "1");
+        context.getState().put("payload", new Payload("x"));
+        context.getLocal().put("list", new ArrayList<>(Arrays.asList(1, 2L, "3")));
+
+        RedirectContext copy = store.take(store.save(context));
+        assertEquals(1, copy.getState().size());
+        assertEquals("1", copy.getState().get("a"));
+        assertEquals(Arrays.asList(1, 2L, "3"), copy.getLocal().get("list"));
+
+        store.allowClass(Payload.class);
+        copy = store.take(store.save(context));
+        assertEquals("x", ((Payload) copy.getState().get("payload")).name);
+    }
+
+    @Test
+    public void given_file_store_with_corrupt_length_expect_file_discarded() throws Exception {
+        FileRedirectContextStore store = new FileRedirectContextStore(dir, 60000);
+        String id = store.save(context("a", "1"));
+        File file = new File(dir, id + ".ctx");
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(1);
+            out.writeInt(1);
+            out.writeInt(Integer.MAX_VALUE);
+        }
+
+        assertNull(store.take(id));
+        assertEquals(0, dir.listFiles().length);
+    }
+
+    @Test
+    public void given_many_abandoned_contexts_expect_store_bounded() {
+        DefaultRedirectContextStore store = new DefaultRedirectContextStore(60000, 10);
+        for (int i = 0; i < 100; i++) {
+            store.save(context("a", "" + i));
+            store.take(store.save(context("b", "" + i)));
+        }
+
+        //the last save pushed out an abandoned context, then was taken itself
+        assertEquals(9, store.size());
+    }
+
+    static class Payload implements Serializable {
+
+        private static final long serialVersionUID = 1;
+        final String name;
+
+        Payload(String iname) {
+            name = iname;
+        }
+    }
+
+    private static RedirectContext context(String key, String value) {
+        Map<Object, Object> state = new HashMap<>();
+        state.put(key, value);
+        return new RedirectContext(state, null);
+    }
+}
@@ -0,0 +1,106 @@
+package org.barracudamvc.core.forms;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.barracudamvc.core.forms.validators.MaxLengthValidator;
+import org.barracudamvc.core.forms.validators.MinLengthValidator;
+import org.barracudamvc.core.forms.validators.NotNullValidator;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FormSchemaTest {
+
+    private static DefaultFormMap define(DefaultFormMap form) {
+        form.defineElement(new DefaultFormElement("name", FormType.STRING, null,
+                new And(new NotNullValidator(), new MinLengthValidator(2))));
+        form.defineElement(new DefaultFormElement("age", FormType.INTEGER, 18));
+        form.defineElement(new DefaultFormElement("tags", FormType.STRING, null, null, true));
+        return form;
+    }
+
+    private static Map<String, Object> params() {
+        Map<String, Object> params = new HashMap<>();
+        params.put("name", "Bob");
+        params.put("tags", new String[]{"a", "b"});
+        params.put("unknown", "x");
+        return params;
+    }
+
+    @Test
+    public void given_schema_form_expect_same_mapping_as_defined_form() {
+        FormSchema schema = FormSchema.compile(define(new DefaultFormMap()));
+        DefaultFormMap fromSchema = new DefaultFormMap(schema);
+        DefaultFormMap defined = define(new DefaultFormMap());
+
+        fromSchema.map(params());
+        defined.map(params());
+
+        assertEquals(3, schema.size());
+        for (String key : new String[]{"name", "age", "tags"}) {
+            assertEquals(key, defined.getVal(key), fromSchema.getVal(key));
+            assertEquals(key, defined.getElement(key).isValueSet(), fromSchema.getElement(key).isValueSet());
+        }
+        assertEquals(18, fromSchema.getVal("age"));
+        assertFalse(fromSchema.exists("unknown"));
+    }
+
+    @Test
+    public void given_schema_expect_new_elements_for_each_form() {
+        FormSchema schema = FormSchema.compile(define(new DefaultFormMap()));
+        DefaultFormMap form1 = new DefaultFormMap(schema);
+        DefaultFormMap form2 = new DefaultFormMap(schema);
+
+        form1.map(params());
+
+        assertNotSame(form1.getElement("name"), form2.getElement("name"));
+        assertSame(schema.getValidator(schema.indexOf("name")), form2.getElement("name").getValidator());
+        assertNull(form2.getVal("name"));
+        assertEquals(FormType.INTEGER, schema.getType(schema.indexOf("age")));
+    }
+
+    @Test
+    public void given_definition_change_expect_schema_recompiled() {
+        DefaultFormMap form = define(new DefaultFormMap());
+        FormSchema schema = form.getSchema();
+        assertSame(schema, form.getSchema());
+
+        form.defineElement(new DefaultFormElement("extra", FormType.STRING));
+        assertNotSame(schema, form.getSchema());
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("extra", "value");
+        form.map(params);
+        assertEquals("value", form.getVal("extra"));
+    }
+
+    @Test
+    public void given_added_validator_expect_schema_validator_untouched() {
+        FormSchema schema = FormSchema.compile(define(new DefaultFormMap()));
+        DefaultFormMap form = new DefaultFormMap(schema);
+        And shared = (And) schema.getValidator(schema.indexOf("name"));
+
+        form.defineElementValidator("name", new MaxLengthValidator(2));
+
+        assertEquals(2, shared.getSubValidators().length);
+        assertEquals(3, ((And) form.getElement("name").getValidator()).getSubValidators().length);
+    }
+
+    @Test
+    public void given_prefix_mapper_expect_prefixed_params_only() {
+        DefaultFormMap form = define(new DefaultFormMap("p_"));
+        Map<String, Object> params = new HashMap<>();
+        params.put("p_name", "Bob");
+        params.put("age", "44");
+        form.map(params);
+
+        assertEquals("Bob", form.getVal("name"));
+        assertTrue(form.getElement("name").isValueSet());
+        assertFalse(form.getElement("age").isValueSet());
+    }
+}
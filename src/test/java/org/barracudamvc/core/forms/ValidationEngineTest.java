@@ -0,0 +1,165 @@
+package org.barracudamvc.core.forms;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.barracudamvc.core.forms.validators.MaxLengthValidator;
+import org.barracudamvc.core.forms.validators.MinLengthValidator;
+import org.barracudamvc.core.forms.validators.NotNullValidator;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ValidationEngineTest {
+
+    static final ValidationEngine engine = new ValidationEngine(4, 16);
+
+    @AfterClass
+    public static void shutdown() {
+        engine.shutdown();
+    }
+
+    @Test
+    public void given_many_elements_expect_same_errors_in_same_order() {
+        List<String> sequential = errors(form(100, null));
+        List<String> concurrent = errors(form(100, engine));
+
+        assertEquals(sequential.size(), concurrent.size());
+        assertTrue(sequential.size() > 10);
+        assertEquals(sequential, concurrent);
+    }
+
+    @Test
+    public void given_valid_form_expect_no_exception() throws ValidationException {
+        DefaultFormMap form = form(50, engine);
+        Map<String, Object> values = new HashMap<>();
+        for (int i = 0; i < 50; i++) {
+            values.put(key(i), "valid");
+        }
+        form.map(values);
+        form.validate(true);
+    }
+
+    @Test
+    public void given_short_circuit_expect_first_and_failure_only() {
+        DefaultFormMap form = new DefaultFormMap();
+        form.defineElement(new DefaultFormElement("e", FormType.STRING, null,
+                new And(new MinLengthValidator(10), new MaxLengthValidator(1))));
+        form.setValidationEngine(engine);
+        Map<String, Object> values = new HashMap<>();
+        values.put("e", "abcde");
+        form.map(values);
+
+        assertEquals(1, errors(form).size());
+        engine.setShortCircuit(false);
+        try {
+            assertEquals(2, errors(form).size());
+        } finally {
+            engine.setShortCircuit(true);
+        }
+    }
+
+    @Test
+    public void given_or_and_not_expect_same_outcome_as_validators() {
+        DefaultFormMap form = new DefaultFormMap();
+        form.defineElement(new DefaultFormElement("or", FormType.STRING, null,
+                new Or(new MinLengthValidator(10), new MaxLengthValidator(3))));
+        form.defineElement(new DefaultFormElement("not", FormType.STRING, null,
+                new Not(new NotNullValidator())));
+        form.setValidationEngine(engine);
+        Map<String, Object> values = new HashMap<>();
+        values.put("or", "abc");
+        values.put("not", "abc");
+        form.map(values);
+
+        List<String> expected = errors(form(form, null));
+        assertEquals(1, expected.size());
+        assertEquals(expected, errors(form));
+    }
+
+    @Test
+    public void given_validation_expect_leaf_timings() {
+        engine.resetTimings();
+        engine.setShortCircuit(false);
+        try {
+            errors(form(20, engine));
+        } finally {
+            engine.setShortCircuit(true);
+        }
+
+        assertEquals(20, engine.getTimings().get(NotNullValidator.class.getName()).getCount());
+        assertEquals(20, engine.getTimings().get(MinLengthValidator.class.getName()).getCount());
+        assertNull(engine.getTimings().get(And.class.getName()));
+    }
+
+    @Test(timeout = 10000)
+    public void given_engine_shut_down_expect_validated_on_caller() {
+        ValidationEngine stopped = new ValidationEngine(2, 2);
+        stopped.shutdown();
+
+        assertEquals(errors(form(100, null)), errors(form(100, stopped)));
+    }
+
+    @Test(timeout = 10000)
+    public void given_full_pool_expect_rejected_elements_validated_on_caller() {
+        ValidationEngine small = new ValidationEngine(1, 1);
+        try {
+            assertEquals(errors(form(100, null)), errors(form(100, small)));
+        } finally {
+            small.shutdown();
+        }
+    }
+
+    private static DefaultFormMap form(DefaultFormMap form, ValidationEngine iengine) {
+        form.setValidationEngine(iengine);
+        return form;
+    }
+
+    private static DefaultFormMap form(int size, ValidationEngine iengine) {
+        DefaultFormMap form = new DefaultFormMap();
+        Map<String, Object> values = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            form.defineElement(new DefaultFormElement(key(i), FormType.STRING, null,
+                    new And(new NotNullValidator("missing " + i), new MinLengthValidator(3, "short " + i))));
+            if (i % 3 == 1) {
+                values.put(key(i), "ab");
+            } else if (i % 3 == 2) {
+                values.put(key(i), "abcdef");
+            }
+        }
+        form.map(values);
+        form.setValidationEngine(iengine);
+        return form;
+    }
+
+    private static String key(int i) {
+        return String.format("e%03d", i);
+    }
+
+    private static List<String> errors(DefaultFormMap form) {
+        try {
+            form.validate(true);
+            fail("expected errors");
+        } catch (ValidationException e) {
+            List<String> list = new ArrayList<>();
+            flatten(e, list);
+            return list;
+        }
+        return null;
+    }
+
+    private static void flatten(ValidationException e, List<String> list) {
+        if (e instanceof DeferredValidationException) {
+            for (ValidationException sub : (DeferredValidationException) e) {
+                flatten(sub, list);
+            }
+        } else {
+            list.add(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.barracudamvc.core.forms.parsers.formatProviders;
+
+import java.text.DateFormat;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DateParsePlanTest {
+
+    DateFormatProvider[] providers = new DateFormatProvider[]{
+        new SimpleDateFormatFactory("MM/dd/yy hh:mm a", true),
+        new YearFirstDateParser("yyyy-MM-dd"),
+        new SimpleDateFormatFactory("MMM dd, yyyy"),
+        new SimpleDateFormatFactory("yyyy.MM.dd 'at' HH:mm")
+    };
+
+    @Test
+    public void given_input_missing_separators_expect_format_skipped() {
+        DateParsePlan plan = new DateParsePlan(providers, Locale.US);
+
+        long slashes = DateParsePlan.shapeOf("4/19/23 12:00 AM");
+        long dashes = DateParsePlan.shapeOf("2013-01-21");
+
+        assertTrue(plan.mightParse(0, slashes));
+        assertFalse(plan.mightParse(1, slashes));
+        assertFalse(plan.mightParse(0, dashes));
+        assertTrue(plan.mightParse(1, dashes));
+    }
+
+    @Test
+    public void given_text_fields_expect_letters_required() {
+        DateParsePlan plan = new DateParsePlan(providers, Locale.US);
+
+        assertTrue(plan.mightParse(2, DateParsePlan.shapeOf("Jan 20, 1969")));
+        assertFalse(plan.mightParse(2, DateParsePlan.shapeOf("01 20, 1969")));
+        assertFalse(plan.mightParse(0, DateParsePlan.shapeOf("4/19/23 12:00")));
+    }
+
+    @Test
+    public void given_quoted_literal_expect_literal_required() {
+        DateParsePlan plan = new DateParsePlan(providers, Locale.US);
+
+        assertTrue(plan.mightParse(3, DateParsePlan.shapeOf("2013.01.21 at 10:30")));
+        assertFalse(plan.mightParse(3, DateParsePlan.shapeOf("2013.01.21 10:30")));
+    }
+
+    @Test
+    public void given_same_thread_expect_format_reused() throws Exception {
+        final DateParsePlan plan = new DateParsePlan(providers, Locale.US);
+        DateFormat mine = plan.getProvider(0).getDateFormat(Locale.US);
+        final AtomicReference<DateFormat> theirs = new AtomicReference<DateFormat>();
+
+        Thread other = new Thread() {
+            @Override
+            public void run() {
+                theirs.set(plan.getProvider(0).getDateFormat(Locale.US));
+            }
+        };
+        other.start();
+        other.join();
+
+        assertSame(mine, plan.getProvider(0).getDateFormat(Locale.US));
+        assertNotSame(mine, theirs.get());
+        assertNotSame(mine, plan.getProvider(0).getDateFormat(Locale.FRANCE));
+    }
+}
@@ -104,7 +104,7 @@ public class DefaultServletRequestWrapperTest {
         req = new MockHttpServletRequest((String) null);
         wrapper = new DefaultServletRequestWrapper(req);
         assertTrue("wrapper check 1a failed - param string not converted correctly", req.paramList.size() == 0);
-        assertTrue("wrapper check 1b failed - param string not converted correctly", wrapper.paramList == null);
+        assertTrue("wrapper check 1b failed - param string not converted correctly", wrapper.params == null);
         assertTrue("wrapper check 1b.1 failed - returned bad value", wrapper.getParameter("foo1") == null);
         assertTrue("wrapper check 1c.1 failed - returned non-empty enum", getSize(wrapper.getParameterNames()) == 0);
         assertTrue("wrapper check 1d.1 failed - returned non-null values", wrapper.getParameterValues("foo1") == null);
@@ -120,15 +120,15 @@ public class DefaultServletRequestWrapperTest {
         wrapper.removeAllParameters("foo99");
         assertTrue("wrapper check 1g.1 failed - returned bad value", wrapper.getParameter("foo99") == null);
         assertTrue("wrapper check 1g.2 failed - returned wrong length", wrapper.getParameterValues("foo99") == null);
-        assertTrue("wrapper check 1g failed - param list wrong size", wrapper.paramList != null);
+        assertTrue("wrapper check 1g failed - param list wrong size", wrapper.params != null);
         wrapper.resetParameters();
-        assertTrue("wrapper check 1h failed - param list wrong size", wrapper.paramList == null);
+        assertTrue("wrapper check 1h failed - param list wrong size", wrapper.params == null);
 
         //...unique param values
         req = new MockHttpServletRequest("foo1=blah1&foo2=blah2&foo3=blah3");
         wrapper = new DefaultServletRequestWrapper(req);
         assertTrue("wrapper check 2a.1 failed - param string not converted correctly", req.paramList.size() == 3);
-        assertTrue("wrapper check 2a.2 failed - param string not converted correctly", wrapper.paramList == null);
+        assertTrue("wrapper check 2a.2 failed - param string not converted correctly", wrapper.params == null);
         assertTrue("wrapper check 2b.1 failed - returned bad value", "blah1".equals(wrapper.getParameter("foo1")));
         assertTrue("wrapper check 2b.2 failed - returned bad value", "blah2".equals(wrapper.getParameter("foo2")));
         assertTrue("wrapper check 2b.3 failed - returned bad value", "blah3".equals(wrapper.getParameter("foo3")));
@@ -150,15 +150,15 @@ public class DefaultServletRequestWrapperTest {
         wrapper.removeAllParameters("foo99");
         assertTrue("wrapper check 2g.1 failed - returned bad value", wrapper.getParameter("foo99") == null);
         assertTrue("wrapper check 2g.2 failed - returned wrong length", wrapper.getParameterValues("foo99") == null);
-        assertTrue("wrapper check 2g failed - param list wrong size", wrapper.paramList != null);
+        assertTrue("wrapper check 2g failed - param list wrong size", wrapper.params != null);
         wrapper.resetParameters();
-        assertTrue("wrapper check 2h failed - param list wrong size", wrapper.paramList == null);
+        assertTrue("wrapper check 2h failed - param list wrong size", wrapper.params == null);
 
         //...duplicate param values
         req = new MockHttpServletRequest("foo1=blah1.a&foo2=blah2&foo3=blah3&foo1=blah1.b&foo1=blah1.c");
         wrapper = new DefaultServletRequestWrapper(req);
         assertTrue("wrapper check 3a.1 failed - param string not converted correctly", req.paramList.size() == 5);
-        assertTrue("wrapper check 3a.2 failed - param string not converted correctly", wrapper.paramList == null);
+        assertTrue("wrapper check 3a.2 failed - param string not converted correctly", wrapper.params == null);
         assertTrue("wrapper check 3b.1 failed - returned bad value", "blah1.a".equals(wrapper.getParameter("foo1")));
         assertTrue("wrapper check 3b.2 failed - returned bad value", "blah2".equals(wrapper.getParameter("foo2")));
         assertTrue("wrapper check 3b.3 failed - returned bad value", "blah3".equals(wrapper.getParameter("foo3")));
@@ -180,9 +180,9 @@ public class DefaultServletRequestWrapperTest {
         wrapper.removeAllParameters("foo99");
         assertTrue("wrapper check 3g.1 failed - returned bad value", wrapper.getParameter("foo99") == null);
         assertTrue("wrapper check 3g.2 failed - returned wrong length", wrapper.getParameterValues("foo99") == null);
-        assertTrue("wrapper check 3g failed - param list wrong size", wrapper.paramList != null);
+        assertTrue("wrapper check 3g failed - param list wrong size", wrapper.params != null);
         wrapper.resetParameters();
-        assertTrue("wrapper check 3h failed - param list wrong size", wrapper.paramList == null);
+        assertTrue("wrapper check 3h failed - param list wrong size", wrapper.params == null);
     }
 
     @Test
@@ -220,6 +220,43 @@ public class DefaultServletRequestWrapperTest {
         assertThat(wrapper.getParameter("_"), is("1524256475511"));
     }
 
+    @Test
+    public void givenManyParameters_expectOrderAndValuesKept() {
+        MockHttpServletRequest req = new MockHttpServletRequest("b=1&a=2&b=3");
+        DefaultServletRequestWrapper wrapper = new DefaultServletRequestWrapper(req);
+        for (int i = 0; i < 500; i++) {
+            wrapper.addParameter("field" + i, "v" + i);
+        }
+        wrapper.addParameter("a", "4");
+
+        assertThat(wrapper.getParameter("field250"), is("v250"));
+        assertThat(wrapper.getParameterValues("b"), is(new String[]{"1", "3"}));
+        assertThat(wrapper.getParameterValues("a"), is(new String[]{"2", "4"}));
+        Enumeration<?> names = wrapper.getParameterNames();
+        assertThat((String) names.nextElement(), is("b"));
+        assertThat((String) names.nextElement(), is("a"));
+        assertThat((String) names.nextElement(), is("field0"));
+        assertThat(wrapper.getInternalParamList().size(), is(504));
+
+        wrapper.removeParameter("b");
+        assertThat(wrapper.getParameter("b"), is("3"));
+        wrapper.removeParameter("b");
+        assertThat(wrapper.getParameterValues("b") == null, is(true));
+        assertThat(wrapper.getParameterMap().containsKey("b"), is(false));
+        assertThat(wrapper.getInternalParamList().size(), is(502));
+    }
+
+    @Test
+    public void givenEncodedQueryString_expectFallbackDecodesIt() {
+        MockHttpServletRequest req = new MockHttpServletRequest("name=Ren%C3%A9e+S&x=a%3Db");
+        DefaultServletRequestWrapper wrapper = new DefaultServletRequestWrapper(req);
+        req.paramList = null;
+
+        assertThat(wrapper.getParameter("name"), is("Ren\u00e9e S"));
+        assertThat(wrapper.getParameter("x"), is("a=b"));
+        assertThat(wrapper.getParameter("missing") == null, is(true));
+    }
+
     private int getSize(Enumeration enumer) {
         int cntr = 0;
         while (enumer.hasMoreElements()) {
@@ -6,14 +6,37 @@
  */
 package org.barracudamvc.core.helper.servlet;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
 import java.util.Enumeration;
+import java.util.List;
+import org.apache.commons.fileupload.FileItem;
+import org.apache.http.entity.mime.MultipartEntity;
+import org.apache.http.entity.mime.content.ByteArrayBody;
+import org.apache.http.entity.mime.content.StringBody;
+import org.barracudamvc.core.http.content.SpooledFileItem;
+import org.barracudamvc.core.http.content.StreamingMultipartParser;
+import org.barracudamvc.plankton.io.StreamUtils;
 import org.barracudamvc.testbed.servlet.MockHttpServletRequest;
 import org.barracudamvc.util.TestUtil;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 
 public class MultipartRequestWrapperTest {
 
+    private File spoolDir;
+
     public static void main(String args[]) {
         TestUtil.run(MultipartRequestWrapperTest.class);
     }
@@ -32,7 +55,7 @@ public class MultipartRequestWrapperTest {
 
         DefaultServletRequestWrapper wrapper = new MultipartRequestWrapper(req, 10000);
         assertTrue("wrapper check 3a.1 failed - param string not converted correctly", req.paramList.size() == 5);
-        assertTrue("wrapper check 3a.2 failed - param string not converted correctly", wrapper.paramList == null);
+        assertTrue("wrapper check 3a.2 failed - param string not converted correctly", wrapper.params == null);
         assertTrue("wrapper check 3b.1 failed - returned bad value [" + wrapper.getParameter("foo1") + "]", "blah1.a".equals(wrapper.getParameter("foo1")));
         assertTrue("wrapper check 3b.2 failed - returned bad value", "blah2".equals(wrapper.getParameter("foo2")));
         assertTrue("wrapper check 3b.3 failed - returned bad value", "blah3".equals(wrapper.getParameter("foo3")));
@@ -54,10 +77,92 @@ public class MultipartRequestWrapperTest {
         wrapper.removeAllParameters("foo99");
         assertTrue("wrapper check 3g.1 failed - returned bad value", wrapper.getParameter("foo99") == null);
         assertTrue("wrapper check 3g.2 failed - returned wrong length", wrapper.getParameterValues("foo99") == null);
-        assertTrue("wrapper check 3g failed - param list wrong size", wrapper.paramList != null);
+        assertTrue("wrapper check 3g failed - param list wrong size", wrapper.params != null);
         wrapper.resetParameters();
-        assertTrue("wrapper check 3h failed - param list wrong size", wrapper.paramList == null);
+        assertTrue("wrapper check 3h failed - param list wrong size", wrapper.params == null);
+
+    }
+
+    @Test
+    public void given_streaming_parser_expect_fields_indexed_and_files_spooled() throws Exception {
+        byte[] data = new byte[100000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        MultipartEntity entity = new MultipartEntity();
+        entity.addPart("foo1", new StringBody("blah1.a"));
+        entity.addPart("upload", new ByteArrayBody(data, "application/octet-stream", "data.bin"));
+        entity.addPart("foo1", new StringBody("blah1.b"));
+        entity.addPart("foo2", new StringBody("blah2"));
+
+        MultipartRequestWrapper wrapper = new MultipartRequestWrapper(multipartRequest(entity),
+                new StreamingMultipartParser().setRepository(spoolDir));
+        assertEquals("blah1.a", wrapper.getParameter("foo1"));
+        assertArrayEquals(new String[]{"blah1.a", "blah1.b"}, wrapper.getParameterValues("foo1"));
+        assertEquals("blah2", wrapper.getParameter("foo2"));
+        assertNull(wrapper.getParameter("upload"));
+        assertEquals(2, getSize(wrapper.getParameterNames()));
+        assertEquals(1, getSize(wrapper.getFileParameterNames()));
+
+        List<FileItem> items = wrapper.getFileItems("upload");
+        assertEquals(1, items.size());
+        SpooledFileItem item = (SpooledFileItem) items.get(0);
+        assertEquals("data.bin", item.getName());
+        assertEquals(data.length, item.getSize());
+        assertEquals(spoolDir, item.getStoreLocation().getParentFile());
+        try (InputStream in = item.getInputStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            StreamUtils.copy(in, out);
+            assertArrayEquals(data, out.toByteArray());
+        }
+        try (ReadableByteChannel ch = item.getChannel()) {
+            ByteBuffer buf = ByteBuffer.allocate(data.length);
+            while (buf.hasRemaining() && ch.read(buf) != -1) {
+            }
+            assertArrayEquals(data, buf.array());
+        }
+
+        File dest = new File(spoolDir, "moved.bin");
+        item.write(dest);
+        assertArrayEquals(data, Files.readAllBytes(dest.toPath()));
+        assertNull(item.getStoreLocation());
+        assertEquals(1, spoolDir.list().length);
+    }
+
+    @Test
+    public void given_size_limit_exceeded_expect_no_parts_and_spool_files_deleted() throws Exception {
+        MultipartEntity entity = new MultipartEntity();
+        entity.addPart("small", new ByteArrayBody(new byte[10], "application/octet-stream", "small.bin"));
+        entity.addPart("large", new ByteArrayBody(new byte[5000], "application/octet-stream", "large.bin"));
 
+        MultipartRequestWrapper wrapper = new MultipartRequestWrapper(multipartRequest(entity),
+                new StreamingMultipartParser().setRepository(spoolDir).setFileSizeMax(1000));
+        assertTrue(wrapper.isMultipart());
+        assertFalse(wrapper.getFileParameterNames().hasMoreElements());
+        assertEquals(0, spoolDir.list().length);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        spoolDir = Files.createTempDirectory("spool").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        for (File f : spoolDir.listFiles()) {
+            f.delete();
+        }
+        spoolDir.delete();
+    }
+
+    private static MockHttpServletRequest multipartRequest(MultipartEntity entity) throws Exception {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        entity.writeTo(body);
+        MockHttpServletRequest req = new MockHttpServletRequest();
+        req.setMethod("POST");
+        req.setHeader("Content-Type", entity.getContentType().getValue());
+        req.setInputStream(new ByteArrayInputStream(body.toByteArray()));
+        return req;
     }
 
     private int getSize(Enumeration enumer) {
@@ -0,0 +1,243 @@
+package org.barracudamvc.core.helper.servlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.zip.GZIPInputStream;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletResponse;
+import org.barracudamvc.plankton.io.StreamUtils;
+import org.barracudamvc.testbed.servlet.MockHttpServletRequest;
+import org.barracudamvc.testbed.servlet.MockHttpServletResponse;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ResourceGatewayTest {
+
+    private File root;
+    private ClassLoader oldLoader;
+    private int oldMaxCached;
+    private ResourceGateway gateway;
+    private ServletContext context;
+    private byte[] script;
+
+    @Before
+    public void setUp() throws Exception {
+        root = Files.createTempDirectory("resources").toFile();
+        new File(root, ResourceGateway.EXT_RESOURCE_ID).mkdir();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            sb.append("function f").append(i).append("() { return ").append(i).append("; }\n");
+        }
+        script = sb.toString().getBytes("UTF-8");
+        Files.write(new File(root, ResourceGateway.EXT_RESOURCE_ID + "/test.js").toPath(), script);
+
+        oldLoader = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(new URLClassLoader(new URL[]{root.toURI().toURL()}, null));
+        oldMaxCached = ResourceGateway.MAX_CACHED_RESOURCE_SIZE;
+
+        context = mockContext();
+        gateway = new ResourceGateway() {
+            private static final long serialVersionUID = 1;
+
+            @Override
+            public ServletContext getServletContext() {
+                return context;
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        Thread.currentThread().setContextClassLoader(oldLoader);
+        ResourceGateway.MAX_CACHED_RESOURCE_SIZE = oldMaxCached;
+        for (File f : new File(root, ResourceGateway.EXT_RESOURCE_ID).listFiles()) {
+            f.delete();
+        }
+        new File(root, ResourceGateway.EXT_RESOURCE_ID).delete();
+        root.delete();
+    }
+
+    @Test
+    public void given_matching_etag_expect_not_modified() throws Exception {
+        MockHttpServletResponse resp = get("/test.js", null);
+        assertEquals(HttpServletResponse.SC_OK, resp.getStatus());
+        assertArrayEquals(script, resp.getContentsAsBtyeArray());
+        String etag = resp.getHeader("ETag");
+        assertTrue(etag.startsWith("\"") && etag.endsWith("\""));
+
+        MockHttpServletRequest req = request("/test.js");
+        req.setHeader("If-None-Match", "\"other\", " + etag);
+        resp = serve(req);
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, resp.getStatus());
+        assertEquals(0, resp.getContentsAsBtyeArray().length);
+    }
+
+    @Test
+    public void given_gzip_accepted_expect_precompressed_variant() throws Exception {
+        MockHttpServletResponse plain = get("/test.js", null);
+        MockHttpServletResponse resp = get("/test.js", "gzip, deflate");
+        assertEquals("gzip", resp.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", resp.getHeader("Vary"));
+        assertTrue(!plain.getHeader("ETag").equals(resp.getHeader("ETag")));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StreamUtils.copy(new GZIPInputStream(new ByteArrayInputStream(resp.getContentsAsBtyeArray())), out);
+        assertArrayEquals(script, out.toByteArray());
+
+        resp = get("/test.js", "gzip;q=0");
+        assertNull(resp.getHeader("Content-Encoding"));
+    }
+
+    @Test
+    public void given_range_expect_partial_content() throws Exception {
+        MockHttpServletRequest req = request("/test.js");
+        req.setHeader("Range", "bytes=10-19");
+        req.setHeader("Accept-Encoding", "gzip");
+        MockHttpServletResponse resp = serve(req);
+        assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, resp.getStatus());
+        assertEquals("bytes 10-19/" + script.length, resp.getHeader("Content-Range"));
+        assertNull(resp.getHeader("Content-Encoding"));
+        assertEquals(new String(script, 10, 10, "UTF-8"), new String(resp.getContentsAsBtyeArray(), "UTF-8"));
+
+        req = request("/test.js");
+        req.setHeader("Range", "bytes=-5");
+        resp = serve(req);
+        assertEquals(new String(script, script.length - 5, 5, "UTF-8"), new String(resp.getContentsAsBtyeArray(), "UTF-8"));
+
+        req = request("/test.js");
+        req.setHeader("Range", "bytes=" + script.length + "-");
+        resp = serve(req);
+        assertEquals(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, resp.getStatus());
+
+        req = request("/test.js");
+        req.setHeader("Range", "bytes=10-19");
+        req.setHeader("If-Range", "\"stale\"");
+        resp = serve(req);
+        assertEquals(HttpServletResponse.SC_OK, resp.getStatus());
+        assertArrayEquals(script, resp.getContentsAsBtyeArray());
+    }
+
+    @Test
+    public void given_large_file_expect_transferred_from_file() throws Exception {
+        ResourceGateway.MAX_CACHED_RESOURCE_SIZE = 100;
+        MockHttpServletRequest req = request("/test.js");
+        req.setHeader("Range", "bytes=100-");
+        MockHttpServletResponse resp = serve(req);
+        assertEquals(new String(script, 100, script.length - 100, "UTF-8"), new String(resp.getContentsAsBtyeArray(), "UTF-8"));
+
+        ResourceGateway.LocalResource lr = (ResourceGateway.LocalResource) ResourceGateway.CACHE.getCache(context)
+                .get(ResourceGateway.EXT_RESOURCE_ID + "/test.js");
+        assertNotNull(lr.file);
+        assertNull(lr.contentData);
+        assertTrue(ResourceGateway.CACHE.getCache(context).getSize() < 1000);
+    }
+
+    @Test
+    public void given_large_resource_in_jar_expect_cached() throws Exception {
+        File jar = new File(root, ResourceGateway.EXT_RESOURCE_ID + "/lib.jar");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            out.putNextEntry(new JarEntry(ResourceGateway.EXT_RESOURCE_ID + "/jarred.js"));
+            out.write(script);
+        }
+        Thread.currentThread().setContextClassLoader(new URLClassLoader(new URL[]{jar.toURI().toURL()}, null));
+        ResourceGateway.MAX_CACHED_RESOURCE_SIZE = 100;
+        String name = ResourceGateway.EXT_RESOURCE_ID + "/jarred.js";
+
+        assertArrayEquals(script, get("/jarred.js", null).getContentsAsBtyeArray());
+        Object first = ResourceGateway.CACHE.getCache(context).get(name);
+        assertArrayEquals(script, get("/jarred.js", null).getContentsAsBtyeArray());
+
+        assertNotNull(((ResourceGateway.LocalResource) first).contentData);
+        assertSame(first, ResourceGateway.CACHE.getCache(context).get(name));
+    }
+
+    @Test
+    public void given_cache_over_budget_expect_least_recently_used_evicted() {
+        ResourceCache cache = new ResourceCache(100);
+        cache.put("a", "a", 40);
+        cache.put("b", "b", 40);
+        cache.get("a");
+        cache.put("c", "c", 40);
+        assertNull(cache.get("b"));
+        assertEquals("a", cache.get("a"));
+        assertEquals(80, cache.getSize());
+        cache.put("d", "d", 101);
+        assertNull(cache.get("d"));
+        assertEquals(2, cache.getCount());
+    }
+
+    @Test
+    public void given_missing_resource_expect_not_found() throws Exception {
+        assertEquals(HttpServletResponse.SC_NOT_FOUND, get("/missing.js", null).getStatus());
+    }
+
+    @Test
+    public void given_many_missing_names_expect_kept_out_of_resource_cache() throws Exception {
+        get("/test.js", null);
+        for (int i = 0; i < ResourceGateway.NOT_FOUND_CACHE_SIZE * 2; i++) {
+            assertEquals(HttpServletResponse.SC_NOT_FOUND, get("/missing" + i + ".js", null).getStatus());
+        }
+        assertEquals(HttpServletResponse.SC_NOT_FOUND, get("/missing0.js", null).getStatus());
+
+        assertEquals(1, ResourceGateway.CACHE.getCache(context).getCount());
+        assertTrue(ResourceGateway.CACHE.getNotFoundCache(context).size() <= ResourceGateway.NOT_FOUND_CACHE_SIZE);
+    }
+
+    private MockHttpServletResponse get(String path, String acceptEncoding) throws Exception {
+        MockHttpServletRequest req = request(path);
+        if (acceptEncoding != null) {
+            req.setHeader("Accept-Encoding", acceptEncoding);
+        }
+        return serve(req);
+    }
+
+    private MockHttpServletResponse serve(MockHttpServletRequest req) throws Exception {
+        MockHttpServletResponse resp = new MockHttpServletResponse();
+        gateway.handleDefault(req, resp);
+        return resp;
+    }
+
+    private static MockHttpServletRequest request(String path) {
+        MockHttpServletRequest req = new MockHttpServletRequest();
+        req.setPathInfo(path);
+        return req;
+    }
+
+    private static ServletContext mockContext() {
+        final Map<String, Object> attributes = new HashMap<>();
+        return (ServletContext) Proxy.newProxyInstance(ServletContext.class.getClassLoader(), new Class<?>[]{ServletContext.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                switch (method.getName()) {
+                    case "getMimeType":
+                        return ((String) args[0]).endsWith(".js") ? "application/javascript" : null;
+                    case "getAttribute":
+                        return attributes.get((String) args[0]);
+                    case "setAttribute":
+                        attributes.put((String) args[0], args[1]);
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            }
+        });
+    }
+}
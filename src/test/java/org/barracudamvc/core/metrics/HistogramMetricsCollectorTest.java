@@ -0,0 +1,96 @@
+package org.barracudamvc.core.metrics;
+
+import java.net.URL;
+import java.nio.charset.Charset;
+import org.barracudamvc.testbed.servlet.MockHttpServletRequest;
+import org.barracudamvc.testbed.servlet.MockHttpServletResponse;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class HistogramMetricsCollectorTest {
+
+    @After
+    public void tearDown() {
+        Metrics.setCollector(null);
+    }
+
+    @Test
+    public void given_values_expect_exact_count_min_max_and_bucketed_percentiles() {
+        Histogram h = new Histogram();
+        for (int i = 1; i <= 100; i++) {
+            h.record(i);
+        }
+
+        HistogramSnapshot s = h.snapshot();
+
+        assertEquals(100, s.getCount());
+        assertEquals(5050, s.getTotal());
+        assertEquals(1, s.getMin());
+        assertEquals(100, s.getMax());
+        assertEquals(50.5, s.getMean(), 0.001);
+        assertEquals(63, s.getP50());
+        assertEquals(100, s.getP99());
+    }
+
+    @Test
+    public void given_empty_histogram_expect_zero_snapshot() {
+        HistogramSnapshot s = new Histogram().snapshot();
+
+        assertEquals(0, s.getCount());
+        assertEquals(0, s.getMax());
+    }
+
+    @Test
+    public void given_counters_expect_pool_hit_rate() {
+        HistogramMetricsCollector collector = new HistogramMetricsCollector();
+        assertTrue(Double.isNaN(collector.getPoolHitRate()));
+
+        collector.increment(Metrics.POOL_HIT, 3);
+        collector.increment(Metrics.POOL_MISS, 1);
+
+        assertEquals(0.75, collector.getPoolHitRate(), 0.0001);
+        assertEquals(Long.valueOf(3), collector.getCounters().get(Metrics.POOL_HIT));
+        collector.reset();
+        assertTrue(collector.getCounters().isEmpty());
+    }
+
+    @Test
+    public void given_null_collector_expect_no_op_installed() {
+        Metrics.setCollector(null);
+
+        assertSame(NoOpMetricsCollector.INSTANCE, Metrics.getCollector());
+        assertFalse(Metrics.getCollector().isEnabled());
+    }
+
+    @Test
+    public void given_servlet_expect_collector_installed_and_reported() throws Exception {
+        MetricsServlet servlet = new MetricsServlet() {
+            private static final long serialVersionUID = 1;
+
+            @Override
+            public String getInitParameter(String name) {
+                return null;
+            }
+        };
+        servlet.init();
+        Metrics.getCollector().recordTime(Metrics.PHASE_RENDER, 1500);
+
+        MockHttpServletResponse text = new MockHttpServletResponse();
+        servlet.doGet(new MockHttpServletRequest(new URL("http://localhost/metrics")), text);
+        MockHttpServletResponse json = new MockHttpServletResponse();
+        servlet.doGet(new MockHttpServletRequest("format=json", new URL("http://localhost/metrics")), json);
+
+        assertTrue(Metrics.getCollector() instanceof HistogramMetricsCollector);
+        assertTrue(toString(text).startsWith("phase.render count:1 "));
+        assertTrue(toString(json), toString(json).startsWith("{\"histograms\":{\"phase.render\":{\"count\":1,\"mean\":1500.0,"));
+    }
+
+    private static String toString(MockHttpServletResponse response) {
+        return new String(response.getContentsAsBtyeArray(), Charset.defaultCharset());
+    }
+}
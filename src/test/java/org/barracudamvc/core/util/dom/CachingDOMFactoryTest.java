@@ -0,0 +1,153 @@
+package org.barracudamvc.core.util.dom;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.enhydra.xml.xmlc.XMLCRuntimeException;
+import org.enhydra.xml.xmlc.deferredparsing.DocumentLoader;
+import org.enhydra.xml.xmlc.deferredparsing.ResourceLoader;
+import org.enhydra.xml.xmlc.deferredparsing.XMLCDeferredParsingFactory;
+import org.enhydra.xml.xmlc.dom.XMLCDomFactory;
+import org.enhydra.xml.xmlc.dom.XMLCDomFactoryCache;
+import org.enhydra.xml.xmlc.dom.xerces.XercesHTMLDomFactory;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CachingDOMFactoryTest {
+
+    CountingFactory delegate = new CountingFactory();
+    CachingDOMFactory factory = new CachingDOMFactory(delegate);
+
+    @Test
+    public void given_repeat_requests_expect_single_load_and_distinct_clones() throws IOException {
+        Document doc1 = factory.getInstance(String.class);
+        Document doc2 = factory.getInstance(String.class);
+
+        assertEquals(1, delegate.loads);
+        assertNotSame(doc1, doc2);
+        assertEquals("HTML", doc2.getDocumentElement().getTagName());
+        assertEquals(1, factory.getHitCount());
+        assertEquals(1, factory.getMissCount());
+        assertEquals(0.5, factory.getHitRate(), 0.0001);
+    }
+
+    @Test
+    public void given_clone_modified_expect_prototype_untouched() throws IOException {
+        Document doc1 = factory.getInstance("page.html");
+        doc1.getDocumentElement().appendChild(doc1.createElement("P"));
+
+        Document doc2 = factory.getInstance("page.html");
+
+        assertEquals(0, doc2.getDocumentElement().getElementsByTagName("P").getLength());
+    }
+
+    @Test
+    public void given_more_templates_than_max_entries_expect_lru_evicted() throws IOException {
+        factory.setMaxEntries(2);
+
+        factory.getInstance(String.class);
+        factory.getInstance(Integer.class);
+        factory.getInstance(String.class);
+        factory.getInstance(Long.class);
+        factory.getInstance(String.class);
+        factory.getInstance(Integer.class);
+
+        assertEquals(2, factory.size());
+        assertEquals(2, factory.getEvictionCount());
+        assertEquals(4, delegate.loads);
+    }
+
+    @Test
+    public void given_xmlc_template_clone_modified_expect_prototype_untouched() throws IOException {
+        //CloneTestHTML was generated by the XMLC compiler from CloneTest.xhtml
+        CachingDOMFactory xmlcFactory = new CachingDOMFactory(new DOMFactory() {
+            @Override
+            public Document getInstance(Class<?> clazz) throws IOException {
+                return new CloneTestHTML(new TemplateLoader());
+            }
+
+            @Override
+            public Document getInstance(String docPath) throws IOException {
+                throw new IOException("Unsupported");
+            }
+        });
+
+        Document doc1 = xmlcFactory.getInstance(CloneTestHTML.class);
+        assertSame(CloneTestHTML.class, doc1.getClass());
+        Element message = (Element) doc1.getElementsByTagName("p").item(0);
+        message.getFirstChild().setNodeValue("Changed");
+        message.setAttribute("class", "changed");
+        Element row = (Element) doc1.getElementsByTagName("tr").item(0);
+        row.getParentNode().appendChild(row.cloneNode(true));
+
+        Document doc2 = xmlcFactory.getInstance(CloneTestHTML.class);
+
+        assertNotSame(doc1, doc2);
+        assertSame(CloneTestHTML.class, doc2.getClass());
+        assertTrue(((CloneTestHTML) doc2).getDocument() != ((CloneTestHTML) doc1).getDocument());
+        message = (Element) doc2.getElementsByTagName("p").item(0);
+        assertEquals("Hello", message.getTextContent());
+        assertEquals("", message.getAttribute("class"));
+        assertEquals(1, doc2.getElementsByTagName("tr").getLength());
+        assertEquals(1, xmlcFactory.getHitCount());
+        assertEquals(1, xmlcFactory.getMissCount());
+    }
+
+    /**
+     * Loads an XMLC template's source straight from the classpath (what
+     * XMLC's own loader does, without its metadata and reparsing support)
+     */
+    static class TemplateLoader implements DocumentLoader {
+
+        @Override
+        public void init(XMLCDeferredParsingFactory factory) {
+        }
+
+        @Override
+        public ResourceLoader getResourceLoader() {
+            return null;
+        }
+
+        @Override
+        @SuppressWarnings("rawtypes") //the interface takes a raw Class
+        public Document getDocument(Class clazz) throws XMLCRuntimeException {
+            try (InputStream in = clazz.getClassLoader().getResourceAsStream("org/barracudamvc/core/util/dom/CloneTest.xhtml")) {
+                return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(in);
+            } catch (Exception e) {
+                throw new XMLCRuntimeException(e);
+            }
+        }
+    }
+
+    static class CountingFactory implements DOMFactory {
+
+        int loads = 0;
+
+        @Override
+        public Document getInstance(Class<?> clazz) throws IOException {
+            return create();
+        }
+
+        @Override
+        public Document getInstance(String docPath) throws IOException {
+            return create();
+        }
+
+        private Document create() {
+            loads++;
+            XMLCDomFactory domFactory = XMLCDomFactoryCache.getFactory(XercesHTMLDomFactory.class);
+            Document doc = domFactory.createDocument(null, "HTML", null);
+            Element body = doc.createElement("BODY");
+            doc.getDocumentElement().appendChild(body);
+            return doc;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ ************************************
+ * XMLC GENERATED CODE, DO NOT EDIT *
+ ************************************
+ */
+package org.barracudamvc.core.util.dom;
+
+import org.enhydra.xml.xmlc.deferredparsing.DocumentLoader;
+import org.enhydra.xml.xmlc.deferredparsing.StandardDocumentLoader;
+import org.w3c.dom.*;
+
+/**
+ * XMLC Document class, generated from
+ * CloneTest.xhtml
+ */
+@SuppressWarnings({"rawtypes", "deprecation"}) //added after generation, to keep the build free of lint warnings
+public class CloneTestHTML extends org.enhydra.xml.xmlc.XMLObjectImpl implements org.enhydra.xml.xmlc.XMLObject {
+    /**
+     * Field that is used to identify this as the XMLC generated class
+     * in an inheritance chain. Contains a reference to the class object.
+     */
+    public static final Class XMLC_GENERATED_CLASS = CloneTestHTML.class;
+
+    /**
+     * Field containing CLASSPATH relative name of the source file
+     * that this class can be regenerated from.
+     */
+    public static final String XMLC_SOURCE_FILE = "org/barracudamvc/core/util/dom/CloneTest.xhtml";
+
+    /**
+     * XMLC DOM factory associated with this class.
+     */
+    private static final org.enhydra.xml.xmlc.dom.XMLCDomFactory fDOMFactory = org.enhydra.xml.xmlc.dom.XMLCDomFactoryCache.getFactory(org.enhydra.xml.xmlc.dom.xerces.XercesDomFactory.class);
+
+    /**
+     * Document loader for deferred parsing.
+     */
+    private final DocumentLoader fDocumentLoader;
+
+    /**
+     * Default constructor.
+     */
+    public CloneTestHTML() {
+        this(StandardDocumentLoader.getInstance());
+        buildDocument();
+    }
+
+    /**
+     * Constructor with optional building of the DOM.
+     */
+    public CloneTestHTML(boolean buildDOM) {
+        this(StandardDocumentLoader.getInstance(), buildDOM);
+    }
+
+    /**
+     * Copy constructor.
+     */
+    public CloneTestHTML(CloneTestHTML src) {
+        fDocumentLoader = src.getDocumentLoader();
+        setDocument((Document)src.getDocument().cloneNode(true), src.getMIMEType(), src.getEncoding());
+        syncAccessMethods();
+    }
+
+    /**
+     * Constructor for deferred parsing support.
+     * The supplied document loader is used to
+     * create the DOM.
+     */
+    public CloneTestHTML(DocumentLoader loader,
+                         boolean buildDOM) {
+        fDocumentLoader = loader;
+        if (buildDOM) {
+            buildDocument();
+        }
+    }
+
+    /**
+     * Constructor for deferred parsing support.
+     * The supplied document loader is used to
+     * create the DOM.
+     */
+    public CloneTestHTML(DocumentLoader loader) {
+        this(loader, true);
+    }
+
+    /**
+     * Create document as a DOM and initialize accessor method fields.
+     */
+    public void buildDocument() {
+        setDocument(getDocumentLoader().getDocument(getClass()), "text/xml", "UTF-8");
+        syncAccessMethods();
+    }
+
+    /**
+     * Clone the document.
+     */
+    public Node cloneNode(boolean deep) {
+        cloneDeepCheck(deep);
+        return new CloneTestHTML(this);
+    }
+
+    /**
+     * Get the document loader associated with the class.
+     */
+    protected final DocumentLoader getDocumentLoader() {
+        return fDocumentLoader;
+    }
+
+    /**
+     * Get the XMLC DOM factory associated with the class.
+     */
+    protected final org.enhydra.xml.xmlc.dom.XMLCDomFactory getDomFactory() {
+        return fDOMFactory;
+    }
+
+    /**
+     * Called to set access method fields from the DOM.
+     * Missing Ids have fields set to null.
+     */
+    protected void syncWithDocument(Node node) {
+        if (node.getNodeType() != Node.DOCUMENT_NODE) {
+            throw new org.enhydra.xml.xmlc.XMLCRuntimeException("Node must be a document node");
+        }
+        Document doc = (Document) node;
+        try {
+            java.lang.reflect.Field[] fs = this.getClass().getDeclaredFields();
+            int substStart = "$element_".length();
+            for (int i = 0; i < fs.length; i++) {
+                java.lang.reflect.Field f = fs[i];
+                if (!f.getName().startsWith("$element_")) continue;
+                String id = f.getName().substring(substStart);
+                Node idNode = doc.getElementById(id);
+                if (idNode == null) {
+                    id = id.substring(0, 1).toLowerCase() + id.substring(1);
+                    idNode = doc.getElementById(id);
+                }
+                if (idNode != null) f.set(this, idNode);
+            }
+        } catch (Exception e) {
+            throw new org.enhydra.xml.xmlc.XMLCRuntimeException("Error reflecting on element access fields", e);
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+package org.barracudamvc.core.util.dom;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.After;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DefaultDOMLoaderTest {
+
+    DefaultDOMLoader loader = DefaultDOMLoader.getGlobalInstance();
+    RecordingFactory factory = new RecordingFactory();
+
+    @After
+    public void cleanup() {
+        loader.deregisterDOMFactory(Page.class.getName());
+        loader.deregisterDOMFactory(Page_fr.class.getName());
+    }
+
+    @Test
+    public void given_missing_locale_variant_expect_base_class() throws IOException {
+        loader.registerDOMFactory(factory, Page.class.getName());
+
+        loader.getDOM(Page.class, new Locale("de", "DE"));
+        loader.getDOM(Page.class, new Locale("de", "DE"));
+
+        assertEquals(2, factory.loaded.size());
+        assertSame(Page.class, factory.loaded.get(0));
+        assertSame(Page.class, factory.loaded.get(1));
+    }
+
+    @Test
+    public void given_locale_variant_expect_variant_class() throws IOException {
+        loader.registerDOMFactory(factory, Page_fr.class.getName());
+
+        loader.getDOM(Page.class, Locale.FRANCE);
+
+        assertSame(Page_fr.class, factory.loaded.get(0));
+    }
+
+    @Test
+    public void given_missing_class_expect_negative_lookup_remembered() {
+        String name = Page.class.getName() + "_xx";
+
+        assertNull(loader.lookupClass(name));
+        assertTrue(loader.classmap.containsKey(name));
+        assertNull(loader.lookupClass(name));
+    }
+
+    @Test
+    public void given_many_client_locales_expect_lookups_bounded() throws IOException {
+        loader.registerDOMFactory(factory, Page.class.getName());
+
+        for (int i = 0; i < DefaultDOMLoader.MAX_RESOLUTIONS + 500; i++) {
+            loader.getDOM(Page.class, new Locale("x" + i));
+        }
+
+        assertTrue(loader.resolutions.size() <= DefaultDOMLoader.MAX_RESOLUTIONS);
+        assertTrue(loader.classmap.size() <= DefaultDOMLoader.MAX_CLASS_LOOKUPS);
+        assertSame(Page.class, factory.loaded.get(factory.loaded.size() - 1));
+    }
+
+    @Test(expected = IOException.class)
+    public void given_unknown_class_name_expect_exception() throws IOException {
+        loader.getDOM((Class) null);
+    }
+
+    public static class Page {
+    }
+
+    public static class Page_fr {
+    }
+
+    static class RecordingFactory implements DOMFactory {
+
+        final List<Class<?>> loaded = new ArrayList<Class<?>>();
+
+        @Override
+        public Document getInstance(Class<?> clazz) throws IOException {
+            loaded.add(clazz);
+            return null;
+        }
+
+        @Override
+        public Document getInstance(String docPath) throws IOException {
+            throw new IOException("Unsupported");
+        }
+    }
+}
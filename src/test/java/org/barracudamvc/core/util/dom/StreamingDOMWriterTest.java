@@ -0,0 +1,145 @@
+package org.barracudamvc.core.util.dom;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Collections;
+
+import org.barracudamvc.testbed.servlet.MockHttpServletResponse;
+import org.enhydra.xml.io.OutputOptions;
+import org.enhydra.xml.xmlc.dom.XMLCDomFactory;
+import org.enhydra.xml.xmlc.dom.XMLCDomFactoryCache;
+import org.enhydra.xml.xmlc.dom.xerces.XercesHTMLDomFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StreamingDOMWriterTest {
+
+    Document document;
+    Element head;
+    Element body;
+
+    @Before
+    public void setup() {
+        XMLCDomFactory factory = XMLCDomFactoryCache.getFactory(XercesHTMLDomFactory.class);
+        document = factory.createDocument(null, "HTML", null);
+        Element html = document.getDocumentElement();
+        while (html.hasChildNodes()) {
+            html.removeChild(html.getFirstChild());
+        }
+
+        head = document.createElement("HEAD");
+        Element title = document.createElement("TITLE");
+        title.appendChild(document.createTextNode("Streaming"));
+        head.appendChild(title);
+        html.appendChild(head);
+
+        body = document.createElement("BODY");
+        body.setAttribute("class", "report");
+        for (int i = 0; i < 3; i++) {
+            Element p = document.createElement("P");
+            p.setAttribute("title", "row " + i + " & \"more\"");
+            p.appendChild(document.createTextNode("a < b & c"));
+            p.appendChild(document.createElement("BR"));
+            body.appendChild(p);
+        }
+        html.appendChild(body);
+    }
+
+    private OutputOptions outputOptions() {
+        OutputOptions oo = DefaultDOMWriter.getDefaultOutputOptions(document);
+        oo.setEncoding("UTF-8");
+        return oo;
+    }
+
+    @Test
+    public void given_html_document_expect_same_output_as_default_writer() throws IOException {
+        StringWriter expected = new StringWriter();
+        new DefaultDOMWriter(outputOptions()).write(document, expected);
+
+        StringWriter actual = new StringWriter();
+        new StreamingDOMWriter(outputOptions()).write(document, actual);
+
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    @Test
+    public void given_release_written_nodes_expect_body_emptied() throws IOException {
+        StringWriter expected = new StringWriter();
+        new DefaultDOMWriter(outputOptions()).write(document, expected);
+
+        StringWriter actual = new StringWriter();
+        StreamingDOMWriter writer = new StreamingDOMWriter(outputOptions());
+        writer.setReleaseWrittenNodes(true);
+        writer.write(document, actual);
+
+        assertEquals(expected.toString(), actual.toString());
+        assertFalse(body.hasChildNodes());
+    }
+
+    @Test
+    public void given_attribute_values_expect_escaped_start_tag() throws IOException {
+        StringWriter out = new StringWriter();
+        Element a = document.createElement("A");
+        a.setAttribute("href", "x?a=1&b=\"2\"");
+
+        StreamingDOMWriter.writeStartTag(a, out);
+        StreamingDOMWriter.writeEndTag(a, out, true);
+        StreamingDOMWriter.writeEndTag(document.createElement("BR"), out, true);
+
+        assertEquals("<A href=\"x?a=1&amp;b=&quot;2&quot;\"></A>", out.toString());
+        assertTrue(out.toString().indexOf("BR") < 0);
+    }
+
+    @Test
+    public void given_write_head_early_expect_head_sent_before_body_rendered() throws IOException {
+        MockHttpServletResponse resp = new MockHttpServletResponse();
+        StreamingDOMWriter writer = new StreamingDOMWriter(outputOptions());
+        writer.setWriteHeadEarly(true);
+
+        assertTrue(writer.writeHead(document, resp, Collections.singletonList(body)));
+        String early = new String(resp.getContentsAsBtyeArray(), "UTF-8");
+        assertTrue(early.endsWith("</HEAD>"));
+        assertTrue(early.indexOf("BODY") < 0);
+
+        //render the body after the head has gone out
+        Element p = document.createElement("P");
+        p.appendChild(document.createTextNode("rendered"));
+        body.appendChild(p);
+        StringWriter expected = new StringWriter();
+        new DefaultDOMWriter(outputOptions()).write(document, expected);
+
+        writer.write(document, resp);
+        assertEquals(expected.toString(), new String(resp.getContentsAsBtyeArray(), "UTF-8"));
+        assertFalse(writer.hasWrittenHead(document));
+    }
+
+    @Test
+    public void given_component_bound_in_head_expect_nothing_written_early() throws IOException {
+        MockHttpServletResponse resp = new MockHttpServletResponse();
+        StreamingDOMWriter writer = new StreamingDOMWriter(outputOptions());
+        writer.setWriteHeadEarly(true);
+
+        assertFalse(writer.writeHead(document, resp, Collections.singletonList(head.getFirstChild())));
+        assertFalse(writer.writeHead(document, resp, Collections.singletonList(document.getDocumentElement())));
+        assertEquals(0, resp.getContentsAsBtyeArray().length);
+
+        writer.setWriteHeadEarly(false);
+        assertFalse(writer.writeHead(document, resp, Collections.singletonList(body)));
+        assertEquals(0, resp.getContentsAsBtyeArray().length);
+    }
+
+    @Test
+    public void given_unknown_tag_expect_end_tag_written() throws IOException {
+        StringWriter out = new StringWriter();
+        StreamingDOMWriter.writeEndTag(document.createElement("CUSTOM"), out, true);
+        StreamingDOMWriter.writeEndTag(document.createElement("TD"), out, true);
+
+        assertEquals("</CUSTOM></TD>", out.toString());
+    }
+}
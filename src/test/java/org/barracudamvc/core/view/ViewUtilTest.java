@@ -25,6 +25,8 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.Enumeration;
 import org.barracudamvc.testbed.servlet.MockHttpServletRequest;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import org.junit.Test;
 
@@ -89,6 +91,46 @@ public class ViewUtilTest {
         assertTrue("returned '" + ct + "' instead of '" + ctTarget + "' for user-agent='" + uas, ct == ctTarget);
     }
 
+    @Test
+    public void given_same_headers_expect_cached_capabilities() {
+        String uas = "Mozilla/4.0 (compatible; MSIE 6.0; Windows NT 5.1)";
+        ViewUtil.Capabilities first = ViewUtil.getCapabilities(request(null, uas, "text/html"));
+        ViewUtil.Capabilities second = ViewUtil.getCapabilities(request(null, uas, "text/html"));
+
+        assertSame(first, second);
+        assertSame(ClientType.IE_6x, second.getClientType());
+        assertSame(FormatType.HTML_4_0, second.getFormatType());
+    }
+
+    @Test
+    public void given_script_flag_or_accept_expect_own_capabilities() {
+        String uas = "Mozilla/5.0 (X11; Linux x86_64; rv:60.0) Gecko/20100101 Firefox/60.0";
+
+        assertSame(ScriptingType.JAVASCRIPT_1_5, ViewUtil.getScriptingType(request(null, uas, null)));
+        assertSame(ScriptingType.NONE, ViewUtil.getScriptingType(request("$csjs=false", uas, null)));
+        assertSame(ClientType.WML_BROWSER, ViewUtil.getClientType(request(null, uas, "text/vnd.wap.wml")));
+        assertSame(ClientType.NN_6x, ViewUtil.getClientType(request(null, uas, "TEXT/HTML")));
+    }
+
+    @Test
+    public void given_view_capabilities_expect_manual_types_kept() {
+        ViewCapabilities vc = new ViewCapabilities(request(null, "Opera/5.0", null), null);
+        vc.setClientType(ClientType.IE_9x);
+
+        assertSame(ClientType.IE_9x, vc.getClientType());
+        assertSame(FormatType.HTML_4_0, vc.getFormatType());
+        assertEquals(ScriptingType.JAVASCRIPT_1_3, vc.getScriptingType());
+    }
+
+    private static MockHttpServletRequest request(String params, String uas, String accept) {
+        MockHttpServletRequest req = new MockHttpServletRequest(params);
+        req.setHeader("User-Agent", uas);
+        if (accept != null) {
+            req.setHeader("Accept", accept);
+        }
+        return req;
+    }
+
     /**
      * Simple test to make sure the mockup servlet request to
      * make sure it functions as expected (ie. the necessary methods
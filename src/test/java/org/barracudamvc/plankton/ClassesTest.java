@@ -0,0 +1,29 @@
+package org.barracudamvc.plankton;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class ClassesTest {
+
+    @Test
+    public void given_known_class_expect_cached() {
+        assertSame(String.class, Classes.getClass("java.lang.String"));
+        assertSame(String.class, Classes.clCache.get("java.lang.String"));
+        assertSame(String.class, Classes.getClass("java.lang.String"));
+    }
+
+    @Test
+    public void given_unknown_class_expect_null_and_negative_cache() {
+        assertNull(Classes.getClass("no.such.Clazz"));
+        assertSame(Classes.EMPTY, Classes.clCache.get("no.such.Clazz"));
+        assertNull(Classes.getClass("no.such.Clazz"));
+        assertNull(Classes.getClass(null));
+    }
+
+    @Test
+    public void given_new_instance_by_name_expect_object() {
+        assertTrue(Classes.newInstance("java.util.ArrayList") instanceof java.util.ArrayList);
+    }
+}
@@ -0,0 +1,88 @@
+package org.barracudamvc.plankton.data;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class Base64CodecTest {
+
+    @Test
+    public void given_random_data_expect_same_encoding_as_jdk() {
+        Random random = new Random(14);
+        for (int length = 0; length < 64; length++) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            byte[] expected = java.util.Base64.getEncoder().encode(data);
+            assertArrayEquals(expected, Base64.encode(data));
+            assertArrayEquals(data, Base64.decode(expected));
+            assertEquals(length, Base64.getDecodedDataLength(expected));
+        }
+    }
+
+    @Test
+    public void given_whitespace_expect_ignored() {
+        assertEquals("Aladdin:open sesame", Base64.decode(" QWxhZGRp\r\nbjpvcGVu\tIHNlc2FtZQ== \n"));
+        assertEquals(0, Base64.decode("  \n".getBytes()).length);
+    }
+
+    @Test
+    public void given_invalid_data_expect_null() {
+        String[] invalid = {"QWxhZA", "QW=hZA==", "QWx=ZA==", "QR==", "QWF=", "QQ==QQ==", "Q!==", "QQ\u00e9=", "===="};
+        for (String s : invalid) {
+            assertNull(s, Base64.decode(s.getBytes(java.nio.charset.StandardCharsets.ISO_8859_1)));
+            assertEquals(s, -1, Base64.getDecodedDataLength(s.getBytes(java.nio.charset.StandardCharsets.ISO_8859_1)));
+            assertFalse(s, Base64.isArrayByteBase64(s.getBytes(java.nio.charset.StandardCharsets.ISO_8859_1)));
+        }
+    }
+
+    @Test
+    public void given_small_buffers_expect_streaming_round_trip() {
+        Random random = new Random(41);
+        byte[] data = new byte[1000];
+        random.nextBytes(data);
+
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        ByteBuffer in = ByteBuffer.allocate(7);
+        ByteBuffer out = ByteBuffer.allocate(9);
+        int offset = 0;
+        boolean done = false;
+        while (!done) {
+            int n = Math.min(in.remaining(), data.length - offset);
+            in.put(data, offset, n);
+            offset += n;
+            in.flip();
+            done = Base64Codec.encode(in, out, offset == data.length) && offset == data.length;
+            in.compact();
+            encoded.write(out.array(), 0, out.position());
+            out.clear();
+        }
+        byte[] chars = encoded.toByteArray();
+        assertArrayEquals(java.util.Base64.getEncoder().encode(data), chars);
+
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        in = ByteBuffer.allocate(6);
+        out = ByteBuffer.allocate(5);
+        offset = 0;
+        while (true) {
+            int n = Math.min(in.remaining(), chars.length - offset);
+            in.put(chars, offset, n);
+            offset += n;
+            in.flip();
+            assertTrue(Base64Codec.decode(in, out, offset == chars.length));
+            boolean drained = !in.hasRemaining();
+            in.compact();
+            decoded.write(out.array(), 0, out.position());
+            out.clear();
+            if (drained && offset == chars.length) {
+                break;
+            }
+        }
+        assertArrayEquals(data, decoded.toByteArray());
+    }
+}
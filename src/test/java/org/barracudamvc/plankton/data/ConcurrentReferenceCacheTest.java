@@ -0,0 +1,162 @@
+package org.barracudamvc.plankton.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import org.barracudamvc.plankton.data.ConcurrentReferenceCache.ReferenceType;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ConcurrentReferenceCacheTest {
+
+    @Test
+    public void given_size_bound_expect_unreferenced_entry_evicted_first() {
+        ConcurrentReferenceCache<String, String> cache = new ConcurrentReferenceCache<>(ReferenceType.STRONG, 1, 0, 3, null, 0);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.put("c", "3");
+        cache.get("a");
+        cache.put("d", "4");
+
+        assertEquals(3, cache.size());
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void given_same_key_overwritten_many_times_expect_clock_bounded() {
+        ConcurrentReferenceCache<String, Integer> cache = new ConcurrentReferenceCache<>(ReferenceType.STRONG, 100);
+        for (int i = 0; i < 200000; i++) {
+            cache.put("key", i);
+            cache.replace("key", i, i + 1);
+        }
+
+        assertEquals(1, cache.size());
+        assertEquals(Integer.valueOf(200000), cache.get("key"));
+        assertTrue("clock holds " + cache.getClockSize() + " nodes", cache.getClockSize() < 100);
+    }
+
+    @Test
+    public void given_weight_bound_expect_total_weight_held() {
+        ConcurrentReferenceCache<String, String> cache = new ConcurrentReferenceCache<>(ReferenceType.STRONG, 1, 0, 0,
+                new ConcurrentReferenceCache.Weigher<String, String>() {
+                    @Override
+                    public long weigh(String key, String value) {
+                        return value.length();
+                    }
+                }, 10);
+        cache.put("a", "12345");
+        cache.put("b", "1234");
+        cache.put("c", "123");
+
+        assertEquals(2, cache.size());
+        assertTrue(cache.getWeight() <= 10);
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    public void given_null_keys_and_values_expect_stored() {
+        ConcurrentReferenceCache<String, String> cache = new ConcurrentReferenceCache<>(ReferenceType.SOFT);
+        cache.put(null, "x");
+        cache.put("y", null);
+
+        assertEquals("x", cache.get(null));
+        assertTrue(cache.containsKey("y"));
+        assertNull(cache.get("y"));
+        assertNull(cache.get("z"));
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(null, cache.putIfAbsent("y", "other"));
+        assertEquals("x", cache.remove(null));
+        assertFalse(cache.containsKey(null));
+    }
+
+    @Test
+    public void given_weak_values_when_collected_expect_entries_removed() throws Exception {
+        ConcurrentReferenceCache<String, Object> cache = new ConcurrentReferenceCache<>(ReferenceType.WEAK);
+        for (int i = 0; i < 100; i++) {
+            cache.put("key" + i, new Object());
+        }
+        Object kept = new Object();
+        cache.put("kept", kept);
+
+        for (int i = 0; i < 50 && cache.size() > 1; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(1, cache.size());
+        assertSame(kept, cache.get("kept"));
+        assertEquals(100, cache.getCollectedCount());
+    }
+
+    @Test
+    public void given_threadsafe_repository_when_wildcard_removed_expect_matching_entries_removed() {
+        ObjectRepository or = new ObjectRepository.ThreadsafeRepository("test");
+        or.putState("a.1", "1");
+        or.putState("a.2", "2");
+        or.putState("b.1", "3");
+        or.removeState("a.*");
+
+        assertEquals(1, or.getStateKeys().size());
+        assertEquals("3", or.getState("b.1"));
+    }
+
+    @Test
+    public void given_strong_cache_expect_serialized_with_entries() throws Exception {
+        ConcurrentReferenceCache<String, String> cache = new ConcurrentReferenceCache<>(ReferenceType.STRONG);
+        cache.put("a", "1");
+        cache.put(null, "2");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(cache);
+        }
+        ConcurrentReferenceCache<?, ?> copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (ConcurrentReferenceCache<?, ?>) in.readObject();
+        }
+        assertEquals(cache, copy);
+    }
+
+    @Test
+    public void given_concurrent_writers_expect_every_entry_kept() throws Exception {
+        final ConcurrentReferenceCache<String, Integer> cache = new ConcurrentReferenceCache<>(ReferenceType.STRONG);
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final int id = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < 1000; i++) {
+                        cache.put(id + ":" + i, i);
+                        cache.get(id + ":" + (i / 2));
+                        if (i % 2 == 1) {
+                            cache.remove(id + ":" + i);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertNull(failure.get());
+        assertEquals(8 * 500, cache.size());
+        assertEquals(8 * 500, cache.getWeight());
+    }
+}
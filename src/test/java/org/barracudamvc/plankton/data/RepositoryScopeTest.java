@@ -0,0 +1,82 @@
+package org.barracudamvc.plankton.data;
+
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class RepositoryScopeTest {
+
+    @After
+    public void tearDown() {
+        ObjectRepository.removeLocalRepository();
+        ObjectRepository.removeSessionRepository();
+    }
+
+    @Test
+    public void given_local_repository_when_requested_twice_expect_same_instance() {
+        ObjectRepository lor = ObjectRepository.getLocalRepository();
+
+        assertSame(lor, ObjectRepository.getLocalRepository());
+        assertSame(lor, RepositoryScope.current().getLocalRepository());
+    }
+
+    @Test
+    public void given_local_repository_when_removed_expect_scope_released() {
+        ObjectRepository.getLocalRepository().putState("key", "value");
+        ObjectRepository.getSessionRepository();
+
+        ObjectRepository.removeLocalRepository();
+        assertNotNull(RepositoryScope.current());
+        ObjectRepository.removeSessionRepository();
+
+        assertNull(RepositoryScope.current());
+        assertNull(ObjectRepository.getLocalRepository().getState("key"));
+    }
+
+    @Test
+    public void given_threads_with_same_name_expect_separate_local_repositories() throws Exception {
+        final String name = Thread.currentThread().getName();
+        ObjectRepository.getLocalRepository().putState("key", "value");
+
+        final AtomicReference<Object> seen = new AtomicReference<>("unset");
+        Thread other = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                seen.set(ObjectRepository.getLocalRepository().getState("key"));
+                ObjectRepository.removeLocalRepository();
+            }
+        }, name);
+        other.start();
+        other.join();
+
+        assertNull(seen.get());
+    }
+
+    @Test
+    public void given_attached_scope_expect_repositories_visible_on_other_thread() throws Exception {
+        ObjectRepository.getLocalRepository().putState("key", "value");
+        final RepositoryScope scope = RepositoryScope.current();
+
+        final AtomicReference<Object> seen = new AtomicReference<>();
+        final AtomicReference<RepositoryScope> after = new AtomicReference<>(scope);
+        Thread other = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                RepositoryScope previous = scope.attach();
+                try {
+                    seen.set(ObjectRepository.getLocalRepository().getState("key"));
+                } finally {
+                    scope.detach(previous);
+                }
+                after.set(RepositoryScope.current());
+            }
+        });
+        other.start();
+        other.join();
+
+        assertEquals("value", seen.get());
+        assertNull(after.get());
+        assertEquals("value", ObjectRepository.getLocalRepository().getState("key"));
+    }
+}
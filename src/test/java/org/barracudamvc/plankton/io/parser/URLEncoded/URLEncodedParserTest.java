@@ -0,0 +1,102 @@
+package org.barracudamvc.plankton.io.parser.URLEncoded;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+public class URLEncodedParserTest {
+
+    URLEncodedParser parser = new URLEncodedParser();
+
+    @Test
+    public void givenPairs_expectValuesGroupedByKey() {
+        Map<String, List<String>> result = parse("a=1&b=two+words&a=x%3Dy&empty=&flag&&c=d=e");
+
+        assertThat(result.get("a"), is(Arrays.asList("1", "x=y")));
+        assertThat(result.get("b"), is(Arrays.asList("two words")));
+        assertThat(result.get("empty").get(0), nullValue());
+        assertThat(result.get("flag").get(0), nullValue());
+        assertThat(result.get("c"), is(Arrays.asList("d=e")));
+        assertThat(result.size(), is(5));
+    }
+
+    @Test
+    public void givenMultiByteEscapes_expectCharactersDecoded() {
+        Map<String, List<String>> result = parse("name=Ren%C3%A9e&%E2%82%AC=%F0%9F%98%80");
+
+        assertThat(result.get("name").get(0), is("Ren\u00e9e"));
+        assertThat(result.get("\u20ac").get(0), is("\ud83d\ude00"));
+    }
+
+    @Test
+    public void givenEscapeSplitAcrossBlocks_expectDecoded() {
+        StringBuilder sb = new StringBuilder("k=");
+        while (sb.length() < 8191) {
+            sb.append('x');
+        }
+        sb.append("%C3%A9&z=1");
+
+        Map<String, List<String>> result = parse(sb.toString());
+
+        String value = result.get("k").get(0);
+        assertThat(value.charAt(value.length() - 1), is('\u00e9'));
+        assertThat(result.get("z").get(0), is("1"));
+    }
+
+    @Test
+    public void givenOtherCharset_expectBytesDecodedWithIt() {
+        URLEncodedParser latin1 = new URLEncodedParser(StandardCharsets.ISO_8859_1);
+
+        Map<String, List<String>> result = latin1.parse("v=%E9");
+
+        assertThat(result.get("v").get(0), is("\u00e9"));
+    }
+
+    @Test
+    public void givenSameKeyInTwoParses_expectSameString() {
+        String first = parse("color=red").keySet().iterator().next();
+        String second = parse("color=blue").keySet().iterator().next();
+
+        assertSame(first, second);
+    }
+
+    @Test(expected = LimitExceededException.class)
+    public void givenTooManyPairs_expectLimitExceeded() {
+        new URLEncodedParser(StandardCharsets.UTF_8, 2, 16, 16).parse("a=1&b=2&c=3");
+    }
+
+    @Test(expected = LimitExceededException.class)
+    public void givenValueTooLong_expectLimitExceeded() {
+        new URLEncodedParser(StandardCharsets.UTF_8, 2, 16, 4).parse("a=12345");
+    }
+
+    @Test(expected = LimitExceededException.class)
+    public void givenDefaultLoweredAfterConstruction_expectNewLimitUsed() {
+        URLEncodedParser parser = new URLEncodedParser();
+        int old = URLEncodedParser.DEFAULT_MAX_PARAMETERS;
+        URLEncodedParser.DEFAULT_MAX_PARAMETERS = 2;
+        try {
+            parser.parse("a=1&b=2&c=3");
+        } finally {
+            URLEncodedParser.DEFAULT_MAX_PARAMETERS = old;
+        }
+    }
+
+    @Test(expected = StreamInvalidException.class)
+    public void givenBadEscape_expectException() {
+        parse("a=%4");
+    }
+
+    private Map<String, List<String>> parse(String body) {
+        InputStream stream = new ByteArrayInputStream(body.getBytes(StandardCharsets.ISO_8859_1));
+        return parser.parse(stream);
+    }
+}
@@ -0,0 +1,104 @@
+package org.barracudamvc.plankton.io.parser.json;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.Map;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsInstanceOf.instanceOf;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+public class JSONReaderTest {
+
+    @Test
+    public void givenTypedValues_expectPrimitiveEvents() {
+        JSONReader reader = read("[12, -3.5e2, true, null, \"x\", -9223372036854775808]");
+
+        assertThat(reader.next(), is(JSONEvent.START_ARRAY));
+        assertThat(reader.next(), is(JSONEvent.NUMBER));
+        assertThat(reader.isIntegral(), is(true));
+        assertThat(reader.getLong(), is(12L));
+        assertThat(reader.next(), is(JSONEvent.NUMBER));
+        assertThat(reader.isIntegral(), is(false));
+        assertThat(reader.getDouble(), is(-350.0));
+        assertThat(reader.next(), is(JSONEvent.BOOLEAN));
+        assertThat(reader.getBoolean(), is(true));
+        assertThat(reader.next(), is(JSONEvent.NULL));
+        assertThat(reader.next(), is(JSONEvent.STRING));
+        assertThat(reader.getString(), is("x"));
+        assertThat(reader.next(), is(JSONEvent.NUMBER));
+        assertThat(reader.getLong(), is(Long.MIN_VALUE));
+        assertThat(reader.next(), is(JSONEvent.END_ARRAY));
+        assertThat(reader.next(), is(JSONEvent.END_DOCUMENT));
+        assertThat(reader.next(), is(JSONEvent.END_DOCUMENT));
+    }
+
+    @Test
+    public void givenIntegerTooBigForLong_expectDouble() {
+        JSONReader reader = read("[92233720368547758080]");
+        reader.next();
+        reader.next();
+
+        assertThat(reader.isIntegral(), is(false));
+        assertThat(reader.getDouble(), is(9.2233720368547758080e19));
+    }
+
+    @Test
+    public void givenLargeArray_expectElementsReadOneAtATime() {
+        JSONReader reader = read("{\"rows\" : [{\"id\" : 1, \"tags\" : [\"a\"]}, {\"id\" : 2, \"tags\" : []}], \"count\" : 2}");
+
+        assertThat(reader.next(), is(JSONEvent.START_OBJECT));
+        assertThat(reader.next(), is(JSONEvent.KEY));
+        assertThat(reader.getString(), is("rows"));
+        assertThat(reader.next(), is(JSONEvent.START_ARRAY));
+        long total = 0;
+        while (reader.next() != JSONEvent.END_ARRAY) {
+            Map<?, ?> row = (Map<?, ?>) reader.readValue();
+            total += (Long) row.get("id");
+            assertThat(row.get("tags"), instanceOf(List.class));
+            assertThat(reader.getDepth(), is(2));
+        }
+        assertThat(total, is(3L));
+        assertThat(reader.next(), is(JSONEvent.KEY));
+        assertThat(reader.next(), is(JSONEvent.NUMBER));
+        assertThat(reader.getInt(), is(2));
+        assertThat(reader.next(), is(JSONEvent.END_OBJECT));
+        assertThat(reader.getDepth(), is(0));
+    }
+
+    @Test
+    public void givenSkippedValue_expectNextSibling() {
+        JSONReader reader = read("{\"skip\" : {\"a\" : [1, {\"b\" : 2}]}, \"keep\" : false}");
+        reader.next();
+        reader.next();
+
+        reader.skipValue();
+
+        assertThat(reader.next(), is(JSONEvent.KEY));
+        assertThat(reader.getString(), is("keep"));
+        reader.next();
+        assertThat(reader.getBoolean(), is(false));
+    }
+
+    @Test
+    public void givenEmptyStream_expectEndOfDocument() {
+        JSONReader reader = read("");
+
+        assertThat(reader.next(), is(JSONEvent.END_DOCUMENT));
+        assertThat(reader.getString(), nullValue());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void givenStringEvent_expectGetLongToFail() {
+        JSONReader reader = read("[\"1\"]");
+        reader.next();
+        reader.next();
+
+        reader.getLong();
+    }
+
+    private JSONReader read(String json) {
+        return new JSONParser().read(new ByteArrayInputStream(json.getBytes()));
+    }
+}
@@ -0,0 +1,59 @@
+package org.barracudamvc.plankton.io.parser.json;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+public class JSONWriterTest {
+
+    @Test
+    public void givenValues_expectCompactJSON() throws IOException {
+        StringWriter out = new StringWriter();
+        JSONWriter json = new JSONWriter(out);
+
+        json.beginObject()
+                .name("id").value(Long.MIN_VALUE)
+                .name("ratio").value(0.25)
+                .name("ok").value(true)
+                .name("none").nullValue()
+                .name("list").beginArray().value(1).value(-20).beginObject().endObject().endArray()
+                .endObject();
+
+        assertThat(out.toString(), is("{\"id\":-9223372036854775808,\"ratio\":0.25,\"ok\":true,\"none\":null,\"list\":[1,-20,{}]}"));
+    }
+
+    @Test
+    public void givenSpecialCharacters_expectEscapedString() throws IOException {
+        StringWriter out = new StringWriter();
+
+        new JSONWriter(out).value("a\"b\\c\nd\u0001\u2028");
+
+        assertThat(out.toString(), is("\"a\\\"b\\\\c\\nd\\u0001\\u2028\""));
+    }
+
+    @Test
+    public void givenTree_expectReaderGetsTheSameTreeBack() throws IOException {
+        Map<String, Object> tree = new LinkedHashMap<String, Object>();
+        tree.put("name", "quote \" here");
+        tree.put("count", 42L);
+        tree.put("values", Arrays.asList(1L, 2.5, Boolean.FALSE, null));
+        StringWriter out = new StringWriter();
+
+        new JSONWriter(out, true).value(tree);
+        JSONReader reader = new JSONReader(new ByteArrayInputStream(out.toString().getBytes("UTF-8")));
+        reader.next();
+
+        assertThat(reader.readValue(), is((Object) tree));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void givenValueWithoutName_expectException() throws IOException {
+        new JSONWriter(new StringWriter()).beginObject().value(1);
+    }
+}
@@ -106,7 +106,46 @@ public class LexerStreamTest {
         assertThat(stream.next().getType(), is(TerminalType.COMMA));
     }
 
-    
+    @Test
+    public void givenUtf8Word_expectDecodedString() throws Exception {
+        String word = "caf\u00e9 \u20ac \ud83d\ude00";
+        LexerStream stream = new LexerStream(new ByteArrayInputStream(("\"" + word + "\"").getBytes("UTF-8")));
+
+        assertNextTokenValue(stream, TerminalType.STRING_LITERAL, word);
+    }
+
+    @Test
+    public void givenInputLargerThanBuffer_expectCharactersSplitAcrossReads() throws Exception {
+        String word = "ab\u00e9\u20accd\ud83d\ude00";
+        LexerInput input = new LexerInput(new ByteArrayInputStream(word.getBytes("UTF-8")), 3);
+
+        StringBuilder sb = new StringBuilder();
+        int c;
+        while ((c = input.read()) != -1) {
+            sb.append((char) c);
+        }
+        assertThat(sb.toString(), is(word));
+    }
+
+    @Test
+    public void givenMalformedUtf8_expectReplacementCharacter() {
+        LexerStream stream = new LexerStream(new ByteArrayInputStream(new byte[]{'"', 'a', (byte) 0xC3, '"'}));
+
+        assertNextTokenValue(stream, TerminalType.STRING_LITERAL, "a\ufffd");
+    }
+
+    @Test
+    public void givenNumbersFollowedByPunctuation_expectNumbersAndPunctuation() {
+        LexerStream stream = toLexicalStream("[10,2.50e+3]");
+
+        assertThat(stream.next().getType(), is(TerminalType.OPEN_BRACKET));
+        assertNextTokenValue(stream, TerminalType.VALUE_LITERAL, "10");
+        assertThat(stream.next().getType(), is(TerminalType.COMMA));
+        assertNextTokenValue(stream, TerminalType.VALUE_LITERAL, "2.50e+3");
+        assertThat(stream.next().getType(), is(TerminalType.CLOSE_BRACKET));
+        assertThat(stream.next().getType(), is(TerminalType.EOS));
+    }
+
     private LexerStream toLexicalStream(String tokens) {
         LexerStream stream = new LexerStream(toStream(tokens));
         return stream;